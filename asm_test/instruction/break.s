@@ -0,0 +1,13 @@
+# r1 = 1
+# r2 = 0
+
+
+ .data
+ .global main
+
+ .text
+
+main:
+	movi r1, 1
+	break
+	movi r2, 2
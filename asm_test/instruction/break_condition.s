@@ -0,0 +1,18 @@
+# r1 = 6
+# r2 = 4
+# r3 = 0
+
+
+ .data
+ .global main
+
+ .text
+
+main:
+	movi r1, 0
+	movi r2, 10
+	movi r3, 0
+loop:	addi r1, r1, 1 # break if hits > 3 && r2 < 5
+	subi r2, r2, 1
+	bne r2, r0, loop
+	movi r3, 1
@@ -0,0 +1,16 @@
+# r1 = 2
+# r2 = 8
+
+
+ .data
+ .global main
+
+ .text
+
+main:
+	movi r1, 0
+	movi r2, 10
+loop:	addi r1, r1, 1 # break if hits == 3
+	subi r2, r2, 1
+	bne r2, r0, loop
+	movi r3, 1
@@ -0,0 +1,35 @@
+# r1 = 3
+# r2 = 1496
+# r3 = 1
+
+
+ .data
+ .global main
+ .global exceptions
+ .equ TIMER, 0x820
+
+ .text
+
+exceptions:
+	subi ea, ea, 4
+	stw r0, 0(r8)
+	addi r1, r1, 1
+	eret
+
+main:
+	movia r8, TIMER
+	movi r9, 1000
+	stw r9, 8(r8)
+	stw r0, 12(r8)
+	movi r9, 7
+	stw r9, 4(r8)
+	movi r9, 1
+	wrctl ienable, r9
+	wrctl status, r9
+	movi r10, 3
+loop:	addi r2, r2, 1
+	bne r1, r10, loop
+	movi r9, 8
+	stw r9, 4(r8)
+	rdctl r3, status
+	wrctl status, r0
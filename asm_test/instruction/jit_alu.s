@@ -0,0 +1,56 @@
+# r1 = -855185546
+# r2 = -1224343537
+# r3 = 3001
+# r4 = -1498970
+# r5 = 1615114154
+# r6 = -205053953
+# r7 = 397834130
+# r8 = 330433230
+
+
+ .data
+ .global main
+
+ .text
+
+main:
+	movi r1, 0
+	movia r2, 0x12345678
+	movi r3, 1
+	movi r4, 0
+	movi r5, 0
+	movi r6, 0
+	movi r7, 0
+	movi r8, 0
+	movia r9, 1000
+loop:	add r1, r1, r2
+	sub r4, r4, r3
+	xor r2, r2, r1
+	roli r2, r2, 7
+	mul r5, r2, r3
+	addi r3, r3, 3
+	and r10, r5, r2
+	xor r6, r6, r10
+	nor r11, r6, r1
+	srai r11, r11, 3
+	srli r12, r1, 5
+	add r7, r7, r11
+	sub r7, r7, r12
+	bge r7, r0, pos
+	addi r4, r4, 1
+pos:	slli r12, r3, 2
+	rol r13, r2, r12
+	ror r13, r13, r3
+	xorhi r13, r13, 0xa5a5
+	andhi r14, r1, 0xff00
+	orhi r14, r14, 0x0101
+	mulxss r15, r1, r2
+	mulxuu r16, r1, r2
+	add r8, r8, r13
+	add r8, r8, r14
+	xor r8, r8, r15
+	sub r8, r8, r16
+	muli r17, r3, -7
+	add r8, r8, r17
+	subi r9, r9, 1
+	bne r9, r0, loop
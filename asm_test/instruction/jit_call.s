@@ -0,0 +1,37 @@
+# r1 = 1200
+# r2 = 240600
+# r3 = 500
+# r5 = 1
+# r6 = 500
+
+
+ .data
+ .global main
+
+ .text
+
+main:
+	movi r1, 0
+	movi r2, 0
+	movi r3, 0
+	movia r10, twice
+	movi r9, 400
+loop:	call inc
+	mov r4, r1
+	callr r10
+	subi r9, r9, 1
+	bne r9, r0, loop
+	movi r5, 1
+	br end
+
+inc:	addi r1, r1, 3
+	addi r3, r3, 1
+	ret
+
+twice:	add r2, r2, r4
+	andi r6, r9, 3
+	bne r6, r0, skip
+	addi r3, r3, 1
+skip:	ret
+
+end:	mov r6, r3
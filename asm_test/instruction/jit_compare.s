@@ -0,0 +1,66 @@
+# r1 = 600
+# r2 = 400
+# r3 = 599
+# r4 = 400
+# r5 = 333
+# r6 = 701
+# r7 = 600
+# r8 = 401
+# r9 = 399
+
+
+ .data
+ .global main
+
+ .text
+
+main:
+	movia r1, -600
+	movi r2, 0
+	movi r3, 0
+	movi r4, 0
+	movi r5, 0
+	movi r6, 0
+	movi r7, 0
+	movi r8, 0
+	movi r9, 0
+	movia r10, 0x7fffff00
+loop:	cmplt r11, r1, r0
+	add r2, r2, r11
+	cmpltu r11, r1, r10
+	add r2, r2, r11
+	cmpge r11, r1, r10
+	add r3, r3, r11
+	cmpgeu r11, r1, r10
+	add r3, r3, r11
+	cmpeqi r11, r1, 17
+	add r4, r4, r11
+	cmpnei r11, r1, -17
+	add r4, r4, r11
+	cmplti r11, r1, -100
+	add r5, r5, r11
+	cmpgei r11, r1, 100
+	add r5, r5, r11
+	cmpltui r11, r1, 300
+	add r6, r6, r11
+	cmpgeui r11, r1, 0x8000
+	add r6, r6, r11
+	cmpeq r11, r1, r0
+	add r6, r6, r11
+	cmpne r11, r1, r10
+	add r6, r6, r11
+	blt r1, r0, negative
+	addi r7, r7, 1
+negative:
+	bltu r1, r10, below
+	addi r7, r7, 2
+below:	bge r1, r10, above
+	addi r8, r8, 1
+above:	bgeu r1, r10, aboveu
+	addi r8, r8, 2
+aboveu:	beq r1, r0, zero
+	addi r9, r9, 1
+zero:	addi r10, r10, 0x100
+	addi r1, r1, 3
+	movi r11, 600
+	bne r1, r11, loop
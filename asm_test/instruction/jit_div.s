@@ -0,0 +1,30 @@
+# r1 = 6282535
+# r2 = 6282535
+# r3 = 150
+# r4 = 300
+# r8 = 0
+
+
+ .data
+ .global main
+
+ .text
+
+main:
+	movi r1, 0
+	movi r2, 0
+	movi r3, 0
+	movi r4, 0
+	movi r9, 300
+	movia r10, 1000000
+loop:	div r5, r10, r9
+	add r1, r1, r5
+	divu r6, r10, r9
+	andi r7, r9, 1
+	beq r7, r0, even
+	addi r3, r3, 1
+even:	add r2, r2, r6
+	addi r4, r4, 1
+	subi r9, r9, 1
+	bgeu r9, r0, loop
+	movi r8, 1
@@ -0,0 +1,57 @@
+# r1 = 282209428
+# r2 = -716
+# r3 = 61143
+# r4 = -119660
+# r5 = 11407319
+# r6 = 1792
+# r7 = 32803572
+# r8 = 1022223
+# the compiled code
+
+
+ .data
+ .global main
+ .equ LEDS, 0x810
+
+array:	.word 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0
+
+ .text
+
+main:
+	movia r10, array
+	movia r11, LEDS
+	movi r1, 0
+	movi r2, 0
+	movi r3, 0
+	movi r4, 0
+	movi r5, 0
+	movi r6, 0
+	movi r7, 0
+	movia r9, 500
+loop:	andi r12, r9, 0xf
+	slli r12, r12, 2
+	add r12, r12, r10
+	ldw r13, 0(r12)
+	add r13, r13, r9
+	muli r13, r13, 0x5b
+	stw r13, 0(r12)
+	add r1, r1, r13
+	ldb r14, 1(r12)
+	add r2, r2, r14
+	ldbu r14, 2(r12)
+	add r3, r3, r14
+	ldh r14, 0(r12)
+	add r4, r4, r14
+	ldhu r14, 2(r12)
+	add r5, r5, r14
+	sth r9, 2(r12)
+	stb r9, 0(r12)
+	andi r14, r9, 0x3f
+	bne r14, r0, noio
+	stwio r9, 0(r11)
+	add r6, r6, r9
+noio:	ldw r14, 0(r12)
+	xor r7, r7, r14
+	subi r9, r9, 1
+	bne r9, r0, loop
+	ldw r8, 60(r10)
@@ -0,0 +1,34 @@
+# r1 = 25250
+# r2 = 500
+# r3 = 1
+# r4 = 6336
+
+
+ .data
+ .global main
+
+ .text
+
+add1:	addi r1, r1, 1
+add2:	addi r1, r1, 100
+
+main:
+	movia r10, patch
+	movia r11, add2
+	ldw r11, 0(r11)
+	movi r1, 0
+	movi r2, 0
+	movi r3, 0
+	movi r9, 500
+loop:	movi r12, 250
+	bne r9, r12, same
+	stw r11, 0(r10)
+	addi r3, r3, 1
+same:	addi r2, r2, 1
+patch:	addi r1, r1, 1
+	subi r9, r9, 1
+	bne r9, r0, loop
+	movia r4, add1
+	ldw r4, 0(r4)
+	ldw r5, 0(r10)
+	sub r4, r5, r4
@@ -0,0 +1,21 @@
+# r1 = 0
+# r2 = 5
+# r3 = 1
+# r4 = 0
+
+
+ .data
+ .global main
+
+ .text
+
+main:
+	movi r5, 5
+	wrctl ienable, r5
+	rdctl r2, ctl3
+	rdctl r1, ipending
+	movi r5, 3
+	wrctl status, r5
+	rdctl r3, status
+	rdctl r4, cpuid
+	wrctl status, r0
@@ -0,0 +1,22 @@
+# run 5001
+# r1 = 909
+# r2 = 454
+# r3 = 1
+
+
+ .data
+count:	.word 0
+ .global main
+
+ .text
+
+main:
+	movi r1, 0
+	movi r2, 0
+	movia r4, count
+loop:	addi r1, r1, 1
+	andi r3, r1, 1
+	beq r3, r0, even
+	addi r2, r2, 1
+even:	stw r1, 0(r4)
+	br loop
@@ -0,0 +1,24 @@
+# r1 = 1
+# r2 = 2
+# r3 = 1
+# r5 = 0
+
+
+ .data
+ .global main
+ .global exceptions
+
+ .text
+
+exceptions:
+	movi r1, 1
+	rdctl r5, status
+	eret
+
+main:
+	movi r4, 1
+	wrctl status, r4
+	trap
+	movi r2, 2
+	rdctl r3, status
+	wrctl status, r0
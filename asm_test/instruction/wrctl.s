@@ -0,0 +1,24 @@
+# r1 = 1
+# r2 = 0
+# r3 = 0
+# r4 = -1
+
+
+ .data
+ .global main
+
+ .text
+
+main:
+	movi r5, 1
+	wrctl estatus, r5
+	rdctl r1, estatus
+	wrctl cpuid, r5
+	rdctl r2, cpuid
+	movi r5, 2
+	wrctl status, r5
+	rdctl r3, status
+	movi r5, -1
+	wrctl ienable, r5
+	rdctl r4, ienable
+	wrctl ienable, r0
@@ -158,7 +158,7 @@ public class Decompile {
       // System.out.println(instruction);
       try {
         Instruction ins = InstructionManager.get(instruction);
-        System.out.println(ins);
+        System.out.println(ins.toString(instruction));
       } catch (InstructionException e) {
       }
     }
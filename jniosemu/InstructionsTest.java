@@ -3,12 +3,16 @@ package jniosemu;
 import java.io.*;
 import java.util.Arrays;
 import java.util.LinkedList;
+import java.util.Vector;
 import java.util.regex.*;
 import jniosemu.editor.Editor;
+import jniosemu.emulator.EmulatorException;
 import jniosemu.emulator.EmulatorManager;
+import jniosemu.emulator.RunResult;
+import jniosemu.emulator.SourceCode;
+import jniosemu.emulator.SourceCodeLine;
 import jniosemu.emulator.compiler.Compiler;
 import jniosemu.emulator.register.RegisterManager;
-import jniosemu.events.EventManager;
 
 public class InstructionsTest {
 
@@ -92,16 +96,54 @@ public class InstructionsTest {
       regCount++;
     }
 
-    EventManager eventManager = new EventManager();
-
-    // Add listener for COMPILE_ERROR, EMULATOR_ERROR
+    // "# run n" runs exactly n instructions with runFor() instead of running until the end
+    long runCount = -1;
+    Matcher mRun = Pattern.compile("# run (\\d+)\n").matcher(fileContent);
+    if (mRun.find()) {
+      runCount = Long.parseLong(mRun.group(1));
+      regCount++;
+    }
 
-    EmulatorManager emulatorManager = new EmulatorManager(eventManager);
+    EmulatorManager emulatorManager = new EmulatorManager();
     emulatorManager.compile(fileContent);
     emulatorManager.setSpeed(EmulatorManager.SPEED.ULTRA);
+    if (emulatorManager.getProgram() == null) {
+      error_msg = new String("Compiling failed");
+      return TEST_FAILED;
+    }
+
+    // "# break" after an instruction sets a breakpoint, "# break if condition" a conditional one
+    SourceCode sourceCode = emulatorManager.getProgram().getSourceCode();
+    Vector<SourceCodeLine> lines = sourceCode.getSourceCodeLines();
+    Pattern pBreak = Pattern.compile("# break(?: if (.*))?$");
+    for (int i = 0; i < lines.size(); i++) {
+      String line = lines.get(i).getSourceCodeLine();
+      if (line == null || sourceCode.getAddress(i) < 0) continue;
+
+      Matcher mBreak = pBreak.matcher(line.trim());
+      if (!mBreak.find()) continue;
+
+      emulatorManager.toggleBreakpoint(i);
+      try {
+        emulatorManager.setBreakpointCondition(i, mBreak.group(1));
+      } catch (EmulatorException e) {
+        error_msg = e.getMessage();
+        return TEST_FAILED;
+      }
+    }
 
     for (int i = 0; i < 2; i++) {
-      emulatorManager.execRun(true, false);
+      if (runCount < 0) {
+        emulatorManager.execRun(true, false);
+      } else {
+        RunResult result = emulatorManager.runFor(runCount);
+        if (result.getReason() != RunResult.REASON.BUDGET
+            || result.getRetired() != runCount
+            || emulatorManager.getRetired() != runCount) {
+          error_msg = new String("Run " + runCount + " failed (" + result + ")");
+          return TEST_FAILED;
+        }
+      }
 
       // Wait until EMULATOR_DONE
 
@@ -1,13 +1,82 @@
 package jniosemu;
 
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import javax.swing.UIManager;
+import jniosemu.emulator.EmulatorAdapter;
+import jniosemu.emulator.EmulatorException;
 import jniosemu.emulator.EmulatorManager;
+import jniosemu.emulator.RunResult;
+import jniosemu.emulator.memory.MemoryMap;
+import jniosemu.emulator.memory.Watchpoint;
+import jniosemu.emulator.memory.io.SerialBridge;
 import jniosemu.events.*;
 import jniosemu.gui.*;
 
-/** Class containing main method used to start the application and set the UI look-and-feel. */
+/**
+ * Class containing main method used to start the application and set the UI look-and-feel.
+ *
+ * <p>"-memorymap file" uses the memories and devices described in file instead of the default
+ * ones, see MemoryMap. "-watch description" adds a watchpoint, see Watchpoint, and can be given
+ * more than once.
+ *
+ * <p>"-uart0 in,out" and "-uart1 in,out" bind a serial port to files, what is read from in is
+ * received by the port and what the program writes is written to out. "-" is standard input or
+ * output, and an empty name leaves that side unbound. "-uart0 tcp:port" lets a client connect to
+ * the serial port through a TCP socket on localhost instead, see SerialBridge. Port 0 picks a free
+ * port, and the port that is used is printed to standard error.
+ *
+ * <p>"-run file" runs the program in file without the GUI until it ends, with uart0 bound to
+ * standard input and output unless -uart0 is given, and exits with status 0 if it ended without
+ * errors.
+ */
 public class JNiosEmu {
   public static void main(String args[]) {
+    EmulatorManager emulatorManager = new EmulatorManager();
+    String runFile = null;
+    boolean uart0Bound = false;
+    for (int i = 0; i + 1 < args.length; i += 2) {
+      try {
+        if (args[i].equals("-memorymap")) {
+          String description = new String(Files.readAllBytes(Paths.get(args[i + 1])));
+          emulatorManager.setMemoryMap(MemoryMap.parse(description));
+        } else if (args[i].equals("-watch")) {
+          emulatorManager.addWatchpoint(Watchpoint.parse(args[i + 1]));
+        } else if (args[i].equals("-uart0") || args[i].equals("-uart1")) {
+          int port = args[i].equals("-uart0") ? 0 : 1;
+          bindSerialPort(emulatorManager, port, args[i + 1]);
+          if (port == 0) uart0Bound = true;
+        } else if (args[i].equals("-run")) {
+          runFile = args[i + 1];
+        } else {
+          System.out.println("JNiosEmu.main(): Unknown option " + args[i]);
+          return;
+        }
+      } catch (IOException e) {
+        System.out.println("JNiosEmu.main(): Can't open " + args[i + 1] + ": " + e.getMessage());
+        return;
+      } catch (EmulatorException e) {
+        System.out.println("JNiosEmu.main(): " + e.getMessage());
+        return;
+      }
+    }
+
+    if (runFile != null) {
+      if (!uart0Bound) emulatorManager.bindSerialPort(0, System.in, System.out);
+
+      try {
+        System.exit(run(emulatorManager, runFile) ? 0 : 1);
+      } catch (IOException e) {
+        System.out.println("JNiosEmu.main(): Can't read " + runFile + ": " + e.getMessage());
+        System.exit(1);
+      }
+    }
+
     try {
       UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
     } catch (Exception e) {
@@ -18,8 +87,96 @@ public class JNiosEmu {
 
     // start
     new GUIManager(eventManager);
-    new EmulatorManager(eventManager);
+    new EmulatorEventAdapter(eventManager, emulatorManager);
 
     eventManager.sendEvent(EventManager.EVENT.APPLICATION_START);
   }
+
+  /**
+   * Bind a serial port to the files given as "in,out", or to a TCP socket given as "tcp:port"
+   *
+   * @calledby main()
+   * @calls EmulatorManager.bindSerialPort(), EmulatorManager.bridgeSerialPort()
+   * @param emulator current EmulatorManager
+   * @param port Port number
+   * @param files Files to read from and write to, "-" for standard input or output
+   * @throws IOException If a file or the socket can't be opened
+   * @throws EmulatorException If the files aren't given as "in,out" or the TCP port isn't a number
+   */
+  private static void bindSerialPort(EmulatorManager emulator, int port, String files)
+      throws IOException, EmulatorException {
+    if (files.startsWith("tcp:")) {
+      int tcpPort;
+      try {
+        tcpPort = Integer.parseInt(files.substring(4));
+      } catch (NumberFormatException e) {
+        throw new EmulatorException("Invalid TCP port " + files.substring(4));
+      }
+
+      SerialBridge bridge = emulator.bridgeSerialPort(port, tcpPort);
+      System.err.println("uart" + port + " listens on localhost:" + bridge.getTcpPort());
+      return;
+    }
+
+    String[] names = files.split(",", -1);
+    if (names.length != 2) throw new EmulatorException("Expected in,out and not " + files);
+
+    InputStream in = null;
+    if (names[0].equals("-")) {
+      in = System.in;
+    } else if (names[0].length() > 0) {
+      in = new FileInputStream(names[0]);
+    }
+
+    OutputStream out = null;
+    if (names[1].equals("-")) {
+      out = System.out;
+    } else if (names[1].length() > 0) {
+      out = new FileOutputStream(names[1]);
+    }
+
+    emulator.bindSerialPort(port, in, out);
+  }
+
+  /**
+   * Compile and run a program without the GUI, errors are printed to standard error
+   *
+   * @calledby main()
+   * @calls EmulatorManager.compile(), EmulatorManager.runUntil()
+   * @param emulator current EmulatorManager
+   * @param file Source file of the program
+   * @return True if the program ended without errors
+   * @throws IOException If the file can't be read
+   */
+  private static boolean run(EmulatorManager emulator, String file) throws IOException {
+    String source = new String(Files.readAllBytes(Paths.get(file)));
+
+    emulator.setListener(
+        new EmulatorAdapter() {
+          public void compilerError(String message) {
+            System.err.println(message);
+          }
+
+          public void emulatorError(String message) {
+            System.err.println(message);
+          }
+        });
+    emulator.setCurrentDirectory(Paths.get(file).toAbsolutePath().getParent().toString());
+    emulator.compile(source);
+    if (emulator.getProgram() == null || emulator.getMemoryManager() == null) return false;
+
+    RunResult result = emulator.runUntil(Long.MAX_VALUE, null);
+    while (result.getReason() == RunResult.REASON.WAITING) {
+      // Only input on a serial port can wake the program up
+      try {
+        Thread.sleep(1);
+      } catch (InterruptedException e) {
+      }
+      result = emulator.runUntil(Long.MAX_VALUE, null);
+    }
+    if (result.getReason() == RunResult.REASON.ENDED) return true;
+
+    if (result.getReason() != RunResult.REASON.ERROR) System.err.println(result);
+    return false;
+  }
 }
@@ -0,0 +1,195 @@
+package jniosemu;
+
+import java.io.*;
+import jniosemu.emulator.EmulatorException;
+import jniosemu.emulator.EmulatorManager;
+import jniosemu.emulator.RunResult;
+import jniosemu.emulator.memory.MemoryMap;
+import jniosemu.emulator.memory.MemoryMap.Region;
+
+public class MemoryMapTest {
+
+  /** Same as the example in the documentation of MemoryMap */
+  static final String EXAMPLE =
+      "memory      sdram        0x1000000 64M  rw\n"
+          + "memory      rom          0x5000000 32M  rx   image.bin\n"
+          + "memory      flash        0x7000000 1M   rw   flash.bin  private\n"
+          + "stack       Stack        0x3ff80   0x80\n"
+          + "leds        Leds         0x810\n"
+          + "timer       Timer        0x820          irq 0\n"
+          + "buttons     Buttons      0x840          irq 1\n"
+          + "dipswitches Dipswitches  0x850\n"
+          + "uart        uart_0       0x860          irq 8\n"
+          + "uart        uart_1       0x880     64K  irq 10\n";
+
+  /** Descriptions that must be rejected */
+  static final String[] INVALID = {
+    "memory m 0x20000 16 rw", // Text
+    "memory m 0x1fffc 8 rw", // Text
+    "memory m 0x2fff0 16 rw", // Lib
+    "stack Stack 0x30000 0x80", // Data
+    "leds Leds 0x3ff70", // Data
+    "memory m 0x100000000 16 rw",
+    "memory m -0x80000001 16 rw",
+    "memory m 0x1000000 4097M rw",
+    "memory m 0x1000000 0x400001K rw"
+  };
+
+  /** Memories that end at the top of the signed and of the unsigned address range */
+  static final String[] TOP = {"memory m 0x7FFFF000 4K rw", "memory m 0xFFFFF000 4K rw"};
+
+  static int numFailed = 0;
+
+  public static void main(String[] args) {
+    int numTests = 1;
+
+    System.out.print("Test [0] (documented example)");
+    check(loadExample());
+
+    for (int i = 0; i < INVALID.length; i++) {
+      System.out.print("Test [" + numTests++ + "] (" + INVALID[i] + ")");
+      try {
+        MemoryMap.parse(INVALID[i]);
+        check("not rejected");
+      } catch (EmulatorException e) {
+        check(null);
+      }
+    }
+
+    for (int i = 0; i < TOP.length; i++) {
+      System.out.print("Test [" + numTests++ + "] (" + TOP[i] + ")");
+      check(loadTop(TOP[i]));
+    }
+
+    System.out.print("Test [" + numTests++ + "] (unsigned address)");
+    try {
+      Region leds = MemoryMap.parse("leds Leds 0xFFFFFFF0").getRegions().get(0);
+      check((leds.getStart() == 0xFFFFFFF0) ? null : "start " + leds.getStart());
+    } catch (EmulatorException e) {
+      check(e.getMessage());
+    }
+
+    System.out.println(
+        "Tests done. ("
+            + numTests
+            + " total: "
+            + (numTests - numFailed)
+            + " successful, "
+            + numFailed
+            + " failed.)");
+
+    System.exit(0);
+  }
+
+  /**
+   * Print the result of a test
+   *
+   * @param error Why the test failed, null if it succeeded
+   */
+  static void check(String error) {
+    if (error == null) {
+      System.out.println("\t successful");
+    } else {
+      numFailed++;
+      System.out.println("\t\t\t failed: (" + error + ")");
+    }
+  }
+
+  /**
+   * Load a program with a map of one memory and write and read the first and the last word of
+   * the memory
+   *
+   * @param description Description of the memory
+   * @return Why it failed, null if it succeeded
+   */
+  static String loadTop(String description) {
+    try {
+      MemoryMap map = MemoryMap.parse(description);
+      int start = map.getRegions().get(0).getStart();
+      int end = map.getRegions().get(0).getEnd();
+
+      EmulatorManager emulatorManager = new EmulatorManager();
+      emulatorManager.setMemoryMap(map);
+      emulatorManager.compile(
+          " .data\n .global main\n .text\nmain:\n"
+              + "\tmovia r1, 0x12345678\n"
+              + "\tmovia r2, "
+              + start
+              + "\n\tstw r1, 0(r2)\n\tldw r4, 0(r2)\n"
+              + "\tmovia r3, "
+              + (end - 3)
+              + "\n\tstw r1, 0(r3)\n\tldw r6, 0(r3)\n");
+      if (emulatorManager.getMemoryManager() == null) return "not loaded";
+
+      RunResult result = emulatorManager.runFor(100);
+      if (result.getReason() != RunResult.REASON.ENDED) return result.toString();
+      for (int reg = 4; reg <= 6; reg += 2) {
+        int value = emulatorManager.getRegisterManager().read(reg);
+        if (value != 0x12345678) return "r" + reg + "=0x" + Integer.toHexString(value);
+      }
+    } catch (EmulatorException e) {
+      return e.getMessage();
+    }
+
+    return null;
+  }
+
+  /**
+   * Parse the example with files in a temporary directory, load a program with it and run the
+   * program
+   *
+   * @return Why it failed, null if it succeeded
+   */
+  static String loadExample() {
+    File dir = null;
+    try {
+      dir = File.createTempFile("memorymap", "");
+      dir.delete();
+      dir.mkdir();
+
+      File image = new File(dir, "image.bin");
+      RandomAccessFile file = new RandomAccessFile(image, "rw");
+      file.setLength(32 * 1024 * 1024);
+      file.seek(16);
+      file.writeInt(0x78563412);
+      file.close();
+
+      File flash = new File(dir, "flash.bin");
+      file = new RandomAccessFile(flash, "rw");
+      file.setLength(1024 * 1024);
+      file.close();
+
+      String description =
+          EXAMPLE
+              .replace("image.bin", image.getPath())
+              .replace("flash.bin", flash.getPath());
+
+      EmulatorManager emulatorManager = new EmulatorManager();
+      emulatorManager.setMemoryMap(MemoryMap.parse(description));
+      emulatorManager.compile(
+          " .data\n .global main\n .text\nmain:\n"
+              + "\tmovia r2, 0x5000000\n\tldw r1, 16(r2)\n"
+              + "\tmovia r3, 0x1000000\n\tstw r1, 4(r3)\n\tldw r4, 4(r3)\n"
+              + "\tmovia r5, 0x7000000\n\tstw r1, 0(r5)\n\tldw r6, 0(r5)\n");
+      if (emulatorManager.getMemoryManager() == null) return "not loaded";
+
+      emulatorManager.runFor(100);
+      for (int reg = 4; reg <= 6; reg += 2) {
+        int value = emulatorManager.getRegisterManager().read(reg);
+        if (value != 0x12345678) return "r" + reg + "=0x" + Integer.toHexString(value);
+      }
+    } catch (IOException e) {
+      return e.getMessage();
+    } catch (EmulatorException e) {
+      return e.getMessage();
+    } finally {
+      if (dir != null) {
+        new File(dir, "image.bin").delete();
+        new File(dir, "flash.bin").delete();
+        dir.delete();
+      }
+    }
+
+    return null;
+  }
+}
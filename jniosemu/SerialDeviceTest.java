@@ -0,0 +1,143 @@
+package jniosemu;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import jniosemu.emulator.EmulatorException;
+import jniosemu.emulator.EmulatorManager;
+import jniosemu.emulator.RunResult;
+import jniosemu.emulator.memory.MemoryMap;
+import jniosemu.emulator.memory.io.SerialBridge;
+
+public class SerialDeviceTest {
+
+  /** Number of characters the buffers of the uart hold */
+  static final int DEPTH = 8;
+
+  /** Number of characters echoed, more than fit in the buffers so they wrap around */
+  static final int ECHOED = 3 * DEPTH + 3;
+
+  /**
+   * Fills the output buffer until transmit ready is cleared, with r2 counting the characters.
+   * Then echoes ECHOED characters, with r5 counting them.
+   */
+  static final String PROGRAM =
+      " .data\n .global main\n .text\n"
+          + "main:\tmovia r8, 0x860\n"
+          + "\tmovi r2, 0\n"
+          + "fill:\tldwio r3, 8(r8)\n"
+          + "\tandi r3, r3, 0x40\n"
+          + "\tbeq r3, r0, full\n"
+          + "\taddi r4, r2, 65\n"
+          + "\tstwio r4, 4(r8)\n"
+          + "\taddi r2, r2, 1\n"
+          + "\tbr fill\n"
+          + "full:\tmovi r5, 0\n"
+          + "\tmovi r6, "
+          + ECHOED
+          + "\n"
+          + "echo:\tldwio r3, 8(r8)\n"
+          + "\tandi r3, r3, 0x80\n"
+          + "\tbeq r3, r0, echo\n"
+          + "\tldwio r4, 0(r8)\n"
+          + "wait:\tldwio r3, 8(r8)\n"
+          + "\tandi r3, r3, 0x40\n"
+          + "\tbeq r3, r0, wait\n"
+          + "\tstwio r4, 4(r8)\n"
+          + "\taddi r5, r5, 1\n"
+          + "\tbne r5, r6, echo\n";
+
+  public static void main(String[] args) {
+    String error;
+    try {
+      error = run();
+    } catch (IOException e) {
+      error = e.getMessage();
+    } catch (EmulatorException e) {
+      error = e.getMessage();
+    }
+
+    System.out.print("Test [0] (buffer wraparound and backpressure)");
+    if (error == null) {
+      System.out.println("\t successful");
+    } else {
+      System.out.println("\t\t\t failed: (" + error + ")");
+    }
+
+    System.exit(0);
+  }
+
+  /**
+   * Run the program with the uart attached to a bridge. No client is connected at first, so the
+   * bridge takes nothing and the output buffer has to fill up. Then a client is connected that
+   * reads the characters and sends the ones to echo.
+   *
+   * @return Why the test failed, null if it succeeded
+   * @throws IOException If the bridge can't be used
+   * @throws EmulatorException If the memory map is invalid
+   */
+  static String run() throws IOException, EmulatorException {
+    EmulatorManager emulatorManager = new EmulatorManager();
+    emulatorManager.setMemoryMap(MemoryMap.parse("uart uart_0 0x860 " + DEPTH));
+    emulatorManager.compile(PROGRAM);
+    SerialBridge bridge = emulatorManager.bridgeSerialPort(0, 0);
+
+    try {
+      RunResult result = emulatorManager.runFor(10000);
+      if (result.getReason() != RunResult.REASON.BUDGET
+          && result.getReason() != RunResult.REASON.WAITING) return "filling: " + result;
+
+      int written = emulatorManager.getRegisterManager().read(2);
+      if (written != DEPTH) return "transmit ready cleared after " + written + " characters";
+
+      Socket client = new Socket(InetAddress.getLoopbackAddress(), bridge.getTcpPort());
+      try {
+        return echo(emulatorManager, client);
+      } finally {
+        client.close();
+      }
+    } finally {
+      emulatorManager.bridgeSerialPort(0, -1);
+    }
+  }
+
+  /**
+   * Read the characters that filled the buffer, then send characters and read them back
+   *
+   * @param emulatorManager Emulator running the program
+   * @param client Client connected to the bridge
+   * @return Why the test failed, null if it succeeded
+   * @throws IOException If the client can't read or write
+   */
+  static String echo(EmulatorManager emulatorManager, Socket client) throws IOException {
+    StringBuilder expected = new StringBuilder();
+    for (int i = 0; i < DEPTH; i++) expected.append((char) ('A' + i));
+    for (int i = 0; i < ECHOED; i++) expected.append((char) ('a' + i % 26));
+
+    client.getOutputStream().write(expected.substring(DEPTH).getBytes("ISO-8859-1"));
+    client.getOutputStream().flush();
+
+    InputStream in = client.getInputStream();
+    StringBuilder received = new StringBuilder();
+    RunResult result = null;
+    for (int i = 0; i < 10000 && received.length() < expected.length(); i++) {
+      // The bridge needs time to move the characters when the program waits or has ended
+      result = emulatorManager.runFor(10000);
+      if (result.getReason() != RunResult.REASON.BUDGET) {
+        try {
+          Thread.sleep(1);
+        } catch (InterruptedException e) {
+        }
+      }
+      while (in.available() > 0) received.append((char) in.read());
+    }
+
+    if (!received.toString().equals(expected.toString()))
+      return "received \"" + received + "\" after " + result;
+
+    result = emulatorManager.runFor(10000);
+    if (result.getReason() != RunResult.REASON.ENDED) return "not ended: " + result;
+
+    return null;
+  }
+}
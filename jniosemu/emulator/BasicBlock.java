@@ -0,0 +1,137 @@
+package jniosemu.emulator;
+
+import jniosemu.emulator.memory.MemoryBlock;
+import jniosemu.instruction.emulator.Instruction;
+
+/**
+ * A straight-line sequence of decoded instructions. Only the last instruction may change the
+ * program counter.
+ */
+public class BasicBlock {
+  /** Address of the first instruction */
+  private final int startAddr;
+  /** Instructions in the order they are run */
+  private final Instruction[] instructions;
+  /** Opcodes the instructions are run with */
+  private final int[] opCodes;
+  /** MemoryBlock the instructions were decoded from */
+  private final MemoryBlock memoryBlock;
+  /** Code version of the MemoryBlock when the instructions were decoded */
+  private final int codeVersion;
+  /** True if the block is a polling loop, see isPollingLoop() */
+  private final boolean pollingLoop;
+  /** Number of times the block has been run */
+  private int executions = 0;
+
+  /**
+   * Init BasicBlock
+   *
+   * @calledby BasicBlockCache.translate()
+   * @param startAddr Address of the first instruction
+   * @param instructions Decoded instructions
+   * @param opCodes Opcodes of the instructions
+   * @param memoryBlock MemoryBlock the instructions were decoded from
+   * @param pollingLoop True if the block is a polling loop
+   */
+  public BasicBlock(
+      int startAddr,
+      Instruction[] instructions,
+      int[] opCodes,
+      MemoryBlock memoryBlock,
+      boolean pollingLoop) {
+    this.startAddr = startAddr;
+    this.instructions = instructions;
+    this.opCodes = opCodes;
+    this.memoryBlock = memoryBlock;
+    this.codeVersion = memoryBlock.getCodeVersion();
+    this.pollingLoop = pollingLoop;
+  }
+
+  /**
+   * Get the address of the first instruction
+   *
+   * @return Start address
+   */
+  public int getStartAddr() {
+    return this.startAddr;
+  }
+
+  /**
+   * Get the number of instructions in the block
+   *
+   * @return Number of instructions
+   */
+  public int getLength() {
+    return this.instructions.length;
+  }
+
+  /**
+   * Get the instruction at an index
+   *
+   * @calledby EmulatorManager.runBlock()
+   * @param index Index in the block
+   * @return Instruction
+   */
+  public Instruction getInstruction(int index) {
+    return this.instructions[index];
+  }
+
+  /**
+   * Get the opcode at an index
+   *
+   * @calledby EmulatorManager.runBlock()
+   * @param index Index in the block
+   * @return Opcode
+   */
+  public int getOpCode(int index) {
+    return this.opCodes[index];
+  }
+
+  /**
+   * Check if the block is a polling loop: it ends with a branch back to its first instruction and
+   * the other instructions only load from memory and change registers. An iteration that leaves
+   * the registers as they were is repeated exactly until memory changes.
+   *
+   * @calledby EmulatorManager.runBlock()
+   * @return True if the block is a polling loop
+   */
+  public boolean isPollingLoop() {
+    return this.pollingLoop;
+  }
+
+  /**
+   * Count one more run of the block
+   *
+   * @calledby EmulatorManager.runBlock()
+   * @return Number of times the block has been run
+   */
+  public int countExecution() {
+    return ++this.executions;
+  }
+
+  /**
+   * Check that no instruction in the block has been written since it was decoded
+   *
+   * @calledby BasicBlockCache.get()
+   * @return True if the block can still be run
+   */
+  public boolean isValid() {
+    return this.codeVersion == this.memoryBlock.getCodeVersion();
+  }
+
+  /**
+   * Check if execution would hit a breakpoint inside the block. A breakpoint on the first
+   * instruction doesn't count since that one is checked before the block is entered.
+   *
+   * @calledby EmulatorManager.runBlock()
+   * @calls Breakpoints.isSet()
+   * @param breakpoints Current breakpoints
+   * @return True if a breakpoint is placed after the first instruction
+   */
+  public boolean containsBreakpoint(Breakpoints breakpoints) {
+    if (this.instructions.length < 2) return false;
+
+    int endAddr = this.startAddr + (this.instructions.length - 1) * 4;
+    return breakpoints.isSet(this.startAddr + 4, endAddr);
+  }
+}
@@ -0,0 +1,141 @@
+package jniosemu.emulator;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import jniosemu.emulator.memory.Memory;
+import jniosemu.emulator.memory.MemoryBlock;
+import jniosemu.emulator.memory.MemoryException;
+import jniosemu.emulator.memory.MemoryManager;
+import jniosemu.instruction.InstructionException;
+import jniosemu.instruction.InstructionInfo;
+import jniosemu.instruction.InstructionManager;
+import jniosemu.instruction.InstructionSyntax;
+import jniosemu.instruction.emulator.Instruction;
+
+/** Splits the code into basic blocks and keep them translated by start address. */
+public class BasicBlockCache {
+  /** Max number of instructions in one block */
+  public static final int MAXLENGTH = 64;
+  /** Names of the instructions that can end a polling loop */
+  private static final HashSet<String> BRANCHES =
+      new HashSet<String>(Arrays.asList("BEQ", "BGE", "BGEU", "BLT", "BLTU", "BNE", "BR"));
+  /** Names of the instructions that write to memory */
+  private static final HashSet<String> STORES =
+      new HashSet<String>(Arrays.asList("STB", "STBIO", "STH", "STHIO", "STW", "STWIO"));
+  /** Translated blocks by start address */
+  private HashMap<Integer, BasicBlock> blocks = new HashMap<Integer, BasicBlock>();
+
+  /**
+   * Get the block starting at an address, translating it if it's missing or if the code has been
+   * written since it was translated.
+   *
+   * @calledby EmulatorManager.runBlock()
+   * @calls translate()
+   * @param memory MemoryManager to read the code from
+   * @param addr Start address
+   * @return Block or null if the code at the address can't be run as a block
+   */
+  public BasicBlock get(MemoryManager memory, int addr) {
+    BasicBlock block = this.blocks.get(addr);
+    if (block != null && block.isValid()) return block;
+
+    block = this.translate(memory, addr);
+    if (block == null) {
+      this.blocks.remove(addr);
+    } else {
+      this.blocks.put(addr, block);
+    }
+
+    return block;
+  }
+
+  /**
+   * Remove all translated blocks
+   *
+   * @calledby EmulatorManager.load()
+   */
+  public void clear() {
+    this.blocks.clear();
+  }
+
+  /**
+   * Decode instructions from an address until an instruction that could change the program
+   * counter. Stops before an opcode that is zero or invalid so that it's left to single step.
+   *
+   * @calledby get()
+   * @param memory MemoryManager to read the code from
+   * @param startAddr Start address
+   * @return Block or null if not even the first instruction can be translated
+   */
+  private BasicBlock translate(MemoryManager memory, int startAddr) {
+    MemoryBlock memoryBlock;
+    try {
+      memoryBlock = memory.getBlock(startAddr);
+    } catch (MemoryException e) {
+      return null;
+    }
+
+    // Only plain memory keeps track of writes to decoded instructions
+    if (!(memoryBlock instanceof Memory) || !memoryBlock.isExecutable()) return null;
+
+    Instruction[] instructions = new Instruction[MAXLENGTH];
+    int[] opCodes = new int[MAXLENGTH];
+    int length = 0;
+
+    int addr = startAddr;
+    while (length < MAXLENGTH && memoryBlock.inRange(addr + 3)) {
+      int opCode = memoryBlock.readRawInt(addr);
+      if (opCode == 0) break;
+
+      try {
+        instructions[length] = memoryBlock.getInstruction(addr);
+      } catch (InstructionException e) {
+        break;
+      }
+      opCodes[length++] = opCode;
+
+      InstructionInfo info = InstructionManager.getInfo(opCode);
+      if (info.getCategory() == InstructionSyntax.CATEGORY.PROGRAM_CONTROL) break;
+
+      addr += 4;
+    }
+
+    if (length == 0) return null;
+
+    Instruction[] blockInstructions = new Instruction[length];
+    int[] blockOpCodes = new int[length];
+    System.arraycopy(instructions, 0, blockInstructions, 0, length);
+    System.arraycopy(opCodes, 0, blockOpCodes, 0, length);
+
+    return new BasicBlock(
+        startAddr,
+        blockInstructions,
+        blockOpCodes,
+        memoryBlock,
+        isPollingLoop(startAddr, blockOpCodes));
+  }
+
+  /**
+   * Check if a block branches back to its first instruction without writing to memory
+   *
+   * @calledby translate()
+   * @param startAddr Start address of the block
+   * @param opCodes Opcodes of the block
+   * @return True if the block is a polling loop, see BasicBlock.isPollingLoop()
+   */
+  private static boolean isPollingLoop(int startAddr, int[] opCodes) {
+    int last = opCodes[opCodes.length - 1];
+    if (!BRANCHES.contains(InstructionManager.getInfo(last).getName().toUpperCase())) return false;
+
+    // The branch offset is relative to the instruction after the branch
+    if (startAddr + opCodes.length * 4 + (short) (last >>> 6) != startAddr) return false;
+
+    for (int i = 0; i < opCodes.length - 1; i++) {
+      String name = InstructionManager.getInfo(opCodes[i]).getName().toUpperCase();
+      if (STORES.contains(name)) return false;
+    }
+
+    return true;
+  }
+}
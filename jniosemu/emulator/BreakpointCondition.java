@@ -0,0 +1,179 @@
+package jniosemu.emulator;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import jniosemu.emulator.register.Register;
+import jniosemu.emulator.register.RegisterException;
+import jniosemu.emulator.register.RegisterManager;
+
+/**
+ * Condition of a breakpoint. A condition is parsed once when it is set and becomes a tree of small
+ * objects, one for each comparison, so nothing is parsed when the breakpoint is reached.
+ *
+ * <p>A condition is one or more comparisons joined with &&, for example "r8 == 10 && hits >= 3".
+ * The left side of a comparison is a register or hits, the number of times the breakpoint has been
+ * reached. The right side is a number. The comparison operators are ==, !=, <, <=, > and >=, all
+ * signed.
+ */
+public abstract class BreakpointCondition {
+  private static final Pattern COMPARISON =
+      Pattern.compile("(\\w+)\\s*(==|!=|<=|>=|<|>)\\s*(-?\\w+)");
+
+  /** Left side of a comparison */
+  private abstract static class Operand {
+    abstract int value(RegisterManager registers, int hits);
+  }
+
+  /**
+   * Check the condition
+   *
+   * @calledby Breakpoints.stop()
+   * @param registers Current registers
+   * @param hits Number of times the breakpoint has been reached, including this time
+   * @return True if the emulation should stop
+   */
+  public abstract boolean test(RegisterManager registers, int hits);
+
+  /**
+   * Parse a condition
+   *
+   * @calledby EmulatorManager.setBreakpointCondition()
+   * @param condition Condition
+   * @return Parsed condition
+   * @throws EmulatorException If the condition can't be parsed
+   */
+  public static BreakpointCondition parse(String condition) throws EmulatorException {
+    BreakpointCondition result = null;
+    for (String comparison : condition.split("&&")) {
+      BreakpointCondition next = parseComparison(comparison.trim());
+      result = (result == null) ? next : and(result, next);
+    }
+
+    return result;
+  }
+
+  /**
+   * Parse one comparison
+   *
+   * @calledby parse()
+   * @param comparison Comparison
+   * @return Parsed comparison
+   * @throws EmulatorException If the comparison can't be parsed
+   */
+  private static BreakpointCondition parseComparison(String comparison) throws EmulatorException {
+    Matcher matcher = COMPARISON.matcher(comparison);
+    if (!matcher.matches())
+      throw new EmulatorException("Invalid breakpoint condition: " + comparison);
+
+    int value;
+    try {
+      value = Long.decode(matcher.group(3)).intValue();
+    } catch (NumberFormatException e) {
+      throw new EmulatorException("Invalid value in breakpoint condition: " + matcher.group(3));
+    }
+
+    return compare(parseOperand(matcher.group(1)), matcher.group(2), value);
+  }
+
+  /**
+   * Parse the left side of a comparison
+   *
+   * @calledby parseComparison()
+   * @calls RegisterManager.parseRegister()
+   * @param name Register name or hits
+   * @return Operand
+   * @throws EmulatorException If it isn't an implemented register or hits
+   */
+  private static Operand parseOperand(String name) throws EmulatorException {
+    if (name.equals("hits")) {
+      return new Operand() {
+        int value(RegisterManager registers, int hits) {
+          return hits;
+        }
+      };
+    }
+
+    final int index;
+    try {
+      index = RegisterManager.parseRegister(name);
+    } catch (RegisterException e) {
+      throw new EmulatorException("Invalid register in breakpoint condition: " + name);
+    }
+
+    if (index < 0 || index > 31 || !Register.isImplemented(index))
+      throw new EmulatorException("Invalid register in breakpoint condition: " + name);
+
+    return new Operand() {
+      int value(RegisterManager registers, int hits) {
+        return registers.getValue(index);
+      }
+    };
+  }
+
+  /**
+   * Create the comparison for an operator
+   *
+   * @calledby parseComparison()
+   * @param operand Left side
+   * @param operator Operator
+   * @param value Right side
+   * @return Comparison
+   */
+  private static BreakpointCondition compare(
+      final Operand operand, String operator, final int value) {
+    if (operator.equals("==")) {
+      return new BreakpointCondition() {
+        public boolean test(RegisterManager registers, int hits) {
+          return operand.value(registers, hits) == value;
+        }
+      };
+    } else if (operator.equals("!=")) {
+      return new BreakpointCondition() {
+        public boolean test(RegisterManager registers, int hits) {
+          return operand.value(registers, hits) != value;
+        }
+      };
+    } else if (operator.equals("<")) {
+      return new BreakpointCondition() {
+        public boolean test(RegisterManager registers, int hits) {
+          return operand.value(registers, hits) < value;
+        }
+      };
+    } else if (operator.equals("<=")) {
+      return new BreakpointCondition() {
+        public boolean test(RegisterManager registers, int hits) {
+          return operand.value(registers, hits) <= value;
+        }
+      };
+    } else if (operator.equals(">")) {
+      return new BreakpointCondition() {
+        public boolean test(RegisterManager registers, int hits) {
+          return operand.value(registers, hits) > value;
+        }
+      };
+    } else {
+      return new BreakpointCondition() {
+        public boolean test(RegisterManager registers, int hits) {
+          return operand.value(registers, hits) >= value;
+        }
+      };
+    }
+  }
+
+  /**
+   * Join two conditions, both have to be true
+   *
+   * @calledby parse()
+   * @param first First condition
+   * @param second Second condition, only tested if the first one is true
+   * @return Joined condition
+   */
+  private static BreakpointCondition and(
+      final BreakpointCondition first, final BreakpointCondition second) {
+    return new BreakpointCondition() {
+      public boolean test(RegisterManager registers, int hits) {
+        return first.test(registers, hits) && second.test(registers, hits);
+      }
+    };
+  }
+}
@@ -0,0 +1,138 @@
+package jniosemu.emulator;
+
+import java.util.BitSet;
+import java.util.Hashtable;
+import jniosemu.emulator.register.RegisterManager;
+
+/**
+ * Breakpoints kept as a bitmap indexed by word address. Checking an address that has no
+ * breakpoint is a single bit test, conditions are only looked up for addresses that have one.
+ *
+ * <p>The bitmap is read by the thread running the program while the GUI changes it. A BitSet isn't
+ * thread safe, so it is never changed, every change makes a new one. Reads need no lock.
+ */
+public class Breakpoints {
+  /** Bit n is set if there is a breakpoint at address n * 4, replaced instead of changed */
+  private volatile BitSet addresses = new BitSet();
+  /** Conditions keyed by address, only breakpoints with a condition are in here */
+  private Hashtable<Integer, Condition> conditions = new Hashtable<Integer, Condition>();
+  /** Increased every time a breakpoint is changed */
+  private volatile int version = 0;
+
+  /** Condition of a breakpoint and the number of times it has been reached */
+  private static class Condition {
+    private final BreakpointCondition condition;
+
+    private int hits = 0;
+
+    private Condition(BreakpointCondition condition) {
+      this.condition = condition;
+    }
+  }
+
+  /**
+   * Add a breakpoint
+   *
+   * @calledby EmulatorManager.toggleBreakpoint()
+   * @param addr Address of the instruction
+   */
+  public synchronized void add(int addr) {
+    BitSet addresses = (BitSet) this.addresses.clone();
+    addresses.set(addr >>> 2);
+    this.addresses = addresses;
+    this.version++;
+  }
+
+  /**
+   * Remove a breakpoint and its condition
+   *
+   * @calledby EmulatorManager.toggleBreakpoint()
+   * @param addr Address of the instruction
+   */
+  public synchronized void remove(int addr) {
+    BitSet addresses = (BitSet) this.addresses.clone();
+    addresses.clear(addr >>> 2);
+    this.addresses = addresses;
+    this.conditions.remove(addr);
+    this.version++;
+  }
+
+  /**
+   * Set the condition of a breakpoint. The breakpoint only stops the emulation when the condition
+   * is true.
+   *
+   * @calledby EmulatorManager.setBreakpointCondition()
+   * @param addr Address of the instruction
+   * @param condition Condition or null to always stop
+   */
+  public synchronized void setCondition(int addr, BreakpointCondition condition) {
+    if (condition == null) {
+      this.conditions.remove(addr);
+    } else {
+      this.conditions.put(addr, new Condition(condition));
+    }
+    this.version++;
+  }
+
+  /**
+   * Reset the number of times the breakpoints has been reached
+   *
+   * @calledby EmulatorManager.load()
+   */
+  public synchronized void resetHits() {
+    for (Condition condition : this.conditions.values()) condition.hits = 0;
+  }
+
+  /**
+   * Check if there is a breakpoint at an address, no matter its condition
+   *
+   * @calledby BasicBlock, CompiledCode, stop()
+   * @param addr Address of the instruction
+   * @return True if there is a breakpoint
+   */
+  public boolean isSet(int addr) {
+    return (addr & 0x3) == 0 && this.addresses.get(addr >>> 2);
+  }
+
+  /**
+   * Check if there is a breakpoint at any address in a range
+   *
+   * @calledby BasicBlock.containsBreakpoint()
+   * @param startAddr First address
+   * @param endAddr Last address
+   * @return True if there is a breakpoint between startAddr and endAddr
+   */
+  public boolean isSet(int startAddr, int endAddr) {
+    int index = this.addresses.nextSetBit(startAddr >>> 2);
+    return index >= 0 && index <= endAddr >>> 2;
+  }
+
+  /**
+   * Check if the emulation should stop at an address. The hit count of a conditional breakpoint
+   * is increased every time this is called for its address.
+   *
+   * @calledby EmulatorManager
+   * @calls BreakpointCondition.test()
+   * @param addr Address of the next instruction
+   * @param registers Current registers
+   * @return True if there is a breakpoint and its condition is true
+   */
+  public boolean stop(int addr, RegisterManager registers) {
+    if (!this.isSet(addr)) return false;
+
+    Condition condition = this.conditions.get(addr);
+    if (condition == null) return true;
+
+    return condition.condition.test(registers, ++condition.hits);
+  }
+
+  /**
+   * Get the version, it changes every time a breakpoint or condition is changed
+   *
+   * @calledby CompiledCode.containsBreakpoint()
+   * @return Version
+   */
+  public int getVersion() {
+    return this.version;
+  }
+}
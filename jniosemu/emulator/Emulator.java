@@ -146,4 +146,51 @@ public class Emulator {
   public void writePC(int addr) throws EmulatorException {
     this.emulator.writePC(addr);
   }
+
+  /**
+   * Read a control register
+   *
+   * @calledby Instruction.run()
+   * @calls InterruptController.read()
+   * @param index Number of the control register
+   * @return Value of the control register
+   * @throws RegisterException If there is no such control register
+   */
+  public int readControlRegister(int index) throws RegisterException {
+    return this.emulator.getMemoryManager().getInterrupts().read(index);
+  }
+
+  /**
+   * Write a control register
+   *
+   * @calledby Instruction.run()
+   * @calls InterruptController.write()
+   * @param index Number of the control register
+   * @param value Value which is written to the control register
+   * @throws RegisterException If there is no such control register
+   */
+  public void writeControlRegister(int index, int value) throws RegisterException {
+    this.emulator.getMemoryManager().getInterrupts().write(index, value);
+  }
+
+  /**
+   * Take a trap exception, the instruction after the trap is returned to
+   *
+   * @calledby TrapInstruction.run()
+   * @calls EmulatorManager.trap()
+   * @throws EmulatorException If the program has no exception handler
+   */
+  public void trap() throws EmulatorException {
+    this.emulator.trap();
+  }
+
+  /**
+   * Stop the emulation after the instruction like a breakpoint does
+   *
+   * @calledby BreakInstruction.run()
+   * @calls EmulatorManager.breakpoint()
+   */
+  public void breakpoint() {
+    this.emulator.breakpoint();
+  }
 }
@@ -0,0 +1,35 @@
+package jniosemu.emulator;
+
+import java.util.Vector;
+import jniosemu.emulator.memory.Watchpoint;
+
+/** EmulatorListener that ignores everything, extend it to only listen to some of the methods */
+public class EmulatorAdapter implements EmulatorListener {
+  public void compilerError(String message) {}
+
+  public void emulatorReady(Program program) {}
+
+  public void programChange(SourceCode sourceCode) {}
+
+  public void stateChange(int pc) {}
+
+  public void emulatorStart() {}
+
+  public void emulatorStop() {}
+
+  public void emulatorEnd() {}
+
+  public void emulatorError(String message) {}
+
+  public void breakpointUpdate(int lineNumber) {}
+
+  public void watchpointHit(Watchpoint.Hit hit) {}
+
+  public void ledUpdate(Vector<Boolean> value) {}
+
+  public void buttonUpdate(Vector<Boolean> value) {}
+
+  public void dipswitchUpdate(Vector<Boolean> value) {}
+
+  public void serialOutput(String name, String text) {}
+}
@@ -0,0 +1,121 @@
+package jniosemu.emulator;
+
+import java.util.Vector;
+import jniosemu.emulator.memory.Watchpoint;
+
+/**
+ * Receives what happens in the emulator. The methods are called in the thread that runs the
+ * emulator, EmulatorAdapter implements all of them as no-ops.
+ */
+public interface EmulatorListener {
+  /**
+   * The source code couldn't be compiled
+   *
+   * @calledby EmulatorManager.compile()
+   * @param message Error message
+   */
+  public void compilerError(String message);
+
+  /**
+   * A program has been loaded and is ready to run
+   *
+   * @calledby EmulatorManager.load()
+   * @param program Loaded program
+   */
+  public void emulatorReady(Program program);
+
+  /**
+   * The PC moved to code with other source code
+   *
+   * @calledby EmulatorManager.pcChange()
+   * @param sourceCode Source code of the memory block the PC is in
+   */
+  public void programChange(SourceCode sourceCode);
+
+  /**
+   * The PC, registers or memory have changed. The values can be read from the EmulatorManager.
+   *
+   * @calledby EmulatorManager.pcChange()
+   * @param pc Program counter
+   */
+  public void stateChange(int pc);
+
+  /**
+   * The emulation started running
+   *
+   * @calledby EmulatorManager.execRun()
+   */
+  public void emulatorStart();
+
+  /**
+   * The emulation stopped, it can continue
+   *
+   * @calledby EmulatorManager.execRun()
+   */
+  public void emulatorStop();
+
+  /**
+   * The emulation ended
+   *
+   * @calledby EmulatorManager.execRun()
+   */
+  public void emulatorEnd();
+
+  /**
+   * An error ended the emulation
+   *
+   * @calledby EmulatorManager.error()
+   * @param message Error message
+   */
+  public void emulatorError(String message);
+
+  /**
+   * A breakpoint has been toggled
+   *
+   * @calledby EmulatorManager.toggleBreakpoint()
+   * @param lineNumber Line of the breakpoint
+   */
+  public void breakpointUpdate(int lineNumber);
+
+  /**
+   * The emulation stopped at a watchpoint
+   *
+   * @calledby EmulatorManager.watchpointStop()
+   * @param hit Access that hit the watchpoint
+   */
+  public void watchpointHit(Watchpoint.Hit hit);
+
+  /**
+   * The leds changed
+   *
+   * @calledby LedDevice
+   * @param value State of each led
+   */
+  public void ledUpdate(Vector<Boolean> value);
+
+  /**
+   * The buttons changed
+   *
+   * @calledby ButtonDevice
+   * @param value State of each button
+   */
+  public void buttonUpdate(Vector<Boolean> value);
+
+  /**
+   * The dipswitches changed
+   *
+   * @calledby DipswitchDevice
+   * @param value State of each dipswitch
+   */
+  public void dipswitchUpdate(Vector<Boolean> value);
+
+  /**
+   * Characters were written to a serial port. They are collected and sent together, see
+   * SerialDevice.
+   *
+   * @calledby SerialDevice.flush()
+   * @param name Name of the serial port
+   * @param text Characters in the order they were written
+   */
+  public void serialOutput(String name, String text);
+}
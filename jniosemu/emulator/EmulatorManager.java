@@ -1,19 +1,32 @@
 package jniosemu.emulator;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
 import java.util.Hashtable;
+import java.util.Vector;
 import jniosemu.emulator.compiler.Compiler;
 import jniosemu.emulator.compiler.CompilerException;
+import jniosemu.emulator.jit.CompiledCode;
+import jniosemu.emulator.jit.JitManager;
+import jniosemu.emulator.memory.AccessProfile;
+import jniosemu.emulator.memory.InterruptController;
 import jniosemu.emulator.memory.MemoryBlock;
 import jniosemu.emulator.memory.MemoryException;
 import jniosemu.emulator.memory.MemoryManager;
+import jniosemu.emulator.memory.MemoryMap;
+import jniosemu.emulator.memory.Watchpoint;
+import jniosemu.emulator.memory.io.SerialBridge;
+import jniosemu.emulator.memory.io.SerialDevice;
 import jniosemu.emulator.register.RegisterManager;
-import jniosemu.events.EventManager;
-import jniosemu.events.EventObserver;
-import jniosemu.instruction.InstructionManager;
 import jniosemu.instruction.emulator.Instruction;
 
-/** Managing the emulation */
-public class EmulatorManager implements EventObserver {
+/**
+ * Managing the emulation. It doesn't depend on the GUI, everything that happens is told to an
+ * EmulatorListener, and many EmulatorManagers can run in the same JVM.
+ */
+public class EmulatorManager {
   /** The different speed that is possible to run the emulator in */
   public static enum SPEED {
     SLOW,
@@ -21,12 +34,18 @@ public class EmulatorManager implements EventObserver {
     FAST,
     ULTRA
   };
+  /** Max number of instructions a polling loop is fast-forwarded at a time */
+  private static final int MAXIDLE = Integer.MAX_VALUE;
   /** Program counter address */
   private int pc = MemoryManager.PROGRAMSTARTADDR;
-  /** EventManager that is used */
-  private EventManager eventManager;
+  /** Listener that is told about everything that happens */
+  private EmulatorListener listener = new EmulatorAdapter();
   /** MemoryManager that is used */
   private MemoryManager memory = null;
+  /** Interrupt controller of the MemoryManager */
+  private InterruptController interrupts = null;
+  /** Memories and devices used the next time a program is loaded */
+  private MemoryMap memoryMap = MemoryMap.getDefault();
 
   private MemoryBlock variableMemory = null;
   /** RegisterManager that is used */
@@ -34,51 +53,75 @@ public class EmulatorManager implements EventObserver {
   /** Emulator that is used */
   private Emulator emulator;
   /** True if the emulator is running */
-  private boolean running = false;
+  private volatile boolean running = false;
   /** True if emulation ended */
   private boolean ended = true;
+  /** Message of the error that ended the emulation, null if it didn't end by an error */
+  private String error = null;
+  /** Number of instructions run since the program was loaded */
+  private long retired = 0;
   /** Current program */
   private Program program = null;
 
   private SourceCode latestSourceCode = null;
+  /** Version of latestSourceCode when the listener was told about it */
+  private int latestSourceCodeVersion = 0;
   /** Current speed */
-  private SPEED speed = SPEED.NORMAL;
+  private volatile SPEED speed = SPEED.NORMAL;
 
-  private boolean stepOver = false;
+  private volatile boolean stepOver = false;
 
   private String currentDir = null;
   /** Breakpoints */
-  private Hashtable<Integer, Integer> breakpoints = new Hashtable<Integer, Integer>();
+  private Breakpoints breakpoints = new Breakpoints();
+  /** Watchpoints, they are given to every new MemoryManager */
+  private Vector<Watchpoint> watchpoints = new Vector<Watchpoint>();
+  /** Watchpoint hit that stopped the emulation the last time, null if it didn't stop at one */
+  private Watchpoint.Hit watchpointHit = null;
+  /** True if the last instruction was a break */
+  private boolean breakHit = false;
+  /** Registers before the last iteration of a polling loop, reused so no array is allocated */
+  private int[] pollingRegisters = new int[32];
+  /** True if the program waits for an interrupt while no device has anything to do */
+  private boolean waiting = false;
+  /** True if the memory accesses are counted */
+  private boolean profiling = false;
+  /** Input streams bound to the serial ports by port number, kept for every new MemoryManager */
+  private Hashtable<Integer, InputStream> serialInputs = new Hashtable<Integer, InputStream>();
+  /** Output streams bound to the serial ports by port number, kept for every new MemoryManager */
+  private Hashtable<Integer, OutputStream> serialOutputs = new Hashtable<Integer, OutputStream>();
+  /** Bridges the serial ports are attached to by port number, kept for every new MemoryManager */
+  private Hashtable<Integer, SerialBridge> serialBridges = new Hashtable<Integer, SerialBridge>();
+  /** Translated basic blocks used when running in ULTRA speed */
+  private BasicBlockCache blockCache = new BasicBlockCache();
+  /** Hot code compiled to JVM classes, used when running in ULTRA speed */
+  private JitManager jit = new JitManager();
   /** Thread that the emulation runs in */
   private Thread runningThread = null;
 
   /**
    * Init EmulatorManager
    *
-   * @post emulator and eventManager is set and eventlistener is added
+   * @post emulator is set
    * @calledby JNiosEmu.main()
-   * @calls Emulator(), EventManager.addEventObserver()
+   * @calls Emulator()
    */
-  public EmulatorManager(EventManager eventManager) {
+  public EmulatorManager() {
     this.emulator = new Emulator(this);
-    this.eventManager = eventManager;
+  }
 
-    EventManager.EVENT[] events = {
-      EventManager.EVENT.COMPILER_COMPILE,
-      EventManager.EVENT.CURRENT_DIRECTORY,
-      EventManager.EVENT.EMULATOR_PAUSE,
-      EventManager.EVENT.EMULATOR_STEP,
-      EventManager.EVENT.EMULATOR_STEP_OVER,
-      EventManager.EVENT.EMULATOR_TOGGLE_STEP_OVER,
-      EventManager.EVENT.EMULATOR_RESET,
-      EventManager.EVENT.EMULATOR_RUN,
-      EventManager.EVENT.EMULATOR_BREAKPOINT_TOGGLE,
-      EventManager.EVENT.EMULATOR_SPEED,
-      EventManager.EVENT.MEMORY_REQUEST_UPDATE,
-      EventManager.EVENT.VARIABLE_REQUEST_UPDATE
-    };
+  /**
+   * Set the listener that is told about everything that happens in the emulator
+   *
+   * @calledby EmulatorEventAdapter()
+   * @calls MemoryManager.setListener()
+   * @param listener Listener, null to not listen
+   */
+  public void setListener(EmulatorListener listener) {
+    if (listener == null) listener = new EmulatorAdapter();
 
-    eventManager.addEventObserver(events, this);
+    this.listener = listener;
+    if (this.memory != null) this.memory.setListener(listener);
   }
 
   /**
@@ -129,6 +172,7 @@ public class EmulatorManager implements EventObserver {
 
   public void execRun(boolean all, boolean stepOver) {
     this.running = true;
+    this.watchpointHit = null;
     this.startEvent();
 
     int nextInstruction = 0;
@@ -144,6 +188,8 @@ public class EmulatorManager implements EventObserver {
           while (this.step(false, false) > 0 && this.running && this.pc != endPc)
             ;
         }
+      } else if (all && this.speed == SPEED.ULTRA) {
+        nextInstruction = this.runFast();
       } else {
         nextInstruction = this.step(true, false);
       }
@@ -172,47 +218,77 @@ public class EmulatorManager implements EventObserver {
   }
 
   /**
-   * Run next instruction
+   * Run next instruction, or take an interrupt instead if one is requested
    *
    * @pre program must be loaded
    * @post update pc to next instruction
-   * @checks If Instruction.run() throws an error send EVENTID_RUNTIME_ERROR
    * @calledby runAll(), runOne()
-   * @calls MemoryManager.readInt(), InstructionManager.get(), Instruction.run(), pcChange(),
-   *     EventManager.sendEvent()
+   * @calls interrupt(), MemoryManager.resetState(), execute()
    * @return True if the emulation can continue
    */
   public int step(boolean reset, boolean firstStepOver) {
-    int lastPc = this.pc;
+    if (reset) this.register.resetState();
 
-    if (reset) {
-      this.register.resetState();
-      this.memory.resetState();
-    }
+    if (this.interrupts.isRequested()) return this.interrupt();
+
+    if (reset) this.memory.resetState();
+
+    return this.execute(firstStepOver);
+  }
+
+  /**
+   * Run the instruction at the current PC. An instruction that jumps to itself ends the program,
+   * unless the program can be interrupted, then it waits for the interrupt.
+   *
+   * @pre program must be loaded
+   * @post update pc to next instruction
+   * @checks If Instruction.run() throws an error send EVENTID_RUNTIME_ERROR
+   * @calledby step(), stepFast()
+   * @calls MemoryBlock.fetch(), MemoryBlock.getInstruction(), Instruction.run(), error()
+   * @param firstStepOver True if 2 should be returned for a call
+   * @return Same as step()
+   */
+  private int execute(boolean firstStepOver) {
+    int lastPc = this.pc;
 
     Instruction instruction;
     try {
-      int opCode = this.memory.readInt(this.pc);
+      MemoryBlock block = this.memory.getBlock(this.pc);
+      if (!block.isExecutable()) throw new MemoryException("Address not executable", this.pc);
+
+      int opCode = block.fetch(this.pc);
+      block.count(AccessProfile.ACCESS.FETCH, this.pc);
       if (opCode == 0) {
         this.ended = true;
         return 0;
       }
 
-      instruction = InstructionManager.get(opCode);
-      instruction.run(this.emulator);
+      instruction = block.getInstruction(this.pc);
+      instruction.run(this.emulator, opCode);
       this.pc += 4;
+      this.retired++;
     } catch (Exception e) {
-      this.eventManager.sendEvent(EventManager.EVENT.EMULATOR_ERROR, e.getMessage());
-      this.ended = true;
+      this.error(e.getMessage());
       return 0;
     }
 
     if (this.pc == lastPc) {
+      if (this.interrupts.isEnabled()) return 1;
+
       this.ended = true;
       return 0;
     }
 
-    if (this.breakpoints.containsKey(this.pc)) {
+    if (this.watchpointStop(lastPc)) {
+      return 0;
+    }
+
+    if (this.breakHit) {
+      this.breakHit = false;
+      return 0;
+    }
+
+    if (this.breakpoints.stop(this.pc, this.register)) {
       return 0;
     }
 
@@ -225,6 +301,468 @@ public class EmulatorManager implements EventObserver {
     return 1;
   }
 
+  /**
+   * Run without keeping track of read and written registers and memory until the emulation is
+   * paused, stops or the speed is changed. The devices are only advanced when they have
+   * something due. The state is cleared when it returns and the caller sends it to the GUI.
+   *
+   * @pre program must be loaded
+   * @calledby execRun()
+   * @calls MemoryManager.setTracking(), runBlock(), RegisterManager.resetState()
+   * @return Same as step()
+   */
+  private int runFast() {
+    this.memory.setTracking(false);
+
+    int nextInstruction;
+    do {
+      nextInstruction = this.runBlock(Long.MAX_VALUE, true);
+      this.idle();
+    } while (nextInstruction > 0
+        && this.running
+        && this.speed == SPEED.ULTRA
+        && !this.stepOver);
+
+    this.memory.setTracking(true);
+    this.register.resetState();
+
+    return nextInstruction;
+  }
+
+  /**
+   * Run a number of instructions in the calling thread, see runUntil()
+   *
+   * @calls runUntil()
+   * @param instructions Max number of instructions to run
+   * @return Why the emulation stopped, the number of instructions run and the next PC
+   */
+  public RunResult runFor(long instructions) {
+    return this.runUntil(this.retired + instructions, null);
+  }
+
+  /**
+   * Run in the calling thread until a given number of instructions have been run since the program
+   * was loaded, or until a breakpoint, the end of the program, an error or the condition stops it.
+   * Exactly the given number of instructions are run unless something else stops the emulation
+   * first, so the same program always stops at the same place. The iterations of a polling loop
+   * that are fast-forwarded count as run, see skipIdle(), but never more than the number left.
+   *
+   * <p>It returns with the reason WAITING instead of sleeping when the program polls for input from
+   * outside the emulator and no device has anything to do, the caller decides when to run again.
+   * No thread is started and the GUI isn't updated, the emulator must not be running in its own
+   * thread at the same time.
+   *
+   * @pre program must be loaded
+   * @calls MemoryManager.setTracking(), runBlock(), RunCondition.stop()
+   * @param instructionCount Total number of instructions to stop at, see getRetired()
+   * @param condition Condition checked after every basic block, or null
+   * @return Why the emulation stopped, the number of instructions run and the next PC
+   */
+  public RunResult runUntil(long instructionCount, RunCondition condition) {
+    long start = this.retired;
+    if (this.ended) return new RunResult(RunResult.REASON.ENDED, 0, this.pc, this.error);
+
+    this.memory.setTracking(false);
+    this.watchpointHit = null;
+
+    RunResult.REASON reason = RunResult.REASON.BUDGET;
+    while (this.retired < instructionCount) {
+      if (this.runBlock(instructionCount - this.retired, condition == null) == 0) {
+        if (this.error != null) {
+          reason = RunResult.REASON.ERROR;
+        } else if (this.ended) {
+          reason = RunResult.REASON.ENDED;
+        } else if (this.watchpointHit != null) {
+          reason = RunResult.REASON.WATCHPOINT;
+        } else {
+          reason = RunResult.REASON.BREAKPOINT;
+        }
+        break;
+      }
+
+      if (condition != null && condition.stop(this)) {
+        reason = RunResult.REASON.CONDITION;
+        break;
+      }
+      if (this.waiting) {
+        this.waiting = false;
+        reason = RunResult.REASON.WAITING;
+        break;
+      }
+    }
+
+    this.memory.setTracking(true);
+    this.register.resetState();
+    this.memory.flush();
+
+    return new RunResult(reason, this.retired - start, this.pc, this.error);
+  }
+
+  /**
+   * Get the number of instructions run since the program was loaded
+   *
+   * @return Number of instructions
+   */
+  public long getRetired() {
+    return this.retired;
+  }
+
+  /**
+   * Let the thread sleep while the program waits for an interrupt and no device has anything to
+   * do, only input from outside the emulator can wake it up then
+   *
+   * @calledby runFast()
+   */
+  private void idle() {
+    if (!this.waiting) return;
+
+    this.waiting = false;
+    try {
+      Thread.sleep(1);
+    } catch (InterruptedException e) {
+    }
+  }
+
+  /**
+   * Take an exception, the handler at the global label exceptions is run with interrupts disabled
+   * and returns to the given address with eret
+   *
+   * @calledby interrupt(), trap()
+   * @calls InterruptController.enter()
+   * @param returnAddr Address put in ea
+   * @throws EmulatorException If the program has no exception handler
+   */
+  void exception(int returnAddr) throws EmulatorException {
+    int handler = this.program.getExceptionAddr();
+    if (handler < 0)
+      throw new EmulatorException("No exception handler, the global label exceptions is missing");
+
+    this.register.write(29, returnAddr);
+    this.interrupts.enter();
+    this.pc = handler;
+  }
+
+  /**
+   * Take an interrupt before the instruction at the current PC. Like on the Nios II, ea is the
+   * address of the next instruction, so the handler has to subtract 4 from it before eret.
+   *
+   * @calledby step(), stepFast(), runBlock()
+   * @calls exception(), error()
+   * @return Same as step(), 0 if there is a breakpoint at the handler
+   */
+  private int interrupt() {
+    try {
+      this.exception(this.pc + 4);
+    } catch (EmulatorException e) {
+      this.error(e.getMessage());
+      return 0;
+    }
+
+    if (this.breakpoints.stop(this.pc, this.register)) {
+      return 0;
+    }
+
+    return 1;
+  }
+
+  /**
+   * Take a trap exception for the trap instruction at the current PC
+   *
+   * @calledby Emulator.trap()
+   * @calls exception()
+   * @throws EmulatorException If the program has no exception handler
+   */
+  void trap() throws EmulatorException {
+    this.exception(this.pc + 4);
+
+    // The PC is increased after the instruction
+    this.pc -= 4;
+  }
+
+  /**
+   * Stop the emulation after the current instruction
+   *
+   * @calledby Emulator.breakpoint()
+   */
+  void breakpoint() {
+    this.breakHit = true;
+  }
+
+  /**
+   * End the emulation because of an error
+   *
+   * @calledby step(), runBlock()
+   * @calls EmulatorListener.emulatorError()
+   * @param message Error message
+   */
+  private void error(String message) {
+    this.listener.emulatorError(message);
+    this.error = message;
+    this.ended = true;
+  }
+
+  /**
+   * Stop the emulation if the last instruction hit a watchpoint
+   *
+   * @calledby step(), runBlock()
+   * @calls MemoryManager.takeWatchpointHit(), EmulatorListener.watchpointHit()
+   * @param pc Address of the last instruction
+   * @return True if the emulation should stop
+   */
+  private boolean watchpointStop(int pc) {
+    Watchpoint.Hit hit = this.memory.takeWatchpointHit();
+    if (hit == null) return false;
+
+    this.watchpointHit = hit.withPC(pc);
+    this.listener.watchpointHit(this.watchpointHit);
+    return true;
+  }
+
+  /**
+   * Get the watchpoint hit that stopped the emulation the last time
+   *
+   * @return Hit or null if the emulation didn't stop at a watchpoint
+   */
+  public Watchpoint.Hit getWatchpointHit() {
+    return this.watchpointHit;
+  }
+
+  /**
+   * Add a watchpoint
+   *
+   * @calls MemoryManager.setWatchpoints()
+   * @param watchpoint Watchpoint
+   */
+  public void addWatchpoint(Watchpoint watchpoint) {
+    this.watchpoints.add(watchpoint);
+    if (this.memory != null) this.memory.setWatchpoints(this.watchpoints);
+  }
+
+  /**
+   * Remove a watchpoint
+   *
+   * @calls MemoryManager.setWatchpoints()
+   * @param watchpoint Watchpoint
+   */
+  public void removeWatchpoint(Watchpoint watchpoint) {
+    this.watchpoints.remove(watchpoint);
+    if (this.memory != null) this.memory.setWatchpoints(this.watchpoints);
+  }
+
+  public Vector<Watchpoint> getWatchpoints() {
+    return this.watchpoints;
+  }
+
+  /**
+   * Turn on or off the counting of reads, writes and fetches of each word. The counts start from
+   * zero when it is turned on and every time the program is loaded. Compiled code isn't used while
+   * profiling.
+   *
+   * @calledby EmulatorEventAdapter
+   * @calls MemoryManager.setProfiling()
+   * @param profiling True if accesses should be counted
+   */
+  public void setProfiling(boolean profiling) {
+    this.profiling = profiling;
+    if (this.memory != null) this.memory.setProfiling(profiling);
+  }
+
+  public boolean isProfiling() {
+    return this.profiling;
+  }
+
+  /**
+   * Run one instruction like step() when the state isn't tracked
+   *
+   * @calledby runBlock(), runCompiled()
+   * @calls interrupt(), MemoryManager.tick(), execute()
+   * @return Same as step()
+   */
+  private int stepFast() {
+    if (this.interrupts.isRequested()) return this.interrupt();
+
+    this.memory.tick(1);
+    return this.execute(false);
+  }
+
+  /**
+   * Run the basic block starting at the current PC as one straight-line sequence. Falls back to
+   * step() if the code can't be translated, if a breakpoint is placed inside the block or if the
+   * block is longer than the limit. Blocks that are run often get compiled, and the compiled code
+   * is used instead when there is some. A polling loop is never compiled so that it can be
+   * fast-forwarded, see skipIdle(). Interrupts are taken between the instructions, and while the
+   * program can be interrupted compiled code is only used if it ends before the next device event.
+   *
+   * @pre program must be loaded, state isn't tracked
+   * @post update pc to the instruction after the block
+   * @checks If Instruction.run() throws an error send EMULATOR_ERROR
+   * @calledby runFast(), runUntil()
+   * @calls JitManager.get(), JitManager.compile(), BasicBlockCache.get(), Instruction.run(),
+   *     runCompiled(), stepFast(), skipIdle(), interrupt()
+   * @param limit Max number of instructions to run, at least 1
+   * @param fastForward True if polling loops may be fast-forwarded
+   * @return Same as step()
+   */
+  private int runBlock(long limit, boolean fastForward) {
+    if (this.interrupts.isRequested()) return this.interrupt();
+
+    // An IRQ asserted at the last tick of compiled code is taken after it, as it is when
+    // interpreted, but one asserted earlier would be taken too late
+    long compiledLimit = limit;
+    if (this.interrupts.isEnabled())
+      compiledLimit = Math.min(limit - 1, this.memory.getScheduler().getIdleTicks()) + 1;
+
+    // Compiled code doesn't count accesses, so it isn't used while profiling
+    CompiledCode code = this.profiling ? null : this.jit.get(this.pc);
+    if (code != null
+        && code.getLength() < compiledLimit
+        && !code.containsBreakpoint(this.breakpoints))
+      return this.runCompiled(code, compiledLimit - code.getLength());
+
+    BasicBlock block = this.blockCache.get(this.memory, this.pc);
+    if (block == null || block.getLength() > limit || block.containsBreakpoint(this.breakpoints))
+      return this.stepFast();
+
+    if (block.countExecution() == JitManager.THRESHOLD && !block.isPollingLoop())
+      this.jit.compile(block.getStartAddr());
+
+    // What a polling loop sees before it runs, to tell if the iteration changed anything
+    boolean polling = false;
+    int writes = 0;
+    if (fastForward && block.isPollingLoop() && !this.profiling) {
+      polling = true;
+      int[] values = this.register.getValues();
+      System.arraycopy(values, 0, this.pollingRegisters, 0, values.length);
+      writes = this.memory.getWriteCount();
+    }
+
+    int length = block.getLength();
+    int addr = block.getStartAddr();
+    try {
+      for (int i = 0; i < length; i++) {
+        this.pc = addr;
+        if (this.interrupts.isRequested()) return this.interrupt();
+
+        this.memory.tick(1);
+        this.memory.count(AccessProfile.ACCESS.FETCH, addr);
+        block.getInstruction(i).run(this.emulator, block.getOpCode(i));
+        this.pc += 4;
+        addr += 4;
+        this.retired++;
+
+        if (this.watchpointStop(addr - 4)) return 0;
+      }
+    } catch (Exception e) {
+      this.error(e.getMessage());
+      return 0;
+    }
+
+    // Only the last instruction can jump, so this is the only place the program can end
+    if (this.pc == addr - 4) {
+      if (this.interrupts.isEnabled()) {
+        // Wait for the interrupt, the jump is a polling loop of one instruction
+        this.skipIdle(1, limit - length);
+        return 1;
+      }
+
+      this.ended = true;
+      return 0;
+    }
+
+    if (this.breakHit) {
+      this.breakHit = false;
+      return 0;
+    }
+
+    if (this.breakpoints.stop(this.pc, this.register)) {
+      return 0;
+    }
+
+    if (polling
+        && this.pc == block.getStartAddr()
+        && this.memory.getWriteCount() == writes
+        && Arrays.equals(this.pollingRegisters, this.register.getValues())) {
+      this.skipIdle(length, limit - length);
+    }
+
+    return 1;
+  }
+
+  /**
+   * Fast-forward a polling loop whose last iteration left the registers and the memory as they
+   * were. Every following iteration does exactly the same until a device changes something, so
+   * whole iterations are skipped up to the tick before the next scheduled device event. The
+   * devices and the instruction count are advanced as if the iterations had run. Nothing is
+   * skipped while an interrupt is requested, it has to be taken first, or when no device event is
+   * scheduled, the program then waits for input from outside the emulator.
+   *
+   * @calledby runBlock()
+   * @calls DeviceScheduler.getIdleTicks(), MemoryManager.tick()
+   * @param length Number of instructions in one iteration
+   * @param limit Max number of instructions to skip
+   */
+  private void skipIdle(int length, long limit) {
+    // A conditional breakpoint counts its hits, so every iteration has to be checked
+    if (this.breakpoints.isSet(this.pc) || this.interrupts.isRequested()) return;
+
+    long idleTicks = this.memory.getScheduler().getIdleTicks();
+    if (idleTicks == Long.MAX_VALUE) {
+      this.waiting = true;
+      return;
+    }
+
+    long idle = Math.min(Math.min(limit, idleTicks), MAXIDLE);
+    int skipped = (int) (idle - idle % length);
+    if (skipped == 0) return;
+
+    this.memory.tick(skipped);
+    this.retired += skipped;
+  }
+
+  /**
+   * Run compiled code. The devices are advanced afterwards by the number of instructions that
+   * were run, which gives the same result as advancing them before every instruction since
+   * compiled code leaves all IO access to the interpreter.
+   *
+   * @pre program must be loaded, state isn't tracked
+   * @post update pc to the instruction after the compiled code
+   * @calledby runBlock()
+   * @calls JitManager.run(), MemoryManager.tick(), stepFast()
+   * @param code Compiled code starting at the current PC
+   * @param budget Number of instructions after which the code returns as soon as it jumps, the code
+   *     can run up to its length more than this
+   * @return Same as step()
+   */
+  private int runCompiled(CompiledCode code, long budget) {
+    this.pc = this.jit.run(code, this.register, (int) Math.min(budget, JitManager.BUDGET));
+
+    int retired = this.jit.getRetired();
+    if (retired == 0) return this.stepFast();
+
+    this.retired += retired;
+    this.memory.tick(retired);
+
+    if (this.breakpoints.stop(this.pc, this.register)) {
+      return 0;
+    }
+
+    return 1;
+  }
+
+  /**
+   * Set the memories and devices, they are used from the next time a program is loaded or reset
+   *
+   * @calledby JNiosEmu.main()
+   * @param memoryMap Memory map, null for the default map
+   */
+  public void setMemoryMap(MemoryMap memoryMap) {
+    this.memoryMap = (memoryMap == null) ? MemoryMap.getDefault() : memoryMap;
+  }
+
+  public MemoryMap getMemoryMap() {
+    return this.memoryMap;
+  }
+
   /**
    * Helpfunction that returns the current MemoryManager
    *
@@ -263,10 +801,10 @@ public class EmulatorManager implements EventObserver {
   /**
    * Compile the sourcecode
    *
-   * @post Event should be sent. Both if an error has occured or not.
-   * @checks If an error occured during compile or link send COMPILER_ERROR
-   * @calledby update()
-   * @calls Compiler(), Compiler.compile(), Compiler.link(), EventManager.sendEvent(),
+   * @post The listener should be told. Both if an error has occured or not.
+   * @checks If an error occured during compile or link call compilerError()
+   * @calledby EmulatorEventAdapter
+   * @calls Compiler(), Compiler.compile(), Compiler.link(), EmulatorListener.compilerError(),
    *     Program.toggleBreakpoint, load()
    * @param lines Sourcecode of the program
    */
@@ -278,8 +816,7 @@ public class EmulatorManager implements EventObserver {
       compiler.compile();
       program = compiler.link();
     } catch (CompilerException e) {
-      this.eventManager.sendEvent(EventManager.EVENT.COMPILER_ERROR, e.getMessage());
-      this.eventManager.sendEvent(EventManager.EVENT.EMULATOR_CLEAR);
+      this.listener.compilerError(e.getMessage());
       return;
     }
 
@@ -297,7 +834,7 @@ public class EmulatorManager implements EventObserver {
   /**
    * Pause the emulation
    *
-   * @calledby update()
+   * @calledby EmulatorEventAdapter
    */
   public void pause() {
     this.running = false;
@@ -306,23 +843,33 @@ public class EmulatorManager implements EventObserver {
   /**
    * Reset the emulation
    *
-   * @calledby update()
+   * @calledby reset()
    * @calls RegisterManager(), MemoryManager.reset(), Program.getStartAddr(),
-   *     EventManager.sendEvent(), pcChange()
+   *     EmulatorListener.emulatorReady(), pcChange()
    */
   public void load() {
-    if (this.memory == null) {
-      this.memory =
-          new MemoryManager(
-              this.eventManager,
-              this.program.getBinaryProgram(),
-              this.program.getBinaryVariables(),
-              this.program.getSourceCode());
-    } else {
-      this.memory.reset(
-          this.program.getBinaryProgram(),
-          this.program.getBinaryVariables(),
-          this.program.getSourceCode());
+    try {
+      if (this.memory == null || this.memory.getMemoryMap() != this.memoryMap) {
+        MemoryManager oldMemory = this.memory;
+        this.memory =
+            new MemoryManager(
+                this.listener,
+                this.memoryMap,
+                this.program.getBinaryProgram(),
+                this.program.getBinaryVariables(),
+                this.program.getSourceCode());
+        this.bindSerialPorts(oldMemory);
+      } else {
+        this.memory.reset(
+            this.program.getBinaryProgram(),
+            this.program.getBinaryVariables(),
+            this.program.getSourceCode());
+      }
+    } catch (MemoryException e) {
+      // A file in the memory map couldn't be mapped
+      this.memory = null;
+      this.listener.compilerError(e.getMessage());
+      return;
     }
 
     for (MemoryBlock memoryBlock : this.memory.getMemoryBlocks()) {
@@ -330,16 +877,103 @@ public class EmulatorManager implements EventObserver {
         this.variableMemory = memoryBlock;
     }
 
+    this.memory.setWatchpoints(this.watchpoints);
+    this.memory.setProfiling(this.profiling);
+    this.interrupts = this.memory.getInterrupts();
+    this.watchpointHit = null;
+    this.breakHit = false;
+    this.waiting = false;
+
+    this.blockCache.clear();
+    this.jit.clear(this.memory);
+    this.breakpoints.resetHits();
+
     this.pc = this.program.getStartAddr();
-    this.register = new RegisterManager();
+    this.register = new RegisterManager(this.memory.getStackAddr());
 
     this.ended = false;
-    this.eventManager.sendEvent(EventManager.EVENT.EMULATOR_READY);
-    this.eventManager.sendEvent(EventManager.EVENT.VARIABLE_VECTOR, this.program.getVariables());
+    this.error = null;
+    this.retired = 0;
+    this.listener.emulatorReady(this.program);
 
     this.pcChange();
   }
 
+  /**
+   * Bind a serial port to streams, see SerialDevice.bind(). The streams stay bound when another
+   * program is loaded. A stream should only be bound to one port.
+   *
+   * @calledby JNiosEmu.main()
+   * @calls SerialDevice.bind()
+   * @param port Port number
+   * @param in Stream to receive characters from, or null
+   * @param out Stream to write the written characters to, or null
+   */
+  public void bindSerialPort(int port, InputStream in, OutputStream out) {
+    if (in == null) {
+      this.serialInputs.remove(port);
+    } else {
+      this.serialInputs.put(port, in);
+    }
+    if (out == null) {
+      this.serialOutputs.remove(port);
+    } else {
+      this.serialOutputs.put(port, out);
+    }
+
+    if (this.memory != null && this.memory.getSerialPort(port) != null)
+      this.memory.getSerialPort(port).bind(in, out);
+  }
+
+  /**
+   * Let clients connect to a serial port through a TCP socket on localhost, see SerialBridge. The
+   * bridge stays attached when another program is loaded.
+   *
+   * @calledby JNiosEmu.main()
+   * @calls SerialBridge(), SerialDevice.attach()
+   * @param port Port number
+   * @param tcpPort TCP port to listen on, 0 to let the system choose one, -1 to remove the bridge
+   * @return Bridge, null if it was removed
+   * @throws IOException If the socket can't be opened
+   */
+  public SerialBridge bridgeSerialPort(int port, int tcpPort) throws IOException {
+    SerialBridge bridge = (tcpPort < 0) ? null : new SerialBridge(tcpPort);
+
+    SerialBridge oldBridge =
+        (bridge == null) ? this.serialBridges.remove(port) : this.serialBridges.put(port, bridge);
+    if (oldBridge != null) oldBridge.close();
+
+    if (this.memory != null && this.memory.getSerialPort(port) != null)
+      this.memory.getSerialPort(port).attach(bridge);
+
+    return bridge;
+  }
+
+  /**
+   * Move the bound streams and bridges from the serial ports of the last MemoryManager to the
+   * current one
+   *
+   * @calledby load()
+   * @calls SerialDevice.bind(), SerialDevice.attach()
+   * @param oldMemory Last MemoryManager, or null
+   */
+  private void bindSerialPorts(MemoryManager oldMemory) {
+    for (int port = 0; ; port++) {
+      SerialDevice oldPort = (oldMemory == null) ? null : oldMemory.getSerialPort(port);
+      SerialDevice newPort = this.memory.getSerialPort(port);
+      if (oldPort == null && newPort == null) break;
+
+      if (oldPort != null) {
+        oldPort.bind(null, null);
+        oldPort.attach(null);
+      }
+      if (newPort != null) {
+        newPort.bind(this.serialInputs.get(port), this.serialOutputs.get(port));
+        newPort.attach(this.serialBridges.get(port));
+      }
+    }
+  }
+
   public void reset() {
     this.running = false;
     this.ended = false;
@@ -360,8 +994,8 @@ public class EmulatorManager implements EventObserver {
    * Toggle breakpoint
    *
    * @post Add breakpoint to breakpoints and update Program
-   * @calledby update()
-   * @calls Program.toggleBreakpoint(), EMULATOR_BREAKPOINT_TOGGLE
+   * @calledby EmulatorEventAdapter
+   * @calls Program.toggleBreakpoint(), EmulatorListener.breakpointUpdate()
    * @param lineNumber Line to toggle breakpoint
    */
   public void toggleBreakpoint(int lineNumber) {
@@ -369,80 +1003,78 @@ public class EmulatorManager implements EventObserver {
 
     int addr = this.latestSourceCode.getAddress(lineNumber);
     if (this.latestSourceCode.toggleBreakpoint(lineNumber)) {
-      this.breakpoints.put(addr, lineNumber);
+      this.breakpoints.add(addr);
     } else {
       this.breakpoints.remove(addr);
     }
 
-    this.eventManager.sendEvent(EventManager.EVENT.EMULATOR_BREAKPOINT_UPDATE, lineNumber);
+    this.listener.breakpointUpdate(lineNumber);
   }
 
   /**
-   * Listen for events and acts on them
+   * Set the condition of the breakpoint on a line. The breakpoint only stops the emulation when the
+   * condition is true, see BreakpointCondition for the syntax. The condition is removed when the
+   * breakpoint is.
    *
-   * @calledby COMPILER_COMPILE, EMULATOR_RUN, EMULATOR_PAUSE, EMULATOR_STEP, EMULATOR_RESET,
-   *     EMULATOR_BREAK_POINT_TOGGLE
-   * @calls compile(), runAll(), pause(), runOne(), load(), toggleBreakpoint()
-   * @param eventIdentifier Event identifier
-   * @param obj Argument depending of which event
+   * @calls BreakpointCondition.parse(), Breakpoints.setCondition()
+   * @param lineNumber Line of the breakpoint
+   * @param condition Condition, null or empty to always stop
+   * @throws EmulatorException If the condition can't be parsed
    */
-  public void update(EventManager.EVENT eventIdentifier, Object obj) {
-    switch (eventIdentifier) {
-      case COMPILER_COMPILE:
-        this.compile((String) obj);
-        break;
-      case CURRENT_DIRECTORY:
-        this.currentDir = (String) obj;
-        break;
-      case EMULATOR_STEP:
-        this.initRun(false, false);
-        break;
-      case EMULATOR_STEP_OVER:
-        this.initRun(false, true);
-        break;
-      case EMULATOR_RUN:
-        this.initRun(true, false);
-        break;
-      case EMULATOR_PAUSE:
-        this.pause();
-        break;
-      case EMULATOR_RESET:
-        this.reset();
-        break;
-      case EMULATOR_TOGGLE_STEP_OVER:
-        this.stepOver = !this.stepOver;
-        break;
-      case EMULATOR_BREAKPOINT_TOGGLE:
-        this.toggleBreakpoint(((Integer) obj).intValue());
-        break;
-      case EMULATOR_SPEED:
-        this.setSpeed((SPEED) obj);
-        break;
-      case MEMORY_REQUEST_UPDATE:
-        if (this.memory != null)
-          this.eventManager.sendEvent(
-              EventManager.EVENT.MEMORY_CHANGE, this.memory.getMemoryBlocks());
-        break;
-      case VARIABLE_REQUEST_UPDATE:
-        if (this.program != null)
-          this.eventManager.sendEvent(
-              EventManager.EVENT.VARIABLE_VECTOR, this.program.getVariables());
-        if (this.variableMemory != null)
-          this.eventManager.sendEvent(EventManager.EVENT.VARIABLE_CHANGE, this.variableMemory);
-        break;
+  public void setBreakpointCondition(int lineNumber, String condition) throws EmulatorException {
+    if (this.latestSourceCode == null) return;
+
+    int addr = this.latestSourceCode.getAddress(lineNumber);
+    if (condition == null || condition.trim().length() == 0) {
+      this.breakpoints.setCondition(addr, null);
+    } else {
+      this.breakpoints.setCondition(addr, BreakpointCondition.parse(condition));
     }
   }
 
+  /**
+   * Toggle if calls are stepped over when running
+   *
+   * @calledby EmulatorEventAdapter
+   */
+  public void toggleStepOver() {
+    this.stepOver = !this.stepOver;
+  }
+
+  /**
+   * Set the directory that include files are read from
+   *
+   * @calledby EmulatorEventAdapter
+   * @param currentDir Directory
+   */
+  public void setCurrentDirectory(String currentDir) {
+    this.currentDir = currentDir;
+  }
+
+  /**
+   * Get the memory block holding the variables
+   *
+   * @return Memory block or null if no program is loaded
+   */
+  public MemoryBlock getVariableMemory() {
+    return this.variableMemory;
+  }
+
   public void setSpeed(SPEED speed) {
     this.speed = speed;
   }
 
   /**
-   * If pc is changed this method is called and all events that should be sent are sent.
+   * If pc is changed this method is called and the listener is told about it. The listener is
+   * also told about the source code again when lines of it have been updated. The characters
+   * written to the serial ports are sent first.
    *
-   * @calledby load(), step()
+   * @calledby load(), execRun()
+   * @calls MemoryManager.flush(), EmulatorListener.programChange(), EmulatorListener.stateChange()
    */
   private void pcChange() {
+    this.memory.flush();
+
     MemoryBlock block = null;
     try {
       block = this.memory.getBlock(this.pc);
@@ -450,41 +1082,40 @@ public class EmulatorManager implements EventObserver {
     }
 
     if (block != null) {
-      SourceCode sourceCode = this.memory.getBlock(this.pc).getSourceCode();
-      if (sourceCode != this.latestSourceCode) {
+      SourceCode sourceCode = block.getSourceCode();
+      if (sourceCode != this.latestSourceCode
+          || sourceCode.getVersion() != this.latestSourceCodeVersion) {
         this.latestSourceCode = sourceCode;
-        this.eventManager.sendEvent(EventManager.EVENT.PROGRAM_CHANGE, this.latestSourceCode);
+        this.latestSourceCodeVersion = sourceCode.getVersion();
+        this.listener.programChange(this.latestSourceCode);
       }
     }
 
-    this.eventManager.sendEvent(EventManager.EVENT.PROGRAMCOUNTER_CHANGE, Integer.valueOf(this.pc));
-    this.eventManager.sendEvent(EventManager.EVENT.REGISTER_CHANGE, this.register.get());
-    this.eventManager.sendEvent(EventManager.EVENT.MEMORY_CHANGE, this.memory.getMemoryBlocks());
-    this.eventManager.sendEvent(EventManager.EVENT.VARIABLE_CHANGE, this.variableMemory);
+    this.listener.stateChange(this.pc);
   }
 
   /**
-   * Sends event when compilation starts end
+   * Tell the listener that the emulation starts
    *
-   * @calledby runAll(), runOne()
-   * @calls EVENTID_EMULATION_START
+   * @calledby execRun()
+   * @calls EmulatorListener.emulatorStart()
    */
   private void startEvent() {
-    this.eventManager.sendEvent(EventManager.EVENT.EMULATOR_START);
+    this.listener.emulatorStart();
   }
 
   /**
-   * Sends event and set status when the emulation ended
+   * Tell the listener that the emulation stopped
    *
-   * @checks If program ended send EVENTID_EMULATION_END
-   * @calledby runAll(), runOne()
-   * @calls EVENTID_EMULATION_END, EVENTID_EMULATION_STOP
+   * @checks If program ended call emulatorEnd()
+   * @calledby execRun()
+   * @calls EmulatorListener.emulatorEnd(), EmulatorListener.emulatorStop()
    */
   private void stopEvent() {
     if (this.ended) {
-      this.eventManager.sendEvent(EventManager.EVENT.EMULATOR_END);
+      this.listener.emulatorEnd();
     } else {
-      this.eventManager.sendEvent(EventManager.EVENT.EMULATOR_STOP);
+      this.listener.emulatorStop();
     }
   }
 
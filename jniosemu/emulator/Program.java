@@ -18,6 +18,8 @@ public class Program {
 
   /** Start address */
   private final int startAddr;
+  /** Address of the exception handler, -1 if there is none */
+  private final int exceptionAddr;
 
   private final SourceCode sourceCode;
 
@@ -31,6 +33,7 @@ public class Program {
    * @param program Binary program
    * @param variabledata Variables as binary
    * @param startAddr Start position in the memory (what to set pc before starting to emulate)
+   * @param exceptionAddr Address of the exception handler, -1 if there is none
    */
   public Program(
       String[] lines,
@@ -38,9 +41,11 @@ public class Program {
       Vector<Variable> variables,
       byte[] program,
       byte[] variabledata,
-      int startAddr)
+      int startAddr,
+      int exceptionAddr)
       throws InstructionException {
     this.startAddr = startAddr;
+    this.exceptionAddr = exceptionAddr;
     this.program = program;
     this.variables = variables;
     this.variabledata = variabledata;
@@ -78,6 +83,16 @@ public class Program {
     return this.startAddr;
   }
 
+  /**
+   * Get the address interrupts and traps jump to
+   *
+   * @calledby EmulatorManager.exception()
+   * @return Address of the exception handler, -1 if there is none
+   */
+  public int getExceptionAddr() {
+    return this.exceptionAddr;
+  }
+
   public Vector<Variable> getVariables() {
     return this.variables;
   }
@@ -0,0 +1,14 @@
+package jniosemu.emulator;
+
+/** Condition that stops EmulatorManager.runUntil() */
+public interface RunCondition {
+  /**
+   * Check if the emulation should stop. It's checked after every basic block, not after every
+   * instruction.
+   *
+   * @calledby EmulatorManager.runUntil()
+   * @param emulator Emulator that is running
+   * @return True if the emulation should stop
+   */
+  public boolean stop(EmulatorManager emulator);
+}
@@ -0,0 +1,63 @@
+package jniosemu.emulator;
+
+/** Result of EmulatorManager.runFor() and EmulatorManager.runUntil() */
+public class RunResult {
+  /** The different reasons the emulation stopped */
+  public static enum REASON {
+    BUDGET,
+    BREAKPOINT,
+    CONDITION,
+    ENDED,
+    ERROR,
+    WAITING,
+    WATCHPOINT
+  };
+  /** Why the emulation stopped */
+  private final REASON reason;
+  /** Number of instructions that were run */
+  private final long retired;
+  /** Address of the next instruction */
+  private final int pc;
+  /** Error message if the reason is ERROR */
+  private final String error;
+
+  /**
+   * Init RunResult
+   *
+   * @calledby EmulatorManager.runUntil()
+   * @param reason Why the emulation stopped
+   * @param retired Number of instructions that were run
+   * @param pc Address of the next instruction
+   * @param error Error message or null
+   */
+  public RunResult(REASON reason, long retired, int pc, String error) {
+    this.reason = reason;
+    this.retired = retired;
+    this.pc = pc;
+    this.error = error;
+  }
+
+  public REASON getReason() {
+    return this.reason;
+  }
+
+  public long getRetired() {
+    return this.retired;
+  }
+
+  public int getPC() {
+    return this.pc;
+  }
+
+  public String getError() {
+    return this.error;
+  }
+
+  public String toString() {
+    return this.reason
+        + " after "
+        + this.retired
+        + " instructions at 0x"
+        + Integer.toHexString(this.pc);
+  }
+}
@@ -16,6 +16,10 @@ public class SourceCode {
   private Hashtable<Integer, Integer> addrLookup = new Hashtable<Integer, Integer>();
   /** Used for fast get address from linenumber */
   private Hashtable<Integer, Integer> lineNumberLookup = new Hashtable<Integer, Integer>();
+  /** Opcodes of the lines that have been updated, as they were before the first update */
+  private Hashtable<Integer, Integer> originalOpCodes = new Hashtable<Integer, Integer>();
+  /** Increased every time a line is updated or restored */
+  private int version = 0;
 
   public SourceCode(byte[] binaryCode, int startAddr) {
     this.startAddr = startAddr;
@@ -117,6 +121,56 @@ public class SourceCode {
     return -1;
   }
 
+  /**
+   * Update the line of an address after the program has written a new opcode to it. Only that
+   * line is disassembled again.
+   *
+   * @calledby MemoryBlock.updateSourceCode()
+   * @calls SourceCodeLine.setOpCode()
+   * @param address Memory address of the word
+   * @param opCode Opcode now in the word
+   * @return True if the line changed
+   */
+  public boolean update(int address, int opCode) {
+    Integer lineNumber = this.addrLookup.get(address - this.startAddr);
+    if (lineNumber == null) return false;
+
+    SourceCodeLine line = this.sourceCodeLines.get(lineNumber);
+    if (line.getOpCodeValue() == opCode) return false;
+
+    if (!this.originalOpCodes.containsKey(lineNumber))
+      this.originalOpCodes.put(lineNumber, line.getOpCodeValue());
+    line.setOpCode(opCode);
+    this.version++;
+
+    return true;
+  }
+
+  /**
+   * Give the updated lines back their original opcodes
+   *
+   * @calledby Memory.reset()
+   * @calls SourceCodeLine.setOpCode()
+   */
+  public void restore() {
+    if (this.originalOpCodes.isEmpty()) return;
+
+    for (Integer lineNumber : this.originalOpCodes.keySet())
+      this.sourceCodeLines.get(lineNumber).setOpCode(this.originalOpCodes.get(lineNumber));
+    this.originalOpCodes.clear();
+    this.version++;
+  }
+
+  /**
+   * Get the version, it changes every time a line is updated or restored
+   *
+   * @calledby EmulatorManager.pcChange()
+   * @return Version
+   */
+  public int getVersion() {
+    return this.version;
+  }
+
   /**
    * Toggle breakpoint
    *
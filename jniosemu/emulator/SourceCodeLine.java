@@ -54,6 +54,43 @@ public class SourceCodeLine {
     }
   }
 
+  /**
+   * Change the opcode of the line when the program has written over it. The sourcecode line is
+   * kept. A breakpoint that is set stays set, so that it still matches the breakpoints of the
+   * emulator and can be removed.
+   *
+   * @checks If opcode == 0 and breakpoint == FALSE then breakpoint = DISABLED
+   * @calledby SourceCode.update(), SourceCode.restore()
+   * @calls InstructionManager.get()
+   * @param opCode New opcode
+   */
+  void setOpCode(int opCode) {
+    this.opCode = opCode;
+    this.instruction = null;
+
+    try {
+      this.instruction = InstructionManager.get(opCode);
+    } catch (Exception e) {
+      // If there is an error we just not view the instruction
+    }
+
+    if (this.opCode == 0) {
+      if (this.breakpoint == BREAKPOINT.FALSE) this.breakpoint = BREAKPOINT.DISABLED;
+    } else if (this.breakpoint == BREAKPOINT.DISABLED) {
+      this.breakpoint = BREAKPOINT.FALSE;
+    }
+  }
+
+  /**
+   * Get the opcode as a number
+   *
+   * @calledby SourceCode.update()
+   * @return opcode
+   */
+  public int getOpCodeValue() {
+    return this.opCode;
+  }
+
   /**
    * Init SourceCodeLine
    *
@@ -207,7 +244,7 @@ public class SourceCodeLine {
   public String getInstruction() {
     if (this.instruction == null) return null;
 
-    return this.instruction.toString();
+    return this.instruction.toString(this.opCode);
   }
 
   /**
@@ -490,9 +490,22 @@ public class Compiler {
     } catch (CompilerException e) {
     }
 
+    // Interrupts and traps jump to the global label exceptions
+    int exceptionAddr = -1;
+    try {
+      exceptionAddr = this.getGlobal("exceptions");
+    } catch (CompilerException e) {
+    }
+
     try {
       return new Program(
-          this.lines, this.instructions, this.variables, binaryProgram, binaryVariables, pc);
+          this.lines,
+          this.instructions,
+          this.variables,
+          binaryProgram,
+          binaryVariables,
+          pc,
+          exceptionAddr);
     } catch (InstructionException e) {
       // Could not happen
       throw new CompilerException();
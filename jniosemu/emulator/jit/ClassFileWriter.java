@@ -0,0 +1,498 @@
+package jniosemu.emulator.jit;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.TreeSet;
+
+/**
+ * Writes a minimal Java class file. Only the parts needed by JitCompiler are supported: a constant
+ * pool, methods with code and a stack map table where every frame has the same locals and an empty
+ * stack.
+ */
+class ClassFileWriter {
+  /** Class file version used, Java 8 */
+  private static final int VERSION = 52;
+
+  private static final int ACC_PUBLIC = 0x0001;
+  private static final int ACC_FINAL = 0x0010;
+  private static final int ACC_SUPER = 0x0020;
+
+  /** Constant pool entries already written, keyed by their encoding */
+  private HashMap<String, Integer> constants = new HashMap<String, Integer>();
+  /** Constant pool */
+  private ByteBuffer pool = new ByteBuffer();
+  /** Number of constant pool slots used plus one */
+  private int poolCount = 1;
+  /** Methods */
+  private ByteBuffer methods = new ByteBuffer();
+
+  private int methodCount = 0;
+
+  private final int thisClass;
+
+  private final int superClass;
+
+  /**
+   * Init ClassFileWriter
+   *
+   * @param name Internal name of the class
+   * @param superName Internal name of the super class
+   */
+  public ClassFileWriter(String name, String superName) {
+    this.thisClass = this.classRef(name);
+    this.superClass = this.classRef(superName);
+  }
+
+  public int utf8(String value) {
+    Integer index = this.constants.get("U" + value);
+    if (index != null) return index;
+
+    this.pool.u1(1);
+    this.pool.utf(value);
+    return this.addConstant("U" + value, 1);
+  }
+
+  public int classRef(String name) {
+    Integer index = this.constants.get("C" + name);
+    if (index != null) return index;
+
+    int nameIndex = this.utf8(name);
+    this.pool.u1(7);
+    this.pool.u2(nameIndex);
+    return this.addConstant("C" + name, 1);
+  }
+
+  public int integer(int value) {
+    Integer index = this.constants.get("I" + value);
+    if (index != null) return index;
+
+    this.pool.u1(3);
+    this.pool.u4(value);
+    return this.addConstant("I" + value, 1);
+  }
+
+  public int longValue(long value) {
+    Integer index = this.constants.get("J" + value);
+    if (index != null) return index;
+
+    this.pool.u1(5);
+    this.pool.u4((int) (value >>> 32));
+    this.pool.u4((int) value);
+    return this.addConstant("J" + value, 2);
+  }
+
+  public int fieldRef(String owner, String name, String descriptor) {
+    return this.memberRef(9, owner, name, descriptor);
+  }
+
+  public int methodRef(String owner, String name, String descriptor) {
+    return this.memberRef(10, owner, name, descriptor);
+  }
+
+  private int memberRef(int tag, String owner, String name, String descriptor) {
+    String key = "M" + tag + owner + "." + name + descriptor;
+    Integer index = this.constants.get(key);
+    if (index != null) return index;
+
+    int classIndex = this.classRef(owner);
+    int nameAndType = this.nameAndType(name, descriptor);
+    this.pool.u1(tag);
+    this.pool.u2(classIndex);
+    this.pool.u2(nameAndType);
+    return this.addConstant(key, 1);
+  }
+
+  private int nameAndType(String name, String descriptor) {
+    String key = "N" + name + ":" + descriptor;
+    Integer index = this.constants.get(key);
+    if (index != null) return index;
+
+    int nameIndex = this.utf8(name);
+    int descriptorIndex = this.utf8(descriptor);
+    this.pool.u1(12);
+    this.pool.u2(nameIndex);
+    this.pool.u2(descriptorIndex);
+    return this.addConstant(key, 1);
+  }
+
+  private int addConstant(String key, int slots) {
+    int index = this.poolCount;
+    this.constants.put(key, index);
+    this.poolCount += slots;
+    return index;
+  }
+
+  /**
+   * Add a public method
+   *
+   * @param name Name of the method
+   * @param descriptor Method descriptor
+   * @param code Code of the method
+   */
+  public void addMethod(String name, String descriptor, Code code) {
+    int nameIndex = this.utf8(name);
+    int descriptorIndex = this.utf8(descriptor);
+    int codeIndex = this.utf8("Code");
+    int stackMapIndex = code.frames.isEmpty() ? 0 : this.utf8("StackMapTable");
+
+    ByteBuffer stackMap = new ByteBuffer();
+    if (!code.frames.isEmpty()) {
+      stackMap.u2(code.frames.size());
+      int last = -1;
+      for (int offset : code.frames) {
+        stackMap.u1(255);
+        stackMap.u2(offset - last - 1);
+        stackMap.u2(code.frameLocalCount);
+        stackMap.bytes(code.frameLocals.toByteArray());
+        stackMap.u2(0);
+        last = offset;
+      }
+    }
+
+    byte[] bytecode = code.toByteArray();
+
+    this.methods.u2(ACC_PUBLIC);
+    this.methods.u2(nameIndex);
+    this.methods.u2(descriptorIndex);
+    this.methods.u2(1);
+    this.methods.u2(codeIndex);
+    this.methods.u4(12 + bytecode.length + (stackMapIndex == 0 ? 0 : 6 + stackMap.length()));
+    this.methods.u2(code.maxStack);
+    this.methods.u2(code.maxLocals);
+    this.methods.u4(bytecode.length);
+    this.methods.bytes(bytecode);
+    this.methods.u2(0);
+    if (stackMapIndex == 0) {
+      this.methods.u2(0);
+    } else {
+      this.methods.u2(1);
+      this.methods.u2(stackMapIndex);
+      this.methods.u4(stackMap.length());
+      this.methods.bytes(stackMap.toByteArray());
+    }
+
+    this.methodCount++;
+  }
+
+  /**
+   * Get the class file
+   *
+   * @return Class file bytes
+   */
+  public byte[] toByteArray() {
+    ByteBuffer out = new ByteBuffer();
+    out.u4(0xCAFEBABE);
+    out.u2(0);
+    out.u2(VERSION);
+    out.u2(this.poolCount);
+    out.bytes(this.pool.toByteArray());
+    out.u2(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+    out.u2(this.thisClass);
+    out.u2(this.superClass);
+    out.u2(0);
+    out.u2(0);
+    out.u2(this.methodCount);
+    out.bytes(this.methods.toByteArray());
+    out.u2(0);
+    return out.toByteArray();
+  }
+
+  /** A position in the code that can be jumped to */
+  static class Label {
+    private int offset = -1;
+    /** Pairs of instruction offset and the position of the branch offset to patch */
+    private ArrayList<int[]> fixups = new ArrayList<int[]>();
+  }
+
+  /** Code of one method */
+  static class Code extends ByteBuffer {
+    public static final int ILOAD = 0x15;
+    public static final int LLOAD = 0x16;
+    public static final int ALOAD = 0x19;
+    public static final int ISTORE = 0x36;
+    public static final int LSTORE = 0x37;
+    public static final int IALOAD = 0x2E;
+    public static final int IASTORE = 0x4F;
+    public static final int POP = 0x57;
+    public static final int IADD = 0x60;
+    public static final int ISUB = 0x64;
+    public static final int IMUL = 0x68;
+    public static final int LMUL = 0x69;
+    public static final int IDIV = 0x6C;
+    public static final int ISHL = 0x78;
+    public static final int ISHR = 0x7A;
+    public static final int IUSHR = 0x7C;
+    public static final int LUSHR = 0x7D;
+    public static final int IAND = 0x7E;
+    public static final int LAND = 0x7F;
+    public static final int IOR = 0x80;
+    public static final int IXOR = 0x82;
+    public static final int I2L = 0x85;
+    public static final int L2I = 0x88;
+    public static final int LCMP = 0x94;
+    public static final int IFEQ = 0x99;
+    public static final int IFNE = 0x9A;
+    public static final int IFLT = 0x9B;
+    public static final int IF_ICMPEQ = 0x9F;
+    public static final int IF_ICMPNE = 0xA0;
+    public static final int IF_ICMPLT = 0xA1;
+    public static final int IF_ICMPGE = 0xA2;
+    public static final int IF_ICMPGT = 0xA3;
+    public static final int IF_ICMPLE = 0xA4;
+    public static final int GOTO = 0xA7;
+    public static final int IRETURN = 0xAC;
+    public static final int RETURN = 0xB1;
+    public static final int GETFIELD = 0xB4;
+    public static final int PUTFIELD = 0xB5;
+    public static final int INVOKEVIRTUAL = 0xB6;
+    public static final int INVOKESPECIAL = 0xB7;
+    public static final int INVOKESTATIC = 0xB8;
+
+    private final ClassFileWriter classFile;
+
+    private int maxStack;
+
+    private int maxLocals;
+    /** Offsets that need a stack map frame */
+    private TreeSet<Integer> frames = new TreeSet<Integer>();
+    /** Verification types of the locals in every frame */
+    private ByteBuffer frameLocals = new ByteBuffer();
+
+    private int frameLocalCount = 0;
+    /** All labels created for this code */
+    private ArrayList<Label> labels = new ArrayList<Label>();
+    /** True if the previous instruction doesn't fall through */
+    private boolean needFrame = false;
+
+    /**
+     * Init Code
+     *
+     * @param classFile Class file the constants are added to
+     * @param maxStack Max depth of the operand stack
+     * @param maxLocals Number of local variable slots
+     */
+    public Code(ClassFileWriter classFile, int maxStack, int maxLocals) {
+      this.classFile = classFile;
+      this.maxStack = maxStack;
+      this.maxLocals = maxLocals;
+    }
+
+    /**
+     * Create a label that can be placed later
+     *
+     * @return Label
+     */
+    public Label newLabel() {
+      Label label = new Label();
+      this.labels.add(label);
+      return label;
+    }
+
+    /** Add an int local to the frames */
+    public void frameInt() {
+      this.frameLocals.u1(1);
+      this.frameLocalCount++;
+    }
+
+    /** Add a long local to the frames */
+    public void frameLong() {
+      this.frameLocals.u1(4);
+      this.frameLocalCount++;
+    }
+
+    /**
+     * Add an object local to the frames
+     *
+     * @param name Internal name of the class
+     */
+    public void frameObject(String name) {
+      this.frameLocals.u1(7);
+      this.frameLocals.u2(this.classFile.classRef(name));
+      this.frameLocalCount++;
+    }
+
+    private void start() {
+      if (this.needFrame) {
+        this.frames.add(this.length());
+        this.needFrame = false;
+      }
+    }
+
+    public void op(int opcode) {
+      this.start();
+      this.u1(opcode);
+      if (opcode == GOTO || opcode == IRETURN || opcode == RETURN) this.needFrame = true;
+    }
+
+    public void local(int opcode, int index) {
+      this.start();
+      if (index < 256) {
+        this.u1(opcode);
+        this.u1(index);
+      } else {
+        this.u1(0xC4);
+        this.u1(opcode);
+        this.u2(index);
+      }
+    }
+
+    public void iinc(int index, int value) {
+      if (value == 0) return;
+
+      this.start();
+      if (index < 256 && value >= -128 && value < 128) {
+        this.u1(0x84);
+        this.u1(index);
+        this.u1(value);
+      } else {
+        this.u1(0xC4);
+        this.u1(0x84);
+        this.u2(index);
+        this.u2(value);
+      }
+    }
+
+    public void iconst(int value) {
+      this.start();
+      if (value >= -1 && value <= 5) {
+        this.u1(0x03 + value);
+      } else if (value >= -128 && value < 128) {
+        this.u1(0x10);
+        this.u1(value);
+      } else if (value >= -32768 && value < 32768) {
+        this.u1(0x11);
+        this.u2(value);
+      } else {
+        this.u1(0x13);
+        this.u2(this.classFile.integer(value));
+      }
+    }
+
+    public void lconst(long value) {
+      this.start();
+      if (value == 0 || value == 1) {
+        this.u1(0x09 + (int) value);
+      } else {
+        this.u1(0x14);
+        this.u2(this.classFile.longValue(value));
+      }
+    }
+
+    public void field(int opcode, String owner, String name, String descriptor) {
+      this.start();
+      this.u1(opcode);
+      this.u2(this.classFile.fieldRef(owner, name, descriptor));
+    }
+
+    public void invoke(int opcode, String owner, String name, String descriptor) {
+      this.start();
+      this.u1(opcode);
+      this.u2(this.classFile.methodRef(owner, name, descriptor));
+    }
+
+    public void jump(int opcode, Label label) {
+      this.op(opcode);
+      label.fixups.add(new int[] {this.length() - 1, this.length()});
+      this.u2(0);
+    }
+
+    /**
+     * Place a label at the current position. A frame is always added since the label is a jump
+     * target.
+     *
+     * @param label Label
+     */
+    public void bind(Label label) {
+      label.offset = this.length();
+      this.frames.add(label.offset);
+      this.needFrame = false;
+    }
+
+    /**
+     * Get the code with all jumps resolved
+     *
+     * @return Bytecode
+     * @throws IllegalStateException If a label isn't placed or a jump is too long
+     */
+    public byte[] toByteArray() {
+      for (Label label : this.labels) {
+        if (label.offset < 0 && !label.fixups.isEmpty())
+          throw new IllegalStateException("Label isn't placed");
+
+        for (int[] fixup : label.fixups) {
+          int delta = label.offset - fixup[0];
+          if (delta < Short.MIN_VALUE || delta > Short.MAX_VALUE)
+            throw new IllegalStateException("Jump is too long");
+          this.patch(fixup[1], delta);
+        }
+      }
+
+      return super.toByteArray();
+    }
+  }
+
+  /** Growable big-endian byte buffer */
+  static class ByteBuffer {
+    private byte[] data = new byte[256];
+
+    private int length = 0;
+
+    private void ensure(int size) {
+      if (this.length + size > this.data.length) {
+        byte[] data = new byte[Math.max(this.data.length * 2, this.length + size)];
+        System.arraycopy(this.data, 0, data, 0, this.length);
+        this.data = data;
+      }
+    }
+
+    public int length() {
+      return this.length;
+    }
+
+    public void u1(int value) {
+      this.ensure(1);
+      this.data[this.length++] = (byte) value;
+    }
+
+    public void u2(int value) {
+      this.ensure(2);
+      this.data[this.length++] = (byte) (value >>> 8);
+      this.data[this.length++] = (byte) value;
+    }
+
+    public void u4(int value) {
+      this.ensure(4);
+      this.data[this.length++] = (byte) (value >>> 24);
+      this.data[this.length++] = (byte) (value >>> 16);
+      this.data[this.length++] = (byte) (value >>> 8);
+      this.data[this.length++] = (byte) value;
+    }
+
+    public void bytes(byte[] value) {
+      this.ensure(value.length);
+      System.arraycopy(value, 0, this.data, this.length, value.length);
+      this.length += value.length;
+    }
+
+    public void utf(String value) {
+      try {
+        byte[] bytes = value.getBytes("UTF-8");
+        this.u2(bytes.length);
+        this.bytes(bytes);
+      } catch (java.io.UnsupportedEncodingException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    protected void patch(int position, int value) {
+      this.data[position] = (byte) (value >>> 8);
+      this.data[position + 1] = (byte) value;
+    }
+
+    public byte[] toByteArray() {
+      byte[] bytes = new byte[this.length];
+      System.arraycopy(this.data, 0, bytes, 0, this.length);
+      return bytes;
+    }
+  }
+}
@@ -0,0 +1,120 @@
+package jniosemu.emulator.jit;
+
+import jniosemu.emulator.Breakpoints;
+import jniosemu.emulator.memory.MemoryBlock;
+
+/**
+ * Super class of the classes generated by JitCompiler. The generated run() keeps the registers in
+ * local variables while running and only writes them back when it returns.
+ */
+public abstract class CompiledCode {
+  /** Address where the code is entered */
+  private int startAddr;
+  /** Addresses of all instructions that are compiled */
+  private int[] addresses;
+  /** MemoryBlock the instructions were decoded from */
+  private MemoryBlock memoryBlock;
+  /** Code version of the MemoryBlock when the instructions were decoded */
+  private int codeVersion;
+  /** Bit mask of the registers the code can write */
+  private int writtenRegisters;
+  /** Breakpoint version that containsBreakpoint was calculated for */
+  private int breakpointVersion = -1;
+
+  private boolean containsBreakpoint = false;
+  /** Number of times in a row the code returned without running any instruction */
+  private int deopts = 0;
+
+  protected CompiledCode() {}
+
+  /**
+   * Set up the code after the generated class is instantiated
+   *
+   * @calledby JitCompiler.compile()
+   */
+  void init(int startAddr, int[] addresses, MemoryBlock memoryBlock, int codeVersion, int written) {
+    this.startAddr = startAddr;
+    this.addresses = addresses;
+    this.memoryBlock = memoryBlock;
+    this.codeVersion = codeVersion;
+    this.writtenRegisters = written;
+  }
+
+  /**
+   * Run the code from the start address until it leaves the compiled instructions, runs out of
+   * budget or has to let the interpreter run an instruction.
+   *
+   * @calledby JitManager.run()
+   * @param registers Register values, updated with the written registers on return
+   * @param runtime Memory access and instruction counters
+   * @return Address of the next instruction to run
+   */
+  public abstract int run(int[] registers, JitRuntime runtime);
+
+  public int getStartAddr() {
+    return this.startAddr;
+  }
+
+  public int getLength() {
+    return this.addresses.length;
+  }
+
+  /**
+   * Get the registers the code can write
+   *
+   * @return Bit mask where bit n is register n
+   */
+  public int getWrittenRegisters() {
+    return this.writtenRegisters;
+  }
+
+  /**
+   * Check that no compiled instruction has been written since it was decoded
+   *
+   * @calledby JitManager.get()
+   * @return True if the code can still be run
+   */
+  public boolean isValid() {
+    return this.codeVersion == this.memoryBlock.getCodeVersion();
+  }
+
+  /**
+   * Check if a breakpoint is placed on any compiled instruction. Code with a breakpoint is left to
+   * the interpreter since it can't stop in the middle.
+   *
+   * @calledby EmulatorManager.runBlock()
+   * @calls Breakpoints.isSet()
+   * @param breakpoints Current breakpoints
+   * @return True if a breakpoint is placed on a compiled instruction
+   */
+  public boolean containsBreakpoint(Breakpoints breakpoints) {
+    int version = breakpoints.getVersion();
+    if (this.breakpointVersion != version) {
+      this.containsBreakpoint = false;
+      for (int addr : this.addresses) {
+        if (breakpoints.isSet(addr)) {
+          this.containsBreakpoint = true;
+          break;
+        }
+      }
+
+      this.breakpointVersion = version;
+    }
+
+    return this.containsBreakpoint;
+  }
+
+  /**
+   * Keep count of runs that had to go back to the interpreter before the first instruction
+   *
+   * @calledby JitManager.run()
+   * @param retired Number of instructions the last run retired
+   * @return Number of such runs in a row
+   */
+  int countDeopt(int retired) {
+    if (retired == 0) return ++this.deopts;
+
+    this.deopts = 0;
+    return 0;
+  }
+}
@@ -0,0 +1,828 @@
+package jniosemu.emulator.jit;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.TreeMap;
+import jniosemu.emulator.jit.ClassFileWriter.Code;
+import jniosemu.emulator.jit.ClassFileWriter.Label;
+import jniosemu.emulator.memory.Memory;
+import jniosemu.emulator.register.Register;
+import jniosemu.instruction.InstructionException;
+import jniosemu.instruction.InstructionManager;
+
+/**
+ * Compiles a region of hot Nios II code into a JVM class. The region is every instruction that can
+ * be reached from the start address through branches and direct calls, so loops become real JVM
+ * loops that HotSpot can optimize. Instructions that can't be compiled, IO access and indirect jumps
+ * leave the compiled code and let the interpreter continue.
+ */
+class JitCompiler {
+  /** Max number of instructions in one region */
+  public static final int MAXINSTRUCTIONS = 128;
+  /** HotSpot doesn't compile methods with more bytecode than this */
+  private static final int MAXCODESIZE = 8000;
+
+  private static final String CLASSNAME = "jniosemu/emulator/jit/CompiledRegion";
+  private static final String SUPERNAME = "jniosemu/emulator/jit/CompiledCode";
+  private static final String RUNTIMENAME = "jniosemu/emulator/jit/JitRuntime";
+
+  /** Local variable holding the register array */
+  private static final int REGISTERS = 1;
+  /** Local variable holding the JitRuntime */
+  private static final int RUNTIME = 2;
+  /** Local variable of register 0, the other registers follow */
+  private static final int REGISTER0 = 3;
+  /** Local variable counting retired instructions */
+  private static final int RETIRED = 35;
+  /** Local variable holding the instruction budget */
+  private static final int BUDGET = 36;
+  /** Local variable holding the address to return */
+  private static final int PC = 37;
+  /** Local variable holding the result of a load, takes two slots */
+  private static final int LOADED = 38;
+  /** Local variable for temporary values */
+  private static final int TMP = 40;
+
+  private static final int MAXLOCALS = 41;
+
+  private static final int MAXSTACK = 8;
+
+  /** Names of the instructions that can be compiled */
+  private static final HashSet<String> SUPPORTED =
+      new HashSet<String>(
+          Arrays.asList(
+              "ADD", "ADDI", "AND", "ANDHI", "ANDI", "BEQ", "BGE", "BGEU", "BLT", "BLTU", "BNE",
+              "BR", "CALL", "CALLR", "CMPEQ", "CMPEQI", "CMPGE", "CMPGEI", "CMPGEU", "CMPGEUI",
+              "CMPLT", "CMPLTI", "CMPLTU", "CMPLTUI", "CMPNE", "CMPNEI", "DIV", "DIVU", "JMP",
+              "LDB", "LDBIO", "LDBU", "LDBUIO", "LDH", "LDHIO", "LDHU", "LDHUIO", "LDW", "LDWIO",
+              "MUL", "MULI", "MULXSS", "MULXSU", "MULXUU", "NEXTPC", "NOR", "OR", "ORHI", "ORI",
+              "RET", "ROL", "ROLI", "ROR", "SLL", "SLLI", "SRA", "SRAI", "SRL", "SRLI", "STB",
+              "STBIO", "STH", "STHIO", "STW", "STWIO", "SUB", "XOR", "XORHI", "XORI"));
+
+  /** Kinds of out of line code */
+  private static final int STUB_EXIT = 0;
+
+  private static final int STUB_JUMP = 1;
+
+  private static final int STUB_STORE = 2;
+
+  /** Out of line code placed after the instructions */
+  private static class Stub {
+    Label label;
+    int kind;
+    int addr;
+    int count;
+  }
+
+  /** Memory the instructions are read from */
+  private final Memory memoryBlock;
+  /** Opcodes of the instructions in the region keyed by address */
+  private TreeMap<Integer, Integer> region = new TreeMap<Integer, Integer>();
+  /** Instruction names of the instructions in the region keyed by address */
+  private HashMap<Integer, String> names = new HashMap<Integer, String>();
+
+  private Code code;
+  /** Labels of the instructions that are jumped to */
+  private HashMap<Integer, Label> labels = new HashMap<Integer, Label>();
+  /** Stubs that leave the code before an instruction, keyed by address */
+  private HashMap<Integer, Label> deopts = new HashMap<Integer, Label>();
+
+  private ArrayList<Stub> stubs = new ArrayList<Stub>();
+
+  private Label exit;
+  /** Bit mask of the registers that are written */
+  private int written = 0;
+
+  private JitCompiler(Memory memoryBlock) {
+    this.memoryBlock = memoryBlock;
+  }
+
+  /**
+   * Compile the code reachable from an address. The region is made smaller if the generated code
+   * gets too big for HotSpot to compile.
+   *
+   * @calledby JitManager.compile()
+   * @param memoryBlock Memory the code is placed in
+   * @param startAddr Address the code is entered at
+   * @return Compiled code or null if the instruction at the address can't be compiled
+   */
+  public static CompiledCode compile(Memory memoryBlock, int startAddr) {
+    for (int max = MAXINSTRUCTIONS; max > 0; max /= 2) {
+      JitCompiler compiler = new JitCompiler(memoryBlock);
+      int codeVersion = memoryBlock.getCodeVersion();
+      if (!compiler.collect(startAddr, max)) return null;
+
+      byte[] bytes = compiler.generate(startAddr);
+      if (bytes == null) continue;
+
+      // Decoding may have filled the instruction cache but not changed any code
+      if (codeVersion != memoryBlock.getCodeVersion()) return null;
+
+      try {
+        Class<?> c = MethodHandles.lookup().defineHiddenClass(bytes, true).lookupClass();
+        CompiledCode code = (CompiledCode) c.getDeclaredConstructor().newInstance();
+
+        int[] addresses = new int[compiler.region.size()];
+        int i = 0;
+        for (int addr : compiler.region.keySet()) addresses[i++] = addr;
+
+        code.init(startAddr, addresses, memoryBlock, codeVersion, compiler.written);
+        return code;
+      } catch (ReflectiveOperationException e) {
+        return null;
+      } catch (LinkageError e) {
+        return null;
+      }
+    }
+
+    return null;
+  }
+
+  private static int fieldA(int opCode) {
+    return (opCode >>> 27) & 0x1F;
+  }
+
+  private static int fieldB(int opCode) {
+    return (opCode >>> 22) & 0x1F;
+  }
+
+  private static int fieldC(int opCode) {
+    return (opCode >>> 17) & 0x1F;
+  }
+
+  private static int immI(int opCode) {
+    return (short) (opCode >>> 6);
+  }
+
+  private static int immR(int opCode) {
+    return (opCode >>> 6) & 0x1F;
+  }
+
+  private static int immJ(int opCode) {
+    return (opCode >>> 6) & 0x3FFFFFF;
+  }
+
+  private static boolean isConditionalBranch(String name) {
+    return name.equals("BEQ")
+        || name.equals("BNE")
+        || name.equals("BGE")
+        || name.equals("BGEU")
+        || name.equals("BLT")
+        || name.equals("BLTU");
+  }
+
+  private static boolean fallsThrough(String name) {
+    return !(name.equals("BR")
+        || name.equals("CALL")
+        || name.equals("CALLR")
+        || name.equals("JMP")
+        || name.equals("RET"));
+  }
+
+  /**
+   * Get the address a branch or direct call goes to
+   *
+   * @param addr Address of the instruction
+   * @param opCode Opcode of the instruction
+   * @param name Name of the instruction
+   * @return Target address
+   */
+  private static int target(int addr, int opCode, String name) {
+    if (name.equals("CALL")) return immJ(opCode) * 4;
+
+    return addr + 4 + immI(opCode);
+  }
+
+  /**
+   * Decode an instruction and check that it can be compiled
+   *
+   * @calledby collect()
+   * @param addr Address of the instruction
+   * @return Name of the instruction or null if it can't be compiled
+   */
+  private String decode(int addr) {
+    if ((addr & 0x3) != 0 || !this.memoryBlock.inRange(addr) || !this.memoryBlock.inRange(addr + 3))
+      return null;
+
+    int opCode = this.memoryBlock.readRawInt(addr);
+    if (opCode == 0) return null;
+
+    // Decoding makes the memory notice writes to the instruction
+    try {
+      this.memoryBlock.getInstruction(addr);
+    } catch (InstructionException e) {
+      return null;
+    }
+
+    String name = InstructionManager.getInfo(opCode).getName().toUpperCase();
+    if (!SUPPORTED.contains(name)) return null;
+
+    switch (InstructionManager.getInfo(opCode).getType()) {
+      case ITYPE:
+        if (!Register.isImplemented(fieldA(opCode)) || !Register.isImplemented(fieldB(opCode)))
+          return null;
+        break;
+      case RTYPE:
+        if (!Register.isImplemented(fieldA(opCode))
+            || !Register.isImplemented(fieldB(opCode))
+            || !Register.isImplemented(fieldC(opCode))) return null;
+        break;
+    }
+
+    // A jump to itself ends the program, which is left to the interpreter
+    if (isConditionalBranch(name) || name.equals("BR")) {
+      if ((immI(opCode) & 0x3) != 0 || immI(opCode) == -4) return null;
+    } else if (name.equals("CALL")) {
+      if (target(addr, opCode, name) == addr) return null;
+    }
+
+    return name;
+  }
+
+  /**
+   * Find the instructions to compile
+   *
+   * @calledby compile()
+   * @param startAddr Address the code is entered at
+   * @param max Max number of instructions
+   * @return False if the first instruction can't be compiled
+   */
+  private boolean collect(int startAddr, int max) {
+    ArrayDeque<Integer> work = new ArrayDeque<Integer>();
+    HashSet<Integer> rejected = new HashSet<Integer>();
+    work.add(startAddr);
+
+    while (!work.isEmpty() && this.region.size() < max) {
+      int addr = work.poll();
+      if (this.region.containsKey(addr) || rejected.contains(addr)) continue;
+
+      String name = this.decode(addr);
+      if (name == null) {
+        rejected.add(addr);
+        continue;
+      }
+
+      int opCode = this.memoryBlock.readRawInt(addr);
+      this.region.put(addr, opCode);
+      this.names.put(addr, name);
+
+      if (isConditionalBranch(name) || name.equals("BR") || name.equals("CALL"))
+        work.add(target(addr, opCode, name));
+      if (fallsThrough(name)) work.add(addr + 4);
+    }
+
+    return this.region.containsKey(startAddr);
+  }
+
+  /**
+   * Generate the class
+   *
+   * @calledby compile()
+   * @param startAddr Address the code is entered at
+   * @return Class file or null if the code is too big
+   */
+  private byte[] generate(int startAddr) {
+    ClassFileWriter classFile = new ClassFileWriter(CLASSNAME, SUPERNAME);
+
+    Code init = new Code(classFile, 1, 1);
+    init.local(Code.ALOAD, 0);
+    init.invoke(Code.INVOKESPECIAL, SUPERNAME, "<init>", "()V");
+    init.op(Code.RETURN);
+    classFile.addMethod("<init>", "()V", init);
+
+    this.code = new Code(classFile, MAXSTACK, MAXLOCALS);
+    this.code.frameObject(CLASSNAME);
+    this.code.frameObject("[I");
+    this.code.frameObject(RUNTIMENAME);
+    for (int i = 0; i < 32; i++) this.code.frameInt();
+    this.code.frameInt();
+    this.code.frameInt();
+    this.code.frameInt();
+    this.code.frameLong();
+    this.code.frameInt();
+
+    // Every local is set up before the first frame so that all frames can be the same
+    this.code.iconst(0);
+    this.code.local(Code.ISTORE, REGISTER0);
+    for (int i = 1; i < 32; i++) {
+      this.code.local(Code.ALOAD, REGISTERS);
+      this.code.iconst(i);
+      this.code.op(Code.IALOAD);
+      this.code.local(Code.ISTORE, REGISTER0 + i);
+    }
+    this.code.iconst(0);
+    this.code.local(Code.ISTORE, RETIRED);
+    this.code.local(Code.ALOAD, RUNTIME);
+    this.code.field(Code.GETFIELD, RUNTIMENAME, "budget", "I");
+    this.code.local(Code.ISTORE, BUDGET);
+    this.code.iconst(0);
+    this.code.local(Code.ISTORE, PC);
+    this.code.lconst(0);
+    this.code.local(Code.LSTORE, LOADED);
+    this.code.iconst(0);
+    this.code.local(Code.ISTORE, TMP);
+
+    this.exit = this.code.newLabel();
+
+    // Instructions that are jumped to, or that don't follow an instruction falling through to them
+    for (Map.Entry<Integer, String> entry : this.names.entrySet()) {
+      int addr = entry.getKey();
+      String name = entry.getValue();
+      if (isConditionalBranch(name) || name.equals("BR") || name.equals("CALL")) {
+        int target = target(addr, this.region.get(addr), name);
+        if (this.region.containsKey(target)) this.label(target);
+      }
+
+      String previous = this.names.get(addr - 4);
+      if (addr == startAddr || previous == null || !fallsThrough(previous)) this.label(addr);
+    }
+
+    if (this.region.firstKey() != startAddr) this.code.jump(Code.GOTO, this.label(startAddr));
+
+    int count = 0;
+    for (Map.Entry<Integer, Integer> entry : this.region.entrySet()) {
+      int addr = entry.getKey();
+      Label label = this.labels.get(addr);
+      if (label != null) {
+        this.code.bind(label);
+        count = 0;
+      }
+
+      boolean next = this.instruction(addr, entry.getValue(), this.names.get(addr), count);
+      count++;
+
+      if (next) {
+        if (!this.region.containsKey(addr + 4)) {
+          this.exitTo(addr + 4, count);
+        } else if (this.labels.containsKey(addr + 4)) {
+          this.code.iinc(RETIRED, count);
+        }
+      }
+    }
+
+    for (int i = 0; i < this.stubs.size(); i++) this.stub(this.stubs.get(i));
+
+    this.code.bind(this.exit);
+    for (int i = 1; i < 32; i++) {
+      if ((this.written >>> i & 1) != 0) {
+        this.code.local(Code.ALOAD, REGISTERS);
+        this.code.iconst(i);
+        this.code.local(Code.ILOAD, REGISTER0 + i);
+        this.code.op(Code.IASTORE);
+      }
+    }
+    this.code.local(Code.ALOAD, RUNTIME);
+    this.code.local(Code.ILOAD, RETIRED);
+    this.code.field(Code.PUTFIELD, RUNTIMENAME, "retired", "I");
+    this.code.local(Code.ILOAD, PC);
+    this.code.op(Code.IRETURN);
+
+    if (this.code.length() >= MAXCODESIZE) return null;
+
+    classFile.addMethod("run", "([IL" + RUNTIMENAME + ";)I", this.code);
+    return classFile.toByteArray();
+  }
+
+  private Label label(int addr) {
+    Label label = this.labels.get(addr);
+    if (label == null) {
+      label = this.code.newLabel();
+      this.labels.put(addr, label);
+    }
+
+    return label;
+  }
+
+  private Label stub(int kind, int addr, int count) {
+    Stub stub = new Stub();
+    stub.label = this.code.newLabel();
+    stub.kind = kind;
+    stub.addr = addr;
+    stub.count = count;
+    this.stubs.add(stub);
+    return stub.label;
+  }
+
+  /**
+   * Get a label that leaves the code before an instruction so that the interpreter runs it
+   *
+   * @param addr Address of the instruction
+   * @param count Number of instructions run since the retired counter was updated
+   * @return Label
+   */
+  private Label deopt(int addr, int count) {
+    Label label = this.deopts.get(addr);
+    if (label == null) {
+      label = this.stub(STUB_EXIT, addr, count);
+      this.deopts.put(addr, label);
+    }
+
+    return label;
+  }
+
+  private void stub(Stub stub) {
+    this.code.bind(stub.label);
+    switch (stub.kind) {
+      case STUB_EXIT:
+        this.exitTo(stub.addr, stub.count);
+        break;
+      case STUB_JUMP:
+        this.jumpTo(stub.addr, stub.count);
+        break;
+      case STUB_STORE:
+        // The value wasn't stored when the address isn't plain memory, otherwise code was written
+        this.code.local(Code.ILOAD, TMP);
+        this.code.iconst(JitRuntime.NOT_STORED);
+        this.code.jump(Code.IF_ICMPEQ, this.deopt(stub.addr, stub.count));
+        this.exitTo(stub.addr + 4, stub.count + 1);
+        break;
+    }
+  }
+
+  /**
+   * Leave the code
+   *
+   * @param addr Address of the next instruction to run
+   * @param count Number of instructions run since the retired counter was updated
+   */
+  private void exitTo(int addr, int count) {
+    this.code.iinc(RETIRED, count);
+    this.code.iconst(addr);
+    this.code.local(Code.ISTORE, PC);
+    this.code.jump(Code.GOTO, this.exit);
+  }
+
+  /**
+   * Continue at another instruction, inside the code while there is budget left
+   *
+   * @param addr Address of the next instruction to run
+   * @param count Number of instructions run since the retired counter was updated
+   */
+  private void jumpTo(int addr, int count) {
+    if (!this.region.containsKey(addr)) {
+      this.exitTo(addr, count);
+      return;
+    }
+
+    this.code.iinc(RETIRED, count);
+    this.code.local(Code.ILOAD, RETIRED);
+    this.code.local(Code.ILOAD, BUDGET);
+    this.code.jump(Code.IF_ICMPLT, this.label(addr));
+    this.exitTo(addr, 0);
+  }
+
+  private void loadRegister(int index) {
+    if (index == 0) {
+      this.code.iconst(0);
+    } else {
+      this.code.local(Code.ILOAD, REGISTER0 + index);
+    }
+  }
+
+  private void storeRegister(int index) {
+    if (index == 0) {
+      this.code.op(Code.POP);
+    } else {
+      this.code.local(Code.ISTORE, REGISTER0 + index);
+      this.written |= 1 << index;
+    }
+  }
+
+  /** Flip the sign bit so that a signed compare gives the unsigned result */
+  private void unsigned() {
+    this.code.iconst(Integer.MIN_VALUE);
+    this.code.op(Code.IXOR);
+  }
+
+  /**
+   * Write 1 to a register if the compare of the two values on the stack is true, otherwise 0
+   *
+   * @param opcode If instruction that jumps when the result is true
+   * @param index Register to write
+   */
+  private void compare(int opcode, int index) {
+    Label isTrue = this.code.newLabel();
+    Label done = this.code.newLabel();
+    this.code.jump(opcode, isTrue);
+    this.code.iconst(0);
+    this.code.local(Code.ISTORE, TMP);
+    this.code.jump(Code.GOTO, done);
+    this.code.bind(isTrue);
+    this.code.iconst(1);
+    this.code.local(Code.ISTORE, TMP);
+    this.code.bind(done);
+    this.code.local(Code.ILOAD, TMP);
+    this.storeRegister(index);
+  }
+
+  private void arithmetic(int opCode, int opcode) {
+    this.loadRegister(fieldA(opCode));
+    this.loadRegister(fieldB(opCode));
+    this.code.op(opcode);
+    this.storeRegister(fieldC(opCode));
+  }
+
+  private void immediate(int opCode, int value, int opcode) {
+    this.loadRegister(fieldA(opCode));
+    this.code.iconst(value);
+    this.code.op(opcode);
+    this.storeRegister(fieldB(opCode));
+  }
+
+  private void shift(int opCode, int opcode) {
+    this.loadRegister(fieldA(opCode));
+    this.loadRegister(fieldB(opCode));
+    this.code.iconst(0xF);
+    this.code.op(Code.IAND);
+    this.code.op(opcode);
+    this.storeRegister(fieldC(opCode));
+  }
+
+  private void rotate(int opCode, String method, boolean immediate) {
+    this.loadRegister(fieldA(opCode));
+    if (immediate) {
+      this.code.iconst(immR(opCode));
+    } else {
+      this.loadRegister(fieldB(opCode));
+      this.code.iconst(0xF);
+      this.code.op(Code.IAND);
+    }
+    this.code.invoke(Code.INVOKESTATIC, "java/lang/Integer", method, "(II)I");
+    this.storeRegister(fieldC(opCode));
+  }
+
+  private void compareRegisters(int opCode, int opcode, boolean unsigned) {
+    this.loadRegister(fieldA(opCode));
+    if (unsigned) this.unsigned();
+    this.loadRegister(fieldB(opCode));
+    if (unsigned) this.unsigned();
+    this.compare(opcode, fieldC(opCode));
+  }
+
+  private void compareImmediate(int opCode, int value, int opcode, boolean unsigned) {
+    this.loadRegister(fieldA(opCode));
+    if (unsigned) this.unsigned();
+    this.code.iconst(unsigned ? value ^ Integer.MIN_VALUE : value);
+    this.compare(opcode, fieldB(opCode));
+  }
+
+  private void multiplyHigh(int opCode, boolean unsignedA, boolean unsignedB) {
+    this.loadRegister(fieldA(opCode));
+    this.code.op(Code.I2L);
+    if (unsignedA) {
+      this.code.lconst(0xFFFFFFFFL);
+      this.code.op(Code.LAND);
+    }
+    this.loadRegister(fieldB(opCode));
+    this.code.op(Code.I2L);
+    if (unsignedB) {
+      this.code.lconst(0xFFFFFFFFL);
+      this.code.op(Code.LAND);
+    }
+    this.code.op(Code.LMUL);
+    this.code.iconst(32);
+    this.code.op(Code.LUSHR);
+    this.code.op(Code.L2I);
+    this.storeRegister(fieldC(opCode));
+  }
+
+  private void divide(int addr, int opCode, int count, boolean unsigned) {
+    this.loadRegister(fieldB(opCode));
+    this.code.jump(Code.IFEQ, this.deopt(addr, count));
+    this.loadRegister(fieldA(opCode));
+    this.loadRegister(fieldB(opCode));
+    if (unsigned) {
+      this.code.invoke(Code.INVOKESTATIC, "java/lang/Integer", "divideUnsigned", "(II)I");
+    } else {
+      this.code.op(Code.IDIV);
+    }
+    this.storeRegister(fieldC(opCode));
+  }
+
+  private void load(int addr, int opCode, int count, String method, int mask) {
+    this.code.local(Code.ALOAD, RUNTIME);
+    this.loadRegister(fieldA(opCode));
+    this.code.iconst(immI(opCode));
+    this.code.op(Code.IADD);
+    this.code.invoke(Code.INVOKEVIRTUAL, RUNTIMENAME, method, "(I)J");
+    this.code.local(Code.LSTORE, LOADED);
+    this.code.local(Code.LLOAD, LOADED);
+    this.code.lconst(0);
+    this.code.op(Code.LCMP);
+    this.code.jump(Code.IFLT, this.deopt(addr, count));
+    this.code.local(Code.LLOAD, LOADED);
+    this.code.op(Code.L2I);
+    if (mask != 0) {
+      this.code.iconst(mask);
+      this.code.op(Code.IAND);
+    }
+    this.storeRegister(fieldB(opCode));
+  }
+
+  private void store(int addr, int opCode, int count, String method) {
+    this.code.local(Code.ALOAD, RUNTIME);
+    this.loadRegister(fieldA(opCode));
+    this.code.iconst(immI(opCode));
+    this.code.op(Code.IADD);
+    this.loadRegister(fieldB(opCode));
+    this.code.invoke(Code.INVOKEVIRTUAL, RUNTIMENAME, method, "(II)I");
+    this.code.local(Code.ISTORE, TMP);
+    this.code.local(Code.ILOAD, TMP);
+    this.code.jump(Code.IFNE, this.stub(STUB_STORE, addr, count));
+  }
+
+  private void branch(int addr, int opCode, int count, int opcode, boolean unsigned) {
+    this.loadRegister(fieldA(opCode));
+    if (unsigned) this.unsigned();
+    this.loadRegister(fieldB(opCode));
+    if (unsigned) this.unsigned();
+    this.code.jump(opcode, this.stub(STUB_JUMP, addr + 4 + immI(opCode), count + 1));
+  }
+
+  /**
+   * Jump to an address in a register. The interpreter takes over if the address isn't valid or if
+   * the jump ends the program.
+   */
+  private void indirect(int addr, int opCode, int count, String name) {
+    if (name.equals("RET")) {
+      this.loadRegister(31);
+    } else if (name.equals("CALLR") && fieldA(opCode) == 31) {
+      // ra is written before it is read
+      this.code.iconst(addr + 4);
+    } else {
+      this.loadRegister(fieldA(opCode));
+    }
+    this.code.local(Code.ISTORE, TMP);
+
+    this.code.local(Code.ILOAD, TMP);
+    this.code.iconst(0x3);
+    this.code.op(Code.IAND);
+    this.code.jump(Code.IFNE, this.deopt(addr, count));
+    this.code.local(Code.ILOAD, TMP);
+    this.code.iconst(addr);
+    this.code.jump(Code.IF_ICMPEQ, this.deopt(addr, count));
+
+    if (name.equals("CALLR")) {
+      this.code.iconst(addr + 4);
+      this.storeRegister(31);
+    }
+
+    this.code.iinc(RETIRED, count + 1);
+    this.code.local(Code.ILOAD, TMP);
+    this.code.local(Code.ISTORE, PC);
+    this.code.jump(Code.GOTO, this.exit);
+  }
+
+  /**
+   * Generate the code of one instruction
+   *
+   * @param addr Address of the instruction
+   * @param opCode Opcode of the instruction
+   * @param name Name of the instruction
+   * @param count Number of instructions run since the retired counter was updated
+   * @return True if the instruction can continue with the next one
+   */
+  private boolean instruction(int addr, int opCode, String name, int count) {
+    int imm = immI(opCode);
+
+    if (name.equals("ADD")) {
+      this.arithmetic(opCode, Code.IADD);
+    } else if (name.equals("SUB")) {
+      this.arithmetic(opCode, Code.ISUB);
+    } else if (name.equals("AND")) {
+      this.arithmetic(opCode, Code.IAND);
+    } else if (name.equals("OR")) {
+      this.arithmetic(opCode, Code.IOR);
+    } else if (name.equals("XOR")) {
+      this.arithmetic(opCode, Code.IXOR);
+    } else if (name.equals("MUL")) {
+      this.arithmetic(opCode, Code.IMUL);
+    } else if (name.equals("NOR")) {
+      this.loadRegister(fieldA(opCode));
+      this.loadRegister(fieldB(opCode));
+      this.code.op(Code.IOR);
+      this.code.iconst(-1);
+      this.code.op(Code.IXOR);
+      this.storeRegister(fieldC(opCode));
+    } else if (name.equals("DIV")) {
+      this.divide(addr, opCode, count, false);
+    } else if (name.equals("DIVU")) {
+      this.divide(addr, opCode, count, true);
+    } else if (name.equals("MULXSS")) {
+      this.multiplyHigh(opCode, false, false);
+    } else if (name.equals("MULXSU")) {
+      this.multiplyHigh(opCode, false, true);
+    } else if (name.equals("MULXUU")) {
+      this.multiplyHigh(opCode, true, true);
+    } else if (name.equals("SLL")) {
+      this.shift(opCode, Code.ISHL);
+    } else if (name.equals("SRA")) {
+      this.shift(opCode, Code.ISHR);
+    } else if (name.equals("SRL")) {
+      this.shift(opCode, Code.IUSHR);
+    } else if (name.equals("ROL")) {
+      this.rotate(opCode, "rotateLeft", false);
+    } else if (name.equals("ROR")) {
+      this.rotate(opCode, "rotateRight", false);
+    } else if (name.equals("ROLI")) {
+      this.rotate(opCode, "rotateLeft", true);
+    } else if (name.equals("SLLI") || name.equals("SRAI") || name.equals("SRLI")) {
+      this.loadRegister(fieldA(opCode));
+      this.code.iconst(immR(opCode));
+      this.code.op(name.equals("SLLI") ? Code.ISHL : name.equals("SRAI") ? Code.ISHR : Code.IUSHR);
+      this.storeRegister(fieldC(opCode));
+    } else if (name.equals("NEXTPC")) {
+      this.code.iconst(addr + 4);
+      this.storeRegister(fieldC(opCode));
+    } else if (name.equals("CMPEQ")) {
+      this.compareRegisters(opCode, Code.IF_ICMPEQ, false);
+    } else if (name.equals("CMPNE")) {
+      this.compareRegisters(opCode, Code.IF_ICMPNE, false);
+    } else if (name.equals("CMPGE")) {
+      this.compareRegisters(opCode, Code.IF_ICMPGE, false);
+    } else if (name.equals("CMPLT")) {
+      this.compareRegisters(opCode, Code.IF_ICMPLT, false);
+    } else if (name.equals("CMPGEU")) {
+      this.compareRegisters(opCode, Code.IF_ICMPGE, true);
+    } else if (name.equals("CMPLTU")) {
+      this.compareRegisters(opCode, Code.IF_ICMPLT, true);
+    } else if (name.equals("ADDI")) {
+      this.immediate(opCode, imm, Code.IADD);
+    } else if (name.equals("ANDI")) {
+      this.immediate(opCode, imm, Code.IAND);
+    } else if (name.equals("ORI")) {
+      this.immediate(opCode, imm, Code.IOR);
+    } else if (name.equals("XORI")) {
+      this.immediate(opCode, imm & 0xFFFF, Code.IXOR);
+    } else if (name.equals("MULI")) {
+      this.immediate(opCode, imm, Code.IMUL);
+    } else if (name.equals("ANDHI")) {
+      this.immediate(opCode, imm << 16, Code.IAND);
+    } else if (name.equals("ORHI")) {
+      this.immediate(opCode, imm << 16, Code.IOR);
+    } else if (name.equals("XORHI")) {
+      this.immediate(opCode, imm << 16, Code.IXOR);
+    } else if (name.equals("CMPEQI")) {
+      this.compareImmediate(opCode, imm, Code.IF_ICMPEQ, false);
+    } else if (name.equals("CMPNEI")) {
+      this.compareImmediate(opCode, imm, Code.IF_ICMPNE, false);
+    } else if (name.equals("CMPGEI")) {
+      this.compareImmediate(opCode, imm, Code.IF_ICMPGE, false);
+    } else if (name.equals("CMPLTI")) {
+      this.compareImmediate(opCode, imm, Code.IF_ICMPLT, false);
+    } else if (name.equals("CMPGEUI")) {
+      this.compareImmediate(opCode, imm & 0xFFFF, Code.IF_ICMPGE, true);
+    } else if (name.equals("CMPLTUI")) {
+      this.compareImmediate(opCode, imm & 0xFFFF, Code.IF_ICMPLT, true);
+    } else if (name.equals("LDB") || name.equals("LDBIO")) {
+      this.load(addr, opCode, count, "loadByte", 0);
+    } else if (name.equals("LDBU") || name.equals("LDBUIO")) {
+      this.load(addr, opCode, count, "loadByte", 0xFF);
+    } else if (name.equals("LDH") || name.equals("LDHIO")) {
+      this.load(addr, opCode, count, "loadShort", 0);
+    } else if (name.equals("LDHU") || name.equals("LDHUIO")) {
+      this.load(addr, opCode, count, "loadShort", 0xFFFF);
+    } else if (name.equals("LDW") || name.equals("LDWIO")) {
+      this.load(addr, opCode, count, "loadWord", 0);
+    } else if (name.equals("STB") || name.equals("STBIO")) {
+      this.store(addr, opCode, count, "storeByte");
+    } else if (name.equals("STH") || name.equals("STHIO")) {
+      this.store(addr, opCode, count, "storeShort");
+    } else if (name.equals("STW") || name.equals("STWIO")) {
+      this.store(addr, opCode, count, "storeWord");
+    } else if (name.equals("BEQ")) {
+      this.branch(addr, opCode, count, Code.IF_ICMPEQ, false);
+    } else if (name.equals("BNE")) {
+      this.branch(addr, opCode, count, Code.IF_ICMPNE, false);
+    } else if (name.equals("BGE")) {
+      this.branch(addr, opCode, count, Code.IF_ICMPGE, false);
+    } else if (name.equals("BLT")) {
+      this.branch(addr, opCode, count, Code.IF_ICMPLT, false);
+    } else if (name.equals("BGEU")) {
+      this.branch(addr, opCode, count, Code.IF_ICMPGE, true);
+    } else if (name.equals("BLTU")) {
+      this.branch(addr, opCode, count, Code.IF_ICMPLT, true);
+    } else if (name.equals("BR")) {
+      this.jumpTo(target(addr, opCode, name), count + 1);
+      return false;
+    } else if (name.equals("CALL")) {
+      this.code.iconst(addr + 4);
+      this.storeRegister(31);
+      this.jumpTo(target(addr, opCode, name), count + 1);
+      return false;
+    } else if (name.equals("JMP") || name.equals("RET") || name.equals("CALLR")) {
+      this.indirect(addr, opCode, count, name);
+      return false;
+    } else {
+      // decode() only lets the names above through
+      throw new IllegalStateException(name);
+    }
+
+    return true;
+  }
+}
@@ -0,0 +1,121 @@
+package jniosemu.emulator.jit;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import jniosemu.emulator.memory.Memory;
+import jniosemu.emulator.memory.MemoryBlock;
+import jniosemu.emulator.memory.MemoryException;
+import jniosemu.emulator.memory.MemoryManager;
+import jniosemu.emulator.register.RegisterManager;
+
+/** Keeps the compiled code and runs it */
+public class JitManager {
+  /** Number of times a basic block has to run before the code is compiled */
+  public static final int THRESHOLD = 200;
+  /** Max number of instructions after which compiled code returns as soon as it jumps */
+  public static final int BUDGET = 100000;
+  /** Number of runs in a row without progress before compiled code is thrown away */
+  private static final int MAXDEOPTS = 16;
+  /** Compiled code keyed by start address */
+  private HashMap<Integer, CompiledCode> compiled = new HashMap<Integer, CompiledCode>();
+  /** Start addresses that shouldn't be compiled again */
+  private HashSet<Integer> rejected = new HashSet<Integer>();
+  private MemoryManager memory = null;
+
+  private JitRuntime runtime = null;
+
+  /**
+   * Remove all compiled code, used when a new program is loaded
+   *
+   * @calledby EmulatorManager.load()
+   * @param memory MemoryManager the code will run against
+   */
+  public void clear(MemoryManager memory) {
+    this.compiled.clear();
+    this.rejected.clear();
+    this.memory = memory;
+    this.runtime = new JitRuntime(memory);
+  }
+
+  /**
+   * Get compiled code starting at an address
+   *
+   * @calledby EmulatorManager.runBlock()
+   * @param addr Start address
+   * @return Compiled code or null if there is no valid code for the address
+   */
+  public CompiledCode get(int addr) {
+    CompiledCode code = this.compiled.get(addr);
+    if (code == null) return null;
+
+    if (!code.isValid()) {
+      this.compiled.remove(addr);
+      return null;
+    }
+
+    return code;
+  }
+
+  /**
+   * Compile the code starting at an address
+   *
+   * @calledby EmulatorManager.runBlock()
+   * @calls JitCompiler.compile()
+   * @param addr Start address
+   */
+  public void compile(int addr) {
+    if (this.memory == null || this.compiled.containsKey(addr) || this.rejected.contains(addr))
+      return;
+
+    MemoryBlock memoryBlock;
+    try {
+      memoryBlock = this.memory.getBlock(addr);
+    } catch (MemoryException e) {
+      return;
+    }
+
+    CompiledCode code = null;
+    if (memoryBlock instanceof Memory) code = JitCompiler.compile((Memory) memoryBlock, addr);
+
+    if (code == null) {
+      this.rejected.add(addr);
+    } else {
+      this.compiled.put(addr, code);
+    }
+  }
+
+  /**
+   * Run compiled code directly on the register file
+   *
+   * @calledby EmulatorManager.runCompiled()
+   * @param code Compiled code
+   * @param register RegisterManager holding the registers
+   * @param budget Number of instructions after which the code returns as soon as it jumps, at most
+   *     BUDGET
+   * @return Address of the next instruction to run
+   */
+  public int run(CompiledCode code, RegisterManager register, int budget) {
+    this.runtime.budget = budget;
+    this.runtime.retired = 0;
+    int pc = code.run(register.getValues(), this.runtime);
+
+    register.markWritten(code.getWrittenRegisters());
+
+    // Code that always has to leave the first instruction to the interpreter is just overhead
+    if (code.countDeopt(this.runtime.retired) >= MAXDEOPTS) {
+      this.compiled.remove(code.getStartAddr());
+      this.rejected.add(code.getStartAddr());
+    }
+
+    return pc;
+  }
+
+  /**
+   * Get the number of instructions the last run retired
+   *
+   * @return Number of instructions
+   */
+  public int getRetired() {
+    return this.runtime.retired;
+  }
+}
@@ -0,0 +1,114 @@
+package jniosemu.emulator.jit;
+
+import jniosemu.emulator.memory.Memory;
+import jniosemu.emulator.memory.MemoryBlock;
+import jniosemu.emulator.memory.MemoryManager;
+
+/**
+ * Memory access used by compiled code. Only plain memory is handled, everything else (IO devices,
+ * addresses outside the memory) is left to the interpreter by returning a deoptimization result.
+ */
+public class JitRuntime {
+  /** Returned by the load methods when the interpreter has to run the instruction */
+  public static final long DEOPT = -1L;
+  /** Returned by the store methods when the value was written */
+  public static final int STORED = 0;
+  /** Returned by the store methods when the interpreter has to run the instruction */
+  public static final int NOT_STORED = 1;
+  /** Returned by the store methods when the value was written over decoded code */
+  public static final int CODE_CHANGED = 2;
+  /** Max number of instructions to run before returning, read by compiled code */
+  int budget;
+  /** Number of instructions run by the last compiled code, written by compiled code */
+  int retired;
+
+  private MemoryManager memory;
+  /** Memory used by the last access */
+  private Memory block = null;
+
+  /**
+   * Init JitRuntime
+   *
+   * @param memory MemoryManager that is accessed
+   */
+  public JitRuntime(MemoryManager memory) {
+    this.memory = memory;
+  }
+
+  /**
+   * Find the plain memory holding a whole access. Memory that the program may not both read and
+   * write is left to the interpreter, which checks the permissions, and so are accesses to pages
+   * with a watchpoint.
+   *
+   * @param addr Address of the first byte
+   * @param size Number of bytes
+   * @return Memory or null if the access isn't inside one plain memory
+   */
+  private Memory find(int addr, int size) {
+    if (this.memory.isWatched(addr, size)) return null;
+
+    Memory block = this.block;
+    if (block != null && block.inRange(addr) && block.inRange(addr + size - 1)) return block;
+
+    MemoryBlock memoryBlock = this.memory.findBlock(addr);
+    if (memoryBlock instanceof Memory
+        && memoryBlock.isReadable()
+        && memoryBlock.isWritable()
+        && memoryBlock.inRange(addr + size - 1)) {
+      this.block = (Memory) memoryBlock;
+      return this.block;
+    }
+
+    return null;
+  }
+
+  long loadByte(int addr) {
+    Memory block = this.find(addr, 1);
+    if (block == null) return DEOPT;
+
+    return block.readRawByte(addr) & 0xFFFFFFFFL;
+  }
+
+  long loadShort(int addr) {
+    Memory block = this.find(addr, 2);
+    if (block == null) return DEOPT;
+
+    short value =
+        (short) ((block.readRawByte(addr + 1) & 0xFF) << 8 | (block.readRawByte(addr) & 0xFF));
+    return value & 0xFFFFFFFFL;
+  }
+
+  long loadWord(int addr) {
+    Memory block = this.find(addr, 4);
+    if (block == null) return DEOPT;
+
+    return block.readRawInt(addr) & 0xFFFFFFFFL;
+  }
+
+  int storeByte(int addr, int value) {
+    Memory block = this.find(addr, 1);
+    if (block == null) return NOT_STORED;
+
+    int codeVersion = block.getCodeVersion();
+    block.writeByte(addr, (byte) value);
+    return block.getCodeVersion() == codeVersion ? STORED : CODE_CHANGED;
+  }
+
+  int storeShort(int addr, int value) {
+    Memory block = this.find(addr, 2);
+    if (block == null) return NOT_STORED;
+
+    int codeVersion = block.getCodeVersion();
+    block.writeShort(addr, (short) value);
+    return block.getCodeVersion() == codeVersion ? STORED : CODE_CHANGED;
+  }
+
+  int storeWord(int addr, int value) {
+    Memory block = this.find(addr, 4);
+    if (block == null) return NOT_STORED;
+
+    int codeVersion = block.getCodeVersion();
+    block.writeInt(addr, value);
+    return block.getCodeVersion() == codeVersion ? STORED : CODE_CHANGED;
+  }
+}
@@ -0,0 +1,170 @@
+package jniosemu.emulator.memory;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+import jniosemu.Utilities;
+
+/**
+ * Number of reads, writes and fetches of each word of a memory block. The counters are kept in
+ * pages that are allocated on the first access, so large memories that are mostly unused don't
+ * need counters for all of their words.
+ */
+public class AccessProfile {
+  /** The different kinds of accesses that are counted */
+  public static enum ACCESS {
+    READ,
+    WRITE,
+    FETCH
+  };
+
+  /** Number of word index bits within a page of counters */
+  private static final int PAGEBITS = 10;
+
+  /** Counters by access, page and word within the page */
+  private final int[][][] counts = new int[ACCESS.values().length][][];
+  /** Number of words in the block */
+  private final int words;
+  /** Largest number of accesses of any word, all kinds together */
+  private int max = 0;
+
+  /**
+   * Init AccessProfile, all counters are zero
+   *
+   * @calledby MemoryBlock.setProfiling()
+   * @param length Length of the block in bytes
+   */
+  public AccessProfile(int length) {
+    this.words = (length + 3) >>> 2;
+    for (int i = 0; i < this.counts.length; i++)
+      this.counts[i] = new int[((this.words - 1) >>> PAGEBITS) + 1][];
+  }
+
+  /**
+   * Count an access
+   *
+   * @calledby MemoryBlock.count()
+   * @param access Kind of access
+   * @param word Word index within the block
+   */
+  void count(ACCESS access, int word) {
+    if (word < 0 || word >= this.words) return;
+
+    int[][] pages = this.counts[access.ordinal()];
+    int[] page = pages[word >>> PAGEBITS];
+    if (page == null) {
+      page = new int[1 << PAGEBITS];
+      pages[word >>> PAGEBITS] = page;
+    }
+
+    page[word & ((1 << PAGEBITS) - 1)]++;
+
+    int total = this.getTotal(word);
+    if (total > this.max) this.max = total;
+  }
+
+  /**
+   * Get the number of accesses of a word
+   *
+   * @param access Kind of access
+   * @param word Word index within the block
+   * @return Number of accesses
+   */
+  public int get(ACCESS access, int word) {
+    if (word < 0 || word >= this.words) return 0;
+
+    int[] page = this.counts[access.ordinal()][word >>> PAGEBITS];
+    if (page == null) return 0;
+
+    return page[word & ((1 << PAGEBITS) - 1)];
+  }
+
+  /**
+   * Get the number of accesses of a word, all kinds together
+   *
+   * @param word Word index within the block
+   * @return Number of accesses
+   */
+  public int getTotal(int word) {
+    int total = 0;
+    for (ACCESS access : ACCESS.values()) total += this.get(access, word);
+
+    return total;
+  }
+
+  /**
+   * Get the largest number of accesses of any word, all kinds together
+   *
+   * @return Number of accesses
+   */
+  public int getMax() {
+    return this.max;
+  }
+
+  public int getWords() {
+    return this.words;
+  }
+
+  /**
+   * Write the profiles of the blocks that have one as CSV, one line for each word that has been
+   * accessed
+   *
+   * @calledby GUIMemoryView.exportProfile()
+   * @param blocks Memory blocks
+   * @param out Where to write
+   */
+  public static void writeCSV(List<MemoryBlock> blocks, PrintWriter out) {
+    out.println("block,address,reads,writes,fetches");
+
+    for (MemoryBlock block : blocks) {
+      AccessProfile profile = block.getProfile();
+      if (profile == null) continue;
+
+      for (int word = 0; word < profile.words; word++) {
+        if (profile.getTotal(word) == 0) continue;
+
+        out.println(
+            block.getName()
+                + ","
+                + Utilities.intToHexString(block.getStart() + (word << 2))
+                + ","
+                + profile.get(ACCESS.READ, word)
+                + ","
+                + profile.get(ACCESS.WRITE, word)
+                + ","
+                + profile.get(ACCESS.FETCH, word));
+      }
+    }
+
+    out.flush();
+  }
+
+  /**
+   * Write the profiles of the blocks that have one in a binary format: for each word that has been
+   * accessed its address, reads, writes and fetches as big-endian ints
+   *
+   * @calledby GUIMemoryView.exportProfile()
+   * @param blocks Memory blocks
+   * @param out Where to write
+   * @throws IOException If it can't be written
+   */
+  public static void writeBinary(List<MemoryBlock> blocks, DataOutputStream out)
+      throws IOException {
+    for (MemoryBlock block : blocks) {
+      AccessProfile profile = block.getProfile();
+      if (profile == null) continue;
+
+      for (int word = 0; word < profile.words; word++) {
+        if (profile.getTotal(word) == 0) continue;
+
+        out.writeInt(block.getStart() + (word << 2));
+        out.writeInt(profile.get(ACCESS.READ, word));
+        out.writeInt(profile.get(ACCESS.WRITE, word));
+        out.writeInt(profile.get(ACCESS.FETCH, word));
+      }
+    }
+
+    out.flush();
+  }
+}
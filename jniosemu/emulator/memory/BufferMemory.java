@@ -0,0 +1,273 @@
+package jniosemu.emulator.memory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.BitSet;
+import java.util.Vector;
+import jniosemu.emulator.SourceCode;
+import jniosemu.instruction.InstructionException;
+import jniosemu.instruction.emulator.Instruction;
+
+/**
+ * Memory kept in a direct ByteBuffer outside the Java heap. It is used for large memories, like
+ * the SDRAM of a board, so they don't make the heap or the garbage collection pauses larger.
+ *
+ * <p>Only the pages that have been written are shown in the memory view and cleared on reset.
+ *
+ * <p>The buffer can also be a file mapped into memory, then nothing is copied into the heap and
+ * the operating system only reads the pages that are used. A shared mapping keeps what is written
+ * on reset since it is already in the file, a private mapping is mapped again to get back the
+ * contents of the file.
+ */
+public class BufferMemory extends MemoryBlock {
+  /** Number of address bits within a page */
+  private static final int PAGEBITS = 12;
+  /** Max number of words in the memory view */
+  private static final int MAXVIEWWORDS = 4096;
+  /** Max number of pages that are disassembled */
+  private static final int MAXCODEPAGES = 16;
+
+  private ByteBuffer buffer;
+  /** Region the file is mapped from, null if the memory isn't backed by a file */
+  private MemoryMap.Region region = null;
+  /** Pages written since the last reset */
+  private BitSet dirty = new BitSet();
+  /** Pages instructions have been fetched from since the last reset */
+  private BitSet code = new BitSet();
+
+  /**
+   * Init BufferMemory, all bytes are zero
+   *
+   * @calledby MemoryManager()
+   * @param name Name of the part
+   * @param start External start address
+   * @param length Length of the memory part
+   */
+  public BufferMemory(String name, int start, int length) {
+    this.name = name;
+    this.start = start;
+    this.length = length;
+
+    this.buffer = ByteBuffer.allocateDirect(length).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  /**
+   * Init BufferMemory with a file mapped into it
+   *
+   * @calledby MemoryManager()
+   * @calls MemoryMap.Region.map()
+   * @param region Region with the file
+   * @throws IOException If the file can't be mapped
+   */
+  public BufferMemory(MemoryMap.Region region) throws IOException {
+    this.name = region.getName();
+    this.start = region.getStart();
+    this.length = region.getSize();
+    this.region = region;
+
+    this.buffer = region.map().order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  /**
+   * Map an address to an internal index and check that a whole access is inside the memory
+   *
+   * @param addr Memory address
+   * @param size Number of bytes
+   * @return Internal index
+   * @throws MemoryException If the access isn't inside the memory
+   */
+  private int check(int addr, int size) {
+    int mapAddr = this.mapAddr(addr);
+    if (mapAddr < 0 || mapAddr > this.length - size) throw new MemoryException(addr);
+
+    return mapAddr;
+  }
+
+  /**
+   * Mark the pages written by an access as dirty. Writing to a page that code has been fetched
+   * from changes the code version and updates the written words in the source code.
+   *
+   * @param mapAddr Internal index of the first written byte
+   * @param size Number of written bytes
+   */
+  private void written(int mapAddr, int size) {
+    int first = mapAddr >> PAGEBITS;
+    int last = (mapAddr + size - 1) >> PAGEBITS;
+    this.dirty.set(first, last + 1);
+
+    if (this.code.get(first) || this.code.get(last)) {
+      this.codeVersion++;
+      this.updateSourceCode(mapAddr, size);
+    }
+  }
+
+  public byte readByte(int addr) throws MemoryException {
+    int mapAddr = this.check(addr, 1);
+
+    this.setState(mapAddr, MemoryInt.STATE.READ);
+    return this.buffer.get(mapAddr);
+  }
+
+  public byte readRawByte(int addr) {
+    return this.buffer.get(this.check(addr, 1));
+  }
+
+  public void writeByte(int addr, byte value) throws MemoryException {
+    int mapAddr = this.check(addr, 1);
+
+    this.buffer.put(mapAddr, value);
+    this.written(mapAddr, 1);
+    this.setState(mapAddr, MemoryInt.STATE.WRITE);
+  }
+
+  public short readShort(int addr) throws MemoryException {
+    int mapAddr = this.check(addr, 2);
+
+    this.setState(mapAddr + 1, MemoryInt.STATE.READ);
+    this.setState(mapAddr, MemoryInt.STATE.READ);
+    return this.buffer.getShort(mapAddr);
+  }
+
+  public void writeShort(int addr, short value) throws MemoryException {
+    int mapAddr = this.check(addr, 2);
+
+    this.buffer.putShort(mapAddr, value);
+    this.written(mapAddr, 2);
+    for (int i = 0; i < 2; i++) this.setState(mapAddr + i, MemoryInt.STATE.WRITE);
+  }
+
+  public int readInt(int addr) throws MemoryException {
+    int mapAddr = this.check(addr, 4);
+
+    for (int i = 3; i >= 0; i--) this.setState(mapAddr + i, MemoryInt.STATE.READ);
+    return this.buffer.getInt(mapAddr);
+  }
+
+  public void writeInt(int addr, int value) throws MemoryException {
+    int mapAddr = this.check(addr, 4);
+
+    this.buffer.putInt(mapAddr, value);
+    this.written(mapAddr, 4);
+    for (int i = 0; i < 4; i++) this.setState(mapAddr + i, MemoryInt.STATE.WRITE);
+  }
+
+  public int readRawInt(int addr) {
+    return this.buffer.getInt(this.check(addr, 4));
+  }
+
+  /**
+   * Mark the page of an instruction as code, the source code is made again when a new page is
+   * marked
+   *
+   * @calledby fetch(), getInstruction()
+   * @param addr Memory address of the instruction
+   */
+  private void fetched(int addr) {
+    int page = this.check(addr, 4) >> PAGEBITS;
+    if (!this.code.get(page)) {
+      this.code.set(page);
+      this.sourceCode = null;
+    }
+  }
+
+  public int fetch(int addr) throws MemoryException, InstructionException {
+    this.fetched(addr);
+    return this.readInt(addr);
+  }
+
+  public Instruction getInstruction(int addr) throws MemoryException, InstructionException {
+    this.fetched(addr);
+    return super.getInstruction(addr);
+  }
+
+  /**
+   * Clear the pages that have been written since the last reset. A private mapping is mapped again
+   * instead and a shared mapping keeps its contents.
+   *
+   * @calledby MemoryManager.reset()
+   * @throws MemoryException If a private mapping can't be mapped again
+   */
+  public void reset() {
+    this.resetState();
+
+    this.resetChanges();
+    this.sourceCode = null;
+    this.codeVersion++;
+
+    if (this.region == null) {
+      for (int page = this.dirty.nextSetBit(0);
+          page >= 0;
+          page = this.dirty.nextSetBit(page + 1)) {
+        int to = Math.min((page + 1) << PAGEBITS, this.length);
+        for (int i = page << PAGEBITS; i < to; i++) this.buffer.put(i, (byte) 0);
+      }
+    } else if (this.region.getMapMode() == FileChannel.MapMode.PRIVATE && !this.dirty.isEmpty()) {
+      try {
+        this.buffer = this.region.map().order(ByteOrder.LITTLE_ENDIAN);
+      } catch (IOException e) {
+        throw new MemoryException("Can't map " + this.region.getFile() + ": " + e.getMessage());
+      }
+    }
+    this.dirty.clear();
+    this.code.clear();
+  }
+
+  public boolean resetState() {
+    this.clearState();
+    return false;
+  }
+
+  /**
+   * Get the words of the pages that have been written, the memory is too large to show all of it.
+   * A file that nothing has been written to shows its first page.
+   *
+   * @calledby GUIMemoryView
+   * @return Words of the written pages
+   */
+  public Vector<MemoryInt> getMemoryVector() {
+    Vector<MemoryInt> memoryVector = new Vector<MemoryInt>();
+
+    BitSet pages = this.dirty;
+    if (pages.isEmpty() && this.region != null) {
+      pages = new BitSet();
+      pages.set(0);
+    }
+
+    for (int page = pages.nextSetBit(0); page >= 0; page = pages.nextSetBit(page + 1)) {
+      int to = Math.min((page + 1) << PAGEBITS, this.length);
+      for (int i = page << PAGEBITS; i + 3 < to; i += 4) {
+        if (memoryVector.size() == MAXVIEWWORDS) return memoryVector;
+
+        byte[] memoryInt = new byte[4];
+        for (int j = 0; j < 4; j++) memoryInt[j] = this.buffer.get(i + j);
+        memoryVector.add(new MemoryInt(this.start + i, memoryInt, this));
+      }
+    }
+
+    return memoryVector;
+  }
+
+  /**
+   * Disassemble the pages instructions have been fetched from
+   *
+   * @calledby EmulatorManager.pcChange()
+   * @return Source code of the pages
+   */
+  public SourceCode getSourceCode() {
+    if (this.sourceCode == null) {
+      int first = Math.max(this.code.nextSetBit(0), 0);
+      int last = Math.min(Math.max(this.code.length() - 1, first), first + MAXCODEPAGES - 1);
+
+      int from = first << PAGEBITS;
+      int to = Math.min((last + 1) << PAGEBITS, this.length);
+      byte[] binaryCode = new byte[to - from];
+      for (int i = 0; i < binaryCode.length; i++) binaryCode[i] = this.buffer.get(from + i);
+
+      this.sourceCode = new SourceCode(binaryCode, this.start + from);
+    }
+
+    return this.sourceCode;
+  }
+}
@@ -0,0 +1,142 @@
+package jniosemu.emulator.memory;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the devices that have something to do ordered by the tick they are due at. There is one
+ * tick for every instruction, and a device is only advanced when it is due or when it asks to be
+ * brought up to date, so the devices that wait for nothing cost nothing while the program runs.
+ *
+ * <p>A device tells the scheduler when it next has to be advanced through
+ * MemoryBlock.nextEvent(), counted from the last tick it was advanced to. It must call schedule()
+ * every time something outside of MemoryBlock.tick() changes that, and sync() before it uses state
+ * that depends on the number of ticks, like the counter of the timer.
+ */
+public class DeviceScheduler {
+  /** Number of ticks since the last reset */
+  private long ticks = 0;
+  /** Tick the first scheduled block is due at, Long.MAX_VALUE if none is scheduled */
+  private volatile long nextDue = Long.MAX_VALUE;
+  /** Blocks that have something to do, the one that is due first at the head */
+  private PriorityQueue<MemoryBlock> queue =
+      new PriorityQueue<MemoryBlock>(
+          16,
+          new Comparator<MemoryBlock>() {
+            public int compare(MemoryBlock a, MemoryBlock b) {
+              return (a.due < b.due) ? -1 : ((a.due == b.due) ? 0 : 1);
+            }
+          });
+
+  /**
+   * Start again from tick zero and schedule the blocks that have something to do
+   *
+   * @calledby MemoryManager(), MemoryManager.reset()
+   * @calls schedule()
+   * @param blocks All blocks
+   */
+  public synchronized void reset(Iterable<MemoryBlock> blocks) {
+    this.ticks = 0;
+    this.queue.clear();
+
+    for (MemoryBlock block : blocks) {
+      block.tickedTo = 0;
+      this.schedule(block);
+    }
+  }
+
+  /**
+   * Advance the time and the blocks that are due. It is called once before every instruction, or
+   * afterwards with the number of instructions when compiled code has run.
+   *
+   * @calledby MemoryManager.tick()
+   * @calls runDue()
+   * @param count Number of ticks
+   */
+  public void tick(int count) {
+    this.ticks += count;
+    if (this.ticks >= this.nextDue) this.runDue();
+  }
+
+  /**
+   * Advance the blocks that are due and schedule them again
+   *
+   * @calledby tick()
+   * @calls advance(), schedule()
+   */
+  private synchronized void runDue() {
+    MemoryBlock block;
+    while ((block = this.queue.peek()) != null && block.due <= this.ticks) {
+      this.advance(block);
+      this.schedule(block);
+    }
+  }
+
+  /**
+   * Advance a block to the current tick
+   *
+   * @calledby runDue(), sync()
+   * @calls MemoryBlock.tick()
+   * @param block Block
+   */
+  private void advance(MemoryBlock block) {
+    long count = this.ticks - block.tickedTo;
+    block.tickedTo = this.ticks;
+    if (count > 0) block.tick(count);
+  }
+
+  /**
+   * Advance a block to the current tick, used by a device before it reads or changes state that
+   * depends on the time
+   *
+   * @calledby TimerDevice
+   * @calls advance()
+   * @param block Block
+   */
+  public synchronized void sync(MemoryBlock block) {
+    this.advance(block);
+  }
+
+  /**
+   * Put a block in the queue, or take it out if it has nothing to do. It may be called from another
+   * thread than the one running the program, like when a serial port gets input.
+   *
+   * @calledby reset(), runDue(), devices
+   * @calls MemoryBlock.nextEvent()
+   * @param block Block
+   */
+  public synchronized void schedule(MemoryBlock block) {
+    this.queue.remove(block);
+
+    long delay = block.nextEvent();
+    if (delay >= 0) {
+      block.due = block.tickedTo + delay;
+      this.queue.offer(block);
+    }
+
+    MemoryBlock first = this.queue.peek();
+    this.nextDue = (first == null) ? Long.MAX_VALUE : first.due;
+  }
+
+  /**
+   * Get the number of ticks that can pass before any device has something to do
+   *
+   * @calledby EmulatorManager.skipIdle()
+   * @return Number of ticks, Long.MAX_VALUE if no device is scheduled
+   */
+  public long getIdleTicks() {
+    long nextDue = this.nextDue;
+    if (nextDue == Long.MAX_VALUE) return Long.MAX_VALUE;
+
+    return Math.max(nextDue - this.ticks - 1, 0);
+  }
+
+  /**
+   * Get the number of ticks since the last reset
+   *
+   * @return Number of ticks
+   */
+  public long getTicks() {
+    return this.ticks;
+  }
+}
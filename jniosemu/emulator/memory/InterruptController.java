@@ -0,0 +1,169 @@
+package jniosemu.emulator.memory;
+
+import jniosemu.emulator.register.RegisterException;
+
+/**
+ * The internal interrupt controller of the Nios II and its control registers. Devices drive one
+ * IRQ line each, and an interrupt is requested when a line is asserted, enabled in ienable and
+ * interrupts are enabled with the PIE bit of status.
+ *
+ * <p>The lines only change when a device is advanced by the DeviceScheduler or the program
+ * accesses it, so nothing can be requested between two device events unless the program changes
+ * the control registers. That lets polling loops and waiting for an interrupt be fast-forwarded.
+ */
+public class InterruptController {
+  /** Number of the status control register */
+  public static final int STATUS = 0;
+  /** Number of the control register status is saved in when an exception is taken */
+  public static final int ESTATUS = 1;
+  /** Number of the control register status is saved in by a break, not used by the emulator */
+  public static final int BSTATUS = 2;
+  /** Number of the control register with a bit for every IRQ that is enabled */
+  public static final int IENABLE = 3;
+  /** Number of the control register with a bit for every enabled IRQ that is asserted */
+  public static final int IPENDING = 4;
+  /** Number of the control register with the processor id */
+  public static final int CPUID = 5;
+  /** Processor interrupt enable bit of status */
+  public static final int PIE = 0x1;
+
+  private int status = 0;
+  private int estatus = 0;
+  private int bstatus = 0;
+  private int ienable = 0;
+  /** Bit n is set while IRQ line n is asserted */
+  private int lines = 0;
+  /** True if an interrupt should be taken before the next instruction */
+  private boolean requested = false;
+
+  /**
+   * Clear the control registers and the IRQ lines
+   *
+   * @calledby MemoryManager(), MemoryManager.reset()
+   */
+  public void reset() {
+    this.status = 0;
+    this.estatus = 0;
+    this.bstatus = 0;
+    this.ienable = 0;
+    this.lines = 0;
+    this.requested = false;
+  }
+
+  /**
+   * Read a control register
+   *
+   * @calledby Emulator.readControlRegister()
+   * @param index Number of the control register
+   * @return Value
+   * @throws RegisterException If there is no such control register
+   */
+  public int read(int index) throws RegisterException {
+    switch (index) {
+      case STATUS:
+        return this.status;
+      case ESTATUS:
+        return this.estatus;
+      case BSTATUS:
+        return this.bstatus;
+      case IENABLE:
+        return this.ienable;
+      case IPENDING:
+        return this.ienable & this.lines;
+      case CPUID:
+        return 0;
+    }
+
+    throw new RegisterException("ctl" + index);
+  }
+
+  /**
+   * Write a control register, ipending and cpuid can't be written
+   *
+   * @calledby Emulator.writeControlRegister()
+   * @param index Number of the control register
+   * @param value Value
+   * @throws RegisterException If there is no such control register
+   */
+  public void write(int index, int value) throws RegisterException {
+    switch (index) {
+      case STATUS:
+        this.status = value & PIE;
+        break;
+      case ESTATUS:
+        this.estatus = value & PIE;
+        break;
+      case BSTATUS:
+        this.bstatus = value & PIE;
+        break;
+      case IENABLE:
+        this.ienable = value;
+        break;
+      case IPENDING:
+      case CPUID:
+        return;
+      default:
+        throw new RegisterException("ctl" + index);
+    }
+
+    this.update();
+  }
+
+  /**
+   * Assert or deassert an IRQ line
+   *
+   * @calledby devices
+   * @param irq IRQ number, nothing is done if it is -1
+   * @param level True to assert the line
+   */
+  public void setLine(int irq, boolean level) {
+    if (irq < 0) return;
+
+    if (level) {
+      this.lines |= 1 << irq;
+    } else {
+      this.lines &= ~(1 << irq);
+    }
+    this.update();
+  }
+
+  /**
+   * Save status in estatus and disable interrupts, done when an exception is taken
+   *
+   * @calledby EmulatorManager.exception()
+   */
+  public void enter() {
+    this.estatus = this.status;
+    this.status &= ~PIE;
+    this.update();
+  }
+
+  /**
+   * Check if an interrupt should be taken before the next instruction
+   *
+   * @calledby EmulatorManager
+   * @return True if an enabled IRQ line is asserted while interrupts are enabled
+   */
+  public boolean isRequested() {
+    return this.requested;
+  }
+
+  /**
+   * Check if the program can be interrupted at all
+   *
+   * @calledby EmulatorManager
+   * @return True if interrupts are enabled and at least one IRQ is enabled
+   */
+  public boolean isEnabled() {
+    return (this.status & PIE) != 0 && this.ienable != 0;
+  }
+
+  /**
+   * Update requested after the registers or the lines changed
+   *
+   * @calledby write(), setLine(), enter()
+   */
+  private void update() {
+    this.requested = (this.status & PIE) != 0 && (this.ienable & this.lines) != 0;
+  }
+}
@@ -1,11 +1,36 @@
 package jniosemu.emulator.memory;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.BitSet;
 import jniosemu.emulator.SourceCode;
+import jniosemu.instruction.InstructionException;
+import jniosemu.instruction.InstructionManager;
+import jniosemu.instruction.emulator.Instruction;
 
 /** Contains a part of the memory. */
 public class Memory extends MemoryBlock {
+  /** Little-endian short view of a byte array */
+  private static final VarHandle SHORT =
+      MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.LITTLE_ENDIAN);
+  /** Little-endian int view of a byte array */
+  private static final VarHandle INT =
+      MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+  /** Number of address bits within a page that is restored on reset */
+  private static final int PAGEBITS = 8;
+
   /** Contains how the memory looked when init */
   private byte[] originalMemory;
+  /** Source code of the memory when init */
+  private SourceCode originalSourceCode;
+  /** Pages written since the last reset */
+  private BitSet dirty = new BitSet();
+  /** Decoded instructions indexed by word, allocated on the first fetch from this memory */
+  private Instruction[] instructions = null;
+  /** Opcodes of the decoded instructions */
+  private int[] opCodes = null;
 
   /**
    * Init Memory.
@@ -21,7 +46,7 @@ public class Memory extends MemoryBlock {
     this.length = length;
 
     this.originalMemory = memory;
-    this.sourceCode = sourceCode;
+    this.originalSourceCode = sourceCode;
     this.reset();
   }
 
@@ -46,18 +71,205 @@ public class Memory extends MemoryBlock {
       throw new MemoryException(addr);
     }
 
-    this.sourceCode = null;
+    this.written(mapAddr, 1);
+    this.updateSourceCode(mapAddr, 1);
     this.setState(mapAddr, MemoryInt.STATE.WRITE);
   }
 
+  /**
+   * Check if a number of bytes starting at an internal index are all inside the memory
+   *
+   * @param mapAddr Internal index of the first byte
+   * @param size Number of bytes
+   * @return True if all bytes are inside
+   */
+  private boolean isInside(int mapAddr, int size) {
+    return mapAddr >= 0 && mapAddr <= this.length - size;
+  }
+
+  /**
+   * Mark the pages written by an access as dirty and forget the decoded instructions in the words
+   * that were written
+   *
+   * @calledby writeByte(), writeShort(), writeInt()
+   * @param mapAddr Internal index of the first written byte
+   * @param size Number of written bytes
+   */
+  private void written(int mapAddr, int size) {
+    this.dirty.set(mapAddr >> PAGEBITS, ((mapAddr + size - 1) >> PAGEBITS) + 1);
+
+    if (this.instructions == null) return;
+
+    for (int index = mapAddr >> 2; index <= (mapAddr + size - 1) >> 2; index++) {
+      if (this.instructions[index] != null) {
+        this.instructions[index] = null;
+        this.codeVersion++;
+      }
+    }
+  }
+
+  public short readShort(int addr) throws MemoryException {
+    int mapAddr = this.mapAddr(addr);
+    if (!this.isInside(mapAddr, 2)) return super.readShort(addr);
+
+    this.setState(mapAddr + 1, MemoryInt.STATE.READ);
+    this.setState(mapAddr, MemoryInt.STATE.READ);
+    return (short) SHORT.get(this.memory, mapAddr);
+  }
+
+  public void writeShort(int addr, short value) throws MemoryException {
+    int mapAddr = this.mapAddr(addr);
+    if (!this.isInside(mapAddr, 2)) {
+      super.writeShort(addr, value);
+      return;
+    }
+
+    SHORT.set(this.memory, mapAddr, value);
+    this.written(mapAddr, 2);
+    this.updateSourceCode(mapAddr, 2);
+    for (int i = 0; i < 2; i++) this.setState(mapAddr + i, MemoryInt.STATE.WRITE);
+  }
+
+  public int readInt(int addr) throws MemoryException {
+    int mapAddr = this.mapAddr(addr);
+    if (!this.isInside(mapAddr, 4)) return super.readInt(addr);
+
+    for (int i = 3; i >= 0; i--) this.setState(mapAddr + i, MemoryInt.STATE.READ);
+    return (int) INT.get(this.memory, mapAddr);
+  }
+
+  public void writeInt(int addr, int value) throws MemoryException {
+    int mapAddr = this.mapAddr(addr);
+    if (!this.isInside(mapAddr, 4)) {
+      super.writeInt(addr, value);
+      return;
+    }
+
+    INT.set(this.memory, mapAddr, value);
+    this.written(mapAddr, 4);
+    this.updateSourceCode(mapAddr, 4);
+    for (int i = 0; i < 4; i++) this.setState(mapAddr + i, MemoryInt.STATE.WRITE);
+  }
+
+  public int readRawInt(int addr) {
+    int mapAddr = this.mapAddr(addr);
+    if (!this.isInside(mapAddr, 4)) return super.readRawInt(addr);
+
+    return (int) INT.get(this.memory, mapAddr);
+  }
+
+  /**
+   * Decode the instruction placed at an internal index unless it has been decoded before and not
+   * written since.
+   *
+   * @calledby fetch(), getInstruction()
+   * @calls InstructionManager.get()
+   * @param mapAddr Internal index of the instruction
+   * @return Index of the instruction in instructions and opCodes
+   * @throws InstructionException If the opcode isn't a valid instruction
+   */
+  private int decode(int mapAddr) throws InstructionException {
+    if (this.instructions == null) {
+      this.instructions = new Instruction[(this.length + 3) >> 2];
+      this.opCodes = new int[this.instructions.length];
+    }
+
+    int index = mapAddr >> 2;
+    if (this.instructions[index] == null) {
+      int opCode = (int) INT.get(this.memory, mapAddr);
+      this.instructions[index] = InstructionManager.get(opCode);
+      this.opCodes[index] = opCode;
+    }
+
+    return index;
+  }
+
+  /**
+   * Check if an address holds a whole word that can be decoded from this memory
+   *
+   * @param mapAddr Internal index of the instruction
+   * @return True if the word is aligned and inside the memory
+   */
+  private boolean isDecodable(int mapAddr) {
+    return mapAddr >= 0 && mapAddr + 3 < this.length && (mapAddr & 0x3) == 0;
+  }
+
+  public int fetch(int addr) throws MemoryException, InstructionException {
+    int mapAddr = this.mapAddr(addr);
+    if (!this.isDecodable(mapAddr)) return super.fetch(addr);
+
+    int index = this.decode(mapAddr);
+    for (int i = 0; i < 4; i++) this.setState(mapAddr + i, MemoryInt.STATE.READ);
+
+    return this.opCodes[index];
+  }
+
+  public Instruction getInstruction(int addr) throws MemoryException, InstructionException {
+    int mapAddr = this.mapAddr(addr);
+    if (!this.isDecodable(mapAddr)) return super.getInstruction(addr);
+
+    int index = this.decode(mapAddr);
+    return this.instructions[index];
+  }
+
+  /**
+   * Check if the memory was created from an image
+   *
+   * @calledby MemoryManager.reset()
+   * @param image Image
+   * @return True if image is the one the memory was created from
+   */
+  public boolean hasImage(byte[] image) {
+    return this.originalMemory == image;
+  }
+
+  /**
+   * Make the memory look like it did when init. Only the pages that have been written since the
+   * last reset are copied from the original, and the lines of the source code that were updated
+   * get their original opcodes back.
+   *
+   * @calledby Memory(), MemoryManager.reset()
+   * @calls SourceCode.restore()
+   */
   public void reset() {
     this.resetState();
 
-    this.changed = 0;
-    this.memory = new byte[this.length];
+    this.resetChanges();
+    if (this.originalSourceCode != null) this.originalSourceCode.restore();
+    this.sourceCode = this.originalSourceCode;
+    this.codeVersion++;
 
+    if (this.memory == null) {
+      this.memory = new byte[this.length];
+      if (this.originalMemory != null)
+        System.arraycopy(this.originalMemory, 0, this.memory, 0, this.originalMemory.length);
+      return;
+    }
+
+    for (int page = this.dirty.nextSetBit(0); page >= 0; page = this.dirty.nextSetBit(page + 1))
+      this.restore(page);
+    this.dirty.clear();
+  }
+
+  /**
+   * Copy a page from the original and forget the instructions decoded from it
+   *
+   * @calledby reset()
+   * @param page Page number
+   */
+  private void restore(int page) {
+    int from = page << PAGEBITS;
+    int to = Math.min(from + (1 << PAGEBITS), this.length);
+
+    int copied = 0;
     if (this.originalMemory != null)
-      System.arraycopy(this.originalMemory, 0, this.memory, 0, this.originalMemory.length);
+      copied = Math.max(0, Math.min(to, this.originalMemory.length) - from);
+
+    if (copied > 0) System.arraycopy(this.originalMemory, from, this.memory, from, copied);
+    Arrays.fill(this.memory, from + copied, to, (byte) 0);
+
+    if (this.instructions != null)
+      Arrays.fill(this.instructions, from >> 2, (to + 3) >> 2, null);
   }
 
   public boolean resetState() {
@@ -1,8 +1,12 @@
 package jniosemu.emulator.memory;
 
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Vector;
+import jniosemu.emulator.EmulatorListener;
 import jniosemu.emulator.SourceCode;
+import jniosemu.instruction.InstructionException;
+import jniosemu.instruction.InstructionManager;
+import jniosemu.instruction.emulator.Instruction;
 
 /** Contains a part of the memory. */
 public abstract class MemoryBlock {
@@ -21,7 +25,54 @@ public abstract class MemoryBlock {
 
   protected SourceCode sourceCode = null;
 
-  private HashMap<Integer, MemoryInt.STATE> state = new HashMap<Integer, MemoryInt.STATE>();
+  /** Told about changes that devices make */
+  protected EmulatorListener listener = null;
+
+  /** Increased every time a decoded instruction in this block is written */
+  protected int codeVersion = 0;
+
+  /** IRQ line the device drives, -1 if it can't interrupt */
+  protected int irq = -1;
+
+  /** All states, indexed by ordinal */
+  private static final MemoryInt.STATE[] STATES = MemoryInt.STATE.values();
+
+  /** Number of address bits within a page of state */
+  private static final int STATEPAGEBITS = 12;
+
+  /** Number of changes kept in the change log, a power of two */
+  private static final int LOGSIZE = 1024;
+
+  /** Ordinal of the state of each byte, in pages that are allocated on the first setState() */
+  private byte[][] state = null;
+  /** Indexes of the bytes that have a state other than UNTOUCHED, may hold duplicates */
+  private int[] touched = new int[16];
+  /** Number of used entries in touched */
+  private int touchedCount = 0;
+  /** Word index of the latest writes, write number n is at n & (LOGSIZE - 1) */
+  private int[] changeLog = null;
+  /** Value of the change counter after each write in changeLog */
+  private int[] changeNumbers = null;
+  /** Number of writes put in changeLog */
+  private int logCount = 0;
+  /** Value of the change counter after the latest write that isn't in changeLog */
+  private int unlogged = 0;
+  /** False while read and written bytes aren't kept in state */
+  private boolean tracking = true;
+  /** True if the emulated program may read from the block */
+  private boolean readable = true;
+  /** True if the emulated program may write to the block */
+  private boolean writable = true;
+  /** True if the emulated program may run instructions from the block */
+  private boolean executable = true;
+  /** Number of accesses of each word, null while profiling is off */
+  private AccessProfile profile = null;
+  /** Number of times a byte has been set to the WRITE state */
+  private int writes = 0;
+  /** Tick the block has been advanced to, see DeviceScheduler */
+  long tickedTo = 0;
+  /** Tick the block is due at while it is scheduled, see DeviceScheduler */
+  long due = 0;
 
   /**
    * Get the name of the part.
@@ -70,9 +121,8 @@ public abstract class MemoryBlock {
    * @return If the memory address exists in this memoryBlock
    */
   public boolean inRange(int addr) {
-    if (this.start <= addr && this.start + this.length > addr) return true;
-
-    return false;
+    // Unsigned, so a block that ends at 0x7FFFFFFF or 0xFFFFFFFF doesn't overflow
+    return Integer.compareUnsigned(addr - this.start, this.length) < 0;
   }
 
   /**
@@ -105,6 +155,22 @@ public abstract class MemoryBlock {
     }
   }
 
+  /**
+   * Read a little-endian int without updating the state
+   *
+   * @calledby getInstruction(), BasicBlockCache.translate()
+   * @calls readRawByte()
+   * @param addr Memory address
+   * @return Requested int
+   * @throws MemoryException If the address don't exits in this memoryBlock
+   */
+  public int readRawInt(int addr) {
+    return (this.readRawByte(addr + 3) & 0xFF) << 24
+        | (this.readRawByte(addr + 2) & 0xFF) << 16
+        | (this.readRawByte(addr + 1) & 0xFF) << 8
+        | (this.readRawByte(addr) & 0xFF);
+  }
+
   /**
    * Write a byte to memory
    *
@@ -116,10 +182,243 @@ public abstract class MemoryBlock {
    */
   public abstract void writeByte(int addr, byte value) throws MemoryException;
 
+  /**
+   * Read a little-endian short. The bytes are read one at a time with readByte(), highest address
+   * first. Blocks that can do better override this.
+   *
+   * @calledby MemoryManager.readShort()
+   * @calls readByte()
+   * @param addr Memory address
+   * @return Requested short
+   * @throws MemoryException If the address don't exits in this memoryBlock
+   */
+  public short readShort(int addr) throws MemoryException {
+    return (short) ((this.readByte(addr + 1) & 0xFF) << 8 | (this.readByte(addr) & 0xFF));
+  }
+
+  /**
+   * Write a little-endian short. The bytes are written one at a time with writeByte(), lowest
+   * address first. Blocks that can do better override this.
+   *
+   * @calledby MemoryManager.writeShort()
+   * @calls writeByte()
+   * @param addr Memory address
+   * @param value Value
+   * @throws MemoryException If the address don't exits in this memoryBlock
+   */
+  public void writeShort(int addr, short value) throws MemoryException {
+    this.writeByte(addr, (byte) (value & 0xFF));
+    this.writeByte(addr + 1, (byte) (value >>> 8 & 0xFF));
+  }
+
+  /**
+   * Read a little-endian int. The bytes are read one at a time with readByte(), highest address
+   * first. Blocks that can do better override this.
+   *
+   * @calledby MemoryManager.readInt()
+   * @calls readByte()
+   * @param addr Memory address
+   * @return Requested int
+   * @throws MemoryException If the address don't exits in this memoryBlock
+   */
+  public int readInt(int addr) throws MemoryException {
+    return (this.readByte(addr + 3) & 0xFF) << 24
+        | (this.readByte(addr + 2) & 0xFF) << 16
+        | (this.readByte(addr + 1) & 0xFF) << 8
+        | (this.readByte(addr) & 0xFF);
+  }
+
+  /**
+   * Write a little-endian int. The bytes are written one at a time with writeByte(), lowest
+   * address first. Blocks that can do better override this.
+   *
+   * @calledby MemoryManager.writeInt()
+   * @calls writeByte()
+   * @param addr Memory address
+   * @param value Value
+   * @throws MemoryException If the address don't exits in this memoryBlock
+   */
+  public void writeInt(int addr, int value) throws MemoryException {
+    this.writeByte(addr, (byte) (value & 0xFF));
+    this.writeByte(addr + 1, (byte) (value >>> 8 & 0xFF));
+    this.writeByte(addr + 2, (byte) (value >>> 16 & 0xFF));
+    this.writeByte(addr + 3, (byte) (value >>> 24 & 0xFF));
+  }
+
+  /**
+   * Fetch the opcode of the instruction at a specific memory address
+   *
+   * @calledby EmulatorManager.step()
+   * @calls readInt()
+   * @param addr Memory address of the instruction
+   * @return Opcode of the instruction
+   * @throws MemoryException If the address don't exits in this memoryBlock
+   * @throws InstructionException If the opcode isn't a valid instruction
+   */
+  public int fetch(int addr) throws MemoryException, InstructionException {
+    return this.readInt(addr);
+  }
+
+  /**
+   * Get the decoded instruction at a specific memory address
+   *
+   * @calledby MemoryManager.getInstruction(), EmulatorManager.step(), BasicBlockCache.translate()
+   * @calls readRawInt(), InstructionManager.get()
+   * @param addr Memory address of the instruction
+   * @return Decoded instruction
+   * @throws MemoryException If the address don't exits in this memoryBlock
+   * @throws InstructionException If the opcode isn't a valid instruction
+   */
+  public Instruction getInstruction(int addr) throws MemoryException, InstructionException {
+    return InstructionManager.get(this.readRawInt(addr));
+  }
+
+  /**
+   * Get the code version. It changes every time a decoded instruction is written so that
+   * translated code knows it has to be translated again.
+   *
+   * @calledby BasicBlock
+   * @return Code version
+   */
+  public int getCodeVersion() {
+    return this.codeVersion;
+  }
+
   public abstract void reset();
 
   public abstract boolean resetState();
 
+  /**
+   * Advance the block by a number of ticks, one for every instruction that has run. Only devices
+   * that have something to do over time override this.
+   *
+   * @calledby DeviceScheduler
+   * @param count Number of ticks, at least 1
+   */
+  public void tick(long count) {}
+
+  /**
+   * Get the number of ticks until the block has to be advanced again, counted from the last tick
+   * it was advanced to. The block is left alone until then.
+   *
+   * @calledby DeviceScheduler.schedule()
+   * @return Number of ticks, at least 1, or -1 if the block has nothing to do
+   */
+  public long nextEvent() {
+    return -1;
+  }
+
+  /**
+   * Turn on or off the tracking of read and written bytes. The state is cleared when tracking is
+   * turned off, the changed counter is then only updated by writes and they aren't logged.
+   *
+   * @calledby MemoryManager.setTracking()
+   * @param tracking True if the state should be tracked
+   */
+  public void setTracking(boolean tracking) {
+    this.tracking = tracking;
+    if (!tracking) this.clearState();
+  }
+
+  /**
+   * Set what the emulated program may do with the block
+   *
+   * @calledby MemoryManager()
+   * @param readable True if it may read
+   * @param writable True if it may write
+   * @param executable True if it may run instructions
+   */
+  public void setPermissions(boolean readable, boolean writable, boolean executable) {
+    this.readable = readable;
+    this.writable = writable;
+    this.executable = executable;
+  }
+
+  public boolean isReadable() {
+    return this.readable;
+  }
+
+  public boolean isWritable() {
+    return this.writable;
+  }
+
+  public boolean isExecutable() {
+    return this.executable;
+  }
+
+  /**
+   * Set the IRQ line the device drives
+   *
+   * @calledby MemoryManager.createBlock()
+   * @param irq IRQ number, -1 if the device shouldn't interrupt
+   */
+  public void setIrq(int irq) {
+    this.irq = irq;
+  }
+
+  public int getIrq() {
+    return this.irq;
+  }
+
+  /**
+   * Turn on or off the counting of accesses. The counts start from zero every time it is turned
+   * on.
+   *
+   * @calledby MemoryManager.setProfiling()
+   * @param profiling True if accesses should be counted
+   */
+  public void setProfiling(boolean profiling) {
+    this.profile = profiling ? new AccessProfile(this.length) : null;
+  }
+
+  /**
+   * Get the number of accesses of each word
+   *
+   * @return Profile or null if profiling is off
+   */
+  public AccessProfile getProfile() {
+    return this.profile;
+  }
+
+  /**
+   * Count an access if profiling is on
+   *
+   * @calledby MemoryManager.count()
+   * @param access Kind of access
+   * @param addr Address of the access
+   */
+  public void count(AccessProfile.ACCESS access, int addr) {
+    AccessProfile profile = this.profile;
+    if (profile != null) profile.count(access, (addr - this.start) >> 2);
+  }
+
+  /**
+   * Get how hot a word is compared to the hottest word of the block
+   *
+   * @calledby MemoryInt.getHeat()
+   * @param addr Address of the word
+   * @return Between 0 for no accesses and 1 for the hottest word, 0 if profiling is off
+   */
+  public float getHeat(int addr) {
+    AccessProfile profile = this.profile;
+    if (profile == null || profile.getMax() == 0) return 0;
+
+    int total = profile.getTotal((addr - this.start) >> 2);
+    if (total == 0) return 0;
+
+    return (float) (Math.log(1 + total) / Math.log(1 + profile.getMax()));
+  }
+
+  /**
+   * Set the listener that is told about changes
+   *
+   * @calledby MemoryManager.setListener()
+   * @param listener Listener
+   */
+  public void setListener(EmulatorListener listener) {
+    this.listener = listener;
+  }
+
   public boolean isChanged(int last) {
     return (this.changed > last);
   }
@@ -128,6 +427,71 @@ public abstract class MemoryBlock {
     return this.changed;
   }
 
+  /**
+   * Start the change counter and the log of written words over
+   *
+   * @calledby reset() of the subclasses
+   */
+  protected void resetChanges() {
+    this.changed = 0;
+    this.logCount = 0;
+    this.unlogged = 0;
+  }
+
+  /**
+   * Get the words that have been written since a given change counter, and the words that have a
+   * state now. Only the latest LOGSIZE writes are kept, and writes made while the state isn't
+   * tracked aren't kept at all. If one of those is needed the caller has to get the whole memory
+   * vector again.
+   *
+   * @calledby GUIMemoryView.updateLists()
+   * @param last Value of lastChanged() the last time the caller looked
+   * @return Addresses of the changed words in increasing order, or null if they aren't known
+   */
+  public int[] getChanges(int last) {
+    if (last < 0 || last > this.changed || this.unlogged > last) return null;
+    if (last == this.changed) return new int[0];
+
+    int[] words = new int[Math.min(this.logCount, LOGSIZE) + this.touchedCount];
+    int count = 0;
+    for (int n = this.logCount - 1; n >= 0 && this.changeNumbers[n & (LOGSIZE - 1)] > last; n--) {
+      // Overwritten by later writes
+      if (this.logCount - n > LOGSIZE) return null;
+
+      words[count++] = this.changeLog[n & (LOGSIZE - 1)];
+    }
+
+    // Read words aren't logged, but only the ones read by the last instruction are shown as read
+    for (int i = 0; i < this.touchedCount; i++) words[count++] = this.touched[i] >>> 2;
+    Arrays.sort(words, 0, count);
+
+    int unique = 0;
+    for (int i = 0; i < count; i++) {
+      if (unique == 0 || words[i] != words[unique - 1]) words[unique++] = words[i];
+    }
+
+    int[] addresses = new int[unique];
+    for (int i = 0; i < unique; i++) addresses[i] = this.start + (words[i] << 2);
+
+    return addresses;
+  }
+
+  /**
+   * Get one word of the memory as it is shown in the memory view
+   *
+   * @calledby GUIMemoryView.updateWords()
+   * @calls readRawByte()
+   * @param addr Address of the word
+   * @return Word, bytes after the end of the block are zero
+   */
+  public MemoryInt getMemoryInt(int addr) {
+    byte[] memoryInt = new byte[4];
+    for (int i = 0; i < 4 && addr + i <= this.getEnd(); i++)
+      memoryInt[i] = this.readRawByte(addr + i);
+
+    return new MemoryInt(addr, memoryInt, this);
+  }
+
   private void updateMemoryVector() {
     this.memoryVector = new Vector<MemoryInt>();
 
@@ -145,26 +509,98 @@ public abstract class MemoryBlock {
   }
 
   public MemoryInt.STATE getState(int address) {
-    MemoryInt.STATE state = this.state.get(address - this.start);
-    if (state == null) {
-      return MemoryInt.STATE.UNTOUCHED;
-    } else {
-      return state;
-    }
+    int index = address - this.start;
+    if (this.state == null || index < 0 || index >= this.length) return MemoryInt.STATE.UNTOUCHED;
+
+    byte[] page = this.state[index >>> STATEPAGEBITS];
+    if (page == null) return MemoryInt.STATE.UNTOUCHED;
+
+    return STATES[page[index & ((1 << STATEPAGEBITS) - 1)]];
   }
 
   protected void setState(int index, MemoryInt.STATE state) {
-    if (state == MemoryInt.STATE.UNTOUCHED) {
-      this.state.remove(index);
-    } else {
-      this.state.put(index, state);
+    if (this.tracking && index >= 0 && index < this.length) {
+      if (this.state == null)
+        this.state = new byte[((this.length - 1) >>> STATEPAGEBITS) + 1][];
+
+      byte[] page = this.state[index >>> STATEPAGEBITS];
+      if (page == null) {
+        page = new byte[1 << STATEPAGEBITS];
+        this.state[index >>> STATEPAGEBITS] = page;
+      }
+
+      int offset = index & ((1 << STATEPAGEBITS) - 1);
+      if (page[offset] == 0 && state != MemoryInt.STATE.UNTOUCHED) {
+        if (this.touchedCount == this.touched.length)
+          this.touched = Arrays.copyOf(this.touched, this.touched.length * 2);
+        this.touched[this.touchedCount++] = index;
+      }
+      page[offset] = (byte) state.ordinal();
     }
 
+    if (state != MemoryInt.STATE.WRITE) {
+      if (this.tracking) this.changed++;
+      return;
+    }
+
+    this.writes++;
     this.changed++;
+    if (!this.tracking || index < 0 || index >= this.length) {
+      this.unlogged = this.changed;
+      return;
+    }
+
+    if (this.changeLog == null) {
+      this.changeLog = new int[LOGSIZE];
+      this.changeNumbers = new int[LOGSIZE];
+    }
+    this.changeLog[this.logCount & (LOGSIZE - 1)] = index >>> 2;
+    this.changeNumbers[this.logCount & (LOGSIZE - 1)] = this.changed;
+    this.logCount++;
   }
 
+  /**
+   * Get the number of times a byte has been written by the program or changed by the device. It
+   * is counted even when the state isn't tracked.
+   *
+   * @calledby MemoryManager.getWriteCount()
+   * @return Number of writes
+   */
+  public int getWriteCount() {
+    return this.writes;
+  }
+
+  /**
+   * Set the state of all bytes to UNTOUCHED. Only the bytes that have been touched since the last
+   * time are visited.
+   *
+   * @calledby reset(), resetState(), setTracking()
+   */
   protected void clearState() {
-    this.state.clear();
+    for (int i = 0; i < this.touchedCount; i++) {
+      int index = this.touched[i];
+      this.state[index >>> STATEPAGEBITS][index & ((1 << STATEPAGEBITS) - 1)] = 0;
+    }
+    this.touchedCount = 0;
+  }
+
+  /**
+   * Update the source code after a write. Only the words that were written are disassembled
+   * again, and only if the block is executable and its source code has been made.
+   *
+   * @calledby writeByte(), writeShort(), writeInt()
+   * @calls SourceCode.update()
+   * @param mapAddr Internal index of the first written byte
+   * @param size Number of written bytes
+   */
+  protected void updateSourceCode(int mapAddr, int size) {
+    if (this.sourceCode == null || !this.executable) return;
+
+    for (int index = mapAddr >> 2; index <= (mapAddr + size - 1) >> 2; index++) {
+      int addr = this.start + (index << 2);
+      if (index >= 0 && addr + 3 <= this.getEnd())
+        this.sourceCode.update(addr, this.readRawInt(addr));
+    }
   }
 
   public SourceCode getSourceCode() {
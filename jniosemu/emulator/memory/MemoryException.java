@@ -7,7 +7,15 @@ public class MemoryException extends RuntimeException {
     super();
   }
 
+  public MemoryException(String reason) {
+    super("Memory Error: " + reason);
+  }
+
   public MemoryException(int addr) {
     super("Memory Error: Invalid address: " + Utilities.intToHexString(addr));
   }
+
+  public MemoryException(String reason, int addr) {
+    super("Memory Error: " + reason + ": " + Utilities.intToHexString(addr));
+  }
 }
@@ -28,4 +28,14 @@ public class MemoryInt {
   public STATE getState(int index) {
     return this.memoryBlock.getState(this.address + index);
   }
+
+  /**
+   * Get how hot the word is in the access profile
+   *
+   * @calledby GUIMemoryView
+   * @return Between 0 and 1, see MemoryBlock.getHeat()
+   */
+  public float getHeat() {
+    return this.memoryBlock.getHeat(this.address);
+  }
 }
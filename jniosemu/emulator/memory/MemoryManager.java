@@ -1,9 +1,13 @@
 package jniosemu.emulator.memory;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Vector;
+import jniosemu.emulator.EmulatorListener;
 import jniosemu.emulator.SourceCode;
 import jniosemu.emulator.memory.io.*;
-import jniosemu.events.EventManager;
+import jniosemu.instruction.InstructionException;
+import jniosemu.instruction.emulator.Instruction;
 
 /** Manage the memory that the emulated program can access. */
 public class MemoryManager {
@@ -17,6 +21,16 @@ public class MemoryManager {
   public static final int STACKSTARTADDR = 0x40000;
   /** Size of the stack */
   public static final int STACKSIZE = 0x00080;
+  /** Memories of this size or larger are kept outside the Java heap */
+  public static final int BUFFERSIZE = 0x100000;
+  /** Number of address bits within a page */
+  private static final int PAGEBITS = 12;
+  /** Number of address bits within a line of a shared page */
+  private static final int LINEBITS = 4;
+  /** Number of address bits within the pages of one second level page table */
+  private static final int TABLEBITS = 22;
+  /** Number of pages in a second level page table */
+  private static final int TABLEPAGES = 1 << (TABLEBITS - PAGEBITS);
 
   public static final byte[] LIB = {
     // nr_uart_rxchar
@@ -717,62 +731,545 @@ public class MemoryManager {
 
   /** Contains the different MemoryBlocks */
   private ArrayList<MemoryBlock> memoryBlocks = new ArrayList<MemoryBlock>();
+  /** Map the blocks were created from */
+  private MemoryMap memoryMap;
+
+  private ButtonDevice buttons = null;
+
+  private DipswitchDevice dipswitches = null;
+  /** Serial ports by port number */
+  private Vector<SerialDevice> serialPorts = new Vector<SerialDevice>();
+  /**
+   * Page table indexed by the top bits of the address, then by page. A second level table is only
+   * there if a block has a page in it. It holds the block that holds every mapped address of a
+   * page, null if the page is shared or unmapped.
+   */
+  private MemoryBlock[][] pages;
+  /** Blocks by line for pages shared by several blocks, indexed like pages, null elsewhere */
+  private MemoryBlock[][][] lines;
+  /** Block found by the last lookup */
+  private MemoryBlock lastBlock = null;
+  /** Watchpoints that stop the emulation */
+  private Vector<Watchpoint> watchpoints = new Vector<Watchpoint>();
+  /** True for the pages that have a watchpoint, indexed like pages, null if there are none */
+  private boolean[][] watchedPages = null;
+  /** First watchpoint hit since the last takeWatchpointHit(), null if there is none */
+  private Watchpoint.Hit watchpointHit = null;
+  /** True if the accesses are counted */
+  private boolean profiling = false;
+  /** Advances the devices when they have something to do */
+  private DeviceScheduler scheduler = new DeviceScheduler();
+  /** Control registers and IRQ lines of the devices */
+  private InterruptController interrupts = new InterruptController();
+
+  /**
+   * Init MemoryManager with program and the default memory map.
+   *
+   * @calls MemoryManager()
+   * @param listener Listener that is told about changes in the devices
+   * @param program Program
+   * @param variables Variables
+   */
+  public MemoryManager(
+      EmulatorListener listener, byte[] program, byte[] variables, SourceCode programSourceCode) {
+    this(listener, MemoryMap.getDefault(), program, variables, programSourceCode);
+  }
 
   /**
    * Init MemoryManager with program.
    *
-   * @post add program, variables and stack MemoryBlock
-   * @calledby EmulatorManager()
-   * @calls MemoryBlocks()
+   * @post add program, variables, the regions of the memory map and lib MemoryBlock
+   * @calledby EmulatorManager.load()
+   * @calls createBlock()
+   * @param listener Listener that is told about changes in the devices
+   * @param memoryMap Memories and devices besides the program, variables and lib
    * @param program Program
    * @param variables Variables
    */
   public MemoryManager(
-      EventManager eventManager, byte[] program, byte[] variables, SourceCode programSourceCode) {
+      EmulatorListener listener,
+      MemoryMap memoryMap,
+      byte[] program,
+      byte[] variables,
+      SourceCode programSourceCode) {
+    this.memoryMap = memoryMap;
+
     this.memoryBlocks.add(
         new Memory("Text", PROGRAMSTARTADDR, program.length, program, programSourceCode));
     this.memoryBlocks.add(new Memory("Data", VARIABLESTARTADDR, variables.length, variables, null));
-    this.memoryBlocks.add(new Memory("Stack", (STACKSTARTADDR - STACKSIZE), STACKSIZE, null, null));
 
-    this.memoryBlocks.add(new LedDevice(eventManager, this));
-    this.memoryBlocks.add(new TimerDevice(eventManager, this));
-    this.memoryBlocks.add(new ButtonDevice(eventManager, this));
-    this.memoryBlocks.add(new DipswitchDevice(eventManager, this));
-    this.memoryBlocks.add(
-        new SerialDevice(
-            eventManager,
-            this,
-            "uart_0",
-            0x860,
-            EventManager.EVENT.UART0_INPUT,
-            EventManager.EVENT.UART0_OUTPUT));
-    this.memoryBlocks.add(
-        new SerialDevice(
-            eventManager,
-            this,
-            "uart_1",
-            0x880,
-            EventManager.EVENT.UART1_INPUT,
-            EventManager.EVENT.UART1_OUTPUT));
+    for (MemoryMap.Region region : memoryMap.getRegions())
+      this.memoryBlocks.add(this.createBlock(listener, region));
 
     this.memoryBlocks.add(new Memory("Lib", LIBSTARTADDR, LIB.length, LIB, null));
+
+    this.buildPageTable();
+    this.scheduler.reset(this.memoryBlocks);
+  }
+
+  /**
+   * Create the block of a region in the memory map
+   *
+   * @calledby MemoryManager()
+   * @param listener Listener that is told about changes in the devices
+   * @param region Region
+   * @return Block
+   * @throws MemoryException If the file of a memory can't be mapped
+   */
+  private MemoryBlock createBlock(EmulatorListener listener, MemoryMap.Region region) {
+    String name = region.getName();
+    int start = region.getStart();
+
+    MemoryBlock block;
+    switch (region.getType()) {
+      case LEDS:
+        block = new LedDevice(listener, this, name, start);
+        break;
+      case TIMER:
+        block = new TimerDevice(listener, this, name, start);
+        break;
+      case BUTTONS:
+        block = new ButtonDevice(listener, this, name, start);
+        if (this.buttons == null) this.buttons = (ButtonDevice) block;
+        break;
+      case DIPSWITCHES:
+        block = new DipswitchDevice(listener, this, name, start);
+        if (this.dipswitches == null) this.dipswitches = (DipswitchDevice) block;
+        break;
+      case UART:
+        block = new SerialDevice(listener, this, name, start, region.getDepth());
+        this.serialPorts.add((SerialDevice) block);
+        break;
+      default:
+        if (region.getFile() != null) {
+          try {
+            block = new BufferMemory(region);
+          } catch (IOException e) {
+            throw new MemoryException("Can't map " + region.getFile() + ": " + e.getMessage());
+          }
+        } else if (region.getSize() >= BUFFERSIZE) {
+          block = new BufferMemory(name, start, region.getSize());
+        } else {
+          block = new Memory(name, start, region.getSize(), null, null);
+        }
+    }
+
+    block.setPermissions(region.isReadable(), region.isWritable(), region.isExecutable());
+    block.setIrq(region.getIrq());
+    return block;
   }
 
+  /**
+   * Reset all blocks. The memories only restore the pages that have been written, the Text and
+   * Data memories are only created again if the program has changed.
+   *
+   * @calledby EmulatorManager.load()
+   * @calls InterruptController.reset(), MemoryBlock.reset(), Memory.hasImage(),
+   *     DeviceScheduler.reset()
+   * @param program Program
+   * @param variables Variables
+   * @param programSourceCode Source code of the program
+   */
   public void reset(byte[] program, byte[] variables, SourceCode programSourceCode) {
+    this.interrupts.reset();
     for (MemoryBlock memoryBlock : this.memoryBlocks) memoryBlock.reset();
 
-    this.memoryBlocks.set(
-        0, new Memory("Text", PROGRAMSTARTADDR, program.length, program, programSourceCode));
-    this.memoryBlocks.set(
-        1, new Memory("Data", VARIABLESTARTADDR, variables.length, variables, null));
-    this.memoryBlocks.set(
-        2, new Memory("Stack", (STACKSTARTADDR - STACKSIZE), STACKSIZE, null, null));
+    if (!((Memory) this.memoryBlocks.get(0)).hasImage(program))
+      this.memoryBlocks.set(
+          0, new Memory("Text", PROGRAMSTARTADDR, program.length, program, programSourceCode));
+    if (!((Memory) this.memoryBlocks.get(1)).hasImage(variables))
+      this.memoryBlocks.set(
+          1, new Memory("Data", VARIABLESTARTADDR, variables.length, variables, null));
 
-    this.memoryBlocks.set(9, new Memory("Lib", LIBSTARTADDR, LIB.length, LIB, null));
+    this.buildPageTable();
+    this.scheduler.reset(this.memoryBlocks);
+    this.watchpointHit = null;
   }
 
+  /**
+   * Build the table used to find the block of an address. A page that only one block uses points
+   * to that block. A page that several blocks use, like the one with the IO devices, is split into
+   * lines of 16 bytes that point to their block. The table has two levels, the second level is
+   * only allocated for each 4 MB of the address space that has a block in it.
+   *
+   * @calledby MemoryManager(), reset()
+   */
+  private void buildPageTable() {
+    MemoryBlock[][] pages = new MemoryBlock[1 << (32 - TABLEBITS)][];
+    MemoryBlock[][][] lines = new MemoryBlock[1 << (32 - TABLEBITS)][][];
+
+    // A shared page gets its lines, they are filled in below
+    for (MemoryBlock block : this.memoryBlocks) {
+      if (block.getLength() <= 0) continue;
+
+      for (int page = block.getStart() >>> PAGEBITS; page <= block.getEnd() >>> PAGEBITS; page++) {
+        int table = page / TABLEPAGES;
+        int index = page % TABLEPAGES;
+        if (pages[table] == null) {
+          pages[table] = new MemoryBlock[TABLEPAGES];
+          lines[table] = new MemoryBlock[TABLEPAGES][];
+        }
+
+        if (pages[table][index] == null && lines[table][index] == null) {
+          pages[table][index] = block;
+        } else {
+          pages[table][index] = null;
+          lines[table][index] = new MemoryBlock[1 << (PAGEBITS - LINEBITS)];
+        }
+      }
+    }
+
+    for (int table = 0; table < lines.length; table++) {
+      if (lines[table] == null) continue;
+
+      for (int index = 0; index < TABLEPAGES; index++) {
+        MemoryBlock[] pageLines = lines[table][index];
+        if (pageLines == null) continue;
+
+        int pageStart = (table * TABLEPAGES + index) << PAGEBITS;
+        for (int line = 0; line < pageLines.length; line++) {
+          int lineStart = pageStart + (line << LINEBITS);
+          int lineEnd = lineStart + (1 << LINEBITS) - 1;
+          for (MemoryBlock block : this.memoryBlocks) {
+            if (block.getLength() <= 0 || block.getStart() > lineEnd || block.getEnd() < lineStart)
+              continue;
+            // A line that two blocks use is left empty and searched for in findBlock()
+            pageLines[line] = (pageLines[line] == null) ? block : null;
+            if (pageLines[line] == null) break;
+          }
+        }
+      }
+    }
+
+    this.pages = pages;
+    this.lines = lines;
+    this.lastBlock = null;
+  }
+
+  /**
+   * Find the block that holds an address
+   *
+   * @calledby readByte(), writeByte(), getBlock(), JitRuntime
+   * @param addr External address
+   * @return Block or null if no block holds the address
+   */
+  public MemoryBlock findBlock(int addr) {
+    MemoryBlock block = this.lastBlock;
+    if (block != null && block.inRange(addr)) return block;
+
+    int page = addr >>> PAGEBITS;
+    MemoryBlock[] table = this.pages[page / TABLEPAGES];
+    if (table == null) return null;
+
+    block = table[page % TABLEPAGES];
+    if (block == null) {
+      MemoryBlock[] pageLines = this.lines[page / TABLEPAGES][page % TABLEPAGES];
+      if (pageLines != null)
+        block = pageLines[(addr >>> LINEBITS) & ((1 << (PAGEBITS - LINEBITS)) - 1)];
+    }
+
+    if (block == null) {
+      for (MemoryBlock memoryBlock : this.memoryBlocks) {
+        if (memoryBlock.inRange(addr)) {
+          block = memoryBlock;
+          break;
+        }
+      }
+    }
+
+    if (block == null || !block.inRange(addr)) return null;
+
+    this.lastBlock = block;
+    return block;
+  }
+
+  /**
+   * Clear the read and written state of all blocks and advance the devices by one instruction
+   *
+   * @calledby EmulatorManager.step()
+   * @calls MemoryBlock.resetState(), tick()
+   */
   public void resetState() {
     for (MemoryBlock memoryBlock : this.memoryBlocks) memoryBlock.resetState();
+    this.tick(1);
+  }
+
+  /**
+   * Turn on or off the counting of accesses in all blocks, the counts start from zero
+   *
+   * @calledby EmulatorManager
+   * @calls MemoryBlock.setProfiling()
+   * @param profiling True if accesses should be counted
+   */
+  public void setProfiling(boolean profiling) {
+    this.profiling = profiling;
+    for (MemoryBlock memoryBlock : this.memoryBlocks) memoryBlock.setProfiling(profiling);
+  }
+
+  public boolean isProfiling() {
+    return this.profiling;
+  }
+
+  /**
+   * Count an access in the block holding the address if profiling is on
+   *
+   * @calledby EmulatorManager, the read and write methods
+   * @calls MemoryBlock.count()
+   * @param access Kind of access
+   * @param addr Address of the access
+   */
+  public void count(AccessProfile.ACCESS access, int addr) {
+    if (!this.profiling) return;
+
+    MemoryBlock block = this.findBlock(addr);
+    if (block != null) block.count(access, addr);
+  }
+
+  /**
+   * Set the watchpoints and mark the pages they are on. Accesses to other pages only check that
+   * the page isn't marked.
+   *
+   * @calledby EmulatorManager
+   * @param watchpoints Watchpoints, they are copied
+   */
+  public void setWatchpoints(Vector<Watchpoint> watchpoints) {
+    Vector<Watchpoint> copy = new Vector<Watchpoint>(watchpoints);
+
+    boolean[][] watchedPages = null;
+    if (!copy.isEmpty()) {
+      watchedPages = new boolean[1 << (32 - TABLEBITS)][];
+      for (Watchpoint watchpoint : copy) {
+        for (int page = watchpoint.getStart() >>> PAGEBITS;
+            page <= watchpoint.getEnd() >>> PAGEBITS;
+            page++) {
+          if (watchedPages[page / TABLEPAGES] == null)
+            watchedPages[page / TABLEPAGES] = new boolean[TABLEPAGES];
+          watchedPages[page / TABLEPAGES][page % TABLEPAGES] = true;
+        }
+      }
+    }
+
+    this.watchpoints = copy;
+    this.watchedPages = watchedPages;
+  }
+
+  /**
+   * Check if an access is on a page with a watchpoint
+   *
+   * @calledby JitRuntime, the read and write methods
+   * @param addr Address of the access
+   * @param size Number of bytes
+   * @return True if the access has to be checked against the watchpoints
+   */
+  public boolean isWatched(int addr, int size) {
+    boolean[][] watchedPages = this.watchedPages;
+    if (watchedPages == null) return false;
+
+    int first = addr >>> PAGEBITS;
+    int last = (addr + size - 1) >>> PAGEBITS;
+    return isWatched(watchedPages, first) || isWatched(watchedPages, last);
+  }
+
+  /**
+   * Check if a page is marked in a table of watched pages
+   *
+   * @calledby isWatched()
+   * @param watchedPages Watched pages, indexed like the page table
+   * @param page Page number
+   * @return True if the page has a watchpoint
+   */
+  private static boolean isWatched(boolean[][] watchedPages, int page) {
+    boolean[] table = watchedPages[page / TABLEPAGES];
+    return table != null && table[page % TABLEPAGES];
+  }
+
+  /**
+   * Get the first watchpoint hit since the last call and forget it
+   *
+   * @calledby EmulatorManager
+   * @return Hit, without the PC, or null if no watchpoint has been hit
+   */
+  public Watchpoint.Hit takeWatchpointHit() {
+    Watchpoint.Hit hit = this.watchpointHit;
+    this.watchpointHit = null;
+    return hit;
+  }
+
+  /**
+   * Read a value without updating the state or permissions, used to get the value a watched write
+   * replaces
+   *
+   * @calledby the write methods
+   * @param addr Address
+   * @param size Number of bytes
+   * @return Value, bytes that can't be read are zero
+   */
+  private int peek(int addr, int size) {
+    int value = 0;
+    for (int i = size - 1; i >= 0; i--) {
+      MemoryBlock block = this.findBlock(addr + i);
+      value = value << 8 | ((block == null) ? 0 : block.readRawByte(addr + i) & 0xFF);
+    }
+
+    return value;
+  }
+
+  /**
+   * Remember a read if it hits a watchpoint
+   *
+   * @calledby the read methods
+   * @param addr Address of the access
+   * @param size Number of bytes
+   * @param value Read value
+   */
+  private void watchRead(int addr, int size, int value) {
+    if (this.watchpointHit != null) return;
+
+    for (Watchpoint watchpoint : this.watchpoints) {
+      if (watchpoint.stopsAtRead(addr, size)) {
+        this.watchpointHit = new Watchpoint.Hit(watchpoint, -1, addr, size, value, value);
+        return;
+      }
+    }
+  }
+
+  /**
+   * Remember a write if it hits a watchpoint
+   *
+   * @calledby the write methods
+   * @param addr Address of the access
+   * @param size Number of bytes
+   * @param oldValue Value before the write
+   * @param value Written value
+   */
+  private void watchWrite(int addr, int size, int oldValue, int value) {
+    if (this.watchpointHit != null) return;
+
+    for (Watchpoint watchpoint : this.watchpoints) {
+      if (watchpoint.stopsAtWrite(addr, size, value)) {
+        this.watchpointHit = new Watchpoint.Hit(watchpoint, -1, addr, size, oldValue, value);
+        return;
+      }
+    }
+  }
+
+  /**
+   * Set the listener that is told about changes in the devices
+   *
+   * @calledby EmulatorManager.setListener()
+   * @calls MemoryBlock.setListener()
+   * @param listener Listener
+   */
+  public void setListener(EmulatorListener listener) {
+    for (MemoryBlock memoryBlock : this.memoryBlocks) memoryBlock.setListener(listener);
+  }
+
+  /**
+   * Send the characters written to the serial ports that haven't been sent
+   *
+   * @calledby EmulatorManager
+   * @calls SerialDevice.flush()
+   */
+  public void flush() {
+    for (SerialDevice serialPort : this.serialPorts) serialPort.flush();
+  }
+
+  /**
+   * Get the first buttons in the memory map
+   *
+   * @return Buttons or null if there are none
+   */
+  public ButtonDevice getButtons() {
+    return this.buttons;
+  }
+
+  /**
+   * Get the first dipswitches in the memory map
+   *
+   * @return Dipswitches or null if there are none
+   */
+  public DipswitchDevice getDipswitches() {
+    return this.dipswitches;
+  }
+
+  /**
+   * Get a serial port, they are numbered in the order of the memory map
+   *
+   * @param port Port number
+   * @return Serial port or null if there is no such port
+   */
+  public SerialDevice getSerialPort(int port) {
+    if (port < 0 || port >= this.serialPorts.size()) return null;
+
+    return this.serialPorts.get(port);
+  }
+
+  public MemoryMap getMemoryMap() {
+    return this.memoryMap;
+  }
+
+  /**
+   * Get the address the stack pointer starts at
+   *
+   * @calledby EmulatorManager.load()
+   * @calls MemoryMap.getStackAddr()
+   * @return Address right after the stack
+   */
+  public int getStackAddr() {
+    return this.memoryMap.getStackAddr();
+  }
+
+  /**
+   * Advance the devices by a number of instructions. Only the devices that are due are touched,
+   * so this can be called before every instruction while the state isn't tracked.
+   *
+   * @calledby resetState(), EmulatorManager.runBlock(), EmulatorManager.runCompiled(),
+   *     EmulatorManager.stepFast()
+   * @calls DeviceScheduler.tick()
+   * @param count Number of instructions
+   */
+  public void tick(int count) {
+    this.scheduler.tick(count);
+  }
+
+  /**
+   * Get the number of writes to all blocks, it changes every time a byte is written by the program
+   * or changed by a device
+   *
+   * @calledby EmulatorManager.runBlock()
+   * @calls MemoryBlock.getWriteCount()
+   * @return Number of writes
+   */
+  public int getWriteCount() {
+    int writes = 0;
+    for (MemoryBlock memoryBlock : this.memoryBlocks) writes += memoryBlock.getWriteCount();
+
+    return writes;
+  }
+
+  public DeviceScheduler getScheduler() {
+    return this.scheduler;
+  }
+
+  /**
+   * Get the interrupt controller the devices drive their IRQ lines on
+   *
+   * @calledby EmulatorManager, devices
+   * @return InterruptController
+   */
+  public InterruptController getInterrupts() {
+    return this.interrupts;
+  }
+
+  /**
+   * Turn on or off the tracking of read and written bytes in all blocks
+   *
+   * @calledby EmulatorManager.runFast()
+   * @calls MemoryBlock.setTracking()
+   * @param tracking True if the state should be tracked
+   */
+  public void setTracking(boolean tracking) {
+    for (MemoryBlock memoryBlock : this.memoryBlocks) memoryBlock.setTracking(tracking);
   }
 
   /**
@@ -785,13 +1282,27 @@ public class MemoryManager {
    * @throws MemoryException If the address is wrong
    */
   public byte readByte(int addr) throws MemoryException {
-    for (MemoryBlock block : this.memoryBlocks) {
-      if (block.inRange(addr)) {
-        return block.readByte(addr);
-      }
-    }
+    byte value = this.load(addr);
+    this.count(AccessProfile.ACCESS.READ, addr);
+    if (this.isWatched(addr, 1)) this.watchRead(addr, 1, value & 0xFF);
+
+    return value;
+  }
+
+  /**
+   * Read one byte without checking the watchpoints
+   *
+   * @calledby the read methods
+   * @param addr External address
+   * @return One byte from the memory
+   * @throws MemoryException If the address is wrong
+   */
+  private byte load(int addr) throws MemoryException {
+    MemoryBlock block = this.findBlock(addr);
+    if (block == null) throw new MemoryException(addr);
+    if (!block.isReadable()) throw new MemoryException("Address not readable", addr);
 
-    throw new MemoryException(addr);
+    return block.readByte(addr);
   }
 
   /**
@@ -804,81 +1315,161 @@ public class MemoryManager {
    * @throws MemoryException If the address is wrong
    */
   public void writeByte(int addr, byte value) throws MemoryException {
-    for (MemoryBlock block : this.memoryBlocks) {
-      if (block.inRange(addr)) {
-        block.writeByte(addr, value);
-        return;
-      }
+    if (this.isWatched(addr, 1)) {
+      int oldValue = this.peek(addr, 1);
+      this.store(addr, value);
+      this.watchWrite(addr, 1, oldValue, value & 0xFF);
+    } else {
+      this.store(addr, value);
     }
 
-    throw new MemoryException(addr);
+    this.count(AccessProfile.ACCESS.WRITE, addr);
+  }
+
+  /**
+   * Write one byte without checking the watchpoints
+   *
+   * @calledby the write methods
+   * @param addr External address
+   * @param value Value
+   * @throws MemoryException If the address is wrong
+   */
+  private void store(int addr, byte value) throws MemoryException {
+    MemoryBlock block = this.findBlock(addr);
+    if (block == null) throw new MemoryException(addr);
+    if (!block.isWritable()) throw new MemoryException("Address not writable", addr);
+
+    block.writeByte(addr, value);
   }
 
   public MemoryBlock getBlock(int addr) throws MemoryException {
-    for (MemoryBlock block : this.memoryBlocks) {
-      if (block.inRange(addr)) return block;
-    }
+    MemoryBlock block = this.findBlock(addr);
+    if (block == null) throw new MemoryException(addr);
 
-    throw new MemoryException(addr);
+    return block;
+  }
+
+  /**
+   * Fetch the instruction placed at an address.
+   *
+   * @calls MemoryBlock.getInstruction()
+   * @param addr External address
+   * @return Decoded instruction
+   * @throws MemoryException If the address is wrong
+   * @throws InstructionException If the opcode isn't a valid instruction
+   */
+  public Instruction getInstruction(int addr) throws MemoryException, InstructionException {
+    return this.getBlock(addr).getInstruction(addr);
   }
 
   /**
-   * Read one short from memory.
+   * Read one short from memory. The block holding the address does the whole access unless it
+   * crosses into another block.
    *
    * @calledby Instruction
+   * @calls findBlock(), MemoryBlock.readShort()
    * @param addr External address
    * @param notify True if the device should be notified
    * @return One short from the memory
    * @throws MemoryException If the address is wrong
    */
   public short readShort(int addr) throws MemoryException {
-    return (short) ((this.readByte(addr + 1) & 0xFF) << 8 | (this.readByte(addr) & 0xFF));
+    short value;
+    MemoryBlock block = this.findBlock(addr);
+    if (block != null && block.isReadable() && block.inRange(addr + 1)) {
+      value = block.readShort(addr);
+    } else {
+      value = (short) ((this.load(addr + 1) & 0xFF) << 8 | (this.load(addr) & 0xFF));
+    }
+
+    this.count(AccessProfile.ACCESS.READ, addr);
+    if (this.isWatched(addr, 2)) this.watchRead(addr, 2, value & 0xFFFF);
+    return value;
   }
 
   /**
-   * Write one short to memory.
+   * Write one short to memory. The block holding the address does the whole access unless it
+   * crosses into another block.
    *
    * @calledby Instruction
+   * @calls findBlock(), MemoryBlock.writeShort()
    * @param addr External address
    * @param value Value
    * @param notify True if the device should be notified
    * @throws MemoryException If the address is wrong
    */
   public void writeShort(int addr, short value) throws MemoryException {
-    this.writeByte(addr, (byte) (value & 0xFF));
-    this.writeByte(addr + 1, (byte) (value >>> 8 & 0xFF));
+    boolean watched = this.isWatched(addr, 2);
+    int oldValue = watched ? this.peek(addr, 2) : 0;
+
+    MemoryBlock block = this.findBlock(addr);
+    if (block != null && block.isWritable() && block.inRange(addr + 1)) {
+      block.writeShort(addr, value);
+    } else {
+      this.store(addr, (byte) (value & 0xFF));
+      this.store(addr + 1, (byte) (value >>> 8 & 0xFF));
+    }
+
+    this.count(AccessProfile.ACCESS.WRITE, addr);
+    if (watched) this.watchWrite(addr, 2, oldValue, value & 0xFFFF);
   }
 
   /**
-   * Read one int from memory.
+   * Read one int from memory. The block holding the address does the whole access unless it
+   * crosses into another block.
    *
    * @calledby Instruction, EmulatorManager
+   * @calls findBlock(), MemoryBlock.readInt()
    * @param addr External address
    * @param notify True if the device should be notified
    * @return One int from the memory
    * @throws MemoryException If the address is wrong
    */
   public int readInt(int addr) throws MemoryException {
-    return (this.readByte(addr + 3) & 0xFF) << 24
-        | (this.readByte(addr + 2) & 0xFF) << 16
-        | (this.readByte(addr + 1) & 0xFF) << 8
-        | (this.readByte(addr) & 0xFF);
+    int value;
+    MemoryBlock block = this.findBlock(addr);
+    if (block != null && block.isReadable() && block.inRange(addr + 3)) {
+      value = block.readInt(addr);
+    } else {
+      value =
+          (this.load(addr + 3) & 0xFF) << 24
+              | (this.load(addr + 2) & 0xFF) << 16
+              | (this.load(addr + 1) & 0xFF) << 8
+              | (this.load(addr) & 0xFF);
+    }
+
+    this.count(AccessProfile.ACCESS.READ, addr);
+    if (this.isWatched(addr, 4)) this.watchRead(addr, 4, value);
+    return value;
   }
 
   /**
-   * Write one int to memory.
+   * Write one int to memory. The block holding the address does the whole access unless it
+   * crosses into another block.
    *
    * @calledby Instruction
+   * @calls findBlock(), MemoryBlock.writeInt()
    * @param addr External address
    * @param notify True if the device should be notified
    * @param value Value
    * @throws MemoryException If the address is wrong
    */
   public void writeInt(int addr, int value) throws MemoryException {
-    this.writeByte(addr, (byte) (value & 0xFF));
-    this.writeByte(addr + 1, (byte) (value >>> 8 & 0xFF));
-    this.writeByte(addr + 2, (byte) (value >>> 16 & 0xFF));
-    this.writeByte(addr + 3, (byte) (value >>> 24 & 0xFF));
+    boolean watched = this.isWatched(addr, 4);
+    int oldValue = watched ? this.peek(addr, 4) : 0;
+
+    MemoryBlock block = this.findBlock(addr);
+    if (block != null && block.isWritable() && block.inRange(addr + 3)) {
+      block.writeInt(addr, value);
+    } else {
+      this.store(addr, (byte) (value & 0xFF));
+      this.store(addr + 1, (byte) (value >>> 8 & 0xFF));
+      this.store(addr + 2, (byte) (value >>> 16 & 0xFF));
+      this.store(addr + 3, (byte) (value >>> 24 & 0xFF));
+    }
+
+    this.count(AccessProfile.ACCESS.WRITE, addr);
+    if (watched) this.watchWrite(addr, 4, oldValue, value);
   }
 
   public ArrayList<MemoryBlock> getMemoryBlocks() {
@@ -0,0 +1,587 @@
+package jniosemu.emulator.memory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Vector;
+import jniosemu.emulator.EmulatorException;
+import jniosemu.emulator.memory.io.ButtonDevice;
+import jniosemu.emulator.memory.io.DipswitchDevice;
+import jniosemu.emulator.memory.io.LedDevice;
+import jniosemu.emulator.memory.io.SerialDevice;
+import jniosemu.emulator.memory.io.TimerDevice;
+
+/**
+ * Description of the memories and devices in the address space. The program, its variables and the
+ * library are not part of it, the compiler places them at PROGRAMSTARTADDR, VARIABLESTARTADDR and
+ * LIBSTARTADDR. No region may overlap them, the variables are given the addresses up to the
+ * default stack.
+ *
+ * <p>A description has one region on each line, # starts a comment:
+ *
+ * <pre>
+ * memory      sdram        0x1000000 64M  rw
+ * memory      rom          0x5000000 32M  rx   image.bin
+ * memory      flash        0x7000000 1M   rw   flash.bin  private
+ * stack       Stack        0x3ff80   0x80
+ * leds        Leds         0x810
+ * timer       Timer        0x820          irq 0
+ * buttons     Buttons      0x840          irq 1
+ * dipswitches Dipswitches  0x850
+ * uart        uart_0       0x860          irq 8
+ * uart        uart_1       0x880     64K  irq 10
+ * </pre>
+ *
+ * The permissions of a memory are any of r, w and x. Sizes can end with K or M, and addresses and
+ * sizes must fit in 32 bits. The stack is readable, writable and executable memory and the stack
+ * pointer starts right after it. A uart can be given the number of characters its input and output
+ * buffers hold. A timer, buttons and a uart can be given the IRQ line they drive, without one they
+ * never interrupt.
+ *
+ * <p>A memory can be backed by a file that is mapped into it instead of being copied. A memory
+ * that isn't writable maps the file read only and all emulators using the map share the mapping.
+ * Writes to a writable memory go to the file, so its contents are kept between runs, unless the
+ * memory is private. A private memory starts with the contents of the file and gets them back on
+ * reset, its writes are never written to the file.
+ */
+public class MemoryMap {
+  /** The different kinds of regions */
+  public static enum TYPE {
+    MEMORY,
+    STACK,
+    LEDS,
+    TIMER,
+    BUTTONS,
+    DIPSWITCHES,
+    UART
+  };
+
+  /** One memory or device */
+  public static class Region {
+    private final TYPE type;
+    private final String name;
+    private final int start;
+    private final int size;
+    private final boolean readable;
+    private final boolean writable;
+    private final boolean executable;
+    /** File the memory is mapped from, null if it isn't backed by a file */
+    private File file = null;
+    /** How the file is mapped */
+    private FileChannel.MapMode mapMode = null;
+    /** Mapping shared by all memories made from the region, not used for private mappings */
+    private ByteBuffer mapping = null;
+    /** Size of the buffers of a uart */
+    private int depth = SerialDevice.DEPTH;
+    /** IRQ line of the device, -1 if it doesn't interrupt */
+    private int irq = -1;
+
+    private Region(
+        TYPE type,
+        String name,
+        int start,
+        int size,
+        boolean readable,
+        boolean writable,
+        boolean executable) {
+      this.type = type;
+      this.name = name;
+      this.start = start;
+      this.size = size;
+      this.readable = readable;
+      this.writable = writable;
+      this.executable = executable;
+    }
+
+    /**
+     * Map the file of the region. Read only and shared mappings are only made once, private
+     * mappings are made every time so each one starts with the contents of the file.
+     *
+     * @calledby BufferMemory()
+     * @return Buffer of the region, in the byte order of the buffer
+     * @throws IOException If the file can't be mapped
+     */
+    synchronized ByteBuffer map() throws IOException {
+      if (this.mapping != null) return this.mapping.duplicate();
+
+      FileChannel channel;
+      if (this.mapMode == FileChannel.MapMode.READ_ONLY) {
+        channel = FileChannel.open(this.file.toPath(), StandardOpenOption.READ);
+      } else {
+        channel =
+            FileChannel.open(
+                this.file.toPath(),
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE);
+      }
+
+      ByteBuffer buffer;
+      try {
+        buffer = channel.map(this.mapMode, 0, this.size);
+      } finally {
+        channel.close();
+      }
+
+      if (this.mapMode != FileChannel.MapMode.PRIVATE) this.mapping = buffer;
+
+      return buffer.duplicate();
+    }
+
+    public TYPE getType() {
+      return this.type;
+    }
+
+    public String getName() {
+      return this.name;
+    }
+
+    public int getStart() {
+      return this.start;
+    }
+
+    public int getSize() {
+      return this.size;
+    }
+
+    public int getEnd() {
+      return this.start + this.size - 1;
+    }
+
+    public boolean isReadable() {
+      return this.readable;
+    }
+
+    public boolean isWritable() {
+      return this.writable;
+    }
+
+    public boolean isExecutable() {
+      return this.executable;
+    }
+
+    public File getFile() {
+      return this.file;
+    }
+
+    public FileChannel.MapMode getMapMode() {
+      return this.mapMode;
+    }
+
+    public int getDepth() {
+      return this.depth;
+    }
+
+    public int getIrq() {
+      return this.irq;
+    }
+  }
+
+  /** Where the compiler places the program, the library and the variables */
+  private static final Region[] RESERVED = {
+    new Region(
+        TYPE.MEMORY,
+        "Text",
+        MemoryManager.PROGRAMSTARTADDR,
+        MemoryManager.LIBSTARTADDR - MemoryManager.PROGRAMSTARTADDR,
+        true,
+        true,
+        true),
+    new Region(
+        TYPE.MEMORY,
+        "Lib",
+        MemoryManager.LIBSTARTADDR,
+        MemoryManager.VARIABLESTARTADDR - MemoryManager.LIBSTARTADDR,
+        true,
+        true,
+        true),
+    new Region(
+        TYPE.MEMORY,
+        "Data",
+        MemoryManager.VARIABLESTARTADDR,
+        MemoryManager.STACKSTARTADDR - MemoryManager.STACKSIZE - MemoryManager.VARIABLESTARTADDR,
+        true,
+        true,
+        true)
+  };
+
+  /** Regions in the order they were added */
+  private Vector<Region> regions = new Vector<Region>();
+
+  /**
+   * Get the map used when no other map is given. It has the small stack and the devices of the
+   * DE2 board the emulator has always had, with the IRQ lines they have on the board.
+   *
+   * @calledby EmulatorManager, MemoryManager()
+   * @return Default map
+   */
+  public static MemoryMap getDefault() {
+    MemoryMap map = new MemoryMap();
+    try {
+      map.setStack(
+          "Stack", MemoryManager.STACKSTARTADDR - MemoryManager.STACKSIZE, MemoryManager.STACKSIZE);
+      map.addDevice(TYPE.LEDS, LedDevice.MEMORYNAME, LedDevice.MEMORYADDR);
+      map.addDevice(TYPE.TIMER, TimerDevice.MEMORYNAME, TimerDevice.MEMORYADDR);
+      map.addDevice(TYPE.BUTTONS, ButtonDevice.MEMORYNAME, ButtonDevice.MEMORYADDR);
+      map.addDevice(TYPE.DIPSWITCHES, DipswitchDevice.MEMORYNAME, DipswitchDevice.MEMORYADDR);
+      map.addDevice(TYPE.UART, "uart_0", 0x860);
+      map.addDevice(TYPE.UART, "uart_1", 0x880);
+      map.setIrq(TimerDevice.MEMORYNAME, 0);
+      map.setIrq(ButtonDevice.MEMORYNAME, 1);
+      map.setIrq("uart_0", 8);
+      map.setIrq("uart_1", 10);
+    } catch (EmulatorException e) {
+      throw new IllegalStateException(e.getMessage());
+    }
+
+    return map;
+  }
+
+  /**
+   * Parse a description of a memory map
+   *
+   * @calledby JNiosEmu.main()
+   * @param description Description, one region on each line
+   * @return Memory map
+   * @throws EmulatorException If the description can't be parsed or regions overlap
+   */
+  public static MemoryMap parse(String description) throws EmulatorException {
+    MemoryMap map = new MemoryMap();
+
+    int lineNumber = 0;
+    for (String line : description.split("\r?\n")) {
+      lineNumber++;
+
+      int comment = line.indexOf('#');
+      if (comment >= 0) line = line.substring(0, comment);
+      line = line.trim();
+      if (line.length() == 0) continue;
+
+      String[] fields = line.split("\\s+");
+      TYPE type;
+      try {
+        type = TYPE.valueOf(fields[0].toUpperCase());
+      } catch (IllegalArgumentException e) {
+        throw new EmulatorException(
+            "Memory map line " + lineNumber + ": Unknown type " + fields[0]);
+      }
+
+      int irq = -1;
+      if (fields.length > 2 && fields[fields.length - 2].equals("irq")) {
+        if (!canInterrupt(type))
+          throw new EmulatorException(
+              "Memory map line " + lineNumber + ": " + fields[1] + " can't interrupt");
+        irq = parseNumber(fields[fields.length - 1], lineNumber);
+        fields = Arrays.copyOf(fields, fields.length - 2);
+      }
+
+      int expected = (type == TYPE.MEMORY) ? 5 : (type == TYPE.STACK) ? 4 : 3;
+      int optional = (type == TYPE.MEMORY) ? 2 : (type == TYPE.UART) ? 1 : 0;
+      if (fields.length < expected || fields.length > expected + optional)
+        throw new EmulatorException(
+            "Memory map line " + lineNumber + ": Expected " + expected + " fields");
+
+      int start = parseNumber(fields[2], lineNumber);
+      int size = (expected > 3) ? parseNumber(fields[3], lineNumber) : 0;
+      if (type == TYPE.MEMORY && fields.length > expected) {
+        boolean copy = false;
+        if (fields.length == expected + 2) {
+          if (!fields[6].equals("private"))
+            throw new EmulatorException(
+                "Memory map line " + lineNumber + ": Unknown mapping " + fields[6]);
+          copy = true;
+        }
+        map.addMemory(fields[1], start, size, fields[4], new File(fields[5]), copy);
+      } else if (type == TYPE.MEMORY) {
+        map.addMemory(fields[1], start, size, fields[4]);
+      } else if (type == TYPE.STACK) {
+        map.setStack(fields[1], start, size);
+      } else if (type == TYPE.UART && fields.length > expected) {
+        map.addUart(fields[1], start, parseNumber(fields[3], lineNumber));
+      } else {
+        map.addDevice(type, fields[1], start);
+      }
+      if (irq >= 0) map.setIrq(fields[1], irq);
+    }
+
+    return map;
+  }
+
+  /**
+   * Check if a type of device has an IRQ line
+   *
+   * @calledby parse(), setIrq()
+   * @param type Type of region
+   * @return True for a timer, buttons and a uart
+   */
+  private static boolean canInterrupt(TYPE type) {
+    return type == TYPE.TIMER || type == TYPE.BUTTONS || type == TYPE.UART;
+  }
+
+  /**
+   * Parse an address or a size
+   *
+   * @calledby parse()
+   * @param value Number, may end with K or M
+   * @param lineNumber Line the number is on
+   * @return Number, values above 0x7FFFFFFF wrap around to negative numbers like addresses do
+   * @throws EmulatorException If it isn't a number or doesn't fit in 32 bits
+   */
+  private static int parseNumber(String value, int lineNumber) throws EmulatorException {
+    long factor = 1;
+    if (value.endsWith("K")) {
+      factor = 1024;
+    } else if (value.endsWith("M")) {
+      factor = 1024 * 1024;
+    }
+    if (factor != 1) value = value.substring(0, value.length() - 1);
+
+    long number;
+    try {
+      number = Long.decode(value);
+    } catch (NumberFormatException e) {
+      throw new EmulatorException("Memory map line " + lineNumber + ": Invalid number " + value);
+    }
+
+    // Signed or unsigned, checked before multiplying so it can't overflow
+    if (number < Integer.MIN_VALUE / factor || number > 0xFFFFFFFFL / factor)
+      throw new EmulatorException(
+          "Memory map line " + lineNumber + ": Number out of range " + value);
+
+    return (int) (number * factor);
+  }
+
+  /**
+   * Add a memory
+   *
+   * @param name Name
+   * @param start Start address
+   * @param size Size in bytes
+   * @param permissions Any of r, w and x
+   * @throws EmulatorException If the permissions are invalid or it overlaps another region
+   */
+  public void addMemory(String name, int start, int size, String permissions)
+      throws EmulatorException {
+    this.add(this.createMemory(name, start, size, permissions));
+  }
+
+  /**
+   * Add a memory backed by a file. The file is mapped when an emulator is loaded, not copied.
+   *
+   * @param name Name
+   * @param start Start address
+   * @param size Size in bytes
+   * @param permissions Any of r, w and x, without w the file is mapped read only
+   * @param file File with the contents of the memory
+   * @param copy True if writes shouldn't be written to the file
+   * @throws EmulatorException If the permissions are invalid, the file can't be used or it
+   *     overlaps another region
+   */
+  public void addMemory(
+      String name, int start, int size, String permissions, File file, boolean copy)
+      throws EmulatorException {
+    Region region = this.createMemory(name, start, size, permissions);
+    if (!region.isWritable()) {
+      region.mapMode = FileChannel.MapMode.READ_ONLY;
+    } else if (copy) {
+      region.mapMode = FileChannel.MapMode.PRIVATE;
+    } else {
+      region.mapMode = FileChannel.MapMode.READ_WRITE;
+    }
+    region.file = file;
+
+    // A shared mapping makes the file as large as the memory, the others can't
+    if (region.mapMode == FileChannel.MapMode.READ_WRITE && !file.exists()) {
+      File parent = file.getAbsoluteFile().getParentFile();
+      if (parent == null || !parent.canWrite())
+        throw new EmulatorException("Can't create " + file + " for " + name);
+    } else if (!file.isFile() || !file.canRead()) {
+      throw new EmulatorException("Can't read " + file + " for " + name);
+    } else if (region.mapMode != FileChannel.MapMode.READ_ONLY && !file.canWrite()) {
+      throw new EmulatorException("Can't write " + file + " for " + name);
+    } else if (region.mapMode != FileChannel.MapMode.READ_WRITE && file.length() < size) {
+      throw new EmulatorException(file + " is smaller than " + name);
+    }
+
+    this.add(region);
+  }
+
+  /**
+   * Create a memory region
+   *
+   * @calledby addMemory()
+   * @param name Name
+   * @param start Start address
+   * @param size Size in bytes
+   * @param permissions Any of r, w and x
+   * @return Region
+   * @throws EmulatorException If the permissions are invalid
+   */
+  private Region createMemory(String name, int start, int size, String permissions)
+      throws EmulatorException {
+    if (!permissions.matches("[rwx]*"))
+      throw new EmulatorException("Invalid permissions for " + name + ": " + permissions);
+
+    return new Region(
+        TYPE.MEMORY,
+        name,
+        start,
+        size,
+        permissions.indexOf('r') >= 0,
+        permissions.indexOf('w') >= 0,
+        permissions.indexOf('x') >= 0);
+  }
+
+  /**
+   * Set the stack, it replaces the stack set before
+   *
+   * @param name Name
+   * @param start Start address
+   * @param size Size in bytes
+   * @throws EmulatorException If it overlaps another region
+   */
+  public void setStack(String name, int start, int size) throws EmulatorException {
+    Region stack = this.getStack();
+    if (stack != null) this.regions.remove(stack);
+
+    try {
+      this.add(new Region(TYPE.STACK, name, start, size, true, true, true));
+    } catch (EmulatorException e) {
+      if (stack != null) this.regions.add(stack);
+      throw e;
+    }
+  }
+
+  /**
+   * Add a device
+   *
+   * @param type Type of device
+   * @param name Name
+   * @param start Start address
+   * @throws EmulatorException If it overlaps another region
+   */
+  public void addDevice(TYPE type, String name, int start) throws EmulatorException {
+    int size;
+    switch (type) {
+      case LEDS:
+        size = LedDevice.MEMORYLENGTH;
+        break;
+      case TIMER:
+        size = TimerDevice.MEMORYLENGTH;
+        break;
+      case BUTTONS:
+        size = ButtonDevice.MEMORYLENGTH;
+        break;
+      case DIPSWITCHES:
+        size = DipswitchDevice.MEMORYLENGTH;
+        break;
+      case UART:
+        size = SerialDevice.MEMORYLENGTH;
+        break;
+      default:
+        throw new EmulatorException("Not a device: " + type);
+    }
+
+    this.add(new Region(type, name, start, size, true, true, false));
+  }
+
+  /**
+   * Add a uart with buffers of a given size
+   *
+   * @param name Name
+   * @param start Start address
+   * @param depth Number of characters the input and output buffers hold
+   * @throws EmulatorException If the size is invalid or it overlaps another region
+   */
+  public void addUart(String name, int start, int depth) throws EmulatorException {
+    if (depth <= 0) throw new EmulatorException("Invalid buffer size of " + name);
+
+    Region region =
+        new Region(TYPE.UART, name, start, SerialDevice.MEMORYLENGTH, true, true, false);
+    region.depth = depth;
+    this.add(region);
+  }
+
+  /**
+   * Set the IRQ line a device drives
+   *
+   * @calledby getDefault(), parse()
+   * @param name Name of the device
+   * @param irq IRQ number between 0 and 31
+   * @throws EmulatorException If there is no such device, it can't interrupt or the IRQ is
+   *     invalid or used by another device
+   */
+  public void setIrq(String name, int irq) throws EmulatorException {
+    if (irq < 0 || irq > 31) throw new EmulatorException("Invalid IRQ " + irq + " of " + name);
+
+    Region device = null;
+    for (Region region : this.regions) {
+      if (region.getName().equals(name)) {
+        device = region;
+      } else if (region.getIrq() == irq) {
+        throw new EmulatorException(name + " has the same IRQ as " + region.getName());
+      }
+    }
+
+    if (device == null) throw new EmulatorException("No device " + name);
+    if (!canInterrupt(device.getType())) throw new EmulatorException(name + " can't interrupt");
+
+    device.irq = irq;
+  }
+
+  /**
+   * Add a region unless it overlaps another region or the addresses of the program
+   *
+   * @calledby addMemory(), setStack(), addDevice(), addUart()
+   * @param region Region
+   * @throws EmulatorException If it is empty or overlaps another region or the program
+   */
+  private void add(Region region) throws EmulatorException {
+    if (region.getSize() <= 0 || region.getEnd() < region.getStart())
+      throw new EmulatorException("Invalid size of " + region.getName());
+
+    for (Region other : RESERVED) {
+      if (region.getStart() <= other.getEnd() && other.getStart() <= region.getEnd())
+        throw new EmulatorException(region.getName() + " overlaps " + other.getName());
+    }
+    for (Region other : this.regions) {
+      if (region.getStart() <= other.getEnd() && other.getStart() <= region.getEnd())
+        throw new EmulatorException(region.getName() + " overlaps " + other.getName());
+    }
+
+    this.regions.add(region);
+  }
+
+  /**
+   * Get the stack
+   *
+   * @return Stack or null if there is none
+   */
+  public Region getStack() {
+    for (Region region : this.regions) {
+      if (region.getType() == TYPE.STACK) return region;
+    }
+
+    return null;
+  }
+
+  /**
+   * Get the address the stack pointer starts at
+   *
+   * @calledby MemoryManager.getStackAddr()
+   * @return Address right after the stack, or STACKSTARTADDR if there is no stack
+   */
+  public int getStackAddr() {
+    Region stack = this.getStack();
+    if (stack == null) return MemoryManager.STACKSTARTADDR;
+
+    return stack.getEnd() + 1;
+  }
+
+  public Vector<Region> getRegions() {
+    return this.regions;
+  }
+}
@@ -0,0 +1,218 @@
+package jniosemu.emulator.memory;
+
+import jniosemu.Utilities;
+import jniosemu.emulator.EmulatorException;
+
+/**
+ * Watchpoint on a range of addresses. It stops the emulation after an instruction that reads or
+ * writes the range, or that writes a given value to it.
+ *
+ * <p>A watchpoint is described as "type address [length] [value]", for example "write 0x30000 4"
+ * or "value 0x30000 4 10". The type is read, write or value, the length is 1 if it is left out.
+ */
+public class Watchpoint {
+  /** The different kinds of watchpoints */
+  public static enum TYPE {
+    READ,
+    WRITE,
+    VALUE
+  };
+
+  /** What the watchpoint stops at */
+  private final TYPE type;
+  /** First watched address */
+  private final int start;
+  /** Last watched address */
+  private final int end;
+  /** Value a VALUE watchpoint stops at */
+  private final int value;
+
+  /** Access that stopped the emulation at a watchpoint */
+  public static class Hit {
+    private final Watchpoint watchpoint;
+    /** Address of the instruction that made the access, -1 if it isn't known */
+    private final int pc;
+    /** Address of the access */
+    private final int address;
+    /** Number of bytes accessed */
+    private final int size;
+    /** Value before the access */
+    private final int oldValue;
+    /** Value after the access */
+    private final int newValue;
+
+    Hit(Watchpoint watchpoint, int pc, int address, int size, int oldValue, int newValue) {
+      this.watchpoint = watchpoint;
+      this.pc = pc;
+      this.address = address;
+      this.size = size;
+      this.oldValue = oldValue;
+      this.newValue = newValue;
+    }
+
+    /**
+     * Get the same hit made by the instruction at an address
+     *
+     * @calledby EmulatorManager.watchpointStop()
+     * @param pc Address of the instruction
+     * @return Hit
+     */
+    public Hit withPC(int pc) {
+      return new Hit(this.watchpoint, pc, this.address, this.size, this.oldValue, this.newValue);
+    }
+
+    public Watchpoint getWatchpoint() {
+      return this.watchpoint;
+    }
+
+    public int getPC() {
+      return this.pc;
+    }
+
+    public int getAddress() {
+      return this.address;
+    }
+
+    public int getSize() {
+      return this.size;
+    }
+
+    public int getOldValue() {
+      return this.oldValue;
+    }
+
+    public int getNewValue() {
+      return this.newValue;
+    }
+
+    public String toString() {
+      String access = (this.watchpoint.getType() == TYPE.READ) ? "Read of " : "Write to ";
+      return "Watchpoint: "
+          + access
+          + Utilities.intToHexString(this.address)
+          + " at "
+          + Utilities.intToHexString(this.pc)
+          + ": "
+          + Utilities.intToHexString(this.oldValue)
+          + " -> "
+          + Utilities.intToHexString(this.newValue);
+    }
+  }
+
+  /**
+   * Init Watchpoint
+   *
+   * @param type What to stop at
+   * @param start First watched address
+   * @param length Number of watched bytes
+   * @param value Value a VALUE watchpoint stops at, not used by the other types
+   */
+  public Watchpoint(TYPE type, int start, int length, int value) {
+    this.type = type;
+    this.start = start;
+    this.end = start + Math.max(length, 1) - 1;
+    this.value = value;
+  }
+
+  /**
+   * Init a READ or WRITE Watchpoint
+   *
+   * @param type What to stop at
+   * @param start First watched address
+   * @param length Number of watched bytes
+   */
+  public Watchpoint(TYPE type, int start, int length) {
+    this(type, start, length, 0);
+  }
+
+  /**
+   * Parse the description of a watchpoint
+   *
+   * @calledby JNiosEmu.main()
+   * @param description Description, see the class comment
+   * @return Watchpoint
+   * @throws EmulatorException If the description can't be parsed
+   */
+  public static Watchpoint parse(String description) throws EmulatorException {
+    String[] fields = description.trim().split("\\s+");
+
+    TYPE type;
+    try {
+      type = TYPE.valueOf(fields[0].toUpperCase());
+    } catch (IllegalArgumentException e) {
+      throw new EmulatorException("Unknown watchpoint type: " + fields[0]);
+    }
+
+    int expected = (type == TYPE.VALUE) ? 4 : 3;
+    if (fields.length < 2 || fields.length > expected)
+      throw new EmulatorException("Invalid watchpoint: " + description);
+
+    try {
+      int start = Long.decode(fields[1]).intValue();
+      int length = (fields.length > 2) ? Long.decode(fields[2]).intValue() : 1;
+      int value = (fields.length > 3) ? Long.decode(fields[3]).intValue() : 0;
+      if (length <= 0) throw new EmulatorException("Invalid watchpoint length: " + fields[2]);
+
+      return new Watchpoint(type, start, length, value);
+    } catch (NumberFormatException e) {
+      throw new EmulatorException("Invalid number in watchpoint: " + description);
+    }
+  }
+
+  public TYPE getType() {
+    return this.type;
+  }
+
+  public int getStart() {
+    return this.start;
+  }
+
+  public int getEnd() {
+    return this.end;
+  }
+
+  public int getValue() {
+    return this.value;
+  }
+
+  /**
+   * Check if an access is inside the watched range
+   *
+   * @param addr Address of the access
+   * @param size Number of bytes
+   * @return True if any accessed byte is watched
+   */
+  boolean overlaps(int addr, int size) {
+    return addr <= this.end && this.start <= addr + size - 1;
+  }
+
+  /**
+   * Check if a read stops at the watchpoint
+   *
+   * @calledby MemoryManager.watchRead()
+   * @param addr Address of the access
+   * @param size Number of bytes
+   * @return True if it stops
+   */
+  boolean stopsAtRead(int addr, int size) {
+    return this.type == TYPE.READ && this.overlaps(addr, size);
+  }
+
+  /**
+   * Check if a write stops at the watchpoint
+   *
+   * @calledby MemoryManager.watchWrite()
+   * @param addr Address of the access
+   * @param size Number of bytes
+   * @param value Written value
+   * @return True if it stops
+   */
+  boolean stopsAtWrite(int addr, int size, int value) {
+    if (!this.overlaps(addr, size)) return false;
+    if (this.type == TYPE.WRITE) return true;
+    if (this.type != TYPE.VALUE) return false;
+
+    int mask = (size == 4) ? -1 : (1 << (size * 8)) - 1;
+    return (value & mask) == (this.value & mask);
+  }
+}
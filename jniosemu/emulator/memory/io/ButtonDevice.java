@@ -1,28 +1,30 @@
 package jniosemu.emulator.memory.io;
 
+import java.util.Arrays;
 import java.util.Vector;
 import jniosemu.Utilities;
+import jniosemu.emulator.EmulatorListener;
 import jniosemu.emulator.memory.MemoryBlock;
 import jniosemu.emulator.memory.MemoryException;
 import jniosemu.emulator.memory.MemoryInt;
 import jniosemu.emulator.memory.MemoryManager;
-import jniosemu.events.EventManager;
-import jniosemu.events.EventObserver;
 
-/** Handle the dipswitches */
-public class ButtonDevice extends MemoryBlock implements EventObserver {
+/**
+ * Handle the buttons. The data register at offset 0 holds the buttons that are pressed, the
+ * interrupt mask at offset 8 selects the buttons that interrupt and the edge capture register at
+ * offset 12 gets a bit set when a button is pressed, writing it clears it.
+ */
+public class ButtonDevice extends MemoryBlock {
   /** Address to memory where this is placed */
-  private static final int MEMORYADDR = 0x840;
+  public static final int MEMORYADDR = 0x840;
   /** Length of memory that is used */
-  private static final int MEMORYLENGTH = 16;
+  public static final int MEMORYLENGTH = 16;
   /** Name of memoryblock */
-  private static final String MEMORYNAME = "Buttons";
+  public static final String MEMORYNAME = "Buttons";
   /** Number of buttons */
   private static final int COUNT = 4;
   /** Containing the states of each dipswitch */
   private Vector<Boolean> value;
-  /** Used EventManager */
-  private EventManager eventManager;
   /** Used MemoryManger */
   private MemoryManager memoryManager;
   /** */
@@ -31,29 +33,24 @@ public class ButtonDevice extends MemoryBlock implements EventObserver {
   /**
    * Init ButtonDevice
    *
-   * @post Add events. Init states.
+   * @post Init states.
    * @calledby IOManager()
+   * @param listener Listener that is told when the buttons change
    * @param memory current MemoryManager
-   * @param eventManager current EventManager
+   * @param name Name of the device
+   * @param startAddr Address the device is placed at
    */
-  public ButtonDevice(EventManager eventManager, MemoryManager memoryManager) {
-    this.name = MEMORYNAME;
-    this.start = MEMORYADDR;
+  public ButtonDevice(
+      EmulatorListener listener, MemoryManager memoryManager, String name, int startAddr) {
+    this.name = name;
+    this.start = startAddr;
     this.length = MEMORYLENGTH;
 
     this.memory = new byte[this.length];
 
-    this.eventManager = eventManager;
+    this.listener = listener;
     this.memoryManager = memoryManager;
 
-    EventManager.EVENT[] events = {
-      EventManager.EVENT.BUTTON_RELEASE,
-      EventManager.EVENT.BUTTON_PRESS,
-      EventManager.EVENT.BUTTON_TOGGLE
-    };
-
-    this.eventManager.addEventObserver(events, this);
-
     this.reset();
   }
 
@@ -66,29 +63,70 @@ public class ButtonDevice extends MemoryBlock implements EventObserver {
   public void reset() {
     this.clearState();
 
-    this.changed = 0;
+    this.resetChanges();
     this.valueChanged = false;
+    Arrays.fill(this.memory, 8, this.length, (byte) 0);
     this.value = new Vector<Boolean>(COUNT);
     for (int i = 0; i < COUNT; i++) this.value.add(i, false);
 
-    this.sendEvent();
+    this.sendUpdate();
   }
 
   public boolean resetState() {
     this.clearState();
+    return false;
+  }
 
+  /**
+   * Latch the changed value in the data register and capture the buttons that were pressed
+   *
+   * @calledby DeviceScheduler
+   * @param count Number of ticks
+   */
+  public void tick(long count) {
     if (this.valueChanged) {
-      memory[0] = Utilities.vectorToByte(this.value);
+      byte pressed = Utilities.vectorToByte(this.value);
+      byte edges = (byte) (pressed & ~memory[0]);
+      memory[0] = pressed;
       this.setState(0, MemoryInt.STATE.WRITE);
 
+      if (edges != 0) {
+        memory[12] |= edges;
+        this.setState(12, MemoryInt.STATE.WRITE);
+        this.updateIrq();
+      }
+
       this.valueChanged = false;
     }
+  }
 
-    return false;
+  public long nextEvent() {
+    return this.valueChanged ? 1 : -1;
   }
 
   public void writeByte(int addr, byte value) throws MemoryException {
-    throw new MemoryException(addr);
+    int mapAddr = this.mapAddr(addr);
+    if (mapAddr >= 8 && mapAddr < 12) {
+      memory[mapAddr] = value;
+    } else if (mapAddr >= 12 && mapAddr < 16) {
+      memory[mapAddr] = 0;
+    } else {
+      throw new MemoryException(addr);
+    }
+
+    this.updateIrq();
+    this.updateSourceCode(mapAddr, 1);
+    this.setState(mapAddr, MemoryInt.STATE.WRITE);
+  }
+
+  /**
+   * Assert the IRQ line while a captured edge is enabled in the interrupt mask
+   *
+   * @calledby tick(), writeByte()
+   */
+  private void updateIrq() {
+    boolean level = (memory[8] & memory[12] & 0xF) != 0;
+    this.memoryManager.getInterrupts().setLine(this.irq, level);
   }
 
   public byte readByte(int addr) throws MemoryException {
@@ -105,40 +143,36 @@ public class ButtonDevice extends MemoryBlock implements EventObserver {
   }
 
   /**
-   * Send states to eventManager
+   * Send states to the listener
    *
-   * @calledby ButtonDevice(), reset(), update()
+   * @calledby reset(), setValue()
    */
-  private void sendEvent() {
-    this.eventManager.sendEvent(EventManager.EVENT.BUTTON_UPDATE, this.value);
+  private void sendUpdate() {
+    this.listener.buttonUpdate(this.value);
   }
 
   /**
    * Set state of a button
    *
-   * @calledby update()
+   * @calledby toggle(), EmulatorEventAdapter
    * @param index button index
    * @param state new state
    */
-  private void setValue(int index, boolean value) {
+  public void setValue(int index, boolean value) {
     this.valueChanged = true;
     this.value.set(index, value);
+    this.memoryManager.getScheduler().schedule(this);
 
-    this.sendEvent();
+    this.sendUpdate();
   }
 
-  public void update(EventManager.EVENT eventIdentifier, Object obj) {
-    switch (eventIdentifier) {
-      case BUTTON_RELEASE:
-        this.setValue(((Integer) obj).intValue(), false);
-        break;
-      case BUTTON_PRESS:
-        this.setValue(((Integer) obj).intValue(), true);
-        break;
-      case BUTTON_TOGGLE:
-        int index = ((Integer) obj).intValue();
-        this.setValue(index, !this.value.get(index));
-        break;
-    }
+  /**
+   * Toggle the state of a button
+   *
+   * @calledby EmulatorEventAdapter
+   * @param index button index
+   */
+  public void toggle(int index) {
+    this.setValue(index, !this.value.get(index));
   }
 }
@@ -0,0 +1,106 @@
+package jniosemu.emulator.memory.io;
+
+/**
+ * Fixed size FIFO of bytes kept in an array. It is shared between the thread running the program
+ * and the threads that feed a serial port, so all methods are synchronized.
+ */
+class ByteRing {
+  /** Bytes, the oldest one at head */
+  private final byte[] bytes;
+  /** Index of the oldest byte */
+  private int head = 0;
+  /** Number of bytes in the ring */
+  private int size = 0;
+
+  /**
+   * Init ByteRing
+   *
+   * @calledby SerialDevice()
+   * @param capacity Max number of bytes
+   */
+  ByteRing(int capacity) {
+    this.bytes = new byte[capacity];
+  }
+
+  /**
+   * Add a byte if there is room for it
+   *
+   * @param value Byte
+   * @return False if the ring is full and the byte wasn't added
+   */
+  synchronized boolean offer(byte value) {
+    if (this.size == this.bytes.length) return false;
+
+    this.bytes[(this.head + this.size) % this.bytes.length] = value;
+    this.size++;
+    return true;
+  }
+
+  /**
+   * Add a byte, waiting until there is room for it
+   *
+   * @param value Byte
+   * @throws InterruptedException If the thread is interrupted while waiting
+   */
+  synchronized void put(byte value) throws InterruptedException {
+    while (this.size == this.bytes.length) this.wait();
+
+    this.offer(value);
+  }
+
+  /**
+   * Remove the oldest byte
+   *
+   * @return Byte as 0-255, -1 if the ring is empty
+   */
+  synchronized int poll() {
+    if (this.size == 0) return -1;
+
+    int value = this.bytes[this.head] & 0xFF;
+    this.head = (this.head + 1) % this.bytes.length;
+    this.size--;
+    this.notifyAll();
+
+    return value;
+  }
+
+  /**
+   * Remove the oldest bytes
+   *
+   * @param count Number of bytes, at most size()
+   * @return Bytes, the oldest one first
+   */
+  synchronized byte[] take(int count) {
+    byte[] taken = new byte[count];
+    int first = Math.min(count, this.bytes.length - this.head);
+    System.arraycopy(this.bytes, this.head, taken, 0, first);
+    System.arraycopy(this.bytes, 0, taken, first, count - first);
+
+    this.head = (this.head + count) % this.bytes.length;
+    this.size -= count;
+    this.notifyAll();
+    return taken;
+  }
+
+  synchronized void clear() {
+    this.head = 0;
+    this.size = 0;
+    this.notifyAll();
+  }
+
+  synchronized boolean isEmpty() {
+    return this.size == 0;
+  }
+
+  synchronized boolean isFull() {
+    return this.size == this.bytes.length;
+  }
+
+  synchronized int size() {
+    return this.size;
+  }
+
+  synchronized int room() {
+    return this.bytes.length - this.size;
+  }
+}
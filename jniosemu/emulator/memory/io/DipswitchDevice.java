@@ -2,27 +2,24 @@ package jniosemu.emulator.memory.io;
 
 import java.util.Vector;
 import jniosemu.Utilities;
+import jniosemu.emulator.EmulatorListener;
 import jniosemu.emulator.memory.MemoryBlock;
 import jniosemu.emulator.memory.MemoryException;
 import jniosemu.emulator.memory.MemoryInt;
 import jniosemu.emulator.memory.MemoryManager;
-import jniosemu.events.EventManager;
-import jniosemu.events.EventObserver;
 
 /** Handle the dipswitches */
-public class DipswitchDevice extends MemoryBlock implements EventObserver {
+public class DipswitchDevice extends MemoryBlock {
   /** Address to memory where this is placed */
-  private static final int MEMORYADDR = 0x850;
+  public static final int MEMORYADDR = 0x850;
   /** Length of memory that is used */
-  private static final int MEMORYLENGTH = 16;
+  public static final int MEMORYLENGTH = 16;
   /** Name of memoryblock */
-  private static final String MEMORYNAME = "Dipswitches";
+  public static final String MEMORYNAME = "Dipswitches";
   /** Number of buttons */
   private static final int COUNT = 4;
   /** Containing the states of each dipswitch */
   private Vector<Boolean> value;
-  /** Used EventManager */
-  private EventManager eventManager;
   /** Used MemoryManger */
   private MemoryManager memoryManager;
   /** */
@@ -31,23 +28,24 @@ public class DipswitchDevice extends MemoryBlock implements EventObserver {
   /**
    * Init ButtonDevice
    *
-   * @post Add events. Init states.
+   * @post Init states.
    * @calledby IOManager()
+   * @param listener Listener that is told when the dipswitches change
    * @param memory current MemoryManager
-   * @param eventManager current EventManager
+   * @param name Name of the device
+   * @param startAddr Address the device is placed at
    */
-  public DipswitchDevice(EventManager eventManager, MemoryManager memoryManager) {
-    this.name = MEMORYNAME;
-    this.start = MEMORYADDR;
+  public DipswitchDevice(
+      EmulatorListener listener, MemoryManager memoryManager, String name, int startAddr) {
+    this.name = name;
+    this.start = startAddr;
     this.length = MEMORYLENGTH;
 
     this.memory = new byte[this.length];
 
-    this.eventManager = eventManager;
+    this.listener = listener;
     this.memoryManager = memoryManager;
 
-    this.eventManager.addEventObserver(EventManager.EVENT.DIPSWITCH_TOGGLE, this);
-
     this.value = new Vector<Boolean>(COUNT);
     for (int i = 0; i < COUNT; i++) this.value.add(i, false);
 
@@ -61,25 +59,37 @@ public class DipswitchDevice extends MemoryBlock implements EventObserver {
    * @param memory current MemoryManager
    */
   public void reset() {
-    this.resetState();
+    this.clearState();
+    this.tick(1);
 
-    this.changed = 0;
+    this.resetChanges();
     this.valueChanged = false;
 
-    this.sendEvent();
+    this.sendUpdate();
   }
 
   public boolean resetState() {
     this.clearState();
+    return false;
+  }
 
+  /**
+   * Latch the changed value in the data register
+   *
+   * @calledby DeviceScheduler, reset()
+   * @param count Number of ticks
+   */
+  public void tick(long count) {
     if (this.valueChanged) {
       memory[0] = Utilities.vectorToByte(this.value);
       this.setState(0, MemoryInt.STATE.WRITE);
 
       this.valueChanged = false;
     }
+  }
 
-    return false;
+  public long nextEvent() {
+    return this.valueChanged ? 1 : -1;
   }
 
   public void writeByte(int addr, byte value) throws MemoryException {
@@ -100,34 +110,36 @@ public class DipswitchDevice extends MemoryBlock implements EventObserver {
   }
 
   /**
-   * Send states to eventManager
+   * Send states to the listener
    *
-   * @calledby ButtonDevice(), reset(), update()
+   * @calledby reset(), setValue()
    */
-  private void sendEvent() {
-    this.eventManager.sendEvent(EventManager.EVENT.DIPSWITCH_UPDATE, this.value);
+  private void sendUpdate() {
+    this.listener.dipswitchUpdate(this.value);
   }
 
   /**
-   * Set state of a button
+   * Set state of a dipswitch
    *
-   * @calledby update()
-   * @param index button index
+   * @calledby toggle()
+   * @param index dipswitch index
    * @param state new state
    */
   private void setValue(int index, boolean value) {
     this.valueChanged = true;
     this.value.set(index, value);
+    this.memoryManager.getScheduler().schedule(this);
 
-    this.sendEvent();
+    this.sendUpdate();
   }
 
-  public void update(EventManager.EVENT eventIdentifier, Object obj) {
-    switch (eventIdentifier) {
-      case DIPSWITCH_TOGGLE:
-        int index = ((Integer) obj).intValue();
-        this.setValue(index, !this.value.get(index));
-        break;
-    }
+  /**
+   * Toggle the state of a dipswitch
+   *
+   * @calledby EmulatorEventAdapter
+   * @param index dipswitch index
+   */
+  public void toggle(int index) {
+    this.setValue(index, !this.value.get(index));
   }
 }
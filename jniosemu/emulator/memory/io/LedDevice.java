@@ -1,44 +1,46 @@
 package jniosemu.emulator.memory.io;
 
+import java.util.Arrays;
 import java.util.Vector;
 import jniosemu.Utilities;
+import jniosemu.emulator.EmulatorListener;
 import jniosemu.emulator.memory.MemoryBlock;
 import jniosemu.emulator.memory.MemoryException;
 import jniosemu.emulator.memory.MemoryInt;
 import jniosemu.emulator.memory.MemoryManager;
-import jniosemu.events.EventManager;
 
 /** Handle the dipswitches */
 public class LedDevice extends MemoryBlock {
   /** Memory address which this uses */
-  private static final int MEMORYADDR = 0x810;
+  public static final int MEMORYADDR = 0x810;
   /** Memory length it uses */
-  private static final int MEMORYLENGTH = 16;
+  public static final int MEMORYLENGTH = 16;
   /** Name of memoryblock */
-  private static String MEMORYNAME = "Leds";
+  public static final String MEMORYNAME = "Leds";
   /** Number of leds */
   private static final int COUNT = 4;
   /** Containing the states of each dipswitch */
   private Vector<Boolean> value;
-  /** Used EventManager */
-  private EventManager eventManager;
 
   /**
    * Init ButtonDevice
    *
    * @post Add events. Init states.
    * @calledby IOManager()
+   * @param listener Listener that is told when the leds change
    * @param memory current MemoryManager
-   * @param eventManager current EventManager
+   * @param name Name of the device
+   * @param startAddr Address the device is placed at
    */
-  public LedDevice(EventManager eventManager, MemoryManager memoryManager) {
-    this.name = MEMORYNAME;
-    this.start = MEMORYADDR;
+  public LedDevice(
+      EmulatorListener listener, MemoryManager memoryManager, String name, int startAddr) {
+    this.name = name;
+    this.start = startAddr;
     this.length = MEMORYLENGTH;
 
     this.memory = new byte[this.length];
 
-    this.eventManager = eventManager;
+    this.listener = listener;
 
     this.reset();
   }
@@ -52,11 +54,12 @@ public class LedDevice extends MemoryBlock {
   public void reset() {
     this.resetState();
 
-    this.changed = 0;
+    this.resetChanges();
+    Arrays.fill(this.memory, (byte) 0);
     this.value = new Vector<Boolean>(COUNT);
     for (int i = 0; i < COUNT; i++) this.value.add(i, false);
 
-    this.sendEvent();
+    this.sendUpdate();
   }
 
   public boolean resetState() {
@@ -73,15 +76,35 @@ public class LedDevice extends MemoryBlock {
       memory[0] = value;
 
       this.value = Utilities.intToVector(Utilities.unsignedbyteToInt(value), COUNT);
-      this.sendEvent();
+      this.sendUpdate();
     } else if (mapAddr < 0 || mapAddr > 3) {
       throw new MemoryException(addr);
     }
 
-    this.sourceCode = null;
+    this.updateSourceCode(mapAddr, 1);
     this.setState(mapAddr, MemoryInt.STATE.WRITE);
   }
 
+  /**
+   * Write the data register as a whole, only its lowest byte is used
+   *
+   * @calledby MemoryManager.writeInt()
+   * @calls writeByte()
+   * @param addr Memory address
+   * @param value Value
+   * @throws MemoryException If the address is wrong
+   */
+  public void writeInt(int addr, int value) throws MemoryException {
+    int mapAddr = this.mapAddr(addr);
+    if (mapAddr != 0) {
+      super.writeInt(addr, value);
+      return;
+    }
+
+    this.writeByte(addr, (byte) value);
+    for (int i = 1; i < 4; i++) this.setState(i, MemoryInt.STATE.WRITE);
+  }
+
   public byte readByte(int addr) throws MemoryException {
     byte ret = 0;
     int mapAddr = this.mapAddr(addr);
@@ -96,11 +119,11 @@ public class LedDevice extends MemoryBlock {
   }
 
   /**
-   * Send states to eventManager
+   * Send states to the listener
    *
-   * @calledby ButtonDevice(), reset(), update()
+   * @calledby reset(), writeByte()
    */
-  public void sendEvent() {
-    this.eventManager.sendEvent(EventManager.EVENT.LED_UPDATE, this.value);
+  public void sendUpdate() {
+    this.listener.ledUpdate(this.value);
   }
 }
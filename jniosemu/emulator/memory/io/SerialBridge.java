@@ -0,0 +1,264 @@
+package jniosemu.emulator.memory.io;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+
+/**
+ * Connects a serial port to a TCP socket on localhost. One client at a time is served, others
+ * wait until it disconnects. Everything is done with non-blocking channels in one thread.
+ *
+ * <p>Both directions have backpressure. Bytes from the client are only read when the input buffer
+ * of the port has room for them, and the characters written by the program wait in the port while
+ * the bridge can't take them, which clears the transmit ready bit. Written characters also wait
+ * while no client is connected.
+ */
+public class SerialBridge {
+  /** Number of written characters the bridge holds while the client hasn't read them */
+  public static final int DEPTH = 4096;
+
+  /** Channel clients connect to */
+  private ServerSocketChannel server;
+  /** Connected client, null if there is none */
+  private SocketChannel client = null;
+  /** Selector of the bridge thread */
+  private Selector selector;
+  /** Written characters that haven't been sent to the client, in write mode */
+  private ByteBuffer outgoing = ByteBuffer.allocate(DEPTH);
+  /** Bytes read from the client */
+  private ByteBuffer incoming = ByteBuffer.allocate(256);
+  /** Port the bridge is attached to, null if it isn't attached */
+  private volatile SerialDevice port = null;
+  /** False when the bridge is closed */
+  private volatile boolean open = true;
+
+  /**
+   * Init SerialBridge and start listening
+   *
+   * @calledby EmulatorManager.bridgeSerialPort()
+   * @param tcpPort TCP port to listen on, 0 to let the system choose one
+   * @throws IOException If the socket can't be opened
+   */
+  public SerialBridge(int tcpPort) throws IOException {
+    this.selector = Selector.open();
+    this.server = ServerSocketChannel.open();
+    this.server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), tcpPort));
+    this.server.configureBlocking(false);
+    this.server.register(this.selector, SelectionKey.OP_ACCEPT);
+
+    Thread thread =
+        new Thread(
+            new Runnable() {
+              public void run() {
+                serve();
+              }
+            },
+            "Serial bridge " + this.getTcpPort());
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Get the TCP port the bridge listens on
+   *
+   * @return TCP port
+   */
+  public int getTcpPort() {
+    return this.server.socket().getLocalPort();
+  }
+
+  /**
+   * Stop listening and disconnect the client
+   *
+   * @calledby EmulatorManager.bridgeSerialPort()
+   */
+  public void close() {
+    this.open = false;
+    this.selector.wakeup();
+  }
+
+  /**
+   * Attach the bridge to a port, it reads from the client for that port from now on
+   *
+   * @calledby SerialDevice.attach()
+   * @param port Port, or null to detach the bridge
+   */
+  void setPort(SerialDevice port) {
+    this.port = port;
+    this.selector.wakeup();
+  }
+
+  /**
+   * Tell the bridge there might be room in the input buffer of the port again
+   *
+   * @calledby SerialDevice.tick()
+   */
+  void wakeup() {
+    this.selector.wakeup();
+  }
+
+  /**
+   * Get the number of written characters the bridge can take
+   *
+   * @calledby SerialDevice
+   * @return Number of characters, 0 while no client is connected
+   */
+  synchronized int room() {
+    return (this.client == null) ? 0 : this.outgoing.remaining();
+  }
+
+  /**
+   * Send written characters to the client
+   *
+   * @pre There is room for the characters, see room()
+   * @calledby SerialDevice.send()
+   * @param bytes Characters
+   */
+  synchronized void send(byte[] bytes) {
+    this.outgoing.put(bytes);
+    this.selector.wakeup();
+  }
+
+  /**
+   * Move bytes between the client and the port until the bridge is closed
+   *
+   * @calledby SerialBridge()
+   * @calls accept(), read(), write()
+   */
+  private void serve() {
+    try {
+      while (this.open) {
+        this.updateInterest();
+        this.selector.select();
+
+        Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+          SelectionKey key = keys.next();
+          keys.remove();
+
+          if (!key.isValid()) continue;
+          if (key.isAcceptable()) this.accept();
+          if (key.isValid() && key.isReadable()) this.read();
+          if (key.isValid() && key.isWritable()) this.write();
+        }
+      }
+    } catch (IOException e) {
+    }
+
+    this.disconnect();
+    try {
+      this.server.close();
+      this.selector.close();
+    } catch (IOException e) {
+    }
+  }
+
+  /**
+   * Set what the bridge waits for. New clients are only accepted while none is connected, the
+   * client is only read from when the port has room for the bytes and only written to when there
+   * is something to send.
+   *
+   * @calledby serve()
+   */
+  private synchronized void updateInterest() {
+    int accept = (this.client == null) ? SelectionKey.OP_ACCEPT : 0;
+    this.server.keyFor(this.selector).interestOps(accept);
+    if (this.client == null) return;
+
+    SerialDevice port = this.port;
+    int ops = 0;
+    if (port != null && port.inputRoom() > 0) ops |= SelectionKey.OP_READ;
+    if (this.outgoing.position() > 0) ops |= SelectionKey.OP_WRITE;
+    this.client.keyFor(this.selector).interestOps(ops);
+  }
+
+  /**
+   * Accept a new client
+   *
+   * @calledby serve()
+   * @throws IOException If the client can't be set up
+   */
+  private void accept() throws IOException {
+    SocketChannel client = this.server.accept();
+    if (client == null) return;
+
+    client.configureBlocking(false);
+    client.register(this.selector, 0);
+    synchronized (this) {
+      this.client = client;
+    }
+
+    // The program may be waiting for room to write
+    SerialDevice port = this.port;
+    if (port != null) port.bridgeReady();
+  }
+
+  /**
+   * Read from the client into the input buffer of the port, no more than it has room for
+   *
+   * @calledby serve()
+   * @calls SerialDevice.receive()
+   */
+  private void read() {
+    SerialDevice port = this.port;
+    if (port == null) return;
+
+    this.incoming.clear();
+    this.incoming.limit(Math.min(port.inputRoom(), this.incoming.capacity()));
+    try {
+      int count = this.client.read(this.incoming);
+      if (count < 0) {
+        this.disconnect();
+      } else if (count > 0) {
+        port.receive(this.incoming.array(), count);
+      }
+    } catch (IOException e) {
+      this.disconnect();
+    }
+  }
+
+  /**
+   * Write the waiting characters to the client
+   *
+   * @calledby serve()
+   * @calls SerialDevice.bridgeReady()
+   */
+  private void write() {
+    synchronized (this) {
+      this.outgoing.flip();
+      try {
+        this.client.write(this.outgoing);
+      } catch (IOException e) {
+        this.outgoing.compact();
+        this.disconnect();
+        return;
+      }
+      this.outgoing.compact();
+    }
+
+    SerialDevice port = this.port;
+    if (port != null) port.bridgeReady();
+  }
+
+  /**
+   * Close the connection to the client, the characters it hasn't got are dropped
+   *
+   * @calledby serve(), read(), write()
+   */
+  private synchronized void disconnect() {
+    if (this.client == null) return;
+
+    try {
+      this.client.close();
+    } catch (IOException e) {
+    }
+    this.client = null;
+    this.outgoing.clear();
+  }
+}
@@ -1,106 +1,279 @@
 package jniosemu.emulator.memory.io;
 
-import java.util.LinkedList;
-import java.util.Queue;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import jniosemu.emulator.EmulatorListener;
+import jniosemu.emulator.memory.DeviceScheduler;
 import jniosemu.emulator.memory.MemoryBlock;
 import jniosemu.emulator.memory.MemoryException;
 import jniosemu.emulator.memory.MemoryInt;
 import jniosemu.emulator.memory.MemoryManager;
-import jniosemu.events.EventManager;
-import jniosemu.events.EventObserver;
 
-/** Handle the SerialPort */
-public class SerialDevice extends MemoryBlock implements EventObserver {
+/**
+ * Handle the SerialPort. Received characters wait in a buffer until the program reads them.
+ * Written characters are collected in another buffer and sent together when it is full, when
+ * FLUSHINTERVAL instructions have run since the first of them or when flush() is called.
+ *
+ * <p>The port can be bound to streams. Everything read from the input stream is received, and the
+ * written characters are written to the output stream as well as told to the listener.
+ *
+ * <p>The port can also be attached to a SerialBridge. Written characters then wait in the output
+ * buffer until the bridge takes them, and the transmit ready bit is cleared while the buffer is
+ * full. The receive ready bit is set while there is a received character the program hasn't read.
+ */
+public class SerialDevice extends MemoryBlock {
   /** Length of memory that is used */
-  private static final int MEMORYLENGTH = 16;
+  public static final int MEMORYLENGTH = 16;
+  /** Size of each buffer if no other size is given */
+  public static final int DEPTH = 4096;
+  /** Max number of instructions written characters wait before they are sent */
+  public static final int FLUSHINTERVAL = 100000;
 
-  private Queue<Character> inputBuffer = new LinkedList<Character>();
-  /** Used EventManager */
-  private EventManager eventManager;
+  /** Received characters the program hasn't read */
+  private ByteRing inputBuffer;
+  /** Written characters that haven't been sent */
+  private ByteRing outputBuffer;
+  /**
+   * Number of instructions until the written characters are sent, 0 if they wait for the bridge
+   * to take them and -1 if there are none
+   */
+  private long flushIn = -1;
+  /** Stream the received characters are read from, null if it isn't bound */
+  private volatile InputStream inputStream = null;
+  /** Stream the written characters are written to, null if it isn't bound */
+  private OutputStream outputStream = null;
+  /** Error from writing to the output stream, reported on the next write by the program */
+  private IOException outputError = null;
+  /** Bridge the port is attached to, null if it isn't attached */
+  private volatile SerialBridge bridge = null;
 
   /** Used MemoryManger */
   private MemoryManager memoryManager;
 
-  private EventManager.EVENT inEvent = null;
-  private EventManager.EVENT outEvent = null;
+  /**
+   * Init SerialDevice with buffers of the default size
+   *
+   * @calls SerialDevice()
+   * @param listener Listener that is told about the written characters
+   * @param memory current MemoryManager
+   * @param name Name of the serial port
+   * @param startAddr Address the serial port is placed at
+   */
+  public SerialDevice(
+      EmulatorListener listener, MemoryManager memoryManager, String name, int startAddr) {
+    this(listener, memoryManager, name, startAddr, DEPTH);
+  }
 
   /**
-   * Init ButtonDevice
+   * Init SerialDevice
    *
-   * @post Add events. Init states.
-   * @calledby IOManager()
+   * @post Init states.
+   * @calledby MemoryManager()
+   * @param listener Listener that is told about the written characters
    * @param memory current MemoryManager
-   * @param eventManager current EventManager
+   * @param name Name of the serial port
+   * @param startAddr Address the serial port is placed at
+   * @param depth Number of characters each buffer holds
    */
   public SerialDevice(
-      EventManager eventManager,
+      EmulatorListener listener,
       MemoryManager memoryManager,
       String name,
       int startAddr,
-      EventManager.EVENT inEvent,
-      EventManager.EVENT outEvent) {
+      int depth) {
     this.name = name;
     this.start = startAddr;
     this.length = MEMORYLENGTH;
-    this.inEvent = inEvent;
-    this.outEvent = outEvent;
 
     this.memory = new byte[this.length];
+    this.inputBuffer = new ByteRing(depth);
+    this.outputBuffer = new ByteRing(depth);
 
-    this.eventManager = eventManager;
+    this.listener = listener;
     this.memoryManager = memoryManager;
 
-    if (this.inEvent != null) this.eventManager.addEventObserver(this.inEvent, this);
-
     this.reset();
   }
 
   /**
-   * Reset
+   * Reset, the written characters that haven't been sent are sent first. The ones an attached
+   * bridge has no room for are dropped.
    *
-   * @calledby IOManager.reset()
-   * @param memory current MemoryManager
+   * @calledby MemoryManager.reset()
+   * @calls send()
    */
   public void reset() {
-    this.resetState();
+    this.send();
+
     this.clearState();
-    this.changed = 0;
+    this.resetChanges();
+    Arrays.fill(this.memory, (byte) 0);
     this.inputBuffer.clear();
+    this.outputBuffer.clear();
+    this.flushIn = -1;
+    if (this.bridge != null) this.bridge.wakeup();
   }
 
   public boolean resetState() {
     this.clearState();
+    return false;
+  }
 
-    if (!this.inputBuffer.isEmpty() && (memory[8] & 0x80) == 0) {
-      memory[0] = (byte) (this.inputBuffer.poll() & 0xFF);
-      this.setState(0, MemoryInt.STATE.WRITE);
-      memory[8] |= 0x80;
-      this.setState(8, MemoryInt.STATE.WRITE);
+  /**
+   * Send the written characters when they have waited long enough, move the next input character
+   * to the data register when the last one has been read, and set the transmit ready bit when
+   * there is room in the output buffer
+   *
+   * @calledby DeviceScheduler
+   * @calls send()
+   * @param count Number of ticks
+   */
+  public void tick(long count) {
+    if (this.flushIn >= 0) {
+      this.flushIn -= count;
+      if (this.flushIn <= 0) this.send();
     }
-    if ((memory[8] & 0x40) == 0) {
+
+    if ((memory[8] & 0x80) == 0) {
+      boolean full = this.inputBuffer.isFull();
+      int value = this.inputBuffer.poll();
+      if (value >= 0) {
+        memory[0] = (byte) value;
+        this.setState(0, MemoryInt.STATE.WRITE);
+        memory[8] |= 0x80;
+        this.setState(8, MemoryInt.STATE.WRITE);
+
+        // The bridge stops reading while the input buffer is full
+        if (full && this.bridge != null) this.bridge.wakeup();
+      }
+    }
+    if ((memory[8] & 0x40) == 0 && !this.outputBuffer.isFull()) {
       memory[8] |= 0x40;
       this.setState(8, MemoryInt.STATE.WRITE);
     }
+    this.updateIrq();
+  }
 
-    return false;
+  public long nextEvent() {
+    boolean busy =
+        !this.inputBuffer.isEmpty() && (memory[8] & 0x80) == 0
+            || (memory[8] & 0x40) == 0 && !this.outputBuffer.isFull();
+    if (busy) return 1;
+
+    if (this.flushIn == 0) {
+      SerialBridge bridge = this.bridge;
+      return (bridge != null && bridge.room() > 0) ? 1 : -1;
+    }
+    return (this.flushIn > 0) ? this.flushIn : -1;
   }
 
   public void writeByte(int addr, byte value) throws MemoryException {
     int mapAddr = this.mapAddr(addr);
 
     if (mapAddr == 4) {
+      if (this.outputError != null)
+        throw new MemoryException(
+            "Can't write output of " + this.name + ": " + this.outputError.getMessage());
+
       memory[4] = value;
-      this.eventManager.sendEvent(this.outEvent, (char) (value & 0xFF));
+      this.output(value);
+      if (this.outputBuffer.isFull()) {
+        memory[8] &= ~0x40;
+        this.setState(8, MemoryInt.STATE.WRITE);
+      }
     } else if (mapAddr == 12) {
       memory[12] = (byte) (value & 0xC0);
     } else if (mapAddr < 4 || mapAddr >= 8 && mapAddr < 12 || mapAddr >= 16) {
       throw new MemoryException(addr);
     }
 
-    this.sourceCode = null;
+    this.updateIrq();
+    this.updateSourceCode(mapAddr, 1);
     this.setState(mapAddr, MemoryInt.STATE.WRITE);
   }
 
+  /**
+   * Assert the IRQ line while a status bit is set that is enabled in the control register, bit 7
+   * for received characters and bit 6 for room to write
+   *
+   * @calledby tick(), writeByte(), readByte()
+   */
+  private void updateIrq() {
+    boolean level = (memory[8] & memory[12] & 0xC0) != 0;
+    this.memoryManager.getInterrupts().setLine(this.irq, level);
+  }
+
+  /**
+   * Put a written character in the output buffer. The first character starts the flush interval,
+   * and the characters are sent at once when the buffer gets full. The character is dropped if the
+   * buffer is still full, which only happens when the program doesn't wait for the transmit ready
+   * bit while the port is attached to a bridge.
+   *
+   * @calledby writeByte()
+   * @calls send(), DeviceScheduler.schedule()
+   * @param value Character
+   */
+  private void output(byte value) {
+    DeviceScheduler scheduler = this.memoryManager.getScheduler();
+    scheduler.sync(this);
+
+    if (this.outputBuffer.isEmpty()) this.flushIn = FLUSHINTERVAL;
+    this.outputBuffer.offer(value);
+    if (this.outputBuffer.isFull()) this.send();
+
+    scheduler.schedule(this);
+  }
+
+  /**
+   * Send the written characters that haven't been sent
+   *
+   * @calledby MemoryManager.flush()
+   * @calls send()
+   */
+  public void flush() {
+    DeviceScheduler scheduler = this.memoryManager.getScheduler();
+    scheduler.sync(this);
+    this.send();
+    scheduler.schedule(this);
+  }
+
+  /**
+   * Send the written characters to the output stream, the bridge and the listener. If the port is
+   * attached to a bridge only as many as it has room for are sent, and the rest wait until it has
+   * room for more.
+   *
+   * @calledby flush(), reset(), tick(), output()
+   * @calls EmulatorListener.serialOutput(), SerialBridge.send()
+   */
+  private void send() {
+    this.flushIn = -1;
+    if (this.outputBuffer.isEmpty()) return;
+
+    SerialBridge bridge = this.bridge;
+    int count = this.outputBuffer.size();
+    if (bridge != null) {
+      count = Math.min(count, bridge.room());
+      if (count < this.outputBuffer.size()) this.flushIn = 0;
+      if (count == 0) return;
+    }
+
+    byte[] bytes = this.outputBuffer.take(count);
+    if (bridge != null) bridge.send(bytes);
+    if (this.outputStream != null && this.outputError == null) {
+      try {
+        this.outputStream.write(bytes);
+        this.outputStream.flush();
+      } catch (IOException e) {
+        this.outputError = e;
+      }
+    }
+
+    this.listener.serialOutput(this.name, new String(bytes, StandardCharsets.ISO_8859_1));
+  }
+
   public byte readByte(int addr) throws MemoryException {
     int mapAddr = this.mapAddr(addr);
 
@@ -109,6 +282,8 @@ public class SerialDevice extends MemoryBlock implements EventObserver {
       memory[8] &= 0x7F;
       this.setState(8, MemoryInt.STATE.WRITE);
       ret = memory[0];
+      this.updateIrq();
+      if (!this.inputBuffer.isEmpty()) this.memoryManager.getScheduler().schedule(this);
     } else if (mapAddr >= 1 && mapAddr < 4 || mapAddr >= 8 && mapAddr < 16) {
       ret = memory[mapAddr];
     } else {
@@ -119,9 +294,117 @@ public class SerialDevice extends MemoryBlock implements EventObserver {
     return ret;
   }
 
-  public void update(EventManager.EVENT eventIdentifier, Object obj) {
-    if (eventIdentifier == this.inEvent) {
-      this.inputBuffer.offer(((Character) obj).charValue());
+  /**
+   * Receive a character, it can be read by the program when the earlier ones have been read. The
+   * character is dropped if the input buffer is full.
+   *
+   * @calledby EmulatorEventAdapter
+   * @param value Character
+   * @return False if the character was dropped
+   */
+  public boolean input(char value) {
+    if (!this.inputBuffer.offer((byte) value)) return false;
+
+    this.memoryManager.getScheduler().schedule(this);
+    return true;
+  }
+
+  /**
+   * Get the number of characters there is room for in the input buffer
+   *
+   * @calledby SerialBridge
+   * @return Number of characters
+   */
+  int inputRoom() {
+    return this.inputBuffer.room();
+  }
+
+  /**
+   * Receive characters from the bridge, the ones there is no room for are dropped
+   *
+   * @calledby SerialBridge.read()
+   * @calls DeviceScheduler.schedule()
+   * @param bytes Characters
+   * @param count Number of characters
+   */
+  void receive(byte[] bytes, int count) {
+    for (int i = 0; i < count; i++) this.inputBuffer.offer(bytes[i]);
+
+    this.memoryManager.getScheduler().schedule(this);
+  }
+
+  /**
+   * Tell the port the bridge has room for more written characters
+   *
+   * @calledby SerialBridge
+   * @calls DeviceScheduler.schedule()
+   */
+  void bridgeReady() {
+    this.memoryManager.getScheduler().schedule(this);
+  }
+
+  /**
+   * Attach the port to a bridge, replacing the bridge attached before
+   *
+   * @calledby EmulatorManager
+   * @param bridge Bridge, or null to detach the port
+   */
+  public void attach(SerialBridge bridge) {
+    if (this.bridge != null) this.bridge.setPort(null);
+
+    this.bridge = bridge;
+    if (bridge != null) bridge.setPort(this);
+    this.flush();
+  }
+
+  /**
+   * Bind the port to streams, replacing the streams bound before. A thread reads the input
+   * stream until it ends, waiting while the input buffer is full, so nothing read is dropped.
+   *
+   * @calledby EmulatorManager
+   * @param in Stream to receive characters from, or null
+   * @param out Stream to write the written characters to, or null
+   */
+  public void bind(final InputStream in, OutputStream out) {
+    this.flush();
+    this.outputStream = out;
+    this.outputError = null;
+
+    this.inputStream = in;
+    if (in == null) return;
+
+    Thread thread =
+        new Thread(
+            new Runnable() {
+              public void run() {
+                receive(in);
+              }
+            },
+            this.name + " input");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Move what is read from a stream to the input buffer until the stream ends or another stream
+   * is bound
+   *
+   * @calledby bind()
+   * @calls DeviceScheduler.schedule()
+   * @param in Stream
+   */
+  private void receive(InputStream in) {
+    byte[] buffer = new byte[256];
+    try {
+      int count;
+      while (this.inputStream == in && (count = in.read(buffer)) >= 0) {
+        for (int i = 0; i < count && this.inputStream == in; i++) {
+          this.inputBuffer.put(buffer[i]);
+          this.memoryManager.getScheduler().schedule(this);
+        }
+      }
+    } catch (IOException e) {
+    } catch (InterruptedException e) {
     }
   }
 }
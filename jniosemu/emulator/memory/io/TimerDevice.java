@@ -1,20 +1,21 @@
 package jniosemu.emulator.memory.io;
 
 import jniosemu.Utilities;
+import jniosemu.emulator.EmulatorListener;
+import jniosemu.emulator.memory.DeviceScheduler;
 import jniosemu.emulator.memory.MemoryBlock;
 import jniosemu.emulator.memory.MemoryException;
 import jniosemu.emulator.memory.MemoryInt;
 import jniosemu.emulator.memory.MemoryManager;
-import jniosemu.events.EventManager;
 
 /** Handle the Timer */
 public class TimerDevice extends MemoryBlock {
   /** Address to memory where this is placed */
-  private static final int MEMORYADDR = 0x820;
+  public static final int MEMORYADDR = 0x820;
   /** Length of memory that is used */
-  private static final int MEMORYLENGTH = 24;
+  public static final int MEMORYLENGTH = 24;
   /** Name of memoryblock */
-  private static final String MEMORYNAME = "Timer";
+  public static final String MEMORYNAME = "Timer";
   /** Used MemoryManger */
   private MemoryManager memoryManager;
 
@@ -25,16 +26,20 @@ public class TimerDevice extends MemoryBlock {
   /**
    * Init the Timer
    *
-   * @post Add events. Init states.
+   * @post Init states.
    * @calledby IOManager()
+   * @param listener Listener that is told about changes
    * @param memory current MemoryManager
-   * @param eventManager current EventManager
+   * @param name Name of the device
+   * @param startAddr Address the device is placed at
    */
-  public TimerDevice(EventManager eventManager, MemoryManager memoryManager) {
-    this.name = MEMORYNAME;
-    this.start = MEMORYADDR;
+  public TimerDevice(
+      EmulatorListener listener, MemoryManager memoryManager, String name, int startAddr) {
+    this.name = name;
+    this.start = startAddr;
     this.length = MEMORYLENGTH;
 
+    this.listener = listener;
     this.memoryManager = memoryManager;
 
     this.reset();
@@ -48,7 +53,7 @@ public class TimerDevice extends MemoryBlock {
    */
   public void reset() {
     this.clearState();
-    this.changed = 0;
+    this.resetChanges();
     this.memory = new byte[this.length];
     this.counter = 0;
     this.period = 0;
@@ -57,23 +62,50 @@ public class TimerDevice extends MemoryBlock {
 
   public boolean resetState() {
     this.clearState();
+    return false;
+  }
 
-    if (this.counting) {
-      if (this.counter != 0) {
-        this.counter--;
-      } else if ((this.memory[4] & 0x2) > 0) {
+  /**
+   * Count down, the counter reaches zero after counter + 1 ticks. A continuous timer then starts
+   * again from the period, otherwise it stops.
+   *
+   * @calledby DeviceScheduler
+   * @param count Number of ticks
+   */
+  public void tick(long count) {
+    while (count > 0 && this.counting) {
+      // Skip the ticks that only count down
+      long skip = Math.min(this.counter, count);
+      this.counter -= skip;
+      count -= skip;
+      if (count == 0) return;
+
+      if ((this.memory[4] & 0x2) > 0) {
         this.memory[0] |= 0x1;
         this.updateCounter();
-        this.setState(0, MemoryInt.STATE.WRITE);
       } else {
         this.counting = false;
         this.memory[0] |= 0x1;
         this.memory[0] &= 0xFD;
-        this.setState(0, MemoryInt.STATE.WRITE);
       }
+      this.setState(0, MemoryInt.STATE.WRITE);
+      this.updateIrq();
+      count--;
     }
+  }
 
-    return false;
+  public long nextEvent() {
+    return this.counting ? this.counter + 1 : -1;
+  }
+
+  /**
+   * Assert the IRQ line while the timeout bit is set and interrupts are enabled with ITO
+   *
+   * @calledby tick(), writeByte()
+   */
+  private void updateIrq() {
+    boolean level = (this.memory[0] & 0x1) > 0 && (this.memory[4] & 0x1) > 0;
+    this.memoryManager.getInterrupts().setLine(this.irq, level);
   }
 
   private void updateCounter() {
@@ -86,6 +118,8 @@ public class TimerDevice extends MemoryBlock {
 
   public void writeByte(int addr, byte value) throws MemoryException {
     int mapAddr = this.mapAddr(addr);
+    DeviceScheduler scheduler = this.memoryManager.getScheduler();
+    scheduler.sync(this);
 
     if (mapAddr == 0) {
       memory[0] &= 0xFE;
@@ -116,7 +150,9 @@ public class TimerDevice extends MemoryBlock {
       throw new MemoryException(addr);
     }
 
-    this.sourceCode = null;
+    scheduler.schedule(this);
+    this.updateIrq();
+    this.updateSourceCode(mapAddr, 1);
     this.setState(mapAddr, MemoryInt.STATE.WRITE);
   }
 
@@ -1,9 +1,8 @@
 package jniosemu.emulator.register;
 
 import jniosemu.Utilities;
-import jniosemu.emulator.memory.MemoryManager;
 
-/** Contains info about one register */
+/** Contains info about one register, a snapshot created by RegisterManager.get() */
 public class Register {
   /** The different state a register could be */
   public static enum STATE {
@@ -13,39 +12,36 @@ public class Register {
     DISABLED
   };
   /** Register number */
-  private int number;
+  private final int number;
   /** Value */
-  private int value = 0;
+  private final int value;
   /** State */
-  private STATE state = STATE.NONE;
+  private final STATE state;
 
   /**
    * Init register
    *
    * @post Set number, state and value.
-   * @checks if register isn't implemented set state to DISABLED
-   * @calledby RegisterManager
+   * @calledby RegisterManager.get()
    * @param number Number of the regiser
+   * @param value Value
+   * @param state State
    */
-  public Register(int number) {
+  public Register(int number, int value, STATE state) {
     this.number = number;
-
-    if (!(this.number == 31
-        || this.number == 27
-        || this.number == 28
-        || (this.number >= 0 && this.number <= 23))) this.state = STATE.DISABLED;
-
-    if (this.number == 27) this.value = MemoryManager.STACKSTARTADDR;
+    this.value = value;
+    this.state = state;
   }
 
   /**
-   * Reset state
+   * Check if a register is implemented by the emulator
    *
-   * @checks Set state to NONE if state != DISABLED
-   * @calledby RegisterManager
+   * @calledby RegisterManager, BreakpointCondition, JitCompiler
+   * @param number Number of the register
+   * @return True if the register can be read and written, bt and gp are the only ones that can't
    */
-  public void resetState() {
-    if (this.state != STATE.DISABLED) this.state = STATE.NONE;
+  public static boolean isImplemented(int number) {
+    return (number >= 27 && number <= 31) || (number >= 0 && number <= 24);
   }
 
   /**
@@ -79,36 +75,6 @@ public class Register {
     return Utilities.intToHexString(this.value);
   }
 
-  /**
-   * Read value and update state
-   *
-   * @calledby RegisterManager
-   * @return value
-   */
-  public int readValue() throws RegisterException {
-    if (this.state == STATE.DISABLED) throw new RegisterException(this.number);
-
-    // If the state already is WRITE we don't want to change that.
-    if (this.state != STATE.WRITE) this.state = STATE.READ;
-
-    return this.value;
-  }
-
-  /**
-   * Write value and update state
-   *
-   * @checks If number = 0 don't change value
-   * @param value new value
-   */
-  public void writeValue(int value) throws RegisterException {
-    if (this.state == STATE.DISABLED) throw new RegisterException(this.number);
-
-    if (this.number == 0) value = 0;
-
-    this.value = value;
-    this.state = STATE.WRITE;
-  }
-
   /**
    * Get state
    *
@@ -3,22 +3,57 @@ package jniosemu.emulator.register;
 import java.util.Vector;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import jniosemu.emulator.memory.MemoryManager;
 
 /** Manage all register */
 public class RegisterManager {
+  /** Bit n is set if register n is implemented */
+  private static final int IMPLEMENTED = implementedMask();
   /** contains the values of the registers */
-  private Vector<Register> registers;
-  // private int[] register = new int[32];
+  private int[] values = new int[32];
+  /** Bit n is set if register n has been read since the last resetState() */
+  private int readMask = 0;
+  /** Bit n is set if register n has been written since the last resetState() */
+  private int writeMask = 0;
+  /** Value of the stack pointer after reset */
+  private int stackAddr;
 
   /**
-   * Init RegisterManager
+   * Init RegisterManager with the stack pointer at STACKSTARTADDR
    *
    * @post Populate this.registers
    */
   public RegisterManager() {
+    this(MemoryManager.STACKSTARTADDR);
+  }
+
+  /**
+   * Init RegisterManager
+   *
+   * @post Populate this.registers
+   * @calledby EmulatorManager.load()
+   * @param stackAddr Value of the stack pointer after reset
+   */
+  public RegisterManager(int stackAddr) {
+    this.stackAddr = stackAddr;
     this.reset();
   }
 
+  /**
+   * Calculate the mask of implemented registers
+   *
+   * @calls Register.isImplemented()
+   * @return Bit n is set if register n is implemented
+   */
+  private static int implementedMask() {
+    int mask = 0;
+    for (int i = 0; i < 32; i++) {
+      if (Register.isImplemented(i)) mask |= 1 << i;
+    }
+
+    return mask;
+  }
+
   /**
    * Parse a register name
    *
@@ -31,8 +66,20 @@ public class RegisterManager {
       return 0;
     } else if (aRegister.equals("at")) {
       return 1;
+    } else if (aRegister.equals("et")) {
+      return 24;
+    } else if (aRegister.equals("bt")) {
+      return 25;
+    } else if (aRegister.equals("gp")) {
+      return 26;
     } else if (aRegister.equals("sp")) {
       return 27;
+    } else if (aRegister.equals("fp")) {
+      return 28;
+    } else if (aRegister.equals("ea")) {
+      return 29;
+    } else if (aRegister.equals("ba")) {
+      return 30;
     } else if (aRegister.equals("ra")) {
       return 31;
     }
@@ -50,6 +97,32 @@ public class RegisterManager {
     throw new RegisterException(aRegister);
   }
 
+  /**
+   * Parse a control register name
+   *
+   * @calledby CompilerRTypeInstruction
+   * @param aRegister Name of the control register, like status or ctl3
+   * @return Number of the control register
+   * @throws RegisterException If it isn't a control register
+   */
+  public static int parseControlRegister(String aRegister) throws RegisterException {
+    String[] names = {"status", "estatus", "bstatus", "ienable", "ipending", "cpuid"};
+    for (int i = 0; i < names.length; i++) {
+      if (aRegister.equals(names[i])) return i;
+    }
+
+    Matcher mRegister = Pattern.compile("ctl([\\d]+)").matcher(aRegister);
+    if (mRegister.matches()) {
+      try {
+        int index = Integer.parseInt(mRegister.group(1));
+        if (index < 32) return index;
+      } catch (Exception e) {
+      }
+    }
+
+    throw new RegisterException(aRegister);
+  }
+
   /**
    * Read the value of an index
    *
@@ -59,7 +132,10 @@ public class RegisterManager {
    * @throws RegisterException If you don't have access to that register
    */
   public int read(int index) throws RegisterException {
-    return this.registers.get(index).readValue();
+    if ((index & ~31) != 0 || (IMPLEMENTED >>> index & 1) == 0) throw new RegisterException(index);
+
+    this.readMask |= 1 << index;
+    return this.values[index];
   }
 
   /**
@@ -71,7 +147,41 @@ public class RegisterManager {
    * @throws RegisterException If you don't have access to that register
    */
   public void write(int index, int value) throws RegisterException {
-    this.registers.get(index).writeValue(value);
+    if ((index & ~31) != 0 || (IMPLEMENTED >>> index & 1) == 0) throw new RegisterException(index);
+
+    if (index != 0) this.values[index] = value;
+    this.writeMask |= 1 << index;
+  }
+
+  /**
+   * Get the value of a register without updating the state
+   *
+   * @calledby BreakpointCondition
+   * @param index Register
+   * @return Value of the register
+   */
+  public int getValue(int index) {
+    return this.values[index];
+  }
+
+  /**
+   * Get the register file. Changes to the array change the registers, and r0 must be kept 0.
+   *
+   * @calledby JitManager.run()
+   * @return Values of all registers indexed by register number
+   */
+  public int[] getValues() {
+    return this.values;
+  }
+
+  /**
+   * Mark registers as written
+   *
+   * @calledby JitManager.run()
+   * @param mask Bit n is set if register n has been written
+   */
+  public void markWritten(int mask) {
+    this.writeMask |= mask & IMPLEMENTED;
   }
 
   /**
@@ -81,22 +191,42 @@ public class RegisterManager {
    * @calledby EmulatorManager.reset()
    */
   public void reset() {
-    this.registers = new Vector<Register>(32);
-    for (int i = 0; i < 32; i++) this.registers.add(new Register(i));
+    this.values = new int[32];
+    this.values[27] = this.stackAddr;
+    this.resetState();
   }
 
   /** Reset state of all registers */
   public void resetState() {
-    for (Register reg : this.registers) reg.resetState();
+    this.readMask = 0;
+    this.writeMask = 0;
   }
 
   /**
-   * Get all registers
+   * Get all registers. The Register objects are a snapshot created by every call, they don't
+   * change when the registers do.
    *
    * @calledby EmulatorManager
+   * @return Registers indexed by register number
    */
   public Vector<Register> get() {
-    return this.registers;
+    Vector<Register> registers = new Vector<Register>(32);
+    for (int i = 0; i < 32; i++) {
+      Register.STATE state;
+      if ((IMPLEMENTED >>> i & 1) == 0) {
+        state = Register.STATE.DISABLED;
+      } else if ((this.writeMask >>> i & 1) != 0) {
+        state = Register.STATE.WRITE;
+      } else if ((this.readMask >>> i & 1) != 0) {
+        state = Register.STATE.READ;
+      } else {
+        state = Register.STATE.NONE;
+      }
+
+      registers.add(new Register(i, this.values[i], state));
+    }
+
+    return registers;
   }
 
   public void dump() {}
@@ -0,0 +1,230 @@
+package jniosemu.events;
+
+import java.util.Vector;
+import jniosemu.emulator.EmulatorListener;
+import jniosemu.emulator.EmulatorManager;
+import jniosemu.emulator.Program;
+import jniosemu.emulator.SourceCode;
+import jniosemu.emulator.memory.MemoryManager;
+import jniosemu.emulator.memory.Watchpoint;
+import jniosemu.emulator.memory.io.SerialDevice;
+
+/**
+ * Connects an EmulatorManager to an EventManager. Events from the GUI are turned into calls to the
+ * emulator, and what the emulator tells its listener is sent as events to the GUI.
+ */
+public class EmulatorEventAdapter implements EmulatorListener, EventObserver {
+  /** EventManager that is used */
+  private EventManager eventManager;
+  /** Emulator the events are for */
+  private EmulatorManager emulator;
+
+  /**
+   * Init EmulatorEventAdapter
+   *
+   * @post Add events and set the listener of the emulator
+   * @calledby JNiosEmu.main()
+   * @calls EventManager.addEventObserver(), EmulatorManager.setListener()
+   * @param eventManager current EventManager
+   * @param emulator current EmulatorManager
+   */
+  public EmulatorEventAdapter(EventManager eventManager, EmulatorManager emulator) {
+    this.eventManager = eventManager;
+    this.emulator = emulator;
+
+    EventManager.EVENT[] events = {
+      EventManager.EVENT.COMPILER_COMPILE,
+      EventManager.EVENT.CURRENT_DIRECTORY,
+      EventManager.EVENT.EMULATOR_PAUSE,
+      EventManager.EVENT.EMULATOR_STEP,
+      EventManager.EVENT.EMULATOR_STEP_OVER,
+      EventManager.EVENT.EMULATOR_TOGGLE_STEP_OVER,
+      EventManager.EVENT.EMULATOR_RESET,
+      EventManager.EVENT.EMULATOR_RUN,
+      EventManager.EVENT.EMULATOR_BREAKPOINT_TOGGLE,
+      EventManager.EVENT.EMULATOR_SPEED,
+      EventManager.EVENT.MEMORY_REQUEST_UPDATE,
+      EventManager.EVENT.MEMORY_PROFILE,
+      EventManager.EVENT.VARIABLE_REQUEST_UPDATE,
+      EventManager.EVENT.BUTTON_RELEASE,
+      EventManager.EVENT.BUTTON_PRESS,
+      EventManager.EVENT.BUTTON_TOGGLE,
+      EventManager.EVENT.DIPSWITCH_TOGGLE,
+      EventManager.EVENT.UART0_INPUT,
+      EventManager.EVENT.UART1_INPUT
+    };
+
+    eventManager.addEventObserver(events, this);
+    emulator.setListener(this);
+  }
+
+  /**
+   * Listen for events and acts on them
+   *
+   * @calledby COMPILER_COMPILE, EMULATOR_RUN, EMULATOR_PAUSE, EMULATOR_STEP, EMULATOR_RESET,
+   *     EMULATOR_BREAK_POINT_TOGGLE, BUTTON_*, DIPSWITCH_TOGGLE, UART*_INPUT
+   * @calls EmulatorManager
+   * @param eventIdentifier Event identifier
+   * @param obj Argument depending of which event
+   */
+  public void update(EventManager.EVENT eventIdentifier, Object obj) {
+    MemoryManager memory = this.emulator.getMemoryManager();
+
+    switch (eventIdentifier) {
+      case COMPILER_COMPILE:
+        this.emulator.compile((String) obj);
+        break;
+      case CURRENT_DIRECTORY:
+        this.emulator.setCurrentDirectory((String) obj);
+        break;
+      case EMULATOR_STEP:
+        this.emulator.initRun(false, false);
+        break;
+      case EMULATOR_STEP_OVER:
+        this.emulator.initRun(false, true);
+        break;
+      case EMULATOR_RUN:
+        this.emulator.initRun(true, false);
+        break;
+      case EMULATOR_PAUSE:
+        this.emulator.pause();
+        break;
+      case EMULATOR_RESET:
+        this.emulator.reset();
+        break;
+      case EMULATOR_TOGGLE_STEP_OVER:
+        this.emulator.toggleStepOver();
+        break;
+      case EMULATOR_BREAKPOINT_TOGGLE:
+        this.emulator.toggleBreakpoint(((Integer) obj).intValue());
+        break;
+      case EMULATOR_SPEED:
+        this.emulator.setSpeed((EmulatorManager.SPEED) obj);
+        break;
+      case MEMORY_REQUEST_UPDATE:
+        if (memory != null)
+          this.eventManager.sendEvent(EventManager.EVENT.MEMORY_CHANGE, memory.getMemoryBlocks());
+        break;
+      case MEMORY_PROFILE:
+        this.emulator.setProfiling(((Boolean) obj).booleanValue());
+        break;
+      case VARIABLE_REQUEST_UPDATE:
+        if (this.emulator.getProgram() != null)
+          this.eventManager.sendEvent(
+              EventManager.EVENT.VARIABLE_VECTOR, this.emulator.getProgram().getVariables());
+        if (this.emulator.getVariableMemory() != null)
+          this.eventManager.sendEvent(
+              EventManager.EVENT.VARIABLE_CHANGE, this.emulator.getVariableMemory());
+        break;
+      case BUTTON_RELEASE:
+        if (memory != null && memory.getButtons() != null)
+          memory.getButtons().setValue(((Integer) obj).intValue(), false);
+        break;
+      case BUTTON_PRESS:
+        if (memory != null && memory.getButtons() != null)
+          memory.getButtons().setValue(((Integer) obj).intValue(), true);
+        break;
+      case BUTTON_TOGGLE:
+        if (memory != null && memory.getButtons() != null)
+          memory.getButtons().toggle(((Integer) obj).intValue());
+        break;
+      case DIPSWITCH_TOGGLE:
+        if (memory != null && memory.getDipswitches() != null)
+          memory.getDipswitches().toggle(((Integer) obj).intValue());
+        break;
+      case UART0_INPUT:
+        if (this.getSerialPort(0) != null)
+          this.getSerialPort(0).input(((Character) obj).charValue());
+        break;
+      case UART1_INPUT:
+        if (this.getSerialPort(1) != null)
+          this.getSerialPort(1).input(((Character) obj).charValue());
+        break;
+    }
+  }
+
+  /**
+   * Get a serial port of the emulator
+   *
+   * @calledby update(), serialOutput()
+   * @param port Port number
+   * @return Serial port or null if there is no such port
+   */
+  private SerialDevice getSerialPort(int port) {
+    MemoryManager memory = this.emulator.getMemoryManager();
+    if (memory == null) return null;
+
+    return memory.getSerialPort(port);
+  }
+
+  public void compilerError(String message) {
+    this.eventManager.sendEvent(EventManager.EVENT.COMPILER_ERROR, message);
+    this.eventManager.sendEvent(EventManager.EVENT.EMULATOR_CLEAR);
+  }
+
+  public void emulatorReady(Program program) {
+    this.eventManager.sendEvent(EventManager.EVENT.EMULATOR_READY);
+    this.eventManager.sendEvent(EventManager.EVENT.VARIABLE_VECTOR, program.getVariables());
+  }
+
+  public void programChange(SourceCode sourceCode) {
+    this.eventManager.sendEvent(EventManager.EVENT.PROGRAM_CHANGE, sourceCode);
+  }
+
+  public void stateChange(int pc) {
+    this.eventManager.sendEvent(EventManager.EVENT.PROGRAMCOUNTER_CHANGE, Integer.valueOf(pc));
+    this.eventManager.sendEvent(
+        EventManager.EVENT.REGISTER_CHANGE, this.emulator.getRegisterManager().get());
+    this.eventManager.sendEvent(
+        EventManager.EVENT.MEMORY_CHANGE, this.emulator.getMemoryManager().getMemoryBlocks());
+    this.eventManager.sendEvent(
+        EventManager.EVENT.VARIABLE_CHANGE, this.emulator.getVariableMemory());
+  }
+
+  public void emulatorStart() {
+    this.eventManager.sendEvent(EventManager.EVENT.EMULATOR_START);
+  }
+
+  public void emulatorStop() {
+    this.eventManager.sendEvent(EventManager.EVENT.EMULATOR_STOP);
+  }
+
+  public void emulatorEnd() {
+    this.eventManager.sendEvent(EventManager.EVENT.EMULATOR_END);
+  }
+
+  public void emulatorError(String message) {
+    this.eventManager.sendEvent(EventManager.EVENT.EMULATOR_ERROR, message);
+  }
+
+  public void breakpointUpdate(int lineNumber) {
+    this.eventManager.sendEvent(EventManager.EVENT.EMULATOR_BREAKPOINT_UPDATE, lineNumber);
+  }
+
+  public void watchpointHit(Watchpoint.Hit hit) {
+    this.eventManager.sendEvent(EventManager.EVENT.EMULATOR_WATCHPOINT, hit.toString());
+  }
+
+  public void ledUpdate(Vector<Boolean> value) {
+    this.eventManager.sendEvent(EventManager.EVENT.LED_UPDATE, value);
+  }
+
+  public void buttonUpdate(Vector<Boolean> value) {
+    this.eventManager.sendEvent(EventManager.EVENT.BUTTON_UPDATE, value);
+  }
+
+  public void dipswitchUpdate(Vector<Boolean> value) {
+    this.eventManager.sendEvent(EventManager.EVENT.DIPSWITCH_UPDATE, value);
+  }
+
+  public void serialOutput(String name, String text) {
+    SerialDevice port0 = this.getSerialPort(0);
+    SerialDevice port1 = this.getSerialPort(1);
+
+    if (port0 != null && name.equals(port0.getName())) {
+      this.eventManager.sendEvent(EventManager.EVENT.UART0_OUTPUT, text);
+    } else if (port1 != null && name.equals(port1.getName())) {
+      this.eventManager.sendEvent(EventManager.EVENT.UART1_OUTPUT, text);
+    }
+  }
+}
@@ -63,9 +63,11 @@ public final class EventManager {
     EMULATOR_TOGGLE_STEP_OVER, // Toggle the step over setting that is used in run
     EMULATOR_BREAKPOINT_UPDATE, // Breakpoint has been changed
     EMULATOR_BREAKPOINT_TOGGLE, // Breakpoint has been toggled in GUI
+    EMULATOR_WATCHPOINT, // Emulation stopped at a watchpoint
     EXCEPTION, // Exception has occured
     LED_UPDATE, // Update state of leds
     MEMORY_CHANGE, // If the memory changed
+    MEMORY_PROFILE, // Turn on or off the counting of memory accesses
     MEMORY_REQUEST_UPDATE, // Trigger a MEMORY_CHANGE event
     MEMORY_VIEW, // Show Memory View window
     PROGRAMCOUNTER_CHANGE, // Program counter in emulated program has changed
@@ -75,10 +77,10 @@ public final class EventManager {
     REGISTER_VIEW_SELECT, // A register is selected in the registers list
     STATE_CHANGE, // Update state (disabled/enabled) of elements in menu and toolbar
     UART0_INPUT,
-    UART0_OUTPUT, // Send a character to console
+    UART0_OUTPUT, // Send characters to console
     UART0_VIEW, // Show Console window
     UART1_INPUT, // Send a character to emulated serial port
-    UART1_OUTPUT, // Send a character out of emulated serial port
+    UART1_OUTPUT, // Send characters out of emulated serial port
     UART1_VIEW, // Show Serial Console window
     VARIABLE_CHANGE, // If variables have changed (send memory block)
     VARIABLE_REQUEST_UPDATE, // Trigger a VARIABLE_CHANGE and VARIABLE_VECTOR event
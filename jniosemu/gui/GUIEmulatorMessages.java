@@ -34,7 +34,9 @@ public class GUIEmulatorMessages extends JPanel implements EventObserver {
 
     // add events to listen to
     EventManager.EVENT[] events = {
-      EventManager.EVENT.EMULATOR_READY, EventManager.EVENT.EMULATOR_ERROR
+      EventManager.EVENT.EMULATOR_READY,
+      EventManager.EVENT.EMULATOR_ERROR,
+      EventManager.EVENT.EMULATOR_WATCHPOINT
     };
     this.eventManager.addEventObserver(events, this);
   }
@@ -69,6 +71,7 @@ public class GUIEmulatorMessages extends JPanel implements EventObserver {
       case EMULATOR_READY:
         listModel.clear();
         break;
+      case EMULATOR_WATCHPOINT:
       case EMULATOR_ERROR:
         String[] result = ((String) obj).split("\n");
         for (int x = 0; x < result.length; x++) {
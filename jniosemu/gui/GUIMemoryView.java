@@ -2,6 +2,7 @@ package jniosemu.gui;
 
 import java.awt.*;
 import java.awt.event.*;
+import java.io.*;
 import java.util.*;
 import javax.swing.*;
 import javax.swing.border.*;
@@ -23,13 +24,22 @@ public class GUIMemoryView extends JFrame implements ActionListener, EventObserv
   private ArrayList<MemoryBlock> memoryBlocks = null;
 
   /** Lists used to display content of each memory block. */
-  private JList[] memoryLists = null;
+  private ArrayList<JList<MemoryInt>> memoryLists = null;
 
   private int[] lastChanged = null;
 
   /** Track if a memory block should be repainted or not. */
   private boolean[] memoryUpdateState = null;
 
+  /** Addresses of the words updated the last time, null if the whole list was set. */
+  private int[][] updatedWords = null;
+
+  /** True if the access counts are shown as a heatmap. */
+  private boolean heatmap = false;
+
+  /** Used to choose the file the access counts are exported to. */
+  private final JFileChooser fc = new JFileChooser();
+
   /**
    * Initiates the creation of GUI components and adds itself to the Event Manager as an observer.
    *
@@ -77,7 +87,18 @@ public class GUIMemoryView extends JFrame implements ActionListener, EventObserv
     JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
     buttonPanel.setBorder(BorderFactory.createEmptyBorder(4, 4, 4, 4));
 
-    JButton button = new JButton("Close");
+    JCheckBox heatmapBox = new JCheckBox("Heatmap");
+    heatmapBox.setActionCommand("heatmap");
+    heatmapBox.addActionListener(this);
+    buttonPanel.add(heatmapBox);
+
+    JButton button = new JButton("Export Profile...");
+    button.setActionCommand("export");
+    button.addActionListener(this);
+    buttonPanel.add(button);
+
+    button = new JButton("Close");
+    button.setActionCommand("close");
     button.addActionListener(this);
     buttonPanel.add(button);
 
@@ -96,8 +117,8 @@ public class GUIMemoryView extends JFrame implements ActionListener, EventObserv
    * @param memBlock memory block to display
    * @return list created
    */
-  private JList addList(MemoryBlock memBlock) {
-    JList memoryList = new JList();
+  private JList<MemoryInt> addList(MemoryBlock memBlock) {
+    JList<MemoryInt> memoryList = new JList<MemoryInt>();
 
     memoryList.setMaximumSize(new Dimension(Integer.MAX_VALUE, Integer.MAX_VALUE));
     memoryList.setAlignmentX(Component.CENTER_ALIGNMENT);
@@ -127,13 +148,14 @@ public class GUIMemoryView extends JFrame implements ActionListener, EventObserv
   private void initLists() {
     listPanel.removeAll();
 
-    memoryLists = new JList[this.memoryBlocks.size()];
+    memoryLists = new ArrayList<JList<MemoryInt>>(this.memoryBlocks.size());
     memoryUpdateState = new boolean[this.memoryBlocks.size()];
     this.lastChanged = new int[this.memoryBlocks.size()];
+    this.updatedWords = new int[this.memoryBlocks.size()][];
 
     for (int i = 0; i < this.memoryBlocks.size(); i++) {
       this.lastChanged[i] = -1;
-      memoryLists[i] = this.addList((MemoryBlock) memoryBlocks.get(i));
+      memoryLists.add(this.addList(memoryBlocks.get(i)));
 
       // redraw first time
       memoryUpdateState[i] = true;
@@ -142,33 +164,112 @@ public class GUIMemoryView extends JFrame implements ActionListener, EventObserv
     this.updateLists();
   }
 
-  /** Updates content of all list tagged as changed. */
+  /**
+   * Updates content of all list tagged as changed. Only the words that have changed, and the words
+   * changed the last time to remove their indication, are updated if the block knows which they
+   * are. Otherwise the whole list is set again.
+   *
+   * @calls MemoryBlock.getChanges(), updateWords()
+   */
   private void updateLists() {
-    for (int i = 0; i < this.memoryLists.length; i++) {
-      MemoryBlock memBlock = (MemoryBlock) memoryBlocks.get(i);
+    for (int i = 0; i < this.memoryLists.size(); i++) {
+      MemoryBlock memBlock = memoryBlocks.get(i);
 
       if (memBlock.isChanged(this.lastChanged[i]) || memoryUpdateState[i]) {
-        Vector<MemoryInt> memVector = memBlock.getMemoryVector();
-
-        if (memVector != null) memoryLists[i].setListData(memVector);
+        int[] words = memBlock.getChanges(this.lastChanged[i]);
+
+        if (words == null
+            || (memoryUpdateState[i] && this.updatedWords[i] == null)
+            || !this.updateWords(i, words)) {
+          Vector<MemoryInt> memVector = memBlock.getMemoryVector();
+
+          if (memVector != null) {
+            DefaultListModel<MemoryInt> model = new DefaultListModel<MemoryInt>();
+            model.ensureCapacity(memVector.size());
+            for (MemoryInt memInt : memVector) model.addElement(memInt);
+            memoryLists.get(i).setModel(model);
+          }
+        }
+        this.updatedWords[i] = words;
 
         // if memory block has changed, do also redraw next time
         // in order to remove indication
         memoryUpdateState[i] = memBlock.isChanged(this.lastChanged[i]);
         this.lastChanged[i] = memBlock.lastChanged();
       }
+
+      // the counts change without the memory changing
+      if (this.heatmap) memoryLists.get(i).repaint();
+    }
+  }
+
+  /**
+   * Update the changed words of a list, and the ones updated the last time.
+   *
+   * @calledby updateLists()
+   * @calls MemoryBlock.getMemoryInt()
+   * @param list Index of the list
+   * @param words Addresses of the changed words
+   * @return False if a word isn't in the list and the whole list has to be set
+   */
+  private boolean updateWords(int list, int[] words) {
+    ListModel<MemoryInt> listModel = memoryLists.get(list).getModel();
+    if (!(listModel instanceof DefaultListModel)) return false;
+
+    DefaultListModel<MemoryInt> model = (DefaultListModel<MemoryInt>) listModel;
+    MemoryBlock memBlock = memoryBlocks.get(list);
+
+    int[][] updates = {this.updatedWords[list], words};
+    for (int[] update : updates) {
+      if (update == null) continue;
+
+      for (int address : update) {
+        int index = this.findWord(model, address);
+        if (index < 0) return false;
+
+        model.set(index, memBlock.getMemoryInt(address));
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Find the word at an address in a list, the words are in increasing order.
+   *
+   * @calledby updateWords()
+   * @param model Content of the list
+   * @param address Address of the word
+   * @return Index of the word or -1 if it isn't in the list
+   */
+  private int findWord(DefaultListModel<MemoryInt> model, int address) {
+    int low = 0;
+    int high = model.getSize() - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int middleAddress = model.get(middle).getAddress();
+
+      if (middleAddress < address) {
+        low = middle + 1;
+      } else if (middleAddress > address) {
+        high = middle - 1;
+      } else {
+        return middle;
+      }
     }
+
+    return -1;
   }
 
   /** Clears and empty all lists. */
   private void clearLists() {
     if (memoryLists == null) return;
 
-    for (int i = 0; i < this.memoryLists.length; i++) {
+    for (int i = 0; i < this.memoryLists.size(); i++) {
       this.lastChanged[i] = -1;
 
       // clear list
-      memoryLists[i].setModel(new DefaultListModel());
+      memoryLists.get(i).setModel(new DefaultListModel<MemoryInt>());
     }
 
     this.memoryBlocks = null;
@@ -200,15 +301,70 @@ public class GUIMemoryView extends JFrame implements ActionListener, EventObserv
   /**
    * Invoked when a GUI action occurs..
    *
+   * @calls EventManager.sendEvent(), exportProfile()
    * @param e action event object
    */
   public void actionPerformed(ActionEvent e) {
-    setVisible(false);
-    dispose();
+    String actionCommand = e.getActionCommand();
+
+    if (actionCommand.equals("heatmap")) {
+      this.heatmap = ((JCheckBox) e.getSource()).isSelected();
+      this.eventManager.sendEvent(
+          EventManager.EVENT.MEMORY_PROFILE, Boolean.valueOf(this.heatmap));
+      this.listPanel.repaint();
+    } else if (actionCommand.equals("export")) {
+      exportProfile();
+    } else {
+      setVisible(false);
+      dispose();
+    }
+  }
+
+  /**
+   * Turn off the counting of accesses when the window is closed.
+   *
+   * @calls EventManager.sendEvent()
+   */
+  public void dispose() {
+    if (this.heatmap) {
+      this.heatmap = false;
+      this.eventManager.sendEvent(EventManager.EVENT.MEMORY_PROFILE, Boolean.FALSE);
+    }
+
+    super.dispose();
+  }
+
+  /**
+   * Show save file dialog and write the access counts to the chosen file, as CSV if the name ends
+   * with .csv and in the binary format of AccessProfile otherwise.
+   *
+   * @calledby actionPerformed()
+   * @calls AccessProfile.writeCSV(), AccessProfile.writeBinary()
+   */
+  private void exportProfile() {
+    if (this.memoryBlocks == null) return;
+
+    if (fc.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+
+    File file = fc.getSelectedFile();
+    try {
+      if (file.getName().toLowerCase().endsWith(".csv")) {
+        PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(file)));
+        AccessProfile.writeCSV(this.memoryBlocks, out);
+        out.close();
+      } else {
+        DataOutputStream out =
+            new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        AccessProfile.writeBinary(this.memoryBlocks, out);
+        out.close();
+      }
+    } catch (IOException e) {
+      eventManager.sendEvent(EventManager.EVENT.EXCEPTION, e);
+    }
   }
 
   /** Custom cell renderer for the lists in the Memory View. */
-  class MemoryCellRenderer extends JPanel implements ListCellRenderer {
+  class MemoryCellRenderer extends JPanel implements ListCellRenderer<MemoryInt> {
 
     private MemoryInt memInt;
 
@@ -217,7 +373,7 @@ public class GUIMemoryView extends JFrame implements ActionListener, EventObserv
     private final int width;
     private final int height;
 
-    public MemoryCellRenderer(JList list) {
+    public MemoryCellRenderer(JList<MemoryInt> list) {
       super();
       setOpaque(true);
       setFont(list.getFont());
@@ -236,8 +392,12 @@ public class GUIMemoryView extends JFrame implements ActionListener, EventObserv
 
     /** Sets background/foreground color and stores MemoryInt object. */
     public Component getListCellRendererComponent(
-        JList list, Object value, int index, boolean isSelected, boolean cellHasFocus) {
-      this.memInt = (MemoryInt) value;
+        JList<? extends MemoryInt> list,
+        MemoryInt value,
+        int index,
+        boolean isSelected,
+        boolean cellHasFocus) {
+      this.memInt = value;
 
       if (isSelected) {
         setBackground(list.getSelectionBackground());
@@ -265,7 +425,14 @@ public class GUIMemoryView extends JFrame implements ActionListener, EventObserv
 
       int xOffset = 2;
 
-      // address
+      // address, on the color of its access count if the heatmap is shown
+      float heat = heatmap ? memInt.getHeat() : 0;
+      if (heat > 0) {
+        int shade = 255 - (int) (heat * 200);
+        g.setColor(new Color(255, shade, shade));
+        g.fillRect(0, 0, 96, getHeight());
+        g.setColor(Color.black);
+      }
       g.drawString(Utilities.intToHexString(memInt.getAddress()), xOffset, this.baseline);
 
       xOffset = 100;
@@ -139,8 +139,8 @@ public class GUIUART extends JFrame implements ActionListener, EventObserver {
 
   public void update(EventManager.EVENT eventIdentifier, Object obj) {
     if (eventIdentifier == this.outEvent) {
-      // append character last
-      recvTextArea.append(((Character) obj).toString());
+      // append characters last
+      recvTextArea.append((String) obj);
 
       // move caret to last position to force scroll
       recvTextArea.setCaretPosition(recvTextArea.getDocument().getLength());
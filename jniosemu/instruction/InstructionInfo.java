@@ -1,5 +1,7 @@
 package jniosemu.instruction;
 
+import jniosemu.instruction.emulator.Instruction;
+
 /** Have info about one instruction */
 public class InstructionInfo extends InstructionSyntax {
   /** The different type of instructions. */
@@ -18,6 +20,8 @@ public class InstructionInfo extends InstructionSyntax {
     PC,
     SHIFT,
     CUSTOM,
+    RDCTL,
+    WRCTL,
     NONE
   };
 
@@ -34,6 +38,8 @@ public class InstructionInfo extends InstructionSyntax {
   PC: nextpc rC
   SHIFT: srli rC, rA, IMM5
   CUSTOM: custom imm, rC, rA, rB
+  RDCTL: rdctl rC, ctlN
+  WRCTL: wrctl ctlN, rA
   NONE: ret
 
   JTypeInstruction
@@ -46,6 +52,8 @@ public class InstructionInfo extends InstructionSyntax {
   private final Type type;
   /** Syntax of the instruction */
   private final Syntax syntax;
+  /** Emulator instruction shared by all opcodes of this instruction */
+  private final Instruction instruction;
 
   /**
    * Creating Instruction info
@@ -55,26 +63,32 @@ public class InstructionInfo extends InstructionSyntax {
    * @param opCode op-code for the instruction
    * @param type sype of instruction
    * @param syntax syntax of the instruction
+   * @param category instruction category
+   * @param instruction emulator instruction shared by all opcodes of this instruction
    */
-  public InstructionInfo(String name, int opCode, Type type, Syntax syntax, CATEGORY category) {
+  public InstructionInfo(
+      String name,
+      int opCode,
+      Type type,
+      Syntax syntax,
+      CATEGORY category,
+      Instruction instruction) {
     this.name = name.toLowerCase();
     this.opCode = opCode;
     this.type = type;
     this.syntax = syntax;
     this.category = category;
+    this.instruction = instruction;
   }
 
   /**
-   * Returns the classname of this instruction.
+   * Returns the emulator instruction.
    *
    * @calledby InstructionManager.get()
-   * @return Classname of the instruction
+   * @return Emulator instruction
    */
-  public String getClassName() {
-    return String.valueOf(
-            "jniosemu.instruction.emulator." + Character.toUpperCase(this.name.charAt(0)))
-        + this.name.substring(1)
-        + "Instruction";
+  public Instruction getInstruction() {
+    return this.instruction;
   }
 
   /**
@@ -87,16 +101,6 @@ public class InstructionInfo extends InstructionSyntax {
     return this.name;
   }
 
-  /**
-   * Returns the hash of the instruction.
-   *
-   * @calledby InstructionManager.get(), InstructionManager().
-   * @return Hash of the instruction.
-   */
-  public int getHash() {
-    return InstructionManager.getHash(this.opCode);
-  }
-
   /**
    * Returns the opCode of the instruction.
    *
@@ -153,6 +157,10 @@ public class InstructionInfo extends InstructionSyntax {
             return "rC, rA, imm";
           case CUSTOM:
             return "imm, rC, rA, rB";
+          case RDCTL:
+            return "rC, ctlN";
+          case WRCTL:
+            return "ctlN, rA";
           case NONE:
             return "";
         }
@@ -1,6 +1,5 @@
 package jniosemu.instruction;
 
-import java.lang.reflect.Constructor;
 import java.util.ArrayList;
 import java.util.HashMap;
 import jniosemu.emulator.compiler.macro.MacroManager;
@@ -9,11 +8,17 @@ import jniosemu.instruction.emulator.*;
 
 /** Manage all instructions and provide related static utility methods. */
 public class InstructionManager {
+  /** OP field shared by all R-type instructions */
+  private static final int RTYPE_OP = 0x3A;
+
   /** Used to track if instruction has been populated or not. */
   private static boolean inited = false;
 
-  /** Used for fast getting an InstructionInfo from an opcode */
-  private static HashMap<Integer, InstructionInfo> opCodeHash;
+  /** InstructionInfo indexed by the OP field of an opcode */
+  private static InstructionInfo[] opTable;
+
+  /** InstructionInfo indexed by the OPX field of an R-type opcode */
+  private static InstructionInfo[] opxTable;
 
   /** Used for fast getting an InstructionInfo from a name */
   private static HashMap<String, InstructionInfo> nameHash;
@@ -28,14 +33,15 @@ public class InstructionManager {
   /**
    * Init the InstructionManager by populating the instructions.
    *
-   * @post Populate instructions, opCodeHash and nameHash.
+   * @post Populate instructions, opTable, opxTable and nameHash.
    * @calledby EmulatorManager()
    * @calls InstructionInfo()
    */
   private static void init() {
     if (inited) return;
 
-    opCodeHash = new HashMap<Integer, InstructionInfo>(50);
+    opTable = new InstructionInfo[64];
+    opxTable = new InstructionInfo[64];
     nameHash = new HashMap<String, InstructionInfo>(50);
     instructions = new ArrayList<InstructionInfo>(50);
     instructionSyntax = new ArrayList<InstructionSyntax>(70);
@@ -46,418 +52,524 @@ public class InstructionManager {
         0x1883A,
         InstructionInfo.Type.RTYPE,
         InstructionInfo.Syntax.DEFAULT,
-        InstructionSyntax.CATEGORY.ARITHMETIC_LOGICAL);
+        InstructionSyntax.CATEGORY.ARITHMETIC_LOGICAL,
+        new AddInstruction());
     addInstruction(
         "ADDI",
         0x04,
         InstructionInfo.Type.ITYPE,
         InstructionInfo.Syntax.DEFAULT,
-        InstructionSyntax.CATEGORY.ARITHMETIC_LOGICAL);
+        InstructionSyntax.CATEGORY.ARITHMETIC_LOGICAL,
+        new AddiInstruction());
     addInstruction(
         "AND",
         0x703A,
         InstructionInfo.Type.RTYPE,
         InstructionInfo.Syntax.DEFAULT,
-        InstructionSyntax.CATEGORY.ARITHMETIC_LOGICAL);
+        InstructionSyntax.CATEGORY.ARITHMETIC_LOGICAL,
+        new AndInstruction());
     addInstruction(
         "ANDHI",
         0x2C,
         InstructionInfo.Type.ITYPE,
         InstructionInfo.Syntax.DEFAULT,
-        InstructionSyntax.CATEGORY.ARITHMETIC_LOGICAL);
+        InstructionSyntax.CATEGORY.ARITHMETIC_LOGICAL,
+        new AndhiInstruction());
     addInstruction(
         "ANDI",
         0x0C,
         InstructionInfo.Type.ITYPE,
         InstructionInfo.Syntax.DEFAULT,
-        InstructionSyntax.CATEGORY.ARITHMETIC_LOGICAL);
+        InstructionSyntax.CATEGORY.ARITHMETIC_LOGICAL,
+        new AndiInstruction());
     addInstruction(
         "BEQ",
         0x26,
         InstructionInfo.Type.ITYPE,
         InstructionInfo.Syntax.BRANCH_COND,
-        InstructionSyntax.CATEGORY.PROGRAM_CONTROL);
+        InstructionSyntax.CATEGORY.PROGRAM_CONTROL,
+        new BeqInstruction());
     addInstruction(
         "BGE",
         0x0e,
         InstructionInfo.Type.ITYPE,
         InstructionInfo.Syntax.BRANCH_COND,
-        InstructionSyntax.CATEGORY.PROGRAM_CONTROL);
+        InstructionSyntax.CATEGORY.PROGRAM_CONTROL,
+        new BgeInstruction());
     addInstruction(
         "BGEU",
         0x2e,
         InstructionInfo.Type.ITYPE,
         InstructionInfo.Syntax.BRANCH_COND,
-        InstructionSyntax.CATEGORY.PROGRAM_CONTROL);
+        InstructionSyntax.CATEGORY.PROGRAM_CONTROL,
+        new BgeuInstruction());
     addInstruction(
         "BLT",
         0x16,
         InstructionInfo.Type.ITYPE,
         InstructionInfo.Syntax.BRANCH_COND,
-        InstructionSyntax.CATEGORY.PROGRAM_CONTROL);
+        InstructionSyntax.CATEGORY.PROGRAM_CONTROL,
+        new BltInstruction());
     addInstruction(
         "BLTU",
         0x36,
         InstructionInfo.Type.ITYPE,
         InstructionInfo.Syntax.BRANCH_COND,
-        InstructionSyntax.CATEGORY.PROGRAM_CONTROL);
+        InstructionSyntax.CATEGORY.PROGRAM_CONTROL,
+        new BltuInstruction());
     addInstruction(
         "BNE",
         0x1e,
         InstructionInfo.Type.ITYPE,
         InstructionInfo.Syntax.BRANCH_COND,
-        InstructionSyntax.CATEGORY.PROGRAM_CONTROL);
+        InstructionSyntax.CATEGORY.PROGRAM_CONTROL,
+        new BneInstruction());
     addInstruction(
         "BR",
         0x06,
         InstructionInfo.Type.ITYPE,
         InstructionInfo.Syntax.BRANCH,
-        InstructionSyntax.CATEGORY.PROGRAM_CONTROL);
+        InstructionSyntax.CATEGORY.PROGRAM_CONTROL,
+        new BrInstruction());
+    addInstruction(
+        "BREAK",
+        0x3DA03A,
+        InstructionInfo.Type.RTYPE,
+        InstructionInfo.Syntax.NONE,
+        InstructionSyntax.CATEGORY.PROGRAM_CONTROL,
+        new BreakInstruction());
     addInstruction(
         "CALL",
         0x0,
         InstructionInfo.Type.JTYPE,
         InstructionInfo.Syntax.DEFAULT,
-        InstructionSyntax.CATEGORY.PROGRAM_CONTROL);
+        InstructionSyntax.CATEGORY.PROGRAM_CONTROL,
+        new CallInstruction());
     addInstruction(
         "CALLR",
         0x3EE83A,
         InstructionInfo.Type.RTYPE,
         InstructionInfo.Syntax.CALLJUMP,
-        InstructionSyntax.CATEGORY.PROGRAM_CONTROL);
+        InstructionSyntax.CATEGORY.PROGRAM_CONTROL,
+        new CallrInstruction());
     addInstruction(
         "CMPEQ",
         0x1003A,
         InstructionInfo.Type.RTYPE,
         InstructionInfo.Syntax.DEFAULT,
-        InstructionSyntax.CATEGORY.COMPARISON);
+        InstructionSyntax.CATEGORY.COMPARISON,
+        new CmpeqInstruction());
     addInstruction(
         "CMPEQI",
         0x20,
         InstructionInfo.Type.ITYPE,
         InstructionInfo.Syntax.DEFAULT,
-        InstructionSyntax.CATEGORY.COMPARISON);
+        InstructionSyntax.CATEGORY.COMPARISON,
+        new CmpeqiInstruction());
     addInstruction(
         "CMPGE",
         0x403A,
         InstructionInfo.Type.RTYPE,
         InstructionInfo.Syntax.DEFAULT,
-        InstructionSyntax.CATEGORY.COMPARISON);
+        InstructionSyntax.CATEGORY.COMPARISON,
+        new CmpgeInstruction());
     addInstruction(
         "CMPGEI",
         0x08,
         InstructionInfo.Type.ITYPE,
         InstructionInfo.Syntax.DEFAULT,
-        InstructionSyntax.CATEGORY.COMPARISON);
+        InstructionSyntax.CATEGORY.COMPARISON,
+        new CmpgeiInstruction());
     addInstruction(
         "CMPGEU",
         0x1403A,
         InstructionInfo.Type.RTYPE,
         InstructionInfo.Syntax.DEFAULT,
-        InstructionSyntax.CATEGORY.COMPARISON);
+        InstructionSyntax.CATEGORY.COMPARISON,
+        new CmpgeuInstruction());
     addInstruction(
         "CMPGEUI",
         0x28,
         InstructionInfo.Type.ITYPE,
         InstructionInfo.Syntax.DEFAULT,
-        InstructionSyntax.CATEGORY.COMPARISON);
+        InstructionSyntax.CATEGORY.COMPARISON,
+        new CmpgeuiInstruction());
     addInstruction(
         "CMPLT",
         0x803A,
         InstructionInfo.Type.RTYPE,
         InstructionInfo.Syntax.DEFAULT,
-        InstructionSyntax.CATEGORY.COMPARISON);
+        InstructionSyntax.CATEGORY.COMPARISON,
+        new CmpltInstruction());
     addInstruction(
         "CMPLTI",
         0x10,
         InstructionInfo.Type.ITYPE,
         InstructionInfo.Syntax.DEFAULT,
-        InstructionSyntax.CATEGORY.COMPARISON);
+        InstructionSyntax.CATEGORY.COMPARISON,
+        new CmpltiInstruction());
     addInstruction(
         "CMPLTU",
         0x1803A,
         InstructionInfo.Type.RTYPE,
         InstructionInfo.Syntax.DEFAULT,
-        InstructionSyntax.CATEGORY.COMPARISON);
+        InstructionSyntax.CATEGORY.COMPARISON,
+        new CmpltuInstruction());
     addInstruction(
         "CMPLTUI",
         0x30,
         InstructionInfo.Type.ITYPE,
         InstructionInfo.Syntax.DEFAULT,
-        InstructionSyntax.CATEGORY.COMPARISON);
+        InstructionSyntax.CATEGORY.COMPARISON,
+        new CmpltuiInstruction());
     addInstruction(
         "CMPNE",
         0xC03A,
         InstructionInfo.Type.RTYPE,
         InstructionInfo.Syntax.DEFAULT,
-        InstructionSyntax.CATEGORY.COMPARISON);
+        InstructionSyntax.CATEGORY.COMPARISON,
+        new CmpneInstruction());
     addInstruction(
         "CMPNEI",
         0x18,
         InstructionInfo.Type.ITYPE,
         InstructionInfo.Syntax.DEFAULT,
-        InstructionSyntax.CATEGORY.COMPARISON);
+        InstructionSyntax.CATEGORY.COMPARISON,
+        new CmpneiInstruction());
     addInstruction(
         "DIV",
         0x1283A,
         InstructionInfo.Type.RTYPE,
         InstructionInfo.Syntax.DEFAULT,
-        InstructionSyntax.CATEGORY.ARITHMETIC_LOGICAL);
+        InstructionSyntax.CATEGORY.ARITHMETIC_LOGICAL,
+        new DivInstruction());
     addInstruction(
         "DIVU",
         0x1203A,
         InstructionInfo.Type.RTYPE,
         InstructionInfo.Syntax.DEFAULT,
-        InstructionSyntax.CATEGORY.ARITHMETIC_LOGICAL);
+        InstructionSyntax.CATEGORY.ARITHMETIC_LOGICAL,
+        new DivuInstruction());
+    addInstruction(
+        "ERET",
+        0xEF80083A,
+        InstructionInfo.Type.RTYPE,
+        InstructionInfo.Syntax.NONE,
+        InstructionSyntax.CATEGORY.PROGRAM_CONTROL,
+        new EretInstruction());
     addInstruction(
         "JMP",
         0x683A,
         InstructionInfo.Type.RTYPE,
         InstructionInfo.Syntax.CALLJUMP,
-        InstructionSyntax.CATEGORY.PROGRAM_CONTROL);
+        InstructionSyntax.CATEGORY.PROGRAM_CONTROL,
+        new JmpInstruction());
     addInstruction(
         "LDB",
         0x07,
         InstructionInfo.Type.ITYPE,
         InstructionInfo.Syntax.MEMORY,
-        InstructionSyntax.CATEGORY.DATA_TRANSFER);
+        InstructionSyntax.CATEGORY.DATA_TRANSFER,
+        new LdbInstruction());
     addInstruction(
         "LDBIO",
         0x27,
         InstructionInfo.Type.ITYPE,
         InstructionInfo.Syntax.MEMORY,
-        InstructionSyntax.CATEGORY.DATA_TRANSFER);
+        InstructionSyntax.CATEGORY.DATA_TRANSFER,
+        new LdbioInstruction());
     addInstruction(
         "LDBU",
         0x03,
         InstructionInfo.Type.ITYPE,
         InstructionInfo.Syntax.MEMORY,
-        InstructionSyntax.CATEGORY.DATA_TRANSFER);
+        InstructionSyntax.CATEGORY.DATA_TRANSFER,
+        new LdbuInstruction());
     addInstruction(
         "LDBUIO",
         0x23,
         InstructionInfo.Type.ITYPE,
         InstructionInfo.Syntax.MEMORY,
-        InstructionSyntax.CATEGORY.DATA_TRANSFER);
+        InstructionSyntax.CATEGORY.DATA_TRANSFER,
+        new LdbuioInstruction());
     addInstruction(
         "LDH",
         0x0F,
         InstructionInfo.Type.ITYPE,
         InstructionInfo.Syntax.MEMORY,
-        InstructionSyntax.CATEGORY.DATA_TRANSFER);
+        InstructionSyntax.CATEGORY.DATA_TRANSFER,
+        new LdhInstruction());
     addInstruction(
         "LDHIO",
         0x2F,
         InstructionInfo.Type.ITYPE,
         InstructionInfo.Syntax.MEMORY,
-        InstructionSyntax.CATEGORY.DATA_TRANSFER);
+        InstructionSyntax.CATEGORY.DATA_TRANSFER,
+        new LdhioInstruction());
     addInstruction(
         "LDHU",
         0x0B,
         InstructionInfo.Type.ITYPE,
         InstructionInfo.Syntax.MEMORY,
-        InstructionSyntax.CATEGORY.DATA_TRANSFER);
+        InstructionSyntax.CATEGORY.DATA_TRANSFER,
+        new LdhuInstruction());
     addInstruction(
         "LDHUIO",
         0x2B,
         InstructionInfo.Type.ITYPE,
         InstructionInfo.Syntax.MEMORY,
-        InstructionSyntax.CATEGORY.DATA_TRANSFER);
+        InstructionSyntax.CATEGORY.DATA_TRANSFER,
+        new LdhuioInstruction());
     addInstruction(
         "LDW",
         0x17,
         InstructionInfo.Type.ITYPE,
         InstructionInfo.Syntax.MEMORY,
-        InstructionSyntax.CATEGORY.DATA_TRANSFER);
+        InstructionSyntax.CATEGORY.DATA_TRANSFER,
+        new LdwInstruction());
     addInstruction(
         "LDWIO",
         0x37,
         InstructionInfo.Type.ITYPE,
         InstructionInfo.Syntax.MEMORY,
-        InstructionSyntax.CATEGORY.DATA_TRANSFER);
+        InstructionSyntax.CATEGORY.DATA_TRANSFER,
+        new LdwioInstruction());
     addInstruction(
         "MUL",
         0x1383A,
         InstructionInfo.Type.RTYPE,
         InstructionInfo.Syntax.DEFAULT,
-        InstructionSyntax.CATEGORY.ARITHMETIC_LOGICAL);
+        InstructionSyntax.CATEGORY.ARITHMETIC_LOGICAL,
+        new MulInstruction());
     addInstruction(
         "MULI",
         0x24,
         InstructionInfo.Type.ITYPE,
         InstructionInfo.Syntax.DEFAULT,
-        InstructionSyntax.CATEGORY.ARITHMETIC_LOGICAL);
+        InstructionSyntax.CATEGORY.ARITHMETIC_LOGICAL,
+        new MuliInstruction());
     addInstruction(
         "MULXSS",
         0xF83A,
         InstructionInfo.Type.RTYPE,
         InstructionInfo.Syntax.DEFAULT,
-        InstructionSyntax.CATEGORY.ARITHMETIC_LOGICAL);
+        InstructionSyntax.CATEGORY.ARITHMETIC_LOGICAL,
+        new MulxssInstruction());
     addInstruction(
         "MULXSU",
         0xB83A,
         InstructionInfo.Type.RTYPE,
         InstructionInfo.Syntax.DEFAULT,
-        InstructionSyntax.CATEGORY.ARITHMETIC_LOGICAL);
+        InstructionSyntax.CATEGORY.ARITHMETIC_LOGICAL,
+        new MulxsuInstruction());
     addInstruction(
         "MULXUU",
         0x383A,
         InstructionInfo.Type.RTYPE,
         InstructionInfo.Syntax.DEFAULT,
-        InstructionSyntax.CATEGORY.ARITHMETIC_LOGICAL);
+        InstructionSyntax.CATEGORY.ARITHMETIC_LOGICAL,
+        new MulxuuInstruction());
     addInstruction(
         "NEXTPC",
         0xE03A,
         InstructionInfo.Type.RTYPE,
         InstructionInfo.Syntax.PC,
-        InstructionSyntax.CATEGORY.OTHER);
+        InstructionSyntax.CATEGORY.OTHER,
+        new NextpcInstruction());
     addInstruction(
         "NOR",
         0x303A,
         InstructionInfo.Type.RTYPE,
         InstructionInfo.Syntax.DEFAULT,
-        InstructionSyntax.CATEGORY.ARITHMETIC_LOGICAL);
+        InstructionSyntax.CATEGORY.ARITHMETIC_LOGICAL,
+        new NorInstruction());
     addInstruction(
         "OR",
         0xB03A,
         InstructionInfo.Type.RTYPE,
         InstructionInfo.Syntax.DEFAULT,
-        InstructionSyntax.CATEGORY.ARITHMETIC_LOGICAL);
+        InstructionSyntax.CATEGORY.ARITHMETIC_LOGICAL,
+        new OrInstruction());
     addInstruction(
         "ORHI",
         0x34,
         InstructionInfo.Type.ITYPE,
         InstructionInfo.Syntax.DEFAULT,
-        InstructionSyntax.CATEGORY.ARITHMETIC_LOGICAL);
+        InstructionSyntax.CATEGORY.ARITHMETIC_LOGICAL,
+        new OrhiInstruction());
     addInstruction(
         "ORI",
         0x14,
         InstructionInfo.Type.ITYPE,
         InstructionInfo.Syntax.DEFAULT,
-        InstructionSyntax.CATEGORY.ARITHMETIC_LOGICAL);
+        InstructionSyntax.CATEGORY.ARITHMETIC_LOGICAL,
+        new OriInstruction());
+    addInstruction(
+        "RDCTL",
+        0x1303A,
+        InstructionInfo.Type.RTYPE,
+        InstructionInfo.Syntax.RDCTL,
+        InstructionSyntax.CATEGORY.OTHER,
+        new RdctlInstruction());
     addInstruction(
         "RET",
         0xF800283A,
         InstructionInfo.Type.RTYPE,
         InstructionInfo.Syntax.NONE,
-        InstructionSyntax.CATEGORY.PROGRAM_CONTROL);
+        InstructionSyntax.CATEGORY.PROGRAM_CONTROL,
+        new RetInstruction());
     addInstruction(
         "ROL",
         0x183A,
         InstructionInfo.Type.RTYPE,
         InstructionInfo.Syntax.DEFAULT,
-        InstructionSyntax.CATEGORY.SHIFT_ROTATE);
+        InstructionSyntax.CATEGORY.SHIFT_ROTATE,
+        new RolInstruction());
     addInstruction(
         "ROLI",
-        0x83A,
+        0x103A,
         InstructionInfo.Type.RTYPE,
         InstructionInfo.Syntax.SHIFT,
-        InstructionSyntax.CATEGORY.SHIFT_ROTATE);
+        InstructionSyntax.CATEGORY.SHIFT_ROTATE,
+        new RoliInstruction());
     addInstruction(
         "ROR",
         0x583A,
         InstructionInfo.Type.RTYPE,
         InstructionInfo.Syntax.DEFAULT,
-        InstructionSyntax.CATEGORY.SHIFT_ROTATE);
+        InstructionSyntax.CATEGORY.SHIFT_ROTATE,
+        new RorInstruction());
     addInstruction(
         "SLL",
         0x983A,
         InstructionInfo.Type.RTYPE,
         InstructionInfo.Syntax.DEFAULT,
-        InstructionSyntax.CATEGORY.SHIFT_ROTATE);
+        InstructionSyntax.CATEGORY.SHIFT_ROTATE,
+        new SllInstruction());
     addInstruction(
         "SLLI",
         0x903A,
         InstructionInfo.Type.RTYPE,
         InstructionInfo.Syntax.SHIFT,
-        InstructionSyntax.CATEGORY.SHIFT_ROTATE);
+        InstructionSyntax.CATEGORY.SHIFT_ROTATE,
+        new SlliInstruction());
     addInstruction(
         "SRA",
         0x1D83A,
         InstructionInfo.Type.RTYPE,
         InstructionInfo.Syntax.DEFAULT,
-        InstructionSyntax.CATEGORY.SHIFT_ROTATE);
+        InstructionSyntax.CATEGORY.SHIFT_ROTATE,
+        new SraInstruction());
     addInstruction(
         "SRAI",
         0x1D03A,
         InstructionInfo.Type.RTYPE,
         InstructionInfo.Syntax.SHIFT,
-        InstructionSyntax.CATEGORY.SHIFT_ROTATE);
+        InstructionSyntax.CATEGORY.SHIFT_ROTATE,
+        new SraiInstruction());
     addInstruction(
         "SRL",
         0xD83A,
         InstructionInfo.Type.RTYPE,
         InstructionInfo.Syntax.DEFAULT,
-        InstructionSyntax.CATEGORY.SHIFT_ROTATE);
+        InstructionSyntax.CATEGORY.SHIFT_ROTATE,
+        new SrlInstruction());
     addInstruction(
         "SRLI",
         0xD03A,
         InstructionInfo.Type.RTYPE,
         InstructionInfo.Syntax.SHIFT,
-        InstructionSyntax.CATEGORY.SHIFT_ROTATE);
+        InstructionSyntax.CATEGORY.SHIFT_ROTATE,
+        new SrliInstruction());
     addInstruction(
         "STB",
         0x05,
         InstructionInfo.Type.ITYPE,
         InstructionInfo.Syntax.MEMORY,
-        InstructionSyntax.CATEGORY.DATA_TRANSFER);
+        InstructionSyntax.CATEGORY.DATA_TRANSFER,
+        new StbInstruction());
     addInstruction(
         "STBIO",
         0x25,
         InstructionInfo.Type.ITYPE,
         InstructionInfo.Syntax.MEMORY,
-        InstructionSyntax.CATEGORY.DATA_TRANSFER);
+        InstructionSyntax.CATEGORY.DATA_TRANSFER,
+        new StbioInstruction());
     addInstruction(
         "STH",
         0x0D,
         InstructionInfo.Type.ITYPE,
         InstructionInfo.Syntax.MEMORY,
-        InstructionSyntax.CATEGORY.DATA_TRANSFER);
+        InstructionSyntax.CATEGORY.DATA_TRANSFER,
+        new SthInstruction());
     addInstruction(
         "STHIO",
         0x2D,
         InstructionInfo.Type.ITYPE,
         InstructionInfo.Syntax.MEMORY,
-        InstructionSyntax.CATEGORY.DATA_TRANSFER);
+        InstructionSyntax.CATEGORY.DATA_TRANSFER,
+        new SthioInstruction());
     addInstruction(
         "STW",
         0x15,
         InstructionInfo.Type.ITYPE,
         InstructionInfo.Syntax.MEMORY,
-        InstructionSyntax.CATEGORY.DATA_TRANSFER);
+        InstructionSyntax.CATEGORY.DATA_TRANSFER,
+        new StwInstruction());
     addInstruction(
         "STWIO",
         0x35,
         InstructionInfo.Type.ITYPE,
         InstructionInfo.Syntax.MEMORY,
-        InstructionSyntax.CATEGORY.DATA_TRANSFER);
+        InstructionSyntax.CATEGORY.DATA_TRANSFER,
+        new StwioInstruction());
     addInstruction(
         "SUB",
         0x1C83A,
         InstructionInfo.Type.RTYPE,
         InstructionInfo.Syntax.DEFAULT,
-        InstructionSyntax.CATEGORY.ARITHMETIC_LOGICAL);
+        InstructionSyntax.CATEGORY.ARITHMETIC_LOGICAL,
+        new SubInstruction());
+    addInstruction(
+        "TRAP",
+        0x3B683A,
+        InstructionInfo.Type.RTYPE,
+        InstructionInfo.Syntax.NONE,
+        InstructionSyntax.CATEGORY.PROGRAM_CONTROL,
+        new TrapInstruction());
+    addInstruction(
+        "WRCTL",
+        0x1703A,
+        InstructionInfo.Type.RTYPE,
+        InstructionInfo.Syntax.WRCTL,
+        InstructionSyntax.CATEGORY.OTHER,
+        new WrctlInstruction());
     addInstruction(
         "XOR",
         0xF03A,
         InstructionInfo.Type.RTYPE,
         InstructionInfo.Syntax.DEFAULT,
-        InstructionSyntax.CATEGORY.ARITHMETIC_LOGICAL);
+        InstructionSyntax.CATEGORY.ARITHMETIC_LOGICAL,
+        new XorInstruction());
     addInstruction(
         "XORHI",
         0x3C,
         InstructionInfo.Type.ITYPE,
         InstructionInfo.Syntax.DEFAULT,
-        InstructionSyntax.CATEGORY.ARITHMETIC_LOGICAL);
+        InstructionSyntax.CATEGORY.ARITHMETIC_LOGICAL,
+        new XorhiInstruction());
     addInstruction(
         "XORI",
         0x1C,
         InstructionInfo.Type.ITYPE,
         InstructionInfo.Syntax.DEFAULT,
-        InstructionSyntax.CATEGORY.ARITHMETIC_LOGICAL);
+        InstructionSyntax.CATEGORY.ARITHMETIC_LOGICAL,
+        new XoriInstruction());
 
     for (InstructionInfo instruction : instructions) {
-      opCodeHash.put(instruction.getHash(), instruction);
+      if (getOp(instruction.getOpCode()) == RTYPE_OP)
+        opxTable[getOpx(instruction.getOpCode())] = instruction;
+      else opTable[getOp(instruction.getOpCode())] = instruction;
       nameHash.put(instruction.getName(), instruction);
 
       instructionSyntax.add(instruction);
@@ -484,69 +596,64 @@ public class InstructionManager {
    * @param type sype of instruction
    * @param syntax syntax of the instruction
    * @param category instruction category
+   * @param instruction emulator instruction shared by all opcodes of this instruction
    */
   private static void addInstruction(
       String name,
       int opCode,
       InstructionInfo.Type type,
       InstructionInfo.Syntax syntax,
-      InstructionSyntax.CATEGORY category) {
-    instructions.add(new InstructionInfo(name, opCode, type, syntax, category));
+      InstructionSyntax.CATEGORY category,
+      Instruction instruction) {
+    instructions.add(new InstructionInfo(name, opCode, type, syntax, category, instruction));
   }
 
-  public static int getHash(int opCode) {
-    int op = opCode & 0x3F;
-    if (op == 0x3A) op = op | (opCode & 0x1F800);
+  /**
+   * Get the OP field of an opcode.
+   *
+   * @param opCode Opcode of the instruction
+   * @return OP field
+   */
+  private static int getOp(int opCode) {
+    return opCode & 0x3F;
+  }
 
-    return op;
+  /**
+   * Get the OPX field of an R-type opcode.
+   *
+   * @param opCode Opcode of the instruction
+   * @return OPX field
+   */
+  private static int getOpx(int opCode) {
+    return (opCode >>> 11) & 0x3F;
   }
 
   public static InstructionInfo getInfo(int opCode) {
     init();
 
-    return opCodeHash.get(getHash(opCode));
+    // Check the last 6 bits if it is an opx instruction
+    int op = getOp(opCode);
+    if (op == RTYPE_OP) return opxTable[getOpx(opCode)];
+
+    return opTable[op];
   }
 
   /**
-   * Translate an opcode to an instruction.
+   * Translate an opcode to an instruction. The returned instruction is shared by all opcodes of
+   * the same instruction and should be run with the opcode.
    *
-   * @pre opCodeHash must be populated.
-   * @calledby EmulatorManager
-   * @calls Instruction()
+   * @pre opTable and opxTable must be populated.
+   * @calledby EmulatorManager, Memory.getInstruction(), SourceCodeLine()
+   * @calls InstructionInfo.getInstruction()
    * @param opCode Opcode of the instruction
    * @return Instruction The instruction that one requested
-   * @throws InstructionException If the instruction don't exists or the instruction class is
-   *     missing
+   * @throws InstructionException If the instruction don't exists
    */
   public static Instruction get(int opCode) throws InstructionException {
-    init();
-
-    // Check the last 6 bits if it is an opx instruction
-    int op = opCode & 0x3F;
-    if (op == 0x3A) op = op | (opCode & 0x1F800);
-
-    InstructionInfo instruction = opCodeHash.get(op);
+    InstructionInfo instruction = getInfo(opCode);
     if (instruction == null) throw new InstructionException(opCode);
 
-    try {
-      Constructor c = Class.forName(instruction.getClassName()).getConstructors()[0];
-      Object[] args = new Object[] {opCode};
-      return (Instruction) c.newInstance(args);
-    }
-    // catch are done per exception instead of one Exception in order to
-    // not by mistake catch RuntimeException that may hide potential bugs
-    catch (ClassNotFoundException e) {
-      throw new InstructionException(opCode, "Class is missing: " + instruction.getClassName());
-    } catch (InstantiationException e) {
-      // does only happen if trying to make instance of interface or abstract class
-      throw new InstructionException(
-          opCode, "Cannot make instance of class: " + instruction.getClassName());
-    } catch (IllegalAccessException e) {
-      throw new InstructionException(opCode, "No access to class: " + instruction.getClassName());
-    } catch (java.lang.reflect.InvocationTargetException e) {
-      throw new InstructionException(
-          opCode, "Invocation target exception: " + instruction.getClassName());
-    }
+    return instruction.getInstruction();
   }
 
   /**
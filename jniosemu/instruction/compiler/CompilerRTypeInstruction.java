@@ -122,6 +122,38 @@ public class CompilerRTypeInstruction extends CompilerInstruction {
               aInstructionInfo.getName(), "Wrong argument syntax: " + aArgs);
         }
         break;
+      case RDCTL:
+        pArgs = Pattern.compile("([a-z0-9]+)\\s*,\\s*([a-z0-9]+)");
+        mArgs = pArgs.matcher(aArgs);
+        if (mArgs.matches()) {
+          try {
+            this.rC = RegisterManager.parseRegister(mArgs.group(1));
+            this.tImm = Integer.toString(RegisterManager.parseControlRegister(mArgs.group(2)));
+          } catch (Exception e) {
+            throw new InstructionException(
+                aInstructionInfo.getName(), "Wrong argument syntax: " + aArgs);
+          }
+        } else {
+          throw new InstructionException(
+              aInstructionInfo.getName(), "Wrong argument syntax: " + aArgs);
+        }
+        break;
+      case WRCTL:
+        pArgs = Pattern.compile("([a-z0-9]+)\\s*,\\s*([a-z0-9]+)");
+        mArgs = pArgs.matcher(aArgs);
+        if (mArgs.matches()) {
+          try {
+            this.tImm = Integer.toString(RegisterManager.parseControlRegister(mArgs.group(1)));
+            this.rA = RegisterManager.parseRegister(mArgs.group(2));
+          } catch (Exception e) {
+            throw new InstructionException(
+                aInstructionInfo.getName(), "Wrong argument syntax: " + aArgs);
+          }
+        } else {
+          throw new InstructionException(
+              aInstructionInfo.getName(), "Wrong argument syntax: " + aArgs);
+        }
+        break;
       case NONE:
         break;
       default:
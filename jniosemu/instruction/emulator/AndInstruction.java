@@ -4,13 +4,9 @@ import jniosemu.emulator.Emulator;
 import jniosemu.emulator.EmulatorException;
 
 public class AndInstruction extends RTypeInstruction {
-  public AndInstruction(int opCode) {
-    super(opCode);
-  }
-
-  public void run(Emulator em) throws EmulatorException {
-    int vA = em.readRegister(this.rA);
-    int vB = em.readRegister(this.rB);
-    em.writeRegister(this.rC, vA & vB);
+  public void run(Emulator em, int opCode) throws EmulatorException {
+    int vA = em.readRegister(rA(opCode));
+    int vB = em.readRegister(rB(opCode));
+    em.writeRegister(rC(opCode), vA & vB);
   }
 }
@@ -4,13 +4,9 @@ import jniosemu.emulator.Emulator;
 import jniosemu.emulator.EmulatorException;
 
 public class AndiInstruction extends ITypeInstruction {
-  public AndiInstruction(int opCode) {
-    super(opCode);
-  }
-
-  public void run(Emulator em) throws EmulatorException {
-    int vA = em.readRegister(this.rA);
-    int vI = this.imm & 0xFFFF; // Lower 16 bits.
-    em.writeRegister(this.rB, vA & this.imm);
+  public void run(Emulator em, int opCode) throws EmulatorException {
+    int vA = em.readRegister(rA(opCode));
+    int vI = imm(opCode) & 0xFFFF; // Lower 16 bits.
+    em.writeRegister(rB(opCode), vA & imm(opCode));
   }
 }
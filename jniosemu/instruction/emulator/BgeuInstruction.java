@@ -4,12 +4,8 @@ import jniosemu.emulator.Emulator;
 import jniosemu.emulator.EmulatorException;
 
 public class BgeuInstruction extends ITypeInstruction {
-  public BgeuInstruction(int opCode) {
-    super(opCode);
-  }
-
-  public void run(Emulator em) throws EmulatorException {
-    if (this.signedToUnsigned(em.readRegister(this.rA))
-        >= this.signedToUnsigned(em.readRegister(this.rB))) em.writePC(em.readPC() + this.imm);
+  public void run(Emulator em, int opCode) throws EmulatorException {
+    if (signedToUnsigned(em.readRegister(rA(opCode)))
+        >= signedToUnsigned(em.readRegister(rB(opCode)))) em.writePC(em.readPC() + imm(opCode));
   }
 }
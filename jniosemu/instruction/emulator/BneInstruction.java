@@ -4,11 +4,7 @@ import jniosemu.emulator.Emulator;
 import jniosemu.emulator.EmulatorException;
 
 public class BneInstruction extends ITypeInstruction {
-  public BneInstruction(int opCode) {
-    super(opCode);
-  }
-
-  public void run(Emulator em) throws EmulatorException {
-    if (em.readRegister(this.rA) != em.readRegister(this.rB)) em.writePC(em.readPC() + this.imm);
+  public void run(Emulator em, int opCode) throws EmulatorException {
+    if (em.readRegister(rA(opCode)) != em.readRegister(rB(opCode))) em.writePC(em.readPC() + imm(opCode));
   }
 }
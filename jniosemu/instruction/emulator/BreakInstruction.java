@@ -0,0 +1,10 @@
+package jniosemu.instruction.emulator;
+
+import jniosemu.emulator.Emulator;
+import jniosemu.emulator.EmulatorException;
+
+public class BreakInstruction extends RTypeInstruction {
+  public void run(Emulator em, int opCode) throws EmulatorException {
+    em.breakpoint();
+  }
+}
@@ -4,13 +4,9 @@ import jniosemu.emulator.Emulator;
 import jniosemu.emulator.EmulatorException;
 
 public class CallrInstruction extends RTypeInstruction {
-  public CallrInstruction(int opCode) {
-    super(opCode);
-  }
-
-  public void run(Emulator em) throws EmulatorException {
+  public void run(Emulator em, int opCode) throws EmulatorException {
     em.writeRegister(31, em.readPC() + 4);
-    int vA = em.readRegister(this.rA);
+    int vA = em.readRegister(rA(opCode));
     em.writePC(vA - 4);
   }
 }
@@ -4,15 +4,11 @@ import jniosemu.emulator.Emulator;
 import jniosemu.emulator.EmulatorException;
 
 public class CmpgeInstruction extends RTypeInstruction {
-  public CmpgeInstruction(int opCode) {
-    super(opCode);
-  }
-
-  public void run(Emulator em) throws EmulatorException {
-    if (em.readRegister(this.rA) >= em.readRegister(this.rB)) {
-      em.writeRegister(this.rC, 1);
+  public void run(Emulator em, int opCode) throws EmulatorException {
+    if (em.readRegister(rA(opCode)) >= em.readRegister(rB(opCode))) {
+      em.writeRegister(rC(opCode), 1);
     } else {
-      em.writeRegister(this.rC, 0);
+      em.writeRegister(rC(opCode), 0);
     }
   }
 }
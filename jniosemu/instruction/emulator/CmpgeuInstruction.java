@@ -4,16 +4,12 @@ import jniosemu.emulator.Emulator;
 import jniosemu.emulator.EmulatorException;
 
 public class CmpgeuInstruction extends RTypeInstruction {
-  public CmpgeuInstruction(int opCode) {
-    super(opCode);
-  }
-
-  public void run(Emulator em) throws EmulatorException {
-    if (this.signedToUnsigned(em.readRegister(this.rA))
-        >= this.signedToUnsigned(em.readRegister(this.rB))) {
-      em.writeRegister(this.rC, 1);
+  public void run(Emulator em, int opCode) throws EmulatorException {
+    if (signedToUnsigned(em.readRegister(rA(opCode)))
+        >= signedToUnsigned(em.readRegister(rB(opCode)))) {
+      em.writeRegister(rC(opCode), 1);
     } else {
-      em.writeRegister(this.rC, 0);
+      em.writeRegister(rC(opCode), 0);
     }
   }
 }
@@ -4,15 +4,11 @@ import jniosemu.emulator.Emulator;
 import jniosemu.emulator.EmulatorException;
 
 public class CmpltiInstruction extends ITypeInstruction {
-  public CmpltiInstruction(int opCode) {
-    super(opCode);
-  }
-
-  public void run(Emulator em) throws EmulatorException {
-    if (em.readRegister(this.rA) < this.imm) {
-      em.writeRegister(this.rB, 1);
+  public void run(Emulator em, int opCode) throws EmulatorException {
+    if (em.readRegister(rA(opCode)) < imm(opCode)) {
+      em.writeRegister(rB(opCode), 1);
     } else {
-      em.writeRegister(this.rB, 0);
+      em.writeRegister(rB(opCode), 0);
     }
   }
 }
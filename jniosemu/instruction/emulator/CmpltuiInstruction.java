@@ -4,16 +4,12 @@ import jniosemu.emulator.Emulator;
 import jniosemu.emulator.EmulatorException;
 
 public class CmpltuiInstruction extends ITypeInstruction {
-  public CmpltuiInstruction(int opCode) {
-    super(opCode);
-  }
-
-  public void run(Emulator em) throws EmulatorException {
-    int vI = this.imm & 0xFFFF;
-    if (signedToUnsigned(em.readRegister(this.rA)) < signedToUnsigned(vI)) {
-      em.writeRegister(this.rB, 1);
+  public void run(Emulator em, int opCode) throws EmulatorException {
+    int vI = imm(opCode) & 0xFFFF;
+    if (signedToUnsigned(em.readRegister(rA(opCode))) < signedToUnsigned(vI)) {
+      em.writeRegister(rB(opCode), 1);
     } else {
-      em.writeRegister(this.rB, 0);
+      em.writeRegister(rB(opCode), 0);
     }
   }
 }
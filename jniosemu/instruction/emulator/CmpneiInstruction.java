@@ -4,15 +4,11 @@ import jniosemu.emulator.Emulator;
 import jniosemu.emulator.EmulatorException;
 
 public class CmpneiInstruction extends ITypeInstruction {
-  public CmpneiInstruction(int opCode) {
-    super(opCode);
-  }
-
-  public void run(Emulator em) throws EmulatorException {
-    if (em.readRegister(this.rA) != this.imm) {
-      em.writeRegister(rB, 1);
+  public void run(Emulator em, int opCode) throws EmulatorException {
+    if (em.readRegister(rA(opCode)) != imm(opCode)) {
+      em.writeRegister(rB(opCode), 1);
     } else {
-      em.writeRegister(rB, 0);
+      em.writeRegister(rB(opCode), 0);
     }
   }
 }
@@ -4,13 +4,9 @@ import jniosemu.emulator.Emulator;
 import jniosemu.emulator.EmulatorException;
 
 public class DivInstruction extends RTypeInstruction {
-  public DivInstruction(int opCode) {
-    super(opCode);
-  }
-
-  public void run(Emulator em) throws EmulatorException {
-    if (em.readRegister(this.rB) == 0) throw new EmulatorException("Can't divide by zero");
+  public void run(Emulator em, int opCode) throws EmulatorException {
+    if (em.readRegister(rB(opCode)) == 0) throw new EmulatorException("Can't divide by zero");
 
-    em.writeRegister(this.rC, em.readRegister(this.rA) / em.readRegister(this.rB));
+    em.writeRegister(rC(opCode), em.readRegister(rA(opCode)) / em.readRegister(rB(opCode)));
   }
 }
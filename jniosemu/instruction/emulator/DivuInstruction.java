@@ -4,17 +4,13 @@ import jniosemu.emulator.Emulator;
 import jniosemu.emulator.EmulatorException;
 
 public class DivuInstruction extends RTypeInstruction {
-  public DivuInstruction(int opCode) {
-    super(opCode);
-  }
-
-  public void run(Emulator em) throws EmulatorException {
-    if (em.readRegister(this.rB) == 0) throw new EmulatorException("Can't divide by zero");
+  public void run(Emulator em, int opCode) throws EmulatorException {
+    if (em.readRegister(rB(opCode)) == 0) throw new EmulatorException("Can't divide by zero");
 
     em.writeRegister(
-        this.rC,
+        rC(opCode),
         (int)
-            (this.signedToUnsigned(em.readRegister(this.rA))
-                / this.signedToUnsigned(em.readRegister(this.rB))));
+            (signedToUnsigned(em.readRegister(rA(opCode)))
+                / signedToUnsigned(em.readRegister(rB(opCode)))));
   }
 }
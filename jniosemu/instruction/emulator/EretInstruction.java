@@ -0,0 +1,14 @@
+package jniosemu.instruction.emulator;
+
+import jniosemu.emulator.Emulator;
+import jniosemu.emulator.EmulatorException;
+import jniosemu.emulator.memory.InterruptController;
+
+public class EretInstruction extends RTypeInstruction {
+  public void run(Emulator em, int opCode) throws EmulatorException {
+    em.writeControlRegister(
+        InterruptController.STATUS, em.readControlRegister(InterruptController.ESTATUS));
+    int ea = em.readRegister(29);
+    em.writePC(ea - 4);
+  }
+}
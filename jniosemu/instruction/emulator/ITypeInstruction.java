@@ -7,54 +7,69 @@ import jniosemu.instruction.InstructionManager;
 
 /** Used for running instructions of type I */
 public abstract class ITypeInstruction extends Instruction {
-  /** rA register */
-  protected int rA;
-  /** rB register */
-  protected int rB;
-  /** imm part of the instruction */
-  protected short imm;
+  /**
+   * Get the rA register of an opcode
+   *
+   * @param opCode Opcode of the instruction
+   * @return rA register
+   */
+  protected static int rA(int opCode) {
+    return (opCode >>> 27) & 0x1F;
+  }
 
-  public ITypeInstruction(int opCode) {
-    this.opCode = opCode;
+  /**
+   * Get the rB register of an opcode
+   *
+   * @param opCode Opcode of the instruction
+   * @return rB register
+   */
+  protected static int rB(int opCode) {
+    return (opCode >>> 22) & 0x1F;
+  }
 
-    this.rA = (opCode >>> 27) & 0x1F;
-    this.rB = (opCode >>> 22) & 0x1F;
-    this.imm = (short) ((opCode >>> 6) & 0xFFFF);
+  /**
+   * Get the imm part of an opcode
+   *
+   * @param opCode Opcode of the instruction
+   * @return imm part of the instruction
+   */
+  protected static short imm(int opCode) {
+    return (short) (opCode >>> 6);
   }
 
-  public abstract void run(Emulator em) throws EmulatorException;
+  public abstract void run(Emulator em, int opCode) throws EmulatorException;
 
-  public String toString() {
-    InstructionInfo info = InstructionManager.getInfo(this.opCode);
+  public String toString(int opCode) {
+    InstructionInfo info = InstructionManager.getInfo(opCode);
 
     if (info != null) {
       switch (info.getSyntax()) {
         case DEFAULT:
           return info.getName()
               + " r"
-              + Integer.toString(this.rB)
+              + Integer.toString(rB(opCode))
               + ", r"
-              + Integer.toString(this.rA)
+              + Integer.toString(rA(opCode))
               + ", "
-              + Integer.toString(this.imm);
+              + Integer.toString(imm(opCode));
         case BRANCH_COND:
           return info.getName()
               + " r"
-              + Integer.toString(this.rA)
+              + Integer.toString(rA(opCode))
               + ", r"
-              + Integer.toString(this.rB)
+              + Integer.toString(rB(opCode))
               + ", "
-              + Integer.toString(this.imm);
+              + Integer.toString(imm(opCode));
         case BRANCH:
-          return info.getName() + " " + Integer.toString(this.imm);
+          return info.getName() + " " + Integer.toString(imm(opCode));
         case MEMORY:
           return info.getName()
               + " r"
-              + Integer.toString(this.rB)
+              + Integer.toString(rB(opCode))
               + ", "
-              + Integer.toString(this.imm)
+              + Integer.toString(imm(opCode))
               + "(r"
-              + Integer.toString(this.rA)
+              + Integer.toString(rA(opCode))
               + ")";
       }
     }
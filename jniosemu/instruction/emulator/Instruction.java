@@ -3,20 +3,19 @@ package jniosemu.instruction.emulator;
 import jniosemu.emulator.Emulator;
 import jniosemu.emulator.EmulatorException;
 
-/** Used for running an instruction */
+/**
+ * Used for running an instruction. One instance is shared by every opcode of the same
+ * instruction, so an Instruction holds no state and gets the opcode passed to it.
+ */
 public abstract class Instruction {
-  /** Opcode of the instruction */
-  protected int opCode;
-
   /**
    * Help method that the instructions could use to cast an int to a long if the int is unsigned
    *
    * @param value Int value
    * @return Long value
    */
-  protected long signedToUnsigned(int value) {
-    // This is a very stupid way to do it but it seems to be the only way Java can do it
-    return (long) value & Long.parseLong("4294967295");
+  protected static long signedToUnsigned(int value) {
+    return value & 0xFFFFFFFFL;
   }
 
   /**
@@ -25,8 +24,8 @@ public abstract class Instruction {
    * @param value Short value
    * @return Int value
    */
-  protected int signedToUnsigned(short value) {
-    return (int) value & 0xFFFF;
+  protected static int signedToUnsigned(short value) {
+    return value & 0xFFFF;
   }
 
   /**
@@ -37,14 +36,16 @@ public abstract class Instruction {
    *     Emulator.readByte(), Emulator.writeShort(), Emulator.readShort(), Emulator.writeInt(),
    *     Emulator.readInt(), Emulator.writePC(), Emulator.readPC()
    * @param em So the instruction can access memory, register and stuff like that
+   * @param opCode Opcode the operands are taken from
    * @throws EmulatorException If something goes wrong trying to execute the instruction
    */
-  public abstract void run(Emulator em) throws EmulatorException;
+  public abstract void run(Emulator em, int opCode) throws EmulatorException;
 
   /**
    * Output the instruction as a String
    *
+   * @param opCode Opcode the operands are taken from
    * @return String representation of the instruction
    */
-  public abstract String toString();
+  public abstract String toString(int opCode);
 }
@@ -7,24 +7,25 @@ import jniosemu.instruction.InstructionManager;
 
 /** Used for running an instruction of type J */
 public abstract class JTypeInstruction extends Instruction {
-  /** imm part of the instruction */
-  protected int imm;
-
-  public JTypeInstruction(int opCode) {
-    this.opCode = opCode;
-
-    this.imm = (opCode >>> 6) & 0x3FFFFFF;
+  /**
+   * Get the imm part of an opcode
+   *
+   * @param opCode Opcode of the instruction
+   * @return imm part of the instruction
+   */
+  protected static int imm(int opCode) {
+    return (opCode >>> 6) & 0x3FFFFFF;
   }
 
-  public abstract void run(Emulator em) throws EmulatorException;
+  public abstract void run(Emulator em, int opCode) throws EmulatorException;
 
-  public String toString() {
-    InstructionInfo info = InstructionManager.getInfo(this.opCode);
+  public String toString(int opCode) {
+    InstructionInfo info = InstructionManager.getInfo(opCode);
 
     if (info != null) {
       switch (info.getSyntax()) {
         case DEFAULT:
-          return info.getName() + " " + Integer.toString(this.imm);
+          return info.getName() + " " + Integer.toString(imm(opCode));
       }
     }
 
@@ -4,11 +4,7 @@ import jniosemu.emulator.Emulator;
 import jniosemu.emulator.EmulatorException;
 
 public class JmpInstruction extends RTypeInstruction {
-  public JmpInstruction(int opCode) {
-    super(opCode);
-  }
-
-  public void run(Emulator em) throws EmulatorException {
-    em.writePC(em.readRegister(this.rA) - 4);
+  public void run(Emulator em, int opCode) throws EmulatorException {
+    em.writePC(em.readRegister(rA(opCode)) - 4);
   }
 }
@@ -4,11 +4,7 @@ import jniosemu.emulator.Emulator;
 import jniosemu.emulator.EmulatorException;
 
 public class LdbInstruction extends ITypeInstruction {
-  public LdbInstruction(int opCode) {
-    super(opCode);
-  }
-
-  public void run(Emulator em) throws EmulatorException {
-    em.writeRegister(this.rB, em.readByteMemory(em.readRegister(this.rA) + this.imm));
+  public void run(Emulator em, int opCode) throws EmulatorException {
+    em.writeRegister(rB(opCode), em.readByteMemory(em.readRegister(rA(opCode)) + imm(opCode)));
   }
 }
@@ -4,14 +4,10 @@ import jniosemu.emulator.Emulator;
 import jniosemu.emulator.EmulatorException;
 
 public class LdbuInstruction extends ITypeInstruction {
-  public LdbuInstruction(int opCode) {
-    super(opCode);
-  }
-
-  public void run(Emulator em) throws EmulatorException {
-    int vA = em.readRegister(this.rA);
-    int vR = signedToUnsigned(em.readByteMemory(vA + this.imm)) & 0xFF;
+  public void run(Emulator em, int opCode) throws EmulatorException {
+    int vA = em.readRegister(rA(opCode));
+    int vR = signedToUnsigned(em.readByteMemory(vA + imm(opCode))) & 0xFF;
 
-    em.writeRegister(this.rB, vR);
+    em.writeRegister(rB(opCode), vR);
   }
 }
@@ -4,11 +4,7 @@ import jniosemu.emulator.Emulator;
 import jniosemu.emulator.EmulatorException;
 
 public class LdhInstruction extends ITypeInstruction {
-  public LdhInstruction(int opCode) {
-    super(opCode);
-  }
-
-  public void run(Emulator em) throws EmulatorException {
-    em.writeRegister(this.rB, em.readShortMemory(em.readRegister(this.rA) + this.imm));
+  public void run(Emulator em, int opCode) throws EmulatorException {
+    em.writeRegister(rB(opCode), em.readShortMemory(em.readRegister(rA(opCode)) + imm(opCode)));
   }
 }
@@ -4,14 +4,10 @@ import jniosemu.emulator.Emulator;
 import jniosemu.emulator.EmulatorException;
 
 public class LdhuioInstruction extends ITypeInstruction {
-  public LdhuioInstruction(int opCode) {
-    super(opCode);
-  }
-
-  public void run(Emulator em) throws EmulatorException {
-    int vA = em.readRegister(this.rA);
-    int vR = signedToUnsigned(em.readShortMemory(vA + this.imm));
+  public void run(Emulator em, int opCode) throws EmulatorException {
+    int vA = em.readRegister(rA(opCode));
+    int vR = signedToUnsigned(em.readShortMemory(vA + imm(opCode)));
 
-    em.writeRegister(this.rB, vR);
+    em.writeRegister(rB(opCode), vR);
   }
 }
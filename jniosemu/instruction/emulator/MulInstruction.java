@@ -4,11 +4,7 @@ import jniosemu.emulator.Emulator;
 import jniosemu.emulator.EmulatorException;
 
 public class MulInstruction extends RTypeInstruction {
-  public MulInstruction(int opCode) {
-    super(opCode);
-  }
-
-  public void run(Emulator em) throws EmulatorException {
-    em.writeRegister(this.rC, em.readRegister(this.rA) * em.readRegister(this.rB));
+  public void run(Emulator em, int opCode) throws EmulatorException {
+    em.writeRegister(rC(opCode), em.readRegister(rA(opCode)) * em.readRegister(rB(opCode)));
   }
 }
@@ -4,14 +4,10 @@ import jniosemu.emulator.Emulator;
 import jniosemu.emulator.EmulatorException;
 
 public class MulxssInstruction extends RTypeInstruction {
-  public MulxssInstruction(int opCode) {
-    super(opCode);
-  }
-
-  public void run(Emulator em) throws EmulatorException {
-    long vA = (long) em.readRegister(this.rA);
-    long vB = (long) em.readRegister(this.rB);
+  public void run(Emulator em, int opCode) throws EmulatorException {
+    long vA = (long) em.readRegister(rA(opCode));
+    long vB = (long) em.readRegister(rB(opCode));
     long vC = (vA * vB) >>> 32;
-    em.writeRegister(this.rC, (int) vC);
+    em.writeRegister(rC(opCode), (int) vC);
   }
 }
@@ -4,14 +4,10 @@ import jniosemu.emulator.Emulator;
 import jniosemu.emulator.EmulatorException;
 
 public class MulxuuInstruction extends RTypeInstruction {
-  public MulxuuInstruction(int opCode) {
-    super(opCode);
-  }
-
-  public void run(Emulator em) throws EmulatorException {
-    long vA = this.signedToUnsigned(em.readRegister(this.rA));
-    long vB = this.signedToUnsigned(em.readRegister(this.rB));
+  public void run(Emulator em, int opCode) throws EmulatorException {
+    long vA = signedToUnsigned(em.readRegister(rA(opCode)));
+    long vB = signedToUnsigned(em.readRegister(rB(opCode)));
     long vC = (vA * vB) >>> 32;
-    em.writeRegister(this.rC, (int) vC);
+    em.writeRegister(rC(opCode), (int) vC);
   }
 }
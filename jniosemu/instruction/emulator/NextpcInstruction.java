@@ -4,11 +4,7 @@ import jniosemu.emulator.Emulator;
 import jniosemu.emulator.EmulatorException;
 
 public class NextpcInstruction extends RTypeInstruction {
-  public NextpcInstruction(int opCode) {
-    super(opCode);
-  }
-
-  public void run(Emulator em) throws EmulatorException {
-    em.writeRegister(this.rC, em.readPC() + 4);
+  public void run(Emulator em, int opCode) throws EmulatorException {
+    em.writeRegister(rC(opCode), em.readPC() + 4);
   }
 }
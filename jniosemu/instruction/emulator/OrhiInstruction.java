@@ -4,12 +4,8 @@ import jniosemu.emulator.Emulator;
 import jniosemu.emulator.EmulatorException;
 
 public class OrhiInstruction extends ITypeInstruction {
-  public OrhiInstruction(int opCode) {
-    super(opCode);
-  }
-
-  public void run(Emulator em) throws EmulatorException {
-    int vA = em.readRegister(this.rA);
-    em.writeRegister(this.rB, vA | (this.imm << 16));
+  public void run(Emulator em, int opCode) throws EmulatorException {
+    int vA = em.readRegister(rA(opCode));
+    em.writeRegister(rB(opCode), vA | (imm(opCode) << 16));
   }
 }
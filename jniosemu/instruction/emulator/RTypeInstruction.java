@@ -7,61 +7,95 @@ import jniosemu.instruction.InstructionManager;
 
 /** Used for running an instruction of type R */
 public abstract class RTypeInstruction extends Instruction {
-  /** rA register */
-  protected int rA;
-  /** rB register */
-  protected int rB;
-  /** rC register */
-  protected int rC;
-  /** imm part of the instruction */
-  protected int imm;
+  /**
+   * Get the rA register of an opcode
+   *
+   * @param opCode Opcode of the instruction
+   * @return rA register
+   */
+  protected static int rA(int opCode) {
+    return (opCode >>> 27) & 0x1F;
+  }
+
+  /**
+   * Get the rB register of an opcode
+   *
+   * @param opCode Opcode of the instruction
+   * @return rB register
+   */
+  protected static int rB(int opCode) {
+    return (opCode >>> 22) & 0x1F;
+  }
 
-  public RTypeInstruction(int opCode) {
-    this.opCode = opCode;
+  /**
+   * Get the rC register of an opcode
+   *
+   * @param opCode Opcode of the instruction
+   * @return rC register
+   */
+  protected static int rC(int opCode) {
+    return (opCode >>> 17) & 0x1F;
+  }
 
-    this.rA = (opCode >>> 27) & 0x1F;
-    this.rB = (opCode >>> 22) & 0x1F;
-    this.rC = (opCode >>> 17) & 0x1F;
-    this.imm = (opCode >>> 6) & 0x1F;
+  /**
+   * Get the imm part of an opcode
+   *
+   * @param opCode Opcode of the instruction
+   * @return imm part of the instruction
+   */
+  protected static int imm(int opCode) {
+    return (opCode >>> 6) & 0x1F;
   }
 
-  public abstract void run(Emulator em) throws EmulatorException;
+  public abstract void run(Emulator em, int opCode) throws EmulatorException;
 
-  public String toString() {
-    InstructionInfo info = InstructionManager.getInfo(this.opCode);
+  public String toString(int opCode) {
+    InstructionInfo info = InstructionManager.getInfo(opCode);
 
     if (info != null) {
       switch (info.getSyntax()) {
         case DEFAULT:
           return info.getName()
               + " r"
-              + Integer.toString(this.rC)
+              + Integer.toString(rC(opCode))
               + ", r"
-              + Integer.toString(this.rA)
+              + Integer.toString(rA(opCode))
               + ", r"
-              + Integer.toString(this.rB);
+              + Integer.toString(rB(opCode));
         case CALLJUMP:
-          return info.getName() + " r" + Integer.toString(this.rA);
+          return info.getName() + " r" + Integer.toString(rA(opCode));
         case PC:
-          return info.getName() + " r" + Integer.toString(this.rA);
+          return info.getName() + " r" + Integer.toString(rA(opCode));
         case SHIFT:
           return info.getName()
               + " r"
-              + Integer.toString(this.rC)
+              + Integer.toString(rC(opCode))
               + ", r"
-              + Integer.toString(this.rA)
+              + Integer.toString(rA(opCode))
               + ", "
-              + Integer.toString(this.imm);
+              + Integer.toString(imm(opCode));
         case CUSTOM:
           return info.getName()
               + " "
-              + Integer.toString(this.imm)
+              + Integer.toString(imm(opCode))
               + ", r"
-              + Integer.toString(this.rC)
+              + Integer.toString(rC(opCode))
               + ", r"
-              + Integer.toString(this.rA)
+              + Integer.toString(rA(opCode))
+              + ", r"
+              + Integer.toString(rB(opCode));
+        case RDCTL:
+          return info.getName()
+              + " r"
+              + Integer.toString(rC(opCode))
+              + ", ctl"
+              + Integer.toString(imm(opCode));
+        case WRCTL:
+          return info.getName()
+              + " ctl"
+              + Integer.toString(imm(opCode))
               + ", r"
-              + Integer.toString(this.rB);
+              + Integer.toString(rA(opCode));
         case NONE:
           return info.getName();
       }
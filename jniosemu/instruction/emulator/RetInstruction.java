@@ -4,11 +4,7 @@ import jniosemu.emulator.Emulator;
 import jniosemu.emulator.EmulatorException;
 
 public class RetInstruction extends RTypeInstruction {
-  public RetInstruction(int opCode) {
-    super(opCode);
-  }
-
-  public void run(Emulator em) throws EmulatorException {
+  public void run(Emulator em, int opCode) throws EmulatorException {
     int ra = em.readRegister(31);
     em.writePC(ra - 4);
   }
@@ -4,14 +4,10 @@ import jniosemu.emulator.Emulator;
 import jniosemu.emulator.EmulatorException;
 
 public class RolInstruction extends RTypeInstruction {
-  public RolInstruction(int opCode) {
-    super(opCode);
-  }
-
-  public void run(Emulator em) throws EmulatorException {
-    int vA = em.readRegister(this.rA);
-    int vB = em.readRegister(this.rB);
+  public void run(Emulator em, int opCode) throws EmulatorException {
+    int vA = em.readRegister(rA(opCode));
+    int vB = em.readRegister(rB(opCode));
     vB = vB & 0xF; // Lowest 4 bits.
-    em.writeRegister(this.rC, Integer.rotateLeft(vA, vB));
+    em.writeRegister(rC(opCode), Integer.rotateLeft(vA, vB));
   }
 }
@@ -4,12 +4,8 @@ import jniosemu.emulator.Emulator;
 import jniosemu.emulator.EmulatorException;
 
 public class SlliInstruction extends RTypeInstruction {
-  public SlliInstruction(int opCode) {
-    super(opCode);
-  }
-
-  public void run(Emulator em) throws EmulatorException {
-    int vI = (int) signedToUnsigned(this.imm) & 0x1F;
-    em.writeRegister(this.rC, em.readRegister(this.rA) << vI);
+  public void run(Emulator em, int opCode) throws EmulatorException {
+    int vI = (int) signedToUnsigned(imm(opCode)) & 0x1F;
+    em.writeRegister(rC(opCode), em.readRegister(rA(opCode)) << vI);
   }
 }
@@ -4,12 +4,8 @@ import jniosemu.emulator.Emulator;
 import jniosemu.emulator.EmulatorException;
 
 public class SrlInstruction extends RTypeInstruction {
-  public SrlInstruction(int opCode) {
-    super(opCode);
-  }
-
-  public void run(Emulator em) throws EmulatorException {
-    int vB = em.readRegister(this.rB) & 0xF; // we only want the lower-4-bits.
-    em.writeRegister(this.rC, em.readRegister(this.rA) >>> vB);
+  public void run(Emulator em, int opCode) throws EmulatorException {
+    int vB = em.readRegister(rB(opCode)) & 0xF; // we only want the lower-4-bits.
+    em.writeRegister(rC(opCode), em.readRegister(rA(opCode)) >>> vB);
   }
 }
@@ -4,13 +4,9 @@ import jniosemu.emulator.Emulator;
 import jniosemu.emulator.EmulatorException;
 
 public class SrliInstruction extends RTypeInstruction {
-  public SrliInstruction(int opCode) {
-    super(opCode);
-  }
-
-  public void run(Emulator em) throws EmulatorException {
-    int vI = this.imm & 63; // Lowest 6 bits.
+  public void run(Emulator em, int opCode) throws EmulatorException {
+    int vI = imm(opCode) & 63; // Lowest 6 bits.
     em.writeRegister(
-        this.rC, (int) (signedToUnsigned(em.readRegister(this.rA)) >> signedToUnsigned(vI)));
+        rC(opCode), (int) (signedToUnsigned(em.readRegister(rA(opCode))) >> signedToUnsigned(vI)));
   }
 }
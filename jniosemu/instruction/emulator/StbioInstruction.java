@@ -4,13 +4,9 @@ import jniosemu.emulator.Emulator;
 import jniosemu.emulator.EmulatorException;
 
 public class StbioInstruction extends ITypeInstruction {
-  public StbioInstruction(int opCode) {
-    super(opCode);
-  }
-
-  public void run(Emulator em) throws EmulatorException {
-    int vA = em.readRegister(this.rA);
-    byte vB = (byte) em.readRegister(this.rB);
-    em.writeByteMemory(vA + this.imm, vB);
+  public void run(Emulator em, int opCode) throws EmulatorException {
+    int vA = em.readRegister(rA(opCode));
+    byte vB = (byte) em.readRegister(rB(opCode));
+    em.writeByteMemory(vA + imm(opCode), vB);
   }
 }
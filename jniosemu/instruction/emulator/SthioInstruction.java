@@ -4,13 +4,9 @@ import jniosemu.emulator.Emulator;
 import jniosemu.emulator.EmulatorException;
 
 public class SthioInstruction extends ITypeInstruction {
-  public SthioInstruction(int opCode) {
-    super(opCode);
-  }
-
-  public void run(Emulator em) throws EmulatorException {
-    int vA = em.readRegister(this.rA);
-    short vB = (short) em.readRegister(this.rB);
-    em.writeShortMemory(vA + this.imm, vB);
+  public void run(Emulator em, int opCode) throws EmulatorException {
+    int vA = em.readRegister(rA(opCode));
+    short vB = (short) em.readRegister(rB(opCode));
+    em.writeShortMemory(vA + imm(opCode), vB);
   }
 }
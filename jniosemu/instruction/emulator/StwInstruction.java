@@ -4,13 +4,9 @@ import jniosemu.emulator.Emulator;
 import jniosemu.emulator.EmulatorException;
 
 public class StwInstruction extends ITypeInstruction {
-  public StwInstruction(int opCode) {
-    super(opCode);
-  }
-
-  public void run(Emulator em) throws EmulatorException {
-    int vA = em.readRegister(this.rA);
-    int vB = em.readRegister(this.rB);
-    em.writeIntMemory(vA + this.imm, vB);
+  public void run(Emulator em, int opCode) throws EmulatorException {
+    int vA = em.readRegister(rA(opCode));
+    int vB = em.readRegister(rB(opCode));
+    em.writeIntMemory(vA + imm(opCode), vB);
   }
 }
@@ -4,13 +4,9 @@ import jniosemu.emulator.Emulator;
 import jniosemu.emulator.EmulatorException;
 
 public class XoriInstruction extends ITypeInstruction {
-  public XoriInstruction(int opCode) {
-    super(opCode);
-  }
-
-  public void run(Emulator em) throws EmulatorException {
-    int vA = em.readRegister(this.rA);
-    int vI = this.imm & 0xFFFF;
-    em.writeRegister(this.rB, vA ^ vI);
+  public void run(Emulator em, int opCode) throws EmulatorException {
+    int vA = em.readRegister(rA(opCode));
+    int vI = imm(opCode) & 0xFFFF;
+    em.writeRegister(rB(opCode), vA ^ vI);
   }
 }
@@ -1,5 +1,7 @@
 cd bin/
 java.exe -client jniosemu.InstructionsTest ../asm_test/instruction
+java.exe -client jniosemu.MemoryMapTest
+java.exe -client jniosemu.SerialDeviceTest
 
 @echo off
 PAUSE